@@ -48,5 +48,13 @@ public interface AlertSource {
 
     Optional<Alert> getAlert(Alert.ID id);
 
+    /**
+     * Retrieves the alerts matching the criteria, at most the criteria's limit.  The alerts are ordered by their created time,
+     * newest first, or oldest first when only a limited number of alerts after a time are requested.  This ordering allows
+     * the alerts of several sources to be merged without retrieving all of them.
+     *
+     * @param criteria the criteria the alerts must match
+     * @return the matching alerts
+     */
     Iterator<Alert> getAlerts(AlertCriteria criteria);
 }
@@ -23,6 +23,7 @@ package com.thinkbiganalytics.alerts.api.core;
  * #L%
  */
 
+import com.google.common.collect.Iterators;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.thinkbiganalytics.alerts.api.Alert;
 import com.thinkbiganalytics.alerts.api.Alert.ID;
@@ -46,16 +47,27 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -77,12 +89,19 @@ public class AggregatingAlertProvider implements AlertProvider, AlertSourceAggre
 
     private static final Logger LOG = LoggerFactory.getLogger(AggregatingAlertProvider.class);
 
+    /**
+     * The most threads used to retrieve alerts from the sources in parallel
+     */
+    private static final int MAX_ALERT_SOURCE_THREADS = 4;
+
     private List<AlertResponder> responders;
     private Registration<?, ?> respondersRegistration;
     private Map<AlertListener, Registration<?, ?>> listeners;
     private Map<String, AlertSource> sources;
     private Map<String, AlertManager> managers;
     private Executor availableAlertsExecutor;
+    private Executor alertSourcesExecutor;
+    private final ExecutorService defaultAlertSourcesExecutor;
     private volatile DateTime lastAlertsTime = DateTime.now();
 
     @Inject
@@ -103,6 +122,11 @@ public class AggregatingAlertProvider implements AlertProvider, AlertSourceAggre
         this.sources = Collections.synchronizedMap(new HashMap<String, AlertSource>());
         this.managers = Collections.synchronizedMap(new HashMap<String, AlertManager>());
         this.availableAlertsExecutor = Executors.newFixedThreadPool(1, new ThreadFactoryBuilder().setDaemon(true).build());
+        ThreadPoolExecutor sourcesExecutor = new ThreadPoolExecutor(MAX_ALERT_SOURCE_THREADS, MAX_ALERT_SOURCE_THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                                                                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("alert-sources-%d").build());
+        sourcesExecutor.allowCoreThreadTimeOut(true);
+        this.defaultAlertSourcesExecutor = sourcesExecutor;
+        this.alertSourcesExecutor = sourcesExecutor;
     }
 
     /**
@@ -124,6 +148,13 @@ public class AggregatingAlertProvider implements AlertProvider, AlertSourceAggre
         this.availableAlertsExecutor = availableAlertsExecutor;
     }
 
+    /**
+     * @param alertSourcesExecutor the executor used to retrieve alerts from the sources in parallel
+     */
+    public void setAlertSourcesExecutor(Executor alertSourcesExecutor) {
+        this.alertSourcesExecutor = alertSourcesExecutor;
+    }
+
     /* (non-Javadoc)
      * @see reactor.fn.Consumer#accept(java.lang.Object)
      */
@@ -300,6 +331,7 @@ public class AggregatingAlertProvider implements AlertProvider, AlertSourceAggre
     private void cancelRegistrations() {
         this.respondersRegistration.cancel();
         this.listeners.values().forEach(reg -> reg.cancel());
+        this.defaultAlertSourcesExecutor.shutdownNow();
     }
 
     private AlertSource getSource(String srcId) {
@@ -316,19 +348,53 @@ public class AggregatingAlertProvider implements AlertProvider, AlertSourceAggre
         return src.getAlert(id).map(alert -> wrapAlert(alert, src));
     }
 
+    /**
+     * Retrieves the alerts of each source in parallel and merges them, newest first.  Each source returns its alerts
+     * already ordered and limited by the criteria, so only the alerts up to the limit are read from the merged sources.
+     */
     private Stream<Alert> combineAlerts(AlertCriteria criteria, Map<String, AlertSource> srcs) {
         Criteria critImpl = (Criteria) criteria;
+        Comparator<Alert> newestFirst = (a1, a2) -> a2.getCreatedTime().compareTo(a1.getCreatedTime());
+        boolean ascending = critImpl.isAscendingOrder();
+
+        Iterator<Alert> merged = Iterators.limit(Iterators.mergeSorted(retrieveAlerts(critImpl, srcs.values()), ascending ? newestFirst.reversed() : newestFirst),
+                                                 critImpl.getLimit());
+        Stream<Alert> alerts = StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false)
+            .map(alert -> wrapAlert(alert, alert.getSource()));
+
+        if (ascending) {
+            // The alerts following the "after" time are still returned newest first
+            List<Alert> list = alerts.collect(Collectors.toList());
+            Collections.reverse(list);
+            return list.stream();
+        } else {
+            return alerts;
+        }
+    }
+
+    private List<Iterator<Alert>> retrieveAlerts(Criteria critImpl, Collection<AlertSource> srcs) {
+        if (srcs.size() <= 1) {
+            return srcs.stream().map(src -> retrieveAlerts(critImpl, src)).collect(Collectors.toList());
+        }
+
+        List<CompletableFuture<Iterator<Alert>>> futures = srcs.stream()
+            .map(src -> CompletableFuture.supplyAsync(() -> retrieveAlerts(critImpl, src), this.alertSourcesExecutor))
+            .collect(Collectors.toList());
+        try {
+            return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw e;
+            }
+        }
+    }
 
-        return srcs.values().stream()
-            .map(src -> {
-                AlertCriteria srcCrit = src.criteria();
-                critImpl.transfer(srcCrit);
-                Iterable<Alert> alerts = () -> src.getAlerts(srcCrit);
-                return StreamSupport.stream(alerts.spliterator(), false);
-            })
-            .flatMap(s -> s)
-            .map(alert -> wrapAlert(alert, alert.getSource()))
-            .sorted((a1, a2) -> a2.getCreatedTime().compareTo(a1.getCreatedTime()));
+    private Iterator<Alert> retrieveAlerts(Criteria critImpl, AlertSource src) {
+        AlertCriteria srcCrit = src.criteria();
+        critImpl.transfer(srcCrit);
+        return src.getAlerts(srcCrit);
     }
 
     private void notifyChanged(Alert alert) {
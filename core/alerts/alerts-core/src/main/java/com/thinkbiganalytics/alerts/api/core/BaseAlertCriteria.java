@@ -209,6 +209,16 @@ public class BaseAlertCriteria implements AlertCriteria, Predicate<Alert> {
         return !alert.isCleared() || this.includeCleared;
     }
 
+    /**
+     * Alerts are ordered newest first, except when only a limited number of alerts after a time are requested.
+     * Then the oldest are ordered first so the limit keeps the alerts that immediately follow that time.
+     *
+     * @return true if the alerts matching this criteria are ordered oldest first
+     */
+    protected boolean isAscendingOrder() {
+        return this.limit != Integer.MAX_VALUE && this.afterTime != null && this.beforeTime == null;
+    }
+
 
     protected int getLimit() {
         return limit;
@@ -63,6 +63,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
 
 /**
  *
@@ -146,7 +147,7 @@ public class InMemoryAlertManager implements AlertManager {
 
     @Override
     public AlertCriteria criteria() {
-        return new BaseAlertCriteria();
+        return new Criteria();
     }
 
     @Override
@@ -165,11 +166,8 @@ public class InMemoryAlertManager implements AlertManager {
     @Override
     public Iterator<Alert> getAlerts(AlertCriteria criteria) {
         BaseAlertCriteria predicate = (BaseAlertCriteria) (criteria == null ? criteria() : criteria);
-        // TODO Grab a partition of the map first based on before/after times of criteria
-        return this.alertsByTime.values().stream()
-            .map(ref -> (Alert) ref.get())
-            .filter(predicate)
-            .iterator();
+        Criteria critImpl = predicate instanceof Criteria ? (Criteria) predicate : (Criteria) predicate.transfer(new Criteria());
+        return critImpl.select(this.alertsByTime).iterator();
     }
 //
 //    @Override
@@ -467,6 +465,29 @@ public class InMemoryAlertManager implements AlertManager {
         }
     }
 
+    private static class Criteria extends BaseAlertCriteria {
+
+        /**
+         * Selects the matching alerts in the order and up to the limit expected by the {@link AlertSource#getAlerts(AlertCriteria)} contract
+         */
+        public Stream<Alert> select(NavigableMap<DateTime, AtomicReference<GenericAlert>> alertsByTime) {
+            NavigableMap<DateTime, AtomicReference<GenericAlert>> range = alertsByTime;
+            if (getAfterTime() != null) {
+                range = range.tailMap(getAfterTime(), false);
+            }
+            if (getBeforeTime() != null) {
+                range = range.headMap(getBeforeTime(), false);
+            }
+            if (!isAscendingOrder()) {
+                range = range.descendingMap();
+            }
+            return range.values().stream()
+                .map(ref -> (Alert) ref.get())
+                .filter(this)
+                .limit(getLimit());
+        }
+    }
+
     private class AlertByIdMap extends LinkedHashMap<Alert.ID, AtomicReference<Alert>> {
 
         @Override
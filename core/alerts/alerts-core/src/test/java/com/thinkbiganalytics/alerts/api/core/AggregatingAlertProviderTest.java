@@ -207,6 +207,49 @@ public class AggregatingAlertProviderTest {
         assertThat(alerts).hasSize(2).contains(srcAlert, mgrAlert);
     }
 
+    @Test
+    public void testGetAlertsMergedNewestFirstAndLimited() {
+        DateTime now = DateTime.now();
+        TestAlert src1 = new TestAlert(this.source, now.minusMinutes(1));
+        TestAlert src2 = new TestAlert(this.source, now.minusMinutes(4));
+        TestAlert src3 = new TestAlert(this.source, now.minusMinutes(5));
+        TestAlert mgr1 = new TestAlert(this.manager, now.minusMinutes(2));
+        TestAlert mgr2 = new TestAlert(this.manager, now.minusMinutes(3));
+        TestAlert mgr3 = new TestAlert(this.manager, now.minusMinutes(6));
+
+        this.provider.addAlertSource(this.source);
+        this.provider.addAlertManager(this.manager);
+
+        when(this.source.getAlerts(any(AlertCriteria.class))).thenAnswer(iteratorAnswer(src1, src2, src3));
+        when(this.manager.getAlerts(any(AlertCriteria.class))).thenAnswer(iteratorAnswer(mgr1, mgr2, mgr3));
+
+        Iterator<? extends Alert> results = this.provider.getAlerts(this.provider.criteria().limit(4));
+        List<Alert> alerts = Lists.newArrayList(Iterators.transform(results, providerToSourceAlertFunction()));
+
+        assertThat(alerts).containsExactly(src1, mgr1, mgr2, src2);
+    }
+
+    @Test
+    public void testGetAlertsAfterLimited() {
+        DateTime now = DateTime.now();
+        TestAlert src1 = new TestAlert(this.source, now.minusMinutes(5));
+        TestAlert src2 = new TestAlert(this.source, now.minusMinutes(2));
+        TestAlert mgr1 = new TestAlert(this.manager, now.minusMinutes(4));
+        TestAlert mgr2 = new TestAlert(this.manager, now.minusMinutes(1));
+
+        this.provider.addAlertSource(this.source);
+        this.provider.addAlertManager(this.manager);
+
+        // Sources return the alerts following the "after" time oldest first
+        when(this.source.getAlerts(any(AlertCriteria.class))).thenAnswer(iteratorAnswer(src1, src2));
+        when(this.manager.getAlerts(any(AlertCriteria.class))).thenAnswer(iteratorAnswer(mgr1, mgr2));
+
+        Iterator<? extends Alert> results = this.provider.getAlerts(this.provider.criteria().after(now.minusMinutes(10)).limit(3));
+        List<Alert> alerts = Lists.newArrayList(Iterators.transform(results, providerToSourceAlertFunction()));
+
+        assertThat(alerts).containsExactly(src2, mgr1, src1);
+    }
+
     @Test
     public void testRespondToActionable() {
         TestAlert mgrAlert = new TestAlert(this.manager, true);
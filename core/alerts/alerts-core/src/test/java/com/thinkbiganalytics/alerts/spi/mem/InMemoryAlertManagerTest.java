@@ -119,11 +119,34 @@ public class InMemoryAlertManagerTest {
 
         Iterator<? extends Alert> itr = this.manager.getAlerts(null);
 
+        // Newest first
         assertThat(itr.hasNext()).isTrue();
-        assertThat(itr.next().getLevel()).isEqualTo(Level.INFO);
+        assertThat(itr.next().getLevel()).isEqualTo(Level.CRITICAL);
         assertThat(itr.hasNext()).isTrue();
+        assertThat(itr.next().getLevel()).isEqualTo(Level.INFO);
+        assertThat(itr.hasNext()).isFalse();
+    }
+
+    @Test
+    public void testGetAlertsLimited() throws InterruptedException {
+        this.manager.create(URI.create("urn:alert:test1"), Alert.Level.INFO, "test1", "content");
+        Thread.sleep(25);
+        DateTime since = DateTime.now();
+        Thread.sleep(25);
+        this.manager.create(URI.create("urn:alert:test2"), Alert.Level.MINOR, "test2", "content");
+        Thread.sleep(25);
+        this.manager.create(URI.create("urn:alert:test3"), Alert.Level.CRITICAL, "test3", "content");
+
+        Iterator<? extends Alert> itr = this.manager.getAlerts(this.manager.criteria().limit(1));
+
         assertThat(itr.next().getLevel()).isEqualTo(Level.CRITICAL);
         assertThat(itr.hasNext()).isFalse();
+
+        // The alerts immediately following the time come first
+        itr = this.manager.getAlerts(this.manager.criteria().after(since).limit(1));
+
+        assertThat(itr.next().getLevel()).isEqualTo(Level.MINOR);
+        assertThat(itr.hasNext()).isFalse();
     }
 
     @Test
@@ -49,6 +49,7 @@ import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.OrderBy;
 import javax.persistence.Table;
@@ -58,7 +59,7 @@ import javax.persistence.Transient;
  * Implements the JPA-based alert type managed in the Kylo alert store.
  */
 @Entity
-@Table(name = "KYLO_ALERT")
+@Table(name = "KYLO_ALERT", indexes = @Index(name = "KYLO_ALERT_IDX1", columnList = "CREATE_TIME"))
 public class JpaAlert implements Alert {
 
     @EmbeddedId
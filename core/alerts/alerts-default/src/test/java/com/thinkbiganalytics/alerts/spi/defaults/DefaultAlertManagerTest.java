@@ -23,6 +23,7 @@ package com.thinkbiganalytics.alerts.spi.defaults;
  * #L%
  */
 
+import com.google.common.collect.Lists;
 import com.thinkbiganalytics.alerts.api.Alert;
 import com.thinkbiganalytics.alerts.api.Alert.Level;
 import com.thinkbiganalytics.alerts.api.Alert.State;
@@ -36,6 +37,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
 import org.testng.annotations.AfterMethod;
@@ -43,11 +45,16 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 import javax.inject.Inject;
+import javax.sql.DataSource;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.tuple;
@@ -78,6 +85,9 @@ public class DefaultAlertManagerTest extends AbstractTestNGSpringContextTests {
     @Inject
     private DefaultAlertManager manager;
 
+    @Inject
+    private DataSource dataSource;
+
     private Alert.ID id1;
     private Alert.ID id2;
     private DateTime beforeTime;
@@ -241,4 +251,42 @@ public class DefaultAlertManagerTest extends AbstractTestNGSpringContextTests {
             .extracting("id", "type", "level", "description", "content")
             .contains(tuple(this.id2, URI.create("http://example.com/test/alert/2"), Level.CRITICAL, "2nd description", "2nd content"));
     }
+
+    /**
+     * Pages through a few thousand alerts.  The limit, order and "before" cursor are applied by the query.
+     */
+    @Test(dependsOnGroups = "read3", groups = "paging")
+    public void testFirstPageOfManyAlerts() {
+        int count = 3000;
+        // Newer than the alerts created by the other tests so they sort after these
+        long newest = DateTime.now().plusDays(1).getMillis();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+        List<Object[]> rows = new ArrayList<>();
+        for (int idx = 0; idx < count; idx++) {
+            UUID uuid = UUID.randomUUID();
+            byte[] id = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+            rows.add(new Object[]{id, "http://example.com/test/alert/paging", "INFO", "UNHANDLED", newest - idx, "paging " + idx, "N"});
+        }
+        jdbcTemplate.batchUpdate("insert into KYLO_ALERT (id, TYPE, LEVEL, STATE, CREATE_TIME, DESCRIPTION, CLEARED) values (?, ?, ?, ?, ?, ?, ?)", rows);
+
+        List<Alert> page = Lists.newArrayList(this.manager.getAlerts(this.manager.criteria().limit(50)));
+
+        assertThat(page).hasSize(50).extracting("description").containsExactlyElementsOf(descriptions(0, 50));
+
+        List<Alert> next = Lists.newArrayList(this.manager.getAlerts(this.manager.criteria().before(page.get(49).getCreatedTime()).limit(50)));
+
+        assertThat(next).hasSize(50).extracting("description").containsExactlyElementsOf(descriptions(50, 100));
+
+        List<Alert> last = Lists.newArrayList(this.manager.getAlerts(this.manager.criteria().before(new DateTime(newest - 2989)).limit(50)));
+
+        assertThat(last).hasSize(11).extracting("description").startsWith(descriptions(2990, 3000).toArray()).endsWith("2nd description");
+    }
+
+    private List<String> descriptions(int from, int to) {
+        List<String> descriptions = new ArrayList<>();
+        for (int idx = from; idx < to; idx++) {
+            descriptions.add("paging " + idx);
+        }
+        return descriptions;
+    }
 }
@@ -0,0 +1,65 @@
+package com.thinkbiganalytics.jobrepo.query.model;
+
+/*-
+ * #%L
+ * thinkbig-job-repository-api
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+
+/**
+ * The feeds whose health changed since a version the client last saw
+ */
+public interface FeedHealthChanges {
+
+    /**
+     * Return the version to pass on the next request for changes
+     *
+     * @return the version of the feed health these changes bring the client up to
+     */
+    Long getVersion();
+
+    /**
+     * set the version
+     */
+    void setVersion(Long version);
+
+    /**
+     * Return true if {@link this#getFeeds()} contains every feed and should replace the client's copy, false if it only contains the feeds that changed
+     *
+     * @return true if every feed is returned
+     */
+    boolean isCompleteRefresh();
+
+    /**
+     * set whether every feed is returned
+     */
+    void setCompleteRefresh(boolean completeRefresh);
+
+    /**
+     * Return the health of the feeds that changed
+     *
+     * @return the health of the feeds that changed
+     */
+    List<FeedHealth> getFeeds();
+
+    /**
+     * set the health of the feeds that changed
+     */
+    void setFeeds(List<FeedHealth> feeds);
+}
@@ -63,6 +63,30 @@ public interface SearchResult {
      */
     void setRecordsFiltered(Long recordsFiltered);
 
+    /**
+     * Return the token to request the next page when paging with continuation tokens
+     *
+     * @return the token for the next page, or null if there are no more results or the search was paged by offset
+     */
+    String getContinuationToken();
+
+    /**
+     * set the token for the next page
+     */
+    void setContinuationToken(String continuationToken);
+
+    /**
+     * Return true if the {@link this#getRecordsTotal()} stopped counting at a limit and there are more records
+     *
+     * @return true if the total is a lower bound
+     */
+    boolean isRecordsTotalCapped();
+
+    /**
+     * set whether the total stopped counting at a limit
+     */
+    void setRecordsTotalCapped(boolean recordsTotalCapped);
+
     /**
      * Return any error string message if an error was found
      *
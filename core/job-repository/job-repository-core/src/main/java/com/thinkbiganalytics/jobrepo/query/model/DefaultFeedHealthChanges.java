@@ -0,0 +1,65 @@
+package com.thinkbiganalytics.jobrepo.query.model;
+
+/*-
+ * #%L
+ * thinkbig-job-repository-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+
+/**
+ * Feed health changes built from the transform class
+ *
+ * @see com.thinkbiganalytics.jobrepo.query.model.transform.FeedModelTransform
+ */
+public class DefaultFeedHealthChanges implements FeedHealthChanges {
+
+    private Long version;
+    private boolean completeRefresh;
+    private List<FeedHealth> feeds;
+
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    @Override
+    public boolean isCompleteRefresh() {
+        return completeRefresh;
+    }
+
+    @Override
+    public void setCompleteRefresh(boolean completeRefresh) {
+        this.completeRefresh = completeRefresh;
+    }
+
+    @Override
+    public List<FeedHealth> getFeeds() {
+        return feeds;
+    }
+
+    @Override
+    public void setFeeds(List<FeedHealth> feeds) {
+        this.feeds = feeds;
+    }
+}
@@ -0,0 +1,120 @@
+package com.thinkbiganalytics.jobrepo.query.model;
+
+/*-
+ * #%L
+ * thinkbig-job-repository-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.joda.time.DateTime;
+
+/**
+ * The size of the live job tables and the outcome of the last job archive run
+ */
+public class JobArchiveStatus {
+
+    private long jobExecutionCount;
+    private long stepExecutionCount;
+    private long nifiEventCount;
+    private long archivedJobCount;
+    private int retentionDays;
+    private DateTime lastRunTime;
+    private long lastRunArchivedJobs;
+    private long lastRunArchivedRows;
+    private long lastRunMillis;
+    private double lastRunRowsPerSecond;
+
+    public long getJobExecutionCount() {
+        return jobExecutionCount;
+    }
+
+    public void setJobExecutionCount(long jobExecutionCount) {
+        this.jobExecutionCount = jobExecutionCount;
+    }
+
+    public long getStepExecutionCount() {
+        return stepExecutionCount;
+    }
+
+    public void setStepExecutionCount(long stepExecutionCount) {
+        this.stepExecutionCount = stepExecutionCount;
+    }
+
+    public long getNifiEventCount() {
+        return nifiEventCount;
+    }
+
+    public void setNifiEventCount(long nifiEventCount) {
+        this.nifiEventCount = nifiEventCount;
+    }
+
+    public long getArchivedJobCount() {
+        return archivedJobCount;
+    }
+
+    public void setArchivedJobCount(long archivedJobCount) {
+        this.archivedJobCount = archivedJobCount;
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    public void setRetentionDays(int retentionDays) {
+        this.retentionDays = retentionDays;
+    }
+
+    public DateTime getLastRunTime() {
+        return lastRunTime;
+    }
+
+    public void setLastRunTime(DateTime lastRunTime) {
+        this.lastRunTime = lastRunTime;
+    }
+
+    public long getLastRunArchivedJobs() {
+        return lastRunArchivedJobs;
+    }
+
+    public void setLastRunArchivedJobs(long lastRunArchivedJobs) {
+        this.lastRunArchivedJobs = lastRunArchivedJobs;
+    }
+
+    public long getLastRunArchivedRows() {
+        return lastRunArchivedRows;
+    }
+
+    public void setLastRunArchivedRows(long lastRunArchivedRows) {
+        this.lastRunArchivedRows = lastRunArchivedRows;
+    }
+
+    public long getLastRunMillis() {
+        return lastRunMillis;
+    }
+
+    public void setLastRunMillis(long lastRunMillis) {
+        this.lastRunMillis = lastRunMillis;
+    }
+
+    public double getLastRunRowsPerSecond() {
+        return lastRunRowsPerSecond;
+    }
+
+    public void setLastRunRowsPerSecond(double lastRunRowsPerSecond) {
+        this.lastRunRowsPerSecond = lastRunRowsPerSecond;
+    }
+}
@@ -34,6 +34,8 @@ public class SearchResultImpl implements SearchResult {
     private Long recordsTotal;
     private Long recordsFiltered;
     private String error;
+    private String continuationToken;
+    private boolean recordsTotalCapped;
 
     @Override
     public List<? extends Object> getData() {
@@ -65,6 +67,26 @@ public class SearchResultImpl implements SearchResult {
         this.recordsFiltered = recordsFiltered;
     }
 
+    @Override
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    @Override
+    public void setContinuationToken(String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
+
+    @Override
+    public boolean isRecordsTotalCapped() {
+        return recordsTotalCapped;
+    }
+
+    @Override
+    public void setRecordsTotalCapped(boolean recordsTotalCapped) {
+        this.recordsTotalCapped = recordsTotalCapped;
+    }
+
     @Override
     public String getError() {
         return error;
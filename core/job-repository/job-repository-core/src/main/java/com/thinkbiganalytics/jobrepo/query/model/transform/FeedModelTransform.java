@@ -22,10 +22,12 @@ package com.thinkbiganalytics.jobrepo.query.model.transform;
 
 import com.thinkbiganalytics.jobrepo.query.model.DefaultExecutedFeed;
 import com.thinkbiganalytics.jobrepo.query.model.DefaultFeedHealth;
+import com.thinkbiganalytics.jobrepo.query.model.DefaultFeedHealthChanges;
 import com.thinkbiganalytics.jobrepo.query.model.DefaultFeedStatus;
 import com.thinkbiganalytics.jobrepo.query.model.ExecutedFeed;
 import com.thinkbiganalytics.jobrepo.query.model.ExecutionStatus;
 import com.thinkbiganalytics.jobrepo.query.model.FeedHealth;
+import com.thinkbiganalytics.jobrepo.query.model.FeedHealthChanges;
 import com.thinkbiganalytics.jobrepo.query.model.FeedStatus;
 import com.thinkbiganalytics.metadata.api.feed.LatestFeedJobExecution;
 import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeed;
@@ -145,6 +147,20 @@ public class FeedModelTransform {
     }
 
 
+    /**
+     * Transform the FeedHealthChanges domain object to the REST friendly FeedHealthChanges object
+     *
+     * @return the transformed FeedHealthChanges object
+     */
+    public static FeedHealthChanges feedHealthChanges(com.thinkbiganalytics.metadata.api.feed.FeedHealthChanges domain) {
+        FeedHealthChanges changes = new DefaultFeedHealthChanges();
+        changes.setVersion(domain.getVersion());
+        changes.setCompleteRefresh(domain.isCompleteRefresh());
+        changes.setFeeds(feedHealth(domain.getFeedHealth()));
+        return changes;
+    }
+
+
     /**
      * Transform the list of FeedHealth objects to a FeedStatus object summarizing the feeds.
      *
@@ -29,8 +29,12 @@ import com.thinkbiganalytics.jobrepo.query.model.ExecutedJob;
 import com.thinkbiganalytics.jobrepo.query.model.ExecutedStep;
 import com.thinkbiganalytics.jobrepo.query.model.ExecutionStatus;
 import com.thinkbiganalytics.jobrepo.query.model.ExitStatus;
+import com.thinkbiganalytics.jobrepo.query.model.JobArchiveStatus;
 import com.thinkbiganalytics.metadata.api.feed.LatestFeedJobExecution;
 import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeed;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.ArchivedBatchJobExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.ArchivedBatchStepExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobArchiveStatus;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
 import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiEventStepExecution;
 import com.thinkbiganalytics.metadata.api.jobrepo.step.BatchStepExecution;
@@ -130,6 +134,73 @@ public class JobModelTransform {
 
     }
 
+    public static ExecutedJob executedJob(ArchivedBatchJobExecution jobExecution, boolean includeSteps) {
+        DefaultExecutedJob job = new DefaultExecutedJob();
+        job.setExecutionId(jobExecution.getJobExecutionId());
+        job.setStartTime(jobExecution.getStartTime());
+        job.setEndTime(jobExecution.getEndTime());
+        job.setCreateTime(jobExecution.getCreateTime());
+        job.setLastUpdated(jobExecution.getArchivedTime());
+        job.setExitCode(jobExecution.getExitCode() != null ? jobExecution.getExitCode().name() : null);
+        job.setExitStatus(jobExecution.getExitMessage());
+        job.setStatus(ExecutionStatus.valueOf(jobExecution.getStatus().name()));
+        job.setJobName(jobExecution.getFeedName());
+        job.setFeedName(jobExecution.getFeedName());
+        job.setRunTime(ModelUtils.runTime(jobExecution.getStartTime(), jobExecution.getEndTime()));
+        job.setTimeSinceEndTime(ModelUtils.timeSince(jobExecution.getStartTime(), jobExecution.getEndTime()));
+        if (jobExecution.getJobInstanceId() != null) {
+            job.setInstanceId(jobExecution.getJobInstanceId());
+        }
+        if (includeSteps) {
+            job.setExecutionContext(new HashMap<>(jobExecution.getJobExecutionContextAsMap()));
+            job.setJobParameters(new HashMap<>(jobExecution.getJobParametersAsMap()));
+            job.setExecutedSteps(executedArchivedSteps(jobExecution.getStepExecutions()));
+        }
+        return job;
+    }
+
+    public static ExecutedStep executedStep(ArchivedBatchStepExecution stepExecution) {
+        DefaultExecutedStep step = new DefaultExecutedStep();
+        step.setNifiEventId(stepExecution.getNifiEventId());
+        step.setRunning(false);
+        step.setStartTime(stepExecution.getStartTime());
+        step.setEndTime(stepExecution.getEndTime());
+        step.setLastUpdateTime(stepExecution.getLastUpdated());
+        step.setStepName(stepExecution.getStepName());
+        step.setExitDescription(stepExecution.getExitMessage());
+        step.setExitCode(stepExecution.getExitCode() != null ? stepExecution.getExitCode().name() : null);
+        step.setId(stepExecution.getStepExecutionId());
+        step.setTimeSinceEndTime(ModelUtils.timeSince(stepExecution.getStartTime(), stepExecution.getEndTime()));
+        step.setRunTime(ModelUtils.runTime(stepExecution.getStartTime(), stepExecution.getEndTime()));
+        if (stepExecution.getStepExecutionContextAsMap() != null) {
+            step.setExecutionContext(new HashMap<>(stepExecution.getStepExecutionContextAsMap()));
+        }
+        return step;
+    }
+
+    public static List<ExecutedStep> executedArchivedSteps(Collection<? extends ArchivedBatchStepExecution> steps) {
+        if (steps != null && !steps.isEmpty()) {
+            return steps.stream().map(stepExecution -> executedStep(stepExecution)).collect(Collectors.toList());
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    public static JobArchiveStatus jobArchiveStatus(BatchJobArchiveStatus archiveStatus) {
+        JobArchiveStatus status = new JobArchiveStatus();
+        status.setJobExecutionCount(archiveStatus.getJobExecutionCount());
+        status.setStepExecutionCount(archiveStatus.getStepExecutionCount());
+        status.setNifiEventCount(archiveStatus.getNifiEventCount());
+        status.setArchivedJobCount(archiveStatus.getArchivedJobCount());
+        status.setRetentionDays(archiveStatus.getRetentionDays());
+        status.setLastRunTime(archiveStatus.getLastRunTime());
+        status.setLastRunArchivedJobs(archiveStatus.getLastRunArchivedJobs());
+        status.setLastRunArchivedRows(archiveStatus.getLastRunArchivedRows());
+        status.setLastRunMillis(archiveStatus.getLastRunMillis());
+        status.setLastRunRowsPerSecond(archiveStatus.getLastRunRowsPerSecond());
+        return status;
+    }
+
     public static List<ExecutedStep> executedSteps(Collection<? extends BatchStepExecution> steps) {
         if (steps != null && !steps.isEmpty()) {
             return steps.stream().map(stepExecution -> executedStep(stepExecution)).collect(Collectors.toList());
@@ -23,10 +23,13 @@ package com.thinkbiganalytics.jobrepo.query.model.transform;
 import com.thinkbiganalytics.DateTimeUtil;
 import com.thinkbiganalytics.jobrepo.query.model.SearchResult;
 import com.thinkbiganalytics.jobrepo.query.model.SearchResultImpl;
+import com.thinkbiganalytics.metadata.api.jobrepo.ContinuationPage;
 
 import org.joda.time.DateTime;
 import org.springframework.data.domain.Page;
 
+import java.util.List;
+
 /**
  * Utility to get model data to user friendly UI
  */
@@ -67,4 +70,19 @@ public class ModelUtils {
 
     }
 
+    /**
+     * Convert a page found with a continuation token to a SearchResult UI object
+     *
+     * @param page the page of domain objects
+     * @param data the page content transformed for the UI
+     */
+    public static SearchResult toSearchResult(ContinuationPage page, List<? extends Object> data) {
+        SearchResult searchResult = new SearchResultImpl();
+        searchResult.setData(data);
+        searchResult.setRecordsTotal(page.getTotal());
+        searchResult.setRecordsFiltered(page.getTotal());
+        searchResult.setRecordsTotalCapped(page.isTotalCapped());
+        searchResult.setContinuationToken(page.getContinuationToken());
+        return searchResult;
+    }
 }
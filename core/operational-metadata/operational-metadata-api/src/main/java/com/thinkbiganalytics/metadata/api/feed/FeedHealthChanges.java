@@ -0,0 +1,55 @@
+package com.thinkbiganalytics.metadata.api.feed;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-api
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+
+/**
+ * The feeds whose health changed after a given version of the feed health summary.
+ * Clients poll with the {@link #getVersion()} of the last response to receive only the feeds that changed since then.
+ *
+ * @see OpsManagerFeedProvider#getFeedHealthChanges(long)
+ */
+public interface FeedHealthChanges {
+
+    /**
+     * Return the version of the feed health summary these changes bring the client up to
+     *
+     * @return the version to pass on the next request
+     */
+    long getVersion();
+
+    /**
+     * Return true if {@link #getFeedHealth()} contains every feed rather than just the changed ones.
+     * This happens when the requested version is no longer known, for example after a feed was deleted or the summary was reloaded,
+     * and clients should replace their copy instead of merging into it.
+     *
+     * @return true if the changes contain the health of every feed
+     */
+    boolean isCompleteRefresh();
+
+    /**
+     * Return the latest health of each feed that changed, at most once per feed
+     *
+     * @return the changed feed health
+     */
+    List<? extends FeedHealth> getFeedHealth();
+}
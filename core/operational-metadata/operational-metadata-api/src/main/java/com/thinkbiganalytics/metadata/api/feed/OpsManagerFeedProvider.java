@@ -106,6 +106,14 @@ public interface OpsManagerFeedProvider {
      */
     FeedHealth getFeedHealth(String feedName);
 
+    /**
+     * Return the health of the feeds that changed after the given version of the feed health summary
+     *
+     * @param version the version returned by the previous call, or 0 to get every feed
+     * @return the feeds whose health changed since the version
+     */
+    FeedHealthChanges getFeedHealthChanges(long version);
+
     /**
      * Return job status count information for a given feed and a timeframe grouped by day
      * Useful for generating timebased charts of job executions and their status by each day for a given feed
@@ -0,0 +1,67 @@
+package com.thinkbiganalytics.metadata.api.jobrepo;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-api
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+
+/**
+ * A page of results found by seeking past the last row of the previous page rather than skipping an offset.
+ * The total is only counted up to a limit, so it is exact unless {@link #isTotalCapped()} is true.
+ *
+ * @param <T> the type of result
+ */
+public interface ContinuationPage<T> {
+
+    /**
+     * Return the results on this page
+     *
+     * @return the results on this page
+     */
+    List<T> getContent();
+
+    /**
+     * Return the opaque token used to request the page after this one
+     *
+     * @return the token for the next page, or null if this is the last page
+     */
+    String getContinuationToken();
+
+    /**
+     * Return true if there are results after this page
+     *
+     * @return true if there is another page
+     */
+    boolean hasNext();
+
+    /**
+     * Return the number of matching results, counted up to a limit
+     *
+     * @return the number of matching results, or the limit if there are more
+     */
+    long getTotal();
+
+    /**
+     * Return true if there are more matching results than {@link #getTotal()}
+     *
+     * @return true if the total was capped
+     */
+    boolean isTotalCapped();
+}
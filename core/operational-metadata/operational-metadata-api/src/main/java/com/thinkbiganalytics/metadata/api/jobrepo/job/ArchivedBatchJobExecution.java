@@ -0,0 +1,100 @@
+package com.thinkbiganalytics.metadata.api.jobrepo.job;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-api
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.jobrepo.ExecutionConstants;
+
+import org.joda.time.DateTime;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A finished job execution that was moved out of the live job tables by the {@link BatchJobArchiveProvider}.
+ * Archived jobs are read only.
+ */
+public interface ArchivedBatchJobExecution {
+
+    /**
+     * @return the id the job had when it was live
+     */
+    Long getJobExecutionId();
+
+    /**
+     * @return the id of the job instance the job was from
+     */
+    Long getJobInstanceId();
+
+    /**
+     * @return the name of the feed that ran the job
+     */
+    String getFeedName();
+
+    /**
+     * @return the time the job was created
+     */
+    DateTime getCreateTime();
+
+    /**
+     * @return the time the job started
+     */
+    DateTime getStartTime();
+
+    /**
+     * @return the time the job finished
+     */
+    DateTime getEndTime();
+
+    /**
+     * @return the final status of the job
+     */
+    BatchJobExecution.JobStatus getStatus();
+
+    /**
+     * @return the exit code of the job
+     */
+    ExecutionConstants.ExitCode getExitCode();
+
+    /**
+     * @return the exit message of the job
+     */
+    String getExitMessage();
+
+    /**
+     * @return the time the job was archived
+     */
+    DateTime getArchivedTime();
+
+    /**
+     * @return the job parameters as a key,value map
+     */
+    Map<String, String> getJobParametersAsMap();
+
+    /**
+     * @return the job execution context as a key,value map
+     */
+    Map<String, String> getJobExecutionContextAsMap();
+
+    /**
+     * @return the steps of the job ordered by their start time
+     */
+    List<? extends ArchivedBatchStepExecution> getStepExecutions();
+}
@@ -0,0 +1,84 @@
+package com.thinkbiganalytics.metadata.api.jobrepo.job;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-api
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.jobrepo.ExecutionConstants;
+import com.thinkbiganalytics.metadata.api.jobrepo.step.BatchStepExecution;
+
+import org.joda.time.DateTime;
+
+import java.util.Map;
+
+/**
+ * A step of an {@link ArchivedBatchJobExecution}
+ */
+public interface ArchivedBatchStepExecution {
+
+    /**
+     * @return the id the step had when it was live
+     */
+    Long getStepExecutionId();
+
+    /**
+     * @return the name of the step
+     */
+    String getStepName();
+
+    /**
+     * @return the time the step started
+     */
+    DateTime getStartTime();
+
+    /**
+     * @return the time the step finished
+     */
+    DateTime getEndTime();
+
+    /**
+     * @return the time the step was last updated
+     */
+    DateTime getLastUpdated();
+
+    /**
+     * @return the final status of the step
+     */
+    BatchStepExecution.StepStatus getStatus();
+
+    /**
+     * @return the exit code of the step
+     */
+    ExecutionConstants.ExitCode getExitCode();
+
+    /**
+     * @return the exit message of the step
+     */
+    String getExitMessage();
+
+    /**
+     * @return the step execution context as a key,value map
+     */
+    Map<String, String> getStepExecutionContextAsMap();
+
+    /**
+     * @return the id of the NiFi provenance event that ran the step, or null if it is unknown
+     */
+    Long getNifiEventId();
+}
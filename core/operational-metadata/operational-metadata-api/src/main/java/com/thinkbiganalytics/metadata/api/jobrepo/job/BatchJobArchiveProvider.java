@@ -0,0 +1,72 @@
+package com.thinkbiganalytics.metadata.api.jobrepo.job;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-api
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.joda.time.DateTime;
+
+import java.util.List;
+
+/**
+ * Moves finished jobs out of the live job tables so they don't grow without bound.
+ *
+ * Jobs are archived in small batches, each in its own transaction, so the live tables are only locked briefly.
+ * The latest finished job of each feed is never archived as it is used to report the feed's health.
+ */
+public interface BatchJobArchiveProvider {
+
+    /**
+     * Archive the jobs that finished before the retention period configured for the server
+     *
+     * @return the number of jobs archived
+     */
+    long archive();
+
+    /**
+     * Archive the jobs that finished before the given time
+     *
+     * @param finishedBefore the time jobs must have finished before to be archived
+     * @return the number of jobs archived
+     */
+    long archive(DateTime finishedBefore);
+
+    /**
+     * Find an archived job
+     *
+     * @param jobExecutionId the id the job had when it was live
+     * @return the archived job, or null if it was not archived
+     */
+    ArchivedBatchJobExecution findArchivedJob(Long jobExecutionId);
+
+    /**
+     * Find archived jobs, newest first
+     *
+     * @param feedName the feed to find jobs for, or null for all feeds
+     * @param before   only return jobs with an id less than this one, or null to start from the newest job
+     * @param limit    the maximum number of jobs to return
+     * @return the archived jobs
+     */
+    List<? extends ArchivedBatchJobExecution> findArchivedJobs(String feedName, Long before, int limit);
+
+    /**
+     * @return the size of the live tables and the outcome of the last archive run
+     */
+    BatchJobArchiveStatus getArchiveStatus();
+}
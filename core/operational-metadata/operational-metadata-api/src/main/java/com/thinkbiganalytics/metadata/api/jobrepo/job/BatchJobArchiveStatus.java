@@ -0,0 +1,79 @@
+package com.thinkbiganalytics.metadata.api.jobrepo.job;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-api
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.joda.time.DateTime;
+
+/**
+ * The size of the live job tables and the outcome of the last archive run
+ */
+public interface BatchJobArchiveStatus {
+
+    /**
+     * @return the number of rows in the live job execution table
+     */
+    long getJobExecutionCount();
+
+    /**
+     * @return the number of rows in the live step execution table
+     */
+    long getStepExecutionCount();
+
+    /**
+     * @return the number of rows in the live NiFi provenance event table
+     */
+    long getNifiEventCount();
+
+    /**
+     * @return the number of archived jobs
+     */
+    long getArchivedJobCount();
+
+    /**
+     * @return the number of days finished jobs are kept in the live tables, 0 if jobs are not archived automatically
+     */
+    int getRetentionDays();
+
+    /**
+     * @return the time the last archive run finished, or null if none has run
+     */
+    DateTime getLastRunTime();
+
+    /**
+     * @return the number of jobs archived by the last run
+     */
+    long getLastRunArchivedJobs();
+
+    /**
+     * @return the number of live rows removed by the last run, including the job, step, context and provenance event rows
+     */
+    long getLastRunArchivedRows();
+
+    /**
+     * @return how long the last run took, in milliseconds
+     */
+    long getLastRunMillis();
+
+    /**
+     * @return the number of live rows the last run archived per second
+     */
+    double getLastRunRowsPerSecond();
+}
@@ -20,6 +20,7 @@ package com.thinkbiganalytics.metadata.api.jobrepo.job;
  * #L%
  */
 
+import com.thinkbiganalytics.metadata.api.jobrepo.ContinuationPage;
 import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiEvent;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
 
@@ -27,8 +28,10 @@ import org.joda.time.DateTime;
 import org.joda.time.ReadablePeriod;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -114,6 +117,17 @@ public interface BatchJobExecutionProvider extends BatchJobExecutionFilters {
      */
     BatchJobExecution getOrCreateJobExecution(ProvenanceEventRecordDTO event);
 
+    /**
+     * save a group of provenance events that all belong to the same job flow file, creating or updating the job execution and its steps.
+     * The job execution is found or created once for the group and updated by each event in order.
+     * Callers must not save events for the same job flow file concurrently.
+     *
+     * @param events     the provenance events for a single {@link ProvenanceEventRecordDTO#jobFlowFileId}, in event order
+     * @param nifiEvents the persisted nifi events, one for each event in {@code events}
+     * @return the job execution
+     */
+    BatchJobExecution saveJobEvents(List<ProvenanceEventRecordDTO> events, List<NifiEvent> nifiEvents);
+
     /**
      * find the job execution from the provenance event
      *
@@ -136,6 +150,15 @@ public interface BatchJobExecutionProvider extends BatchJobExecutionFilters {
      */
     BatchJobExecution findLatestCompletedJobForFeed(String feedName);
 
+    /**
+     * Returns the latest completed job execution for each of the given feeds using a single query.
+     * Feeds that have not completed a job are not included in the result.
+     *
+     * @param feedNames the feed names
+     * @return a map of feed name to its latest completed job execution
+     */
+    Map<String, BatchJobExecution> findLatestCompletedJobForFeeds(Set<String> feedNames);
+
     /**
      * Returns the latest job execution of any status for a feed
      *
@@ -164,6 +187,19 @@ public interface BatchJobExecutionProvider extends BatchJobExecutionFilters {
      */
     Page<? extends BatchJobExecution> findAllForFeed(String feedName, String filter, Pageable pageable);
 
+    /**
+     * find the job executions matching a particular filter string that come after the last job of the previous page.
+     * The jobs are located by seeking on the sort value and job execution id instead of an offset, so deep pages cost the same as the first page.
+     *
+     * @param filter            the filter string
+     * @param sort              the sort order, only the first property is used and the job execution id breaks ties
+     * @param limit             the number of jobs to return
+     * @param continuationToken the token returned with the previous page, or null for the first page
+     * @return the page of job executions and the token for the next page
+     * @throws IllegalArgumentException if the sort property can't be used for seeking or the token doesn't match the filter and sort
+     */
+    ContinuationPage<? extends BatchJobExecution> findAll(String filter, Sort sort, int limit, String continuationToken);
+
     /**
      * Return a list of job status objects grouped by day
      *
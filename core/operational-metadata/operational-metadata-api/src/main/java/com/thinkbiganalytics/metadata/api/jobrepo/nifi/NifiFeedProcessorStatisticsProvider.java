@@ -38,6 +38,21 @@ public interface NifiFeedProcessorStatisticsProvider {
      */
     NifiFeedProcessorStats create(NifiFeedProcessorStats t);
 
+    /**
+     * Save a batch of stats records and add them to the minute, hour and day rollups in a single pass
+     *
+     * @return the saved stats records
+     */
+    List<? extends NifiFeedProcessorStats> create(List<NifiFeedProcessorStats> stats);
+
+    /**
+     * Remove the raw stats records that ended before the given time.  The rolled up statistics are kept.
+     *
+     * @param time the cutoff time
+     * @return the number of raw records removed
+     */
+    int deleteRawStatisticsOlderThan(DateTime time);
+
     /**
      * find statistics within a given start and end time
      *
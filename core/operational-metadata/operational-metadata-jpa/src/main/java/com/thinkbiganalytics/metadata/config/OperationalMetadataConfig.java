@@ -27,6 +27,7 @@ import com.thinkbiganalytics.metadata.sla.spi.ServiceLevelAssessor;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
@@ -38,6 +39,9 @@ import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.transaction.support.AbstractPlatformTransactionManager;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
@@ -52,6 +56,12 @@ import javax.sql.DataSource;
                        entityManagerFactoryRef = "operationalMetadataEntityManagerFactory")
 public class OperationalMetadataConfig {
 
+    /**
+     * The number of inserts/updates Hibernate sends to the database in a single JDBC batch
+     */
+    @Value("${kylo.ops.mgr.jdbc.batch.size:50}")
+    private int jdbcBatchSize;
+
     @Bean(name = "operationalMetadataDateTimeFormatter")
     public DateTimeFormatter dateTimeFormatter() {
         return DateTimeFormat.forPattern("YYYY-MM-dd HH:mm:ss");
@@ -106,6 +116,11 @@ public class OperationalMetadataConfig {
         emfBean.setDataSource(dataSource);
         emfBean.setPackagesToScan("com.thinkbiganalytics.jobrepo.jpa", "com.thinkbiganalytics.metadata.jpa");
         emfBean.setJpaVendorAdapter(jpaVendorAdapter());
+        Map<String, Object> jpaProperties = new HashMap<>();
+        jpaProperties.put("hibernate.jdbc.batch_size", jdbcBatchSize);
+        jpaProperties.put("hibernate.order_inserts", true);
+        jpaProperties.put("hibernate.order_updates", true);
+        emfBean.setJpaPropertyMap(jpaProperties);
         emfBean.afterPropertiesSet();
         return emfBean.getObject();
     }
@@ -0,0 +1,450 @@
+package com.thinkbiganalytics.metadata.jpa.feed;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.feed.FeedHealth;
+import com.thinkbiganalytics.metadata.api.feed.FeedHealthChanges;
+import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeed;
+import com.thinkbiganalytics.metadata.api.jobrepo.ExecutionConstants;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobInstance;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+/**
+ * In memory copy of the {@link JpaOpsManagerFeedHealth} rows.
+ *
+ * The store is loaded from the FEED_HEALTH_VW on first use and then kept current by applying each job change once its transaction commits,
+ * so the health endpoints no longer aggregate every job execution on each request.
+ * Changes that can't be applied incrementally (a job the store has not seen, a new or deleted feed, bulk updates such as abandoning all jobs)
+ * mark the feed as stale and it is reloaded from the view on the next read.
+ *
+ * Every applied change bumps a version so clients can ask for just the feeds that changed via {@link #getFeedHealthChanges(long)}.
+ */
+@Component
+public class FeedHealthStore {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedHealthStore.class);
+
+    /**
+     * The number of job executions per feed whose classification is remembered so later updates to them can be applied incrementally
+     */
+    private static final int MAX_TRACKED_JOBS = 50;
+
+    /**
+     * Counter flags matching the case statements in the BATCH_FEED_SUMMARY_COUNTS_VW
+     */
+    private static final int FAILED = 1;
+    private static final int COMPLETED = 2;
+    private static final int ABANDONED = 4;
+    private static final int RUNNING = 8;
+
+    @Inject
+    private FeedHealthRepository feedHealthRepository;
+
+    /**
+     * feed name to its health
+     */
+    private final Map<String, FeedHealthEntry> feeds = new ConcurrentHashMap<>();
+
+    /**
+     * feeds that need to be reloaded from the view before they are served
+     */
+    private final Set<String> staleFeeds = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean loaded;
+
+    /**
+     * the version of the last applied change
+     */
+    private long version;
+
+    /**
+     * requests for changes older than this version get every feed back
+     */
+    private long completeRefreshVersion;
+
+    private final Object lock = new Object();
+
+    /**
+     * Return the health of every feed.
+     * This must be called in a transaction as the feeds are loaded from the database on the first call, and stale feeds are reloaded.
+     *
+     * @return the health of every feed
+     */
+    public List<? extends FeedHealth> getFeedHealth() {
+        refresh();
+        return feeds.values().stream().map(entry -> entry.health).collect(Collectors.toList());
+    }
+
+    /**
+     * Return the health of a feed.
+     * This must be called in a transaction.
+     *
+     * @param feedName the name of the feed
+     * @return the health of the feed, or null if the feed has not run any jobs
+     */
+    public FeedHealth getFeedHealth(String feedName) {
+        refresh();
+        FeedHealthEntry entry = feeds.get(feedName);
+        return entry != null ? entry.health : null;
+    }
+
+    /**
+     * Return the feeds whose health changed after the given version.
+     * This must be called in a transaction.
+     *
+     * @param since the version returned by the previous call, or 0 for every feed
+     * @return the changed feeds
+     */
+    public FeedHealthChanges getFeedHealthChanges(long since) {
+        refresh();
+        synchronized (lock) {
+            if (since <= 0 || since < completeRefreshVersion || since > version) {
+                return new Changes(version, true, feeds.values().stream().map(entry -> entry.health).collect(Collectors.toList()));
+            }
+            List<FeedHealth> changed = feeds.values().stream()
+                .filter(entry -> entry.changedVersion > since)
+                .map(entry -> entry.health)
+                .collect(Collectors.toList());
+            return new Changes(version, false, changed);
+        }
+    }
+
+    /**
+     * Record a change to a job execution.
+     * When called in a transaction the change is applied once the transaction commits, so rolled back work is never seen by readers.
+     *
+     * @param jobExecution the job that was started, updated or finished
+     */
+    public void jobChanged(BatchJobExecution jobExecution) {
+        if (jobExecution == null || jobExecution.getJobInstance() == null || jobExecution.getJobInstance().getFeed() == null) {
+            return;
+        }
+        JobChange change = new JobChange(jobExecution);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    /**
+     * Mark a feed as stale so it is reloaded from the database on the next read.
+     * Used when jobs are changed in bulk, or the feed is deleted.
+     *
+     * @param feedName the name of the feed
+     */
+    public void invalidate(String feedName) {
+        if (feedName != null) {
+            staleFeeds.add(feedName);
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                //a read before the commit would reload the old rows, so mark it again once the change is visible
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCommit() {
+                        staleFeeds.add(feedName);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Drop everything so the store is reloaded from the database on the next read
+     */
+    public void invalidateAll() {
+        loaded = false;
+    }
+
+    /**
+     * Load the store if needed and reload any stale feeds
+     */
+    private void refresh() {
+        if (loaded && staleFeeds.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            if (!loaded) {
+                long start = System.currentTimeMillis();
+                staleFeeds.clear();
+                feeds.clear();
+                version++;
+                for (JpaOpsManagerFeedHealth row : feedHealthRepository.findAll()) {
+                    feeds.put(row.getFeedName(), new FeedHealthEntry(copy(row), version));
+                }
+                completeRefreshVersion = version;
+                loaded = true;
+                log.info("Loaded the health of {} feeds in {} ms", feeds.size(), (System.currentTimeMillis() - start));
+            }
+            if (!staleFeeds.isEmpty()) {
+                Set<String> reload = new HashSet<>(staleFeeds);
+                staleFeeds.removeAll(reload);
+                reload.forEach(this::reload);
+            }
+        }
+    }
+
+    /**
+     * Reload a single feed from the view
+     */
+    private void reload(String feedName) {
+        List<JpaOpsManagerFeedHealth> rows = feedHealthRepository.findByFeedName(feedName);
+        version++;
+        if (rows == null || rows.isEmpty()) {
+            if (feeds.remove(feedName) != null) {
+                //clients can't be told about removed feeds with a delta, so they need to get everything
+                completeRefreshVersion = version;
+            }
+        } else {
+            feeds.put(feedName, new FeedHealthEntry(copy(rows.get(0)), version));
+        }
+    }
+
+    /**
+     * Apply a committed job change to the feeds it counts against
+     */
+    void apply(JobChange change) {
+        synchronized (lock) {
+            if (!loaded) {
+                //the change will be picked up by the load
+                return;
+            }
+            for (String feedName : change.countedFeeds) {
+                FeedHealthEntry entry = feeds.get(feedName);
+                if (entry == null || staleFeeds.contains(feedName)) {
+                    staleFeeds.add(feedName);
+                    continue;
+                }
+                Integer previousFlags = entry.trackedJobs.get(change.jobExecutionId);
+                boolean newJob = previousFlags == null;
+                if (newJob && change.jobExecutionId <= entry.maxUntrackedJobExecutionId) {
+                    //a job the store knows nothing about, so its old classification is unknown
+                    staleFeeds.add(feedName);
+                    continue;
+                }
+                JpaOpsManagerFeedHealth health = copy(entry.health);
+                if (newJob) {
+                    health.setAllCount(increment(health.getAllCount(), 1));
+                } else {
+                    adjust(health, previousFlags, -1);
+                }
+                adjust(health, change.flags, 1);
+                if (feedName.equals(change.feedName) && (health.getJobExecutionId() == null || change.jobExecutionId >= health.getJobExecutionId())) {
+                    health.setJobExecutionId(change.jobExecutionId);
+                    health.setJobInstanceId(change.jobInstanceId);
+                    health.setStartTime(change.startTime);
+                    health.setEndTime(change.endTime);
+                    health.setStatus(change.status);
+                    health.setExitCode(change.exitCode);
+                    health.setExitMessage(change.exitMessage);
+                }
+                entry.track(change.jobExecutionId, change.flags);
+                entry.health = health;
+                entry.changedVersion = ++version;
+            }
+        }
+    }
+
+    private static void adjust(JpaOpsManagerFeedHealth health, int flags, int delta) {
+        if ((flags & FAILED) != 0) {
+            health.setFailedCount(increment(health.getFailedCount(), delta));
+        }
+        if ((flags & COMPLETED) != 0) {
+            health.setCompletedCount(increment(health.getCompletedCount(), delta));
+        }
+        if ((flags & ABANDONED) != 0) {
+            health.setAbandonedCount(increment(health.getAbandonedCount(), delta));
+        }
+        if ((flags & RUNNING) != 0) {
+            health.setRunningCount(increment(health.getRunningCount(), delta));
+        }
+    }
+
+    private static Long increment(Long count, int delta) {
+        return Math.max(0L, (count == null ? 0L : count) + delta);
+    }
+
+    /**
+     * Classify a job the same way the BATCH_FEED_SUMMARY_COUNTS_VW does
+     */
+    static int flags(BatchJobExecution.JobStatus status, ExecutionConstants.ExitCode exitCode) {
+        int flags = 0;
+        if (status == BatchJobExecution.JobStatus.ABANDONED) {
+            flags |= ABANDONED;
+        } else {
+            if (status == BatchJobExecution.JobStatus.FAILED || exitCode == ExecutionConstants.ExitCode.FAILED) {
+                flags |= FAILED;
+            }
+            if (exitCode == ExecutionConstants.ExitCode.COMPLETED) {
+                flags |= COMPLETED;
+            }
+        }
+        if (status == BatchJobExecution.JobStatus.STARTING || status == BatchJobExecution.JobStatus.STARTED) {
+            flags |= RUNNING;
+        }
+        return flags;
+    }
+
+    /**
+     * Detached copy of the health so the published instance is never modified
+     */
+    private static JpaOpsManagerFeedHealth copy(FeedHealth health) {
+        JpaOpsManagerFeedHealth copy = new JpaOpsManagerFeedHealth();
+        copy.setFeedId(health.getFeedId());
+        copy.setFeedName(health.getFeedName());
+        copy.setJobExecutionId(health.getJobExecutionId());
+        copy.setJobInstanceId(health.getJobInstanceId());
+        copy.setStartTime(health.getStartTime());
+        copy.setEndTime(health.getEndTime());
+        copy.setStatus(health.getStatus());
+        copy.setExitCode(health.getExitCode());
+        copy.setExitMessage(health.getExitMessage());
+        copy.setAllCount(health.getAllCount());
+        copy.setFailedCount(health.getFailedCount());
+        copy.setCompletedCount(health.getCompletedCount());
+        copy.setAbandonedCount(health.getAbandonedCount());
+        copy.setRunningCount(health.getRunningCount());
+        return copy;
+    }
+
+    /**
+     * The health of a feed along with the recent jobs counted in it
+     */
+    private static class FeedHealthEntry {
+
+        private volatile JpaOpsManagerFeedHealth health;
+
+        private long changedVersion;
+
+        /**
+         * Jobs loaded from the view, or dropped from the tracked jobs, have an id at or below this and can't be adjusted incrementally
+         */
+        private long maxUntrackedJobExecutionId;
+
+        private final LinkedHashMap<Long, Integer> trackedJobs = new LinkedHashMap<>();
+
+        FeedHealthEntry(JpaOpsManagerFeedHealth health, long changedVersion) {
+            this.health = health;
+            this.changedVersion = changedVersion;
+            this.maxUntrackedJobExecutionId = health.getJobExecutionId() != null ? health.getJobExecutionId() : 0L;
+        }
+
+        void track(Long jobExecutionId, int flags) {
+            trackedJobs.put(jobExecutionId, flags);
+            if (trackedJobs.size() > MAX_TRACKED_JOBS) {
+                Long eldest = trackedJobs.keySet().iterator().next();
+                trackedJobs.remove(eldest);
+                maxUntrackedJobExecutionId = Math.max(maxUntrackedJobExecutionId, eldest);
+            }
+        }
+    }
+
+    /**
+     * The parts of a job execution needed to update the health, captured while the job is attached to the transaction
+     */
+    static class JobChange {
+
+        private final Long jobExecutionId;
+        private final Long jobInstanceId;
+        private final String feedName;
+        private final Set<String> countedFeeds;
+        private final DateTime startTime;
+        private final DateTime endTime;
+        private final BatchJobExecution.JobStatus status;
+        private final ExecutionConstants.ExitCode exitCode;
+        private final String exitMessage;
+        private final int flags;
+
+        JobChange(BatchJobExecution jobExecution) {
+            BatchJobInstance jobInstance = jobExecution.getJobInstance();
+            OpsManagerFeed feed = jobInstance.getFeed();
+            this.jobExecutionId = jobExecution.getJobExecutionId();
+            this.jobInstanceId = jobInstance.getJobInstanceId();
+            this.feedName = feed.getName();
+            this.startTime = jobExecution.getStartTime();
+            this.endTime = jobExecution.getEndTime();
+            this.status = jobExecution.getStatus();
+            this.exitCode = jobExecution.getExitCode();
+            this.exitMessage = jobExecution.getExitMessage();
+            this.flags = flags(status, exitCode);
+            if (OpsManagerFeed.FeedType.CHECK == feed.getFeedType() && feed instanceof JpaOpsManagerFeed) {
+                //check data jobs are counted against the feeds they check
+                this.countedFeeds = ((JpaOpsManagerFeed) feed).getFeedsToCheck().stream().map(OpsManagerFeed::getName).collect(Collectors.toSet());
+            } else {
+                this.countedFeeds = Collections.singleton(feedName);
+            }
+        }
+    }
+
+    /**
+     * The feeds that changed since a version
+     */
+    private static class Changes implements FeedHealthChanges {
+
+        private final long version;
+        private final boolean completeRefresh;
+        private final List<? extends FeedHealth> feedHealth;
+
+        Changes(long version, boolean completeRefresh, List<? extends FeedHealth> feedHealth) {
+            this.version = version;
+            this.completeRefresh = completeRefresh;
+            this.feedHealth = feedHealth;
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public boolean isCompleteRefresh() {
+            return completeRefresh;
+        }
+
+        @Override
+        public List<? extends FeedHealth> getFeedHealth() {
+            return feedHealth;
+        }
+    }
+}
@@ -20,27 +20,21 @@ package com.thinkbiganalytics.metadata.jpa.feed;
  * #L%
  */
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.querydsl.core.types.Projections;
-import com.querydsl.core.types.dsl.CaseBuilder;
-import com.querydsl.core.types.dsl.Expressions;
-import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.thinkbiganalytics.DateTimeUtil;
 import com.thinkbiganalytics.metadata.api.feed.DeleteFeedListener;
 import com.thinkbiganalytics.metadata.api.feed.FeedHealth;
+import com.thinkbiganalytics.metadata.api.feed.FeedHealthChanges;
 import com.thinkbiganalytics.metadata.api.feed.LatestFeedJobExecution;
 import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeed;
 import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeedProvider;
-import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecutionProvider;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.JobStatusCount;
-import com.thinkbiganalytics.metadata.jpa.jobrepo.job.JpaBatchJobExecutionStatusCounts;
-import com.thinkbiganalytics.metadata.jpa.jobrepo.job.QJpaBatchJobExecution;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.job.JobStatusCountStore;
 import com.thinkbiganalytics.metadata.jpa.support.GenericQueryDslFilter;
 import com.thinkbiganalytics.support.FeedNameUtil;
 
-import org.joda.time.DateTime;
 import org.joda.time.ReadablePeriod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +64,12 @@ public class OpsFeedManagerFeedProvider implements OpsManagerFeedProvider {
     @Autowired
     private JPAQueryFactory factory;
 
+    @Inject
+    private FeedHealthStore feedHealthStore;
+
+    @Inject
+    private JobStatusCountStore jobStatusCountStore;
+
     /**
      * list of delete feed listeners
      **/
@@ -136,6 +136,7 @@ public class OpsFeedManagerFeedProvider implements OpsManagerFeedProvider {
             //first delete all jobs for this feed
             deleteFeedJobs(FeedNameUtil.category(feed.getName()), FeedNameUtil.feed(feed.getName()));
             repository.delete(feed.getId());
+            feedHealthStore.invalidate(feed.getName());
             //notify the listeners
             notifyOnFeedDeleted(feed);
             log.info("Successfully deleted the feed {} ({})  and all job executions. ", feed.getName(), feed.getId());
@@ -161,55 +162,27 @@ public class OpsFeedManagerFeedProvider implements OpsManagerFeedProvider {
     }
 
     public List<? extends FeedHealth> getFeedHealth() {
-        return feedHealthRepository.findAll();
+        return feedHealthStore.getFeedHealth();
     }
 
-    private List<? extends FeedHealth> findFeedHealth(String feedName) {
-        return feedHealthRepository.findByFeedName(feedName);
+    public FeedHealth getFeedHealth(String feedName) {
+        return feedHealthStore.getFeedHealth(feedName);
     }
 
-    public FeedHealth getFeedHealth(String feedName) {
-        List<? extends FeedHealth> feedHealthList = findFeedHealth(feedName);
-        if (feedHealthList != null && !feedHealthList.isEmpty()) {
-            return feedHealthList.get(0);
-        } else {
-            return null;
-        }
+    public FeedHealthChanges getFeedHealthChanges(long version) {
+        return feedHealthStore.getFeedHealthChanges(version);
     }
 
     public List<? extends LatestFeedJobExecution> findLatestCheckDataJobs() {
         return latestFeedJobExectionRepository.findCheckDataJobs();
     }
 
+    /**
+     * gets the feed's job executions grouped by status and Day looking back from Now - the supplied {@code period}.
+     * The counts are read from the {@link JobStatusCountStore}, which counts whole days.
+     */
     public List<JobStatusCount> getJobStatusCountByDateFromNow(String feedName, ReadablePeriod period) {
-
-        QJpaBatchJobExecution jobExecution = QJpaBatchJobExecution.jpaBatchJobExecution;
-
-        List<BatchJobExecution.JobStatus> runningStatus = ImmutableList.of(BatchJobExecution.JobStatus.STARTED, BatchJobExecution.JobStatus.STARTING);
-
-        com.querydsl.core.types.dsl.StringExpression jobState = new CaseBuilder().when(jobExecution.status.eq(BatchJobExecution.JobStatus.FAILED)).then("FAILED")
-            .when(jobExecution.status.in(runningStatus)).then("RUNNING")
-            .otherwise(jobExecution.status.stringValue());
-
-        JPAQuery
-            query = factory.select(
-            Projections.constructor(JpaBatchJobExecutionStatusCounts.class,
-                                    jobState.as("status"),
-                                    Expressions.constant(feedName),
-                                    jobExecution.startYear,
-                                    jobExecution.startMonth,
-                                    jobExecution.startDay,
-                                    jobExecution.count().as("count")))
-            .from(jobExecution)
-
-            .where(jobExecution.startTime.goe(DateTime.now().minus(period))
-                       .and(jobExecution.jobInstance.feed.name.eq(feedName)))
-            .groupBy(jobState, jobExecution.startYear,
-                     jobExecution.startMonth,
-                     jobExecution.startDay);
-
-        return (List<JobStatusCount>) query.fetch();
-
+        return jobStatusCountStore.getJobStatusCountByDate(feedName, DateTimeUtil.getNowUTCTime().minus(period));
     }
 
     /**
@@ -217,6 +190,7 @@ public class OpsFeedManagerFeedProvider implements OpsManagerFeedProvider {
      */
     public void deleteFeedJobs(String category, String feed) {
         repository.deleteFeedJobs(category, feed);
+        jobStatusCountStore.rebuild(FeedNameUtil.fullName(category, feed));
     }
 
     /**
@@ -224,6 +198,13 @@ public class OpsFeedManagerFeedProvider implements OpsManagerFeedProvider {
      */
     public void abandonFeedJobs(String feed) {
         repository.abandonFeedJobs(feed);
+        feedHealthStore.invalidate(feed);
+        //the procedure also abandons the jobs of the feed's check data feeds
+        jobStatusCountStore.rebuild(feed);
+        JpaOpsManagerFeed opsManagerFeed = repository.findByName(feed);
+        if (opsManagerFeed != null) {
+            opsManagerFeed.getCheckDataFeeds().forEach(checkDataFeed -> jobStatusCountStore.rebuild(checkDataFeed.getName()));
+        }
     }
 
 
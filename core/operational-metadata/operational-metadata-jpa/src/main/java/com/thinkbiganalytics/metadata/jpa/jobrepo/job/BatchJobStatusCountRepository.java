@@ -0,0 +1,49 @@
+package com.thinkbiganalytics.metadata.jpa.jobrepo.job;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Spring data repository for accessing {@link JpaBatchJobStatusCount}
+ */
+public interface BatchJobStatusCountRepository extends JpaRepository<JpaBatchJobStatusCount, JpaBatchJobStatusCount.BatchJobStatusCountPK> {
+
+    /**
+     * Add {@code delta} to the count for the given feed, day and status
+     *
+     * @return the number of rows updated, 0 if there is no row for the key yet
+     */
+    @Modifying
+    @Query(value = "update JpaBatchJobStatusCount c set c.jobCount = c.jobCount + :delta "
+                   + "where c.statusCountPK.feedName = :feedName and c.statusCountPK.startYear = :startYear and c.statusCountPK.startMonth = :startMonth "
+                   + "and c.statusCountPK.startDay = :startDay and c.statusCountPK.status = :status")
+    int addToCount(@Param("feedName") String feedName, @Param("startYear") Integer startYear, @Param("startMonth") Integer startMonth, @Param("startDay") Integer startDay,
+                   @Param("status") String status, @Param("delta") Long delta);
+
+    @Modifying
+    @Query(value = "delete from JpaBatchJobStatusCount c where c.statusCountPK.feedName = :feedName")
+    int deleteByFeedName(@Param("feedName") String feedName);
+
+}
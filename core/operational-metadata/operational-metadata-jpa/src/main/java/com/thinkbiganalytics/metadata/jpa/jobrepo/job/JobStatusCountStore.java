@@ -0,0 +1,388 @@
+package com.thinkbiganalytics.metadata.jpa.jobrepo.job;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.collect.ImmutableList;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.core.types.dsl.StringExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.JobStatusCount;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+/**
+ * Maintains the {@link JpaBatchJobStatusCount} table and answers the job status charts from it.
+ *
+ * Each time a job is saved its previous status and start day are decremented and the new ones incremented in the same transaction as the job,
+ * so the charts read a handful of counter rows instead of grouping every job execution.
+ * Bulk changes made outside of JPA (abandoning or deleting all the jobs for a feed) are applied with {@link #rebuild(String)}.
+ * Archived jobs are removed from their counts with {@link #jobsRemoved(Collection)}.
+ *
+ * Query results are cached in memory until the next committed counter change.
+ */
+@Component
+public class JobStatusCountStore {
+
+    private static final Logger log = LoggerFactory.getLogger(JobStatusCountStore.class);
+
+    public static final String FAILED = "FAILED";
+
+    public static final String RUNNING = "RUNNING";
+
+    @Autowired
+    private JPAQueryFactory factory;
+
+    @Inject
+    private BatchJobStatusCountRepository statusCountRepository;
+
+    /**
+     * Creates missing counter rows in their own transaction so a concurrent insert of the same row doesn't fail the job's transaction
+     */
+    private TransactionTemplate newTransaction;
+
+    @Value("${kylo.ops.mgr.jobs.status.counts.cache:true}")
+    private boolean cacheEnabled = true;
+
+    /**
+     * bumped after every committed counter change
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    private final Map<String, CachedCounts> cache = new ConcurrentHashMap<>();
+
+    @Inject
+    public void setTransactionManager(@Qualifier("operationalMetadataTransactionManager") PlatformTransactionManager transactionMgr) {
+        this.newTransaction = new TransactionTemplate(transactionMgr);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+        cache.clear();
+    }
+
+    /**
+     * Return the name a job status is counted under
+     *
+     * @param status the job status
+     * @return {@link #FAILED}, {@link #RUNNING} for started or starting jobs, otherwise the status name
+     */
+    public static String statusCountName(BatchJobExecution.JobStatus status) {
+        if (status == BatchJobExecution.JobStatus.FAILED) {
+            return FAILED;
+        } else if (status == BatchJobExecution.JobStatus.STARTED || status == BatchJobExecution.JobStatus.STARTING) {
+            return RUNNING;
+        } else {
+            return status.name();
+        }
+    }
+
+    /**
+     * The query expression matching {@link #statusCountName(BatchJobExecution.JobStatus)}
+     */
+    static StringExpression statusCountName(QJpaBatchJobExecution jobExecution) {
+        return new CaseBuilder().when(jobExecution.status.eq(BatchJobExecution.JobStatus.FAILED)).then(FAILED)
+            .when(jobExecution.status.in(ImmutableList.of(BatchJobExecution.JobStatus.STARTED, BatchJobExecution.JobStatus.STARTING))).then(RUNNING)
+            .otherwise(jobExecution.status.stringValue());
+    }
+
+    /**
+     * Move the job from the status and start day it was counted under to its current ones.
+     * This must be called in the transaction that saves the job.
+     *
+     * @param jobExecution the job that was saved
+     */
+    public void jobSaved(JpaBatchJobExecution jobExecution) {
+        if (jobExecution == null || jobExecution.getJobInstance() == null || jobExecution.getJobInstance().getJobName() == null) {
+            return;
+        }
+        boolean counted = jobExecution.getCountedStatus() != null && jobExecution.getCountedStartYear() != null;
+        boolean countable = jobExecution.getStatus() != null && jobExecution.getStartYear() != null;
+        if (counted && countable
+            && statusCountName(jobExecution.getCountedStatus()).equals(statusCountName(jobExecution.getStatus()))
+            && jobExecution.getCountedStartYear().equals(jobExecution.getStartYear())
+            && jobExecution.getCountedStartMonth().equals(jobExecution.getStartMonth())
+            && jobExecution.getCountedStartDay().equals(jobExecution.getStartDay())) {
+            return;
+        }
+        String feedName = jobExecution.getJobInstance().getJobName();
+        if (counted) {
+            addToCount(new JpaBatchJobStatusCount.BatchJobStatusCountPK(feedName, jobExecution.getCountedStartYear(), jobExecution.getCountedStartMonth(),
+                                                                        jobExecution.getCountedStartDay(), statusCountName(jobExecution.getCountedStatus())), -1L);
+        }
+        if (countable) {
+            addToCount(new JpaBatchJobStatusCount.BatchJobStatusCountPK(feedName, jobExecution.getStartYear(), jobExecution.getStartMonth(), jobExecution.getStartDay(),
+                                                                        statusCountName(jobExecution.getStatus())), 1L);
+        }
+        jobExecution.markCounted();
+        changed();
+    }
+
+    /**
+     * Remove the jobs from the statuses and start days they were counted under.
+     * This must be called in the transaction that removes the jobs from the live tables.
+     *
+     * @param jobExecutions the jobs that are being removed
+     */
+    public void jobsRemoved(Collection<JpaBatchJobExecution> jobExecutions) {
+        Map<JpaBatchJobStatusCount.BatchJobStatusCountPK, Long> deltas = new HashMap<>();
+        for (JpaBatchJobExecution jobExecution : jobExecutions) {
+            if (jobExecution.getJobInstance() != null && jobExecution.getJobInstance().getJobName() != null
+                && jobExecution.getCountedStatus() != null && jobExecution.getCountedStartYear() != null) {
+                deltas.merge(new JpaBatchJobStatusCount.BatchJobStatusCountPK(jobExecution.getJobInstance().getJobName(), jobExecution.getCountedStartYear(),
+                                                                              jobExecution.getCountedStartMonth(), jobExecution.getCountedStartDay(),
+                                                                              statusCountName(jobExecution.getCountedStatus())), -1L, Long::sum);
+            }
+        }
+        if (!deltas.isEmpty()) {
+            deltas.forEach(this::addToCount);
+            changed();
+        }
+    }
+
+    private void addToCount(JpaBatchJobStatusCount.BatchJobStatusCountPK key, Long delta) {
+        if (update(key, delta) == 0) {
+            if (delta > 0) {
+                createCount(key);
+                update(key, delta);
+            } else {
+                log.debug("No job status count to decrement for {} {} on {}-{}-{}", key.getFeedName(), key.getStatus(), key.getStartYear(), key.getStartMonth(), key.getStartDay());
+            }
+        }
+    }
+
+    private int update(JpaBatchJobStatusCount.BatchJobStatusCountPK key, Long delta) {
+        return statusCountRepository.addToCount(key.getFeedName(), key.getStartYear(), key.getStartMonth(), key.getStartDay(), key.getStatus(), delta);
+    }
+
+    private void createCount(JpaBatchJobStatusCount.BatchJobStatusCountPK key) {
+        try {
+            newTransaction.execute(status -> {
+                if (!statusCountRepository.exists(key)) {
+                    statusCountRepository.saveAndFlush(new JpaBatchJobStatusCount(key));
+                }
+                return null;
+            });
+        } catch (DataIntegrityViolationException e) {
+            //another job created the row first
+            log.debug("Job status count for {} {} was created concurrently", key.getFeedName(), key.getStatus());
+        }
+    }
+
+    /**
+     * Recount the jobs for a feed from the BATCH_JOB_EXECUTION table.
+     * This must be called in a transaction after the feed's jobs are changed in bulk.
+     *
+     * @param feedName the feed to recount, or null to recount every feed
+     */
+    public void rebuild(String feedName) {
+        QJpaBatchJobExecution jobExecution = QJpaBatchJobExecution.jpaBatchJobExecution;
+        StringExpression status = statusCountName(jobExecution);
+
+        BooleanBuilder whereBuilder = new BooleanBuilder();
+        whereBuilder.and(jobExecution.startYear.isNotNull());
+        if (feedName != null) {
+            whereBuilder.and(jobExecution.jobInstance.jobName.eq(feedName));
+        }
+
+        List<JpaBatchJobStatusCount> counts = factory.select(
+            Projections.constructor(JpaBatchJobStatusCount.class,
+                                    jobExecution.jobInstance.jobName,
+                                    jobExecution.startYear,
+                                    jobExecution.startMonth,
+                                    jobExecution.startDay,
+                                    status,
+                                    jobExecution.count()))
+            .from(jobExecution)
+            .where(whereBuilder)
+            .groupBy(jobExecution.jobInstance.jobName, jobExecution.startYear, jobExecution.startMonth, jobExecution.startDay, status)
+            .fetch();
+
+        if (feedName != null) {
+            statusCountRepository.deleteByFeedName(feedName);
+        } else {
+            statusCountRepository.deleteAllInBatch();
+        }
+        statusCountRepository.save(counts);
+        changed();
+    }
+
+    /**
+     * Return the number of jobs in each status across all feeds and days
+     *
+     * @param statuses the status count names to include, or null for all of them
+     * @return the job count for each status
+     */
+    public List<JobStatusCount> getJobStatusCount(Collection<String> statuses) {
+        String key = "status:" + (statuses != null ? new TreeSet<>(statuses) : "");
+        return cached(key, () -> {
+            QJpaBatchJobStatusCount statusCount = QJpaBatchJobStatusCount.jpaBatchJobStatusCount;
+            NumberExpression<Long> count = statusCount.jobCount.sum();
+            BooleanBuilder whereBuilder = new BooleanBuilder();
+            if (statuses != null) {
+                whereBuilder.and(statusCount.statusCountPK.status.in(statuses));
+            }
+            return factory.select(
+                Projections.constructor(JpaBatchJobExecutionStatusCounts.class,
+                                        statusCount.statusCountPK.status,
+                                        count))
+                .from(statusCount)
+                .where(whereBuilder)
+                .groupBy(statusCount.statusCountPK.status)
+                .having(count.gt(0L))
+                .fetch();
+        });
+    }
+
+    /**
+     * Return the number of jobs in each status for each day a job started on
+     *
+     * @param feedName the feed to count, or null to count all feeds together
+     * @param since    the first day to include, or null for every day
+     * @return the job count for each status and day
+     */
+    public List<JobStatusCount> getJobStatusCountByDate(String feedName, DateTime since) {
+        String key = "date:" + (feedName != null ? feedName : "") + ":" + (since != null ? since.toLocalDate() : "");
+        return cached(key, () -> {
+            QJpaBatchJobStatusCount statusCount = QJpaBatchJobStatusCount.jpaBatchJobStatusCount;
+            QJpaBatchJobStatusCount_BatchJobStatusCountPK pk = statusCount.statusCountPK;
+            NumberExpression<Long> count = statusCount.jobCount.sum();
+
+            BooleanBuilder whereBuilder = new BooleanBuilder();
+            if (feedName != null) {
+                whereBuilder.and(pk.feedName.eq(feedName));
+            }
+            if (since != null) {
+                whereBuilder.and(pk.startYear.gt(since.getYear())
+                                     .or(pk.startYear.eq(since.getYear())
+                                             .and(pk.startMonth.gt(since.getMonthOfYear())
+                                                      .or(pk.startMonth.eq(since.getMonthOfYear()).and(pk.startDay.goe(since.getDayOfMonth()))))));
+            }
+
+            if (feedName != null) {
+                return factory.select(
+                    Projections.constructor(JpaBatchJobExecutionStatusCounts.class,
+                                            pk.status,
+                                            pk.feedName,
+                                            pk.startYear,
+                                            pk.startMonth,
+                                            pk.startDay,
+                                            count))
+                    .from(statusCount)
+                    .where(whereBuilder)
+                    .groupBy(pk.status, pk.feedName, pk.startYear, pk.startMonth, pk.startDay)
+                    .having(count.gt(0L))
+                    .fetch();
+            } else {
+                return factory.select(
+                    Projections.constructor(JpaBatchJobExecutionStatusCounts.class,
+                                            pk.status,
+                                            pk.startYear,
+                                            pk.startMonth,
+                                            pk.startDay,
+                                            count))
+                    .from(statusCount)
+                    .where(whereBuilder)
+                    .groupBy(pk.status, pk.startYear, pk.startMonth, pk.startDay)
+                    .having(count.gt(0L))
+                    .fetch();
+            }
+        });
+    }
+
+    private List<JobStatusCount> cached(String key, CountQuery query) {
+        if (!cacheEnabled) {
+            return new ArrayList<>(query.fetch());
+        }
+        long currentVersion = version.get();
+        CachedCounts cachedCounts = cache.get(key);
+        if (cachedCounts == null || cachedCounts.version != currentVersion) {
+            cachedCounts = new CachedCounts(currentVersion, query.fetch());
+            cache.put(key, cachedCounts);
+        }
+        return cachedCounts.counts.stream().map(JpaBatchJobExecutionStatusCounts::new).collect(Collectors.toList());
+    }
+
+    /**
+     * Invalidate the cached counts once the current transaction commits
+     */
+    private void changed() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    invalidate();
+                }
+            });
+        } else {
+            invalidate();
+        }
+    }
+
+    private void invalidate() {
+        version.incrementAndGet();
+        cache.clear();
+    }
+
+    private interface CountQuery {
+
+        List<? extends JobStatusCount> fetch();
+    }
+
+    private static class CachedCounts {
+
+        private final long version;
+        private final List<? extends JobStatusCount> counts;
+
+        CachedCounts(long version, List<? extends JobStatusCount> counts) {
+            this.version = version;
+            this.counts = counts;
+        }
+    }
+}
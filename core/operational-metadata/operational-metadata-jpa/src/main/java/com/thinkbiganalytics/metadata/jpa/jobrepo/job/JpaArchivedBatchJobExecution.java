@@ -0,0 +1,450 @@
+package com.thinkbiganalytics.metadata.jpa.jobrepo.job;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.thinkbiganalytics.json.ObjectMapperSerializer;
+import com.thinkbiganalytics.metadata.api.jobrepo.ExecutionConstants;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.ArchivedBatchJobExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.ArchivedBatchStepExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiEventStepExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.step.BatchStepExecution;
+
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.Type;
+import org.joda.time.DateTime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+/**
+ * A finished job moved out of the live job tables.
+ * The columns needed to list jobs are kept as is, the parameters, execution context and steps are stored together as gzipped JSON.
+ */
+@Entity
+@Table(name = "BATCH_JOB_EXECUTION_ARCHIVE", indexes = @Index(name = "BATCH_JOB_EXEC_ARCHIVE_IDX1", columnList = "FEED_NAME,JOB_EXECUTION_ID"))
+public class JpaArchivedBatchJobExecution implements ArchivedBatchJobExecution, Serializable {
+
+    @Id
+    @Column(name = "JOB_EXECUTION_ID")
+    private Long jobExecutionId;
+
+    @Column(name = "JOB_INSTANCE_ID")
+    private Long jobInstanceId;
+
+    @Column(name = "FEED_NAME")
+    private String feedName;
+
+    @Type(type = "com.thinkbiganalytics.jpa.PersistentDateTimeAsMillisLong")
+    @Column(name = "CREATE_TIME")
+    private DateTime createTime;
+
+    @Type(type = "com.thinkbiganalytics.jpa.PersistentDateTimeAsMillisLong")
+    @Column(name = "START_TIME")
+    private DateTime startTime;
+
+    @Type(type = "com.thinkbiganalytics.jpa.PersistentDateTimeAsMillisLong")
+    @Column(name = "END_TIME")
+    private DateTime endTime;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "STATUS", length = 10, nullable = false)
+    private BatchJobExecution.JobStatus status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "EXIT_CODE")
+    private ExecutionConstants.ExitCode exitCode;
+
+    @Column(name = "EXIT_MESSAGE")
+    @Type(type = "com.thinkbiganalytics.jpa.TruncateStringUserType", parameters = {@Parameter(name = "length", value = "2500")})
+    private String exitMessage;
+
+    @Type(type = "com.thinkbiganalytics.jpa.PersistentDateTimeAsMillisLong")
+    @Column(name = "ARCHIVED_TIME")
+    private DateTime archivedTime;
+
+    /**
+     * the gzipped JSON of the {@link JobDetails}
+     */
+    @Lob
+    @Column(name = "JOB_DETAILS")
+    private byte[] jobDetails;
+
+    @Transient
+    private JobDetails details;
+
+    public JpaArchivedBatchJobExecution() {
+
+    }
+
+    /**
+     * Copy a live job and its steps
+     *
+     * @param jobExecution the job to archive
+     * @param archivedTime the time the job is archived
+     */
+    public JpaArchivedBatchJobExecution(BatchJobExecution jobExecution, DateTime archivedTime) {
+        this.jobExecutionId = jobExecution.getJobExecutionId();
+        this.jobInstanceId = jobExecution.getJobInstance().getJobInstanceId();
+        this.feedName = jobExecution.getJobInstance().getJobName();
+        this.createTime = jobExecution.getCreateTime();
+        this.startTime = jobExecution.getStartTime();
+        this.endTime = jobExecution.getEndTime();
+        this.status = jobExecution.getStatus();
+        this.exitCode = jobExecution.getExitCode();
+        this.exitMessage = jobExecution.getExitMessage();
+        this.archivedTime = archivedTime;
+
+        JobDetails details = new JobDetails();
+        if (jobExecution.getJobParametersAsMap() != null) {
+            details.setJobParameters(new HashMap<>(jobExecution.getJobParametersAsMap()));
+        }
+        if (jobExecution.getJobExecutionContextAsMap() != null) {
+            details.setJobExecutionContext(new HashMap<>(jobExecution.getJobExecutionContextAsMap()));
+        }
+        if (jobExecution.getStepExecutions() != null) {
+            details.setSteps(jobExecution.getStepExecutions().stream().map(StepDetails::new).sorted(StepDetails.START_TIME_ORDER).collect(Collectors.toList()));
+        }
+        this.details = details;
+        this.jobDetails = compress(ObjectMapperSerializer.serialize(details));
+    }
+
+    @Override
+    public Long getJobExecutionId() {
+        return jobExecutionId;
+    }
+
+    @Override
+    public Long getJobInstanceId() {
+        return jobInstanceId;
+    }
+
+    @Override
+    public String getFeedName() {
+        return feedName;
+    }
+
+    @Override
+    public DateTime getCreateTime() {
+        return createTime;
+    }
+
+    @Override
+    public DateTime getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public DateTime getEndTime() {
+        return endTime;
+    }
+
+    @Override
+    public BatchJobExecution.JobStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public ExecutionConstants.ExitCode getExitCode() {
+        return exitCode;
+    }
+
+    @Override
+    public String getExitMessage() {
+        return exitMessage;
+    }
+
+    @Override
+    public DateTime getArchivedTime() {
+        return archivedTime;
+    }
+
+    /**
+     * @return the size of the stored details, in bytes
+     */
+    public int getJobDetailsSize() {
+        return jobDetails != null ? jobDetails.length : 0;
+    }
+
+    @Override
+    public Map<String, String> getJobParametersAsMap() {
+        return getDetails().getJobParameters();
+    }
+
+    @Override
+    public Map<String, String> getJobExecutionContextAsMap() {
+        return getDetails().getJobExecutionContext();
+    }
+
+    @Override
+    public List<? extends ArchivedBatchStepExecution> getStepExecutions() {
+        return getDetails().getSteps();
+    }
+
+    private JobDetails getDetails() {
+        if (details == null) {
+            details = jobDetails != null ? ObjectMapperSerializer.deserialize(decompress(jobDetails), JobDetails.class) : new JobDetails();
+        }
+        return details;
+    }
+
+    private static byte[] compress(String json) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to compress the archived job details", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String decompress(byte[] data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read the archived job details", e);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The parts of an archived job that are stored as JSON
+     */
+    public static class JobDetails {
+
+        private Map<String, String> jobParameters = new HashMap<>();
+
+        private Map<String, String> jobExecutionContext = new HashMap<>();
+
+        private List<StepDetails> steps = new ArrayList<>();
+
+        public Map<String, String> getJobParameters() {
+            return jobParameters;
+        }
+
+        public void setJobParameters(Map<String, String> jobParameters) {
+            this.jobParameters = jobParameters;
+        }
+
+        public Map<String, String> getJobExecutionContext() {
+            return jobExecutionContext;
+        }
+
+        public void setJobExecutionContext(Map<String, String> jobExecutionContext) {
+            this.jobExecutionContext = jobExecutionContext;
+        }
+
+        public List<StepDetails> getSteps() {
+            return steps;
+        }
+
+        public void setSteps(List<StepDetails> steps) {
+            this.steps = steps;
+        }
+    }
+
+    /**
+     * An archived step, times are stored as epoch millis
+     */
+    public static class StepDetails implements ArchivedBatchStepExecution {
+
+        static final Comparator<StepDetails> START_TIME_ORDER = Comparator.comparing(StepDetails::getStartTimeMillis, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(StepDetails::getStepExecutionId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+        private Long stepExecutionId;
+        private String stepName;
+        private Long startTimeMillis;
+        private Long endTimeMillis;
+        private Long lastUpdatedMillis;
+        private BatchStepExecution.StepStatus status;
+        private ExecutionConstants.ExitCode exitCode;
+        private String exitMessage;
+        private Map<String, String> stepExecutionContext = new HashMap<>();
+        private Long nifiEventId;
+
+        public StepDetails() {
+
+        }
+
+        public StepDetails(BatchStepExecution stepExecution) {
+            this.stepExecutionId = stepExecution.getStepExecutionId();
+            this.stepName = stepExecution.getStepName();
+            this.startTimeMillis = millis(stepExecution.getStartTime());
+            this.endTimeMillis = millis(stepExecution.getEndTime());
+            this.lastUpdatedMillis = millis(stepExecution.getLastUpdated());
+            this.status = stepExecution.getStatus();
+            this.exitCode = stepExecution.getExitCode();
+            this.exitMessage = stepExecution.getExitMessage();
+            if (stepExecution.getStepExecutionContextAsMap() != null) {
+                this.stepExecutionContext = new HashMap<>(stepExecution.getStepExecutionContextAsMap());
+            }
+            NifiEventStepExecution nifiEventStepExecution = stepExecution.getNifiEventStepExecution();
+            if (nifiEventStepExecution != null) {
+                this.nifiEventId = nifiEventStepExecution.getEventId();
+            }
+        }
+
+        private static Long millis(DateTime time) {
+            return time != null ? time.getMillis() : null;
+        }
+
+        private static DateTime dateTime(Long millis) {
+            return millis != null ? new DateTime(millis) : null;
+        }
+
+        @Override
+        public Long getStepExecutionId() {
+            return stepExecutionId;
+        }
+
+        public void setStepExecutionId(Long stepExecutionId) {
+            this.stepExecutionId = stepExecutionId;
+        }
+
+        @Override
+        public String getStepName() {
+            return stepName;
+        }
+
+        public void setStepName(String stepName) {
+            this.stepName = stepName;
+        }
+
+        @JsonIgnore
+        @Override
+        public DateTime getStartTime() {
+            return dateTime(startTimeMillis);
+        }
+
+        @JsonIgnore
+        @Override
+        public DateTime getEndTime() {
+            return dateTime(endTimeMillis);
+        }
+
+        @JsonIgnore
+        @Override
+        public DateTime getLastUpdated() {
+            return dateTime(lastUpdatedMillis);
+        }
+
+        public Long getStartTimeMillis() {
+            return startTimeMillis;
+        }
+
+        public void setStartTimeMillis(Long startTimeMillis) {
+            this.startTimeMillis = startTimeMillis;
+        }
+
+        public Long getEndTimeMillis() {
+            return endTimeMillis;
+        }
+
+        public void setEndTimeMillis(Long endTimeMillis) {
+            this.endTimeMillis = endTimeMillis;
+        }
+
+        public Long getLastUpdatedMillis() {
+            return lastUpdatedMillis;
+        }
+
+        public void setLastUpdatedMillis(Long lastUpdatedMillis) {
+            this.lastUpdatedMillis = lastUpdatedMillis;
+        }
+
+        @Override
+        public BatchStepExecution.StepStatus getStatus() {
+            return status;
+        }
+
+        public void setStatus(BatchStepExecution.StepStatus status) {
+            this.status = status;
+        }
+
+        @Override
+        public ExecutionConstants.ExitCode getExitCode() {
+            return exitCode;
+        }
+
+        public void setExitCode(ExecutionConstants.ExitCode exitCode) {
+            this.exitCode = exitCode;
+        }
+
+        @Override
+        public String getExitMessage() {
+            return exitMessage;
+        }
+
+        public void setExitMessage(String exitMessage) {
+            this.exitMessage = exitMessage;
+        }
+
+        @JsonIgnore
+        @Override
+        public Map<String, String> getStepExecutionContextAsMap() {
+            return stepExecutionContext;
+        }
+
+        public Map<String, String> getStepExecutionContext() {
+            return stepExecutionContext;
+        }
+
+        public void setStepExecutionContext(Map<String, String> stepExecutionContext) {
+            this.stepExecutionContext = stepExecutionContext;
+        }
+
+        @Override
+        public Long getNifiEventId() {
+            return nifiEventId;
+        }
+
+        public void setNifiEventId(Long nifiEventId) {
+            this.nifiEventId = nifiEventId;
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package com.thinkbiganalytics.metadata.jpa.jobrepo.job;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.collect.ImmutableList;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.dsl.ComparableExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.ArchivedBatchJobExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobArchiveProvider;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobArchiveStatus;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
+import com.thinkbiganalytics.metadata.jpa.feed.FeedHealthStore;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.QJpaNifiEvent;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.step.QJpaBatchStepExecution;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Archives finished jobs into the {@link JpaArchivedBatchJobExecution} table and removes them from the live job tables.
+ *
+ * Each batch copies up to {@code kylo.ops.mgr.jobs.archive.batch.size} jobs and deletes their rows, child tables first, in its own transaction.
+ * Batches walk the job ids in order so no batch rescans jobs that were kept.
+ */
+@Service
+public class JpaBatchJobArchiveProvider implements BatchJobArchiveProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(JpaBatchJobArchiveProvider.class);
+
+    private static final List<BatchJobExecution.JobStatus> FINISHED_STATUSES = ImmutableList.of(BatchJobExecution.JobStatus.COMPLETED, BatchJobExecution.JobStatus.FAILED,
+                                                                                               BatchJobExecution.JobStatus.ABANDONED, BatchJobExecution.JobStatus.STOPPED);
+
+    /**
+     * The tables holding the rows of a job, keyed by JOB_EXECUTION_ID, in the order they are deleted
+     */
+    private static final List<String> JOB_CHILD_TABLES = ImmutableList.of("BATCH_NIFI_STEP", "BATCH_STEP_EXECUTION_CTX_VALS", "BATCH_STEP_EXECUTION",
+                                                                          "BATCH_JOB_EXECUTION_CTX_VALS", "BATCH_JOB_EXECUTION_PARAMS");
+
+    @Autowired
+    private JPAQueryFactory factory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Inject
+    private ArchivedBatchJobExecutionRepository archiveRepository;
+
+    @Inject
+    private JobStatusCountStore jobStatusCountStore;
+
+    @Inject
+    private FeedHealthStore feedHealthStore;
+
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * The number of days finished jobs are kept in the live tables. 0 or less disables the scheduled archive
+     */
+    @Value("${kylo.ops.mgr.jobs.archive.retention.days:0}")
+    private int retentionDays = 0;
+
+    @Value("${kylo.ops.mgr.jobs.archive.batch.size:200}")
+    private int batchSize = 200;
+
+    @Value("${kylo.ops.mgr.jobs.archive.interval.minutes:60}")
+    private int intervalMinutes = 60;
+
+    private ScheduledExecutorService archiveExecutor;
+
+    private volatile ArchiveRun lastRun;
+
+    @Inject
+    public void setTransactionManager(@Qualifier("operationalMetadataTransactionManager") PlatformTransactionManager transactionMgr) {
+        this.transactionTemplate = new TransactionTemplate(transactionMgr);
+    }
+
+    public void setRetentionDays(int retentionDays) {
+        this.retentionDays = retentionDays;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    private void init() {
+        if (retentionDays > 0) {
+            archiveExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "job-archive");
+                thread.setDaemon(true);
+                return thread;
+            });
+            archiveExecutor.scheduleWithFixedDelay(this::scheduledArchive, 10, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (archiveExecutor != null) {
+            archiveExecutor.shutdownNow();
+        }
+    }
+
+    private void scheduledArchive() {
+        try {
+            archive();
+        } catch (Exception e) {
+            log.error("Unable to archive the finished jobs", e);
+        }
+    }
+
+    @Override
+    public long archive() {
+        if (retentionDays <= 0) {
+            return 0L;
+        }
+        return archive(DateTime.now().minusDays(retentionDays));
+    }
+
+    @Override
+    public synchronized long archive(DateTime finishedBefore) {
+        long start = System.currentTimeMillis();
+        long jobs = 0L;
+        long rows = 0L;
+        Long lastId = 0L;
+        while (lastId != null) {
+            Long afterId = lastId;
+            BatchResult result = transactionTemplate.execute(status -> archiveBatch(finishedBefore, afterId));
+            jobs += result.jobs;
+            rows += result.rows;
+            lastId = result.lastId;
+        }
+        ArchiveRun run = new ArchiveRun(DateTime.now(), jobs, rows, System.currentTimeMillis() - start);
+        lastRun = run;
+        if (jobs > 0) {
+            log.info("Archived {} jobs that finished before {}, removing {} rows in {} ms ({} rows/sec)", jobs, finishedBefore, rows, run.millis, String.format("%.1f", run.rowsPerSecond()));
+        }
+        return jobs;
+    }
+
+    /**
+     * Archive the next batch of jobs after {@code lastId}
+     *
+     * @return the jobs and rows archived, and the last job id looked at or null if there are no more jobs to look at
+     */
+    private BatchResult archiveBatch(DateTime finishedBefore, Long lastId) {
+        QJpaBatchJobExecution jobExecution = QJpaBatchJobExecution.jpaBatchJobExecution;
+        List<JpaBatchJobExecution> jobs = factory.selectFrom(jobExecution)
+            .join(jobExecution.jobInstance).fetchJoin()
+            .leftJoin(jobExecution.nifiEventJobExecution).fetchJoin()
+            .where(jobExecution.jobExecutionId.gt(lastId),
+                   jobExecution.endTime.lt(finishedBefore),
+                   jobExecution.status.in(FINISHED_STATUSES))
+            .orderBy(jobExecution.jobExecutionId.asc())
+            .limit(batchSize)
+            .fetch();
+        if (jobs.isEmpty()) {
+            return new BatchResult(null, 0, 0);
+        }
+        Long nextId = jobs.get(jobs.size() - 1).getJobExecutionId();
+
+        // the latest finished job of each feed is kept for the feed's health
+        Map<String, DateTime> latestEndTimes = latestEndTimes(jobs.stream().map(job -> job.getJobInstance().getJobName()).collect(Collectors.toSet()));
+        List<JpaBatchJobExecution> archived = jobs.stream()
+            .filter(job -> {
+                DateTime latest = latestEndTimes.get(job.getJobInstance().getJobName());
+                return latest == null || job.getEndTime().isBefore(latest);
+            })
+            .collect(Collectors.toList());
+        if (archived.isEmpty()) {
+            return new BatchResult(nextId, 0, 0);
+        }
+
+        List<Long> jobIds = archived.stream().map(JpaBatchJobExecution::getJobExecutionId).collect(Collectors.toList());
+        fetchDetails(jobIds);
+
+        DateTime now = DateTime.now();
+        archiveRepository.save(archived.stream().map(job -> new JpaArchivedBatchJobExecution(job, now)).collect(Collectors.toList()));
+        jobStatusCountStore.jobsRemoved(archived);
+        archived.stream().map(job -> job.getJobInstance().getJobName()).distinct().forEach(feedHealthStore::invalidate);
+
+        Set<Long> instanceIds = archived.stream().map(job -> job.getJobInstance().getJobInstanceId()).collect(Collectors.toSet());
+        entityManager.flush();
+        entityManager.clear();
+
+        return new BatchResult(nextId, archived.size(), deleteJobs(jobIds, instanceIds));
+    }
+
+    /**
+     * Load the parameters, context and steps of the jobs with a few joined queries rather than a query per job
+     */
+    private void fetchDetails(List<Long> jobIds) {
+        QJpaBatchJobExecution jobExecution = QJpaBatchJobExecution.jpaBatchJobExecution;
+        factory.selectFrom(jobExecution).distinct()
+            .leftJoin(jobExecution.jobParameters).fetchJoin()
+            .leftJoin(jobExecution.jobExecutionContext).fetchJoin()
+            .leftJoin(jobExecution.stepExecutions).fetchJoin()
+            .where(jobExecution.jobExecutionId.in(jobIds))
+            .fetch();
+        QJpaBatchStepExecution stepExecution = QJpaBatchStepExecution.jpaBatchStepExecution;
+        factory.selectFrom(stepExecution).distinct()
+            .leftJoin(stepExecution.stepExecutionContext).fetchJoin()
+            .leftJoin(stepExecution.nifiEventStepExecution).fetchJoin()
+            .where(stepExecution.jobExecution.jobExecutionId.in(jobIds))
+            .fetch();
+    }
+
+    /**
+     * Return the end time of the latest finished job for each feed
+     */
+    private Map<String, DateTime> latestEndTimes(Collection<String> feedNames) {
+        QJpaBatchJobExecution jobExecution = QJpaBatchJobExecution.jpaBatchJobExecution;
+        ComparableExpression<DateTime> maxEndTime = Expressions.comparableOperation(DateTime.class, Ops.AggOps.MAX_AGG, jobExecution.endTime);
+        List<Tuple> latest = factory.select(jobExecution.jobInstance.jobName, maxEndTime)
+            .from(jobExecution)
+            .where(jobExecution.jobInstance.jobName.in(feedNames))
+            .groupBy(jobExecution.jobInstance.jobName)
+            .fetch();
+        Map<String, DateTime> endTimes = new HashMap<>();
+        latest.forEach(tuple -> endTimes.put(tuple.get(jobExecution.jobInstance.jobName), tuple.get(maxEndTime)));
+        return endTimes;
+    }
+
+    /**
+     * Delete the rows of the jobs from the live tables, including the NiFi provenance events of the jobs' flow files
+     *
+     * @return the number of rows deleted
+     */
+    private int deleteJobs(List<Long> jobIds, Set<Long> instanceIds) {
+        int rows = 0;
+        for (String table : JOB_CHILD_TABLES) {
+            rows += entityManager.createNativeQuery("DELETE FROM " + table + " WHERE JOB_EXECUTION_ID IN (:ids)").setParameter("ids", jobIds).executeUpdate();
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String> flowFileIds = entityManager.createNativeQuery("SELECT FLOW_FILE_ID FROM BATCH_NIFI_JOB WHERE JOB_EXECUTION_ID IN (:ids)")
+            .setParameter("ids", jobIds)
+            .getResultList();
+        if (!flowFileIds.isEmpty()) {
+            rows += entityManager.createNativeQuery("DELETE FROM NIFI_RELATED_ROOT_FLOW_FILES WHERE FLOW_FILE_ID IN (:flowFileIds) "
+                                                    + "OR EVENT_FLOW_FILE_ID IN (SELECT e.FLOW_FILE_ID FROM NIFI_EVENT e WHERE e.JOB_FLOW_FILE_ID IN (:flowFileIds))")
+                .setParameter("flowFileIds", flowFileIds)
+                .executeUpdate();
+            rows += entityManager.createNativeQuery("DELETE FROM NIFI_EVENT WHERE JOB_FLOW_FILE_ID IN (:flowFileIds)").setParameter("flowFileIds", flowFileIds).executeUpdate();
+        }
+
+        rows += entityManager.createNativeQuery("DELETE FROM BATCH_NIFI_JOB WHERE JOB_EXECUTION_ID IN (:ids)").setParameter("ids", jobIds).executeUpdate();
+        rows += entityManager.createNativeQuery("DELETE FROM BATCH_JOB_EXECUTION WHERE JOB_EXECUTION_ID IN (:ids)").setParameter("ids", jobIds).executeUpdate();
+        rows += entityManager.createNativeQuery("DELETE FROM BATCH_JOB_INSTANCE WHERE JOB_INSTANCE_ID IN (:instanceIds) "
+                                                + "AND NOT EXISTS (SELECT 1 FROM BATCH_JOB_EXECUTION e WHERE e.JOB_INSTANCE_ID = BATCH_JOB_INSTANCE.JOB_INSTANCE_ID)")
+            .setParameter("instanceIds", instanceIds)
+            .executeUpdate();
+        return rows;
+    }
+
+    @Override
+    public ArchivedBatchJobExecution findArchivedJob(Long jobExecutionId) {
+        return archiveRepository.findOne(jobExecutionId);
+    }
+
+    @Override
+    public List<? extends ArchivedBatchJobExecution> findArchivedJobs(String feedName, Long before, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        QJpaArchivedBatchJobExecution archivedJob = QJpaArchivedBatchJobExecution.jpaArchivedBatchJobExecution;
+        BooleanBuilder whereBuilder = new BooleanBuilder();
+        if (feedName != null) {
+            whereBuilder.and(archivedJob.feedName.eq(feedName));
+        }
+        if (before != null) {
+            whereBuilder.and(archivedJob.jobExecutionId.lt(before));
+        }
+        return factory.selectFrom(archivedJob)
+            .where(whereBuilder)
+            .orderBy(archivedJob.jobExecutionId.desc())
+            .limit(limit)
+            .fetch();
+    }
+
+    @Override
+    public BatchJobArchiveStatus getArchiveStatus() {
+        ArchiveStatus status = new ArchiveStatus();
+        status.jobExecutionCount = factory.selectFrom(QJpaBatchJobExecution.jpaBatchJobExecution).fetchCount();
+        status.stepExecutionCount = factory.selectFrom(QJpaBatchStepExecution.jpaBatchStepExecution).fetchCount();
+        status.nifiEventCount = factory.selectFrom(QJpaNifiEvent.jpaNifiEvent).fetchCount();
+        status.archivedJobCount = archiveRepository.count();
+        status.retentionDays = Math.max(retentionDays, 0);
+        status.lastRun = lastRun;
+        return status;
+    }
+
+    private static class BatchResult {
+
+        private final Long lastId;
+        private final int jobs;
+        private final int rows;
+
+        BatchResult(Long lastId, int jobs, int rows) {
+            this.lastId = lastId;
+            this.jobs = jobs;
+            this.rows = rows;
+        }
+    }
+
+    private static class ArchiveRun {
+
+        private final DateTime time;
+        private final long jobs;
+        private final long rows;
+        private final long millis;
+
+        ArchiveRun(DateTime time, long jobs, long rows, long millis) {
+            this.time = time;
+            this.jobs = jobs;
+            this.rows = rows;
+            this.millis = millis;
+        }
+
+        double rowsPerSecond() {
+            return millis > 0 ? rows * 1000d / millis : rows;
+        }
+    }
+
+    private static class ArchiveStatus implements BatchJobArchiveStatus {
+
+        private long jobExecutionCount;
+        private long stepExecutionCount;
+        private long nifiEventCount;
+        private long archivedJobCount;
+        private int retentionDays;
+        private ArchiveRun lastRun;
+
+        @Override
+        public long getJobExecutionCount() {
+            return jobExecutionCount;
+        }
+
+        @Override
+        public long getStepExecutionCount() {
+            return stepExecutionCount;
+        }
+
+        @Override
+        public long getNifiEventCount() {
+            return nifiEventCount;
+        }
+
+        @Override
+        public long getArchivedJobCount() {
+            return archivedJobCount;
+        }
+
+        @Override
+        public int getRetentionDays() {
+            return retentionDays;
+        }
+
+        @Override
+        public DateTime getLastRunTime() {
+            return lastRun != null ? lastRun.time : null;
+        }
+
+        @Override
+        public long getLastRunArchivedJobs() {
+            return lastRun != null ? lastRun.jobs : 0L;
+        }
+
+        @Override
+        public long getLastRunArchivedRows() {
+            return lastRun != null ? lastRun.rows : 0L;
+        }
+
+        @Override
+        public long getLastRunMillis() {
+            return lastRun != null ? lastRun.millis : 0L;
+        }
+
+        @Override
+        public double getLastRunRowsPerSecond() {
+            return lastRun != null ? lastRun.rowsPerSecond() : 0d;
+        }
+    }
+}
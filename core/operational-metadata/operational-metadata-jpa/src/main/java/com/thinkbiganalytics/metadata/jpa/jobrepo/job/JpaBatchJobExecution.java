@@ -57,8 +57,10 @@ import javax.persistence.ManyToOne;
 import javax.persistence.NamedNativeQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
+import javax.persistence.PostLoad;
 import javax.persistence.Table;
 import javax.persistence.TableGenerator;
+import javax.persistence.Transient;
 import javax.persistence.Version;
 
 /**
@@ -174,11 +176,35 @@ public class JpaBatchJobExecution implements BatchJobExecution {
     @OneToOne(targetEntity = JpaNifiEventJobExecution.class, mappedBy = "jobExecution", cascade = CascadeType.ALL, fetch = FetchType.LAZY, optional = false)
     private NifiEventJobExecution nifiEventJobExecution;
 
+    /**
+     * The status and start day this job is currently counted under in the {@link JpaBatchJobStatusCount} table.
+     * Captured when the job is loaded and updated by the {@link JobStatusCountStore} each time the job is saved.
+     */
+    @Transient
+    private JobStatus countedStatus;
+
+    @Transient
+    private Integer countedStartYear;
+
+    @Transient
+    private Integer countedStartMonth;
+
+    @Transient
+    private Integer countedStartDay;
+
 
     public JpaBatchJobExecution() {
 
     }
 
+    @PostLoad
+    void markCounted() {
+        this.countedStatus = status;
+        this.countedStartYear = startYear;
+        this.countedStartMonth = startMonth;
+        this.countedStartDay = startDay;
+    }
+
     @Override
     public BatchJobInstance getJobInstance() {
         return jobInstance;
@@ -387,6 +413,22 @@ public class JpaBatchJobExecution implements BatchJobExecution {
     }
 
 
+    JobStatus getCountedStatus() {
+        return countedStatus;
+    }
+
+    Integer getCountedStartYear() {
+        return countedStartYear;
+    }
+
+    Integer getCountedStartMonth() {
+        return countedStartMonth;
+    }
+
+    Integer getCountedStartDay() {
+        return countedStartDay;
+    }
+
     public Long getStartTimeMillis() {
         return startTimeMillis;
     }
@@ -21,9 +21,16 @@ package com.thinkbiganalytics.metadata.jpa.jobrepo.job;
  */
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Striped;
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.Projections;
-import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.core.types.dsl.StringExpression;
 import com.querydsl.jpa.JPAExpressions;
 import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.jpa.impl.JPAQuery;
@@ -33,6 +40,7 @@ import com.thinkbiganalytics.jobrepo.common.constants.CheckDataStepConstants;
 import com.thinkbiganalytics.jobrepo.common.constants.FeedConstants;
 import com.thinkbiganalytics.metadata.api.SearchCriteria;
 import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeed;
+import com.thinkbiganalytics.metadata.api.jobrepo.ContinuationPage;
 import com.thinkbiganalytics.metadata.api.jobrepo.ExecutionConstants;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecutionProvider;
@@ -40,6 +48,7 @@ import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobInstance;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.JobStatusCount;
 import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiEvent;
 import com.thinkbiganalytics.metadata.api.jobrepo.step.BatchStepExecutionProvider;
+import com.thinkbiganalytics.metadata.jpa.feed.FeedHealthStore;
 import com.thinkbiganalytics.metadata.jpa.feed.JpaOpsManagerFeed;
 import com.thinkbiganalytics.metadata.jpa.feed.OpsManagerFeedRepository;
 import com.thinkbiganalytics.metadata.jpa.feed.QJpaOpsManagerFeed;
@@ -47,6 +56,8 @@ import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.JpaNifiEventJobExecution;
 import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.JpaNifiRelatedRootFlowFiles;
 import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.NifiRelatedRootFlowFilesRepository;
 import com.thinkbiganalytics.metadata.jpa.support.CommonFilterTranslations;
+import com.thinkbiganalytics.metadata.jpa.support.ContinuationPageImpl;
+import com.thinkbiganalytics.metadata.jpa.support.ContinuationToken;
 import com.thinkbiganalytics.metadata.jpa.support.GenericQueryDslFilter;
 import com.thinkbiganalytics.metadata.jpa.support.QueryDslFetchJoin;
 import com.thinkbiganalytics.metadata.jpa.support.QueryDslPagingSupport;
@@ -60,9 +71,13 @@ import org.joda.time.ReadablePeriod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
@@ -75,6 +90,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.locks.Lock;
 
 import javax.inject.Inject;
 import javax.persistence.OptimisticLockException;
@@ -109,6 +125,23 @@ public class JpaBatchJobExecutionProvider extends QueryDslPagingSupport<JpaBatch
     @Inject
     private BatchStepExecutionProvider batchStepExecutionProvider;
 
+    @Inject
+    private FeedHealthStore feedHealthStore;
+
+    @Inject
+    private JobStatusCountStore jobStatusCountStore;
+
+    /**
+     * The most jobs counted for the total of a continuation token search
+     */
+    @Value("${kylo.ops.mgr.jobs.search.count.limit:10000}")
+    private int seekCountLimit = 10000;
+
+    /**
+     * Locks, striped by job flow file id, held from finding or creating the job execution for a job flow file until its transaction completes
+     */
+    private final Striped<Lock> jobFlowFileLocks = Striped.lock(64);
+
 
     @Autowired
     public JpaBatchJobExecutionProvider(BatchJobExecutionRepository jobExecutionRepository, BatchJobInstanceRepository jobInstanceRepository,
@@ -206,6 +239,7 @@ public class JpaBatchJobExecutionProvider extends QueryDslPagingSupport<JpaBatch
         JpaNifiEventJobExecution eventJobExecution = new JpaNifiEventJobExecution(jobExecution, event.getEventId(), event.getJobFlowFileId());
         jobExecution.setNifiEventJobExecution(eventJobExecution);
         jobExecution = this.jobExecutionRepository.save(jobExecution);
+        jobStatusCountStore.jobSaved(jobExecution);
         //bootstrap the feed parameters
         jobParameters.put(FeedConstants.PARAM__FEED_NAME, event.getFeedName());
         jobParameters.put(FeedConstants.PARAM__JOB_TYPE, FeedConstants.PARAM_VALUE__JOB_TYPE_FEED);
@@ -350,11 +384,19 @@ public class JpaBatchJobExecutionProvider extends QueryDslPagingSupport<JpaBatch
 
     /**
      * Get or Create the JobExecution for a given ProvenanceEvent
+     *
+     * Invariant: only one thread creates the job execution for a job flow file.
+     * The ProvenanceEventReceiver already routes all the events of a job flow file to the same lane, so the lock is uncontended there,
+     * but it still guards any other caller from creating a second job execution for the same job flow file.
+     * The lock is held until the surrounding transaction completes so the next caller can see the job execution created under it.
+     * A transaction should only get job executions for one job flow file, as the receiver does, so it never waits on a second stripe while holding one.
      */
     @Override
-    public synchronized JpaBatchJobExecution getOrCreateJobExecution(ProvenanceEventRecordDTO event) {
+    public JpaBatchJobExecution getOrCreateJobExecution(ProvenanceEventRecordDTO event) {
         JpaBatchJobExecution jobExecution = null;
         boolean isNew = false;
+        Lock lock = jobFlowFileLocks.get(event.getJobFlowFileId());
+        lock.lock();
         try {
             jobExecution = jobExecutionRepository.findByFlowFile(event.getJobFlowFileId());
             if (jobExecution == null) {
@@ -364,8 +406,39 @@ public class JpaBatchJobExecutionProvider extends QueryDslPagingSupport<JpaBatch
         } catch (OptimisticLockException e) {
             //read
             jobExecution = jobExecutionRepository.findByFlowFile(event.getJobFlowFileId());
+        } finally {
+            unlockAfterCompletion(lock);
         }
+        return updateJobExecution(jobExecution, event, isNew);
+    }
 
+    /**
+     * Release the lock once the current transaction commits or rolls back, or now if there is no transaction
+     *
+     * @param lock a lock held by the current thread
+     */
+    private void unlockAfterCompletion(Lock lock) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    lock.unlock();
+                }
+            });
+        } else {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Update the job execution with the incoming event, finishing the job if this is the end of the job
+     *
+     * @param jobExecution the job execution for the events job flow file
+     * @param event        a provenance event
+     * @param isNew        true if the job execution was just created from this event
+     * @return the job execution
+     */
+    private JpaBatchJobExecution updateJobExecution(JpaBatchJobExecution jobExecution, ProvenanceEventRecordDTO event, boolean isNew) {
         //if the attrs coming in change the type to a CHECK job then update the entity
         boolean updatedJobType = updateJobType(jobExecution, event);
         boolean save = isNew || updatedJobType;
@@ -391,6 +464,18 @@ public class JpaBatchJobExecutionProvider extends QueryDslPagingSupport<JpaBatch
         }
         if (save) {
             jobExecutionRepository.save(jobExecution);
+            jobStatusCountStore.jobSaved(jobExecution);
+        }
+        return jobExecution;
+    }
+
+    @Override
+    public BatchJobExecution saveJobEvents(List<ProvenanceEventRecordDTO> events, List<NifiEvent> nifiEvents) {
+        JpaBatchJobExecution jobExecution = null;
+        for (int i = 0; i < events.size(); i++) {
+            ProvenanceEventRecordDTO event = events.get(i);
+            jobExecution = jobExecution == null ? getOrCreateJobExecution(event) : updateJobExecution(jobExecution, event, false);
+            save(jobExecution, event, nifiEvents.get(i));
         }
         return jobExecution;
     }
@@ -429,7 +514,10 @@ public class JpaBatchJobExecutionProvider extends QueryDslPagingSupport<JpaBatch
      */
     @Override
     public BatchJobExecution save(BatchJobExecution jobExecution) {
-        return jobExecutionRepository.save((JpaBatchJobExecution) jobExecution);
+        JpaBatchJobExecution savedJobExecution = jobExecutionRepository.save((JpaBatchJobExecution) jobExecution);
+        jobStatusCountStore.jobSaved(savedJobExecution);
+        feedHealthStore.jobChanged(savedJobExecution);
+        return savedJobExecution;
     }
 
 
@@ -487,6 +575,8 @@ public class JpaBatchJobExecutionProvider extends QueryDslPagingSupport<JpaBatch
                     log.debug("Finishing related running job {} for event ", job.getJobExecutionId(), event);
                 }
                 jobExecutionRepository.save(runningJobs);
+                runningJobs.forEach(jobStatusCountStore::jobSaved);
+                runningJobs.forEach(feedHealthStore::jobChanged);
             }
         }
     }
@@ -514,6 +604,21 @@ public class JpaBatchJobExecutionProvider extends QueryDslPagingSupport<JpaBatch
         }
     }
 
+    @Override
+    public Map<String, BatchJobExecution> findLatestCompletedJobForFeeds(Set<String> feedNames) {
+        Map<String, BatchJobExecution> latestJobs = new HashMap<>();
+        if (feedNames != null && !feedNames.isEmpty()) {
+            //keep the IN clause to a reasonable size
+            for (List<String> names : Iterables.partition(feedNames, 500)) {
+                for (JpaBatchJobExecution jobExecution : jobExecutionRepository.findLatestCompletedJobForFeeds(names)) {
+                    //results are ordered by id descending so the first job found for a feed matches findLatestCompletedJobForFeed
+                    latestJobs.putIfAbsent(jobExecution.getJobInstance().getFeed().getName(), jobExecution);
+                }
+            }
+        }
+        return latestJobs;
+    }
+
     @Override
     public BatchJobExecution findLatestJobForFeed(String feedName) {
         List<JpaBatchJobExecution> jobExecutions = jobExecutionRepository.findLatestJobForFeed(feedName);
@@ -586,86 +691,190 @@ public class JpaBatchJobExecutionProvider extends QueryDslPagingSupport<JpaBatch
         return findAll(query, pageable);
     }
 
+    public void setSeekCountLimit(int seekCountLimit) {
+        this.seekCountLimit = seekCountLimit;
+    }
 
     /**
-     * Get count of Jobs grouped by Status
+     * Find a page of job executions by seeking past the last job of the previous page.
+     * Unlike {@link #findAll(String, Pageable)} this doesn't use an offset, and the total is only counted on the first page, up to {@link #seekCountLimit}
      */
     @Override
-    public List<JobStatusCount> getJobStatusCount(String filter) {
-
+    public ContinuationPage<? extends BatchJobExecution> findAll(String filter, Sort sort, int limit, String continuationToken) {
         QJpaBatchJobExecution jobExecution = QJpaBatchJobExecution.jpaBatchJobExecution;
+        QJpaBatchJobInstance jobInstance = new QJpaBatchJobInstance("jobInstance");
+        QJpaOpsManagerFeed feed = new QJpaOpsManagerFeed("feed");
+
+        Sort.Order order = sort != null && sort.iterator().hasNext() ? sort.iterator().next() : new Sort.Order(Sort.Direction.DESC, "jobExecutionId");
+        String sortProperty = CommonFilterTranslations.resolvedFilter(jobExecution, order.getProperty());
+        SeekSort seekSort = SeekSort.forProperty(sortProperty);
+        if (seekSort == null) {
+            throw new IllegalArgumentException("Unable to page with a continuation token when sorting by " + order.getProperty());
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("The page size must be at least 1");
+        }
+        boolean ascending = order.isAscending();
+        ContinuationToken token = ContinuationToken.decode(continuationToken);
+        if (token != null && !token.matches(filter, seekSort.property, order.getDirection())) {
+            throw new IllegalArgumentException("The continuation token was not created for this filter and sort");
+        }
 
-        List<BatchJobExecution.JobStatus> runningStatus = ImmutableList.of(BatchJobExecution.JobStatus.STARTED, BatchJobExecution.JobStatus.STARTING);
+        //same as findAll(filter, pageable): a filter on a single feed includes the check data jobs for that feed
+        List<SearchCriteria> searchCriterias = GenericQueryDslFilter.parseFilterString(filter);
+        SearchCriteria feedFilter = searchCriterias.stream().map(searchCriteria -> searchCriteria.withKey(CommonFilterTranslations.resolvedFilter(jobExecution, searchCriteria.getKey()))).filter(
+            sc -> sc.getKey().equalsIgnoreCase(CommonFilterTranslations.jobExecutionFeedNameFilterKey)).findFirst().orElse(null);
+        BooleanBuilder where = new BooleanBuilder();
+        boolean feedQuery = feedFilter != null && feedFilter.getPreviousSearchCriteria() != null && !feedFilter.isValueCollection();
+        if (feedQuery) {
+            searchCriterias.remove(feedFilter.getPreviousSearchCriteria());
+            QJpaOpsManagerFeed checkedFeed = new QJpaOpsManagerFeed("checkedFeed");
+            QJpaOpsManagerFeed checkDataFeed = new QJpaOpsManagerFeed("checkDataFeed");
+            String feedName = feedFilter.getValue().toString();
+            where.and(feed.name.eq(feedName).or(feed.id.in(JPAExpressions.select(checkDataFeed.id).from(checkedFeed).join(checkedFeed.checkDataFeeds, checkDataFeed)
+                                                               .where(checkedFeed.name.eq(feedName)))));
+        }
+        where.and(GenericQueryDslFilter.buildFilter(jobExecution, searchCriterias));
+
+        long total;
+        boolean totalCapped;
+        if (token == null) {
+            //count by fetching at most one more id than the limit rather than counting every matching row
+            JPAQuery<Long> countQuery = factory.select(jobExecution.jobExecutionId)
+                .from(jobExecution)
+                .join(jobExecution.jobInstance, jobInstance)
+                .join(jobInstance.feed, feed);
+            if (!feedQuery) {
+                countQuery.join(jobExecution.nifiEventJobExecution);
+            }
+            int counted = countQuery.where(where).limit(seekCountLimit + 1L).fetch().size();
+            totalCapped = counted > seekCountLimit;
+            total = Math.min(counted, seekCountLimit);
+        } else {
+            total = token.getTotal();
+            totalCapped = token.isTotalCapped();
+        }
 
-        com.querydsl.core.types.dsl.StringExpression jobState = new CaseBuilder().when(jobExecution.status.eq(BatchJobExecution.JobStatus.FAILED)).then("FAILED")
-            .when(jobExecution.status.in(runningStatus)).then("RUNNING")
-            .otherwise(jobExecution.status.stringValue());
+        ComparableExpressionBase<?> sortExpression = seekSort.expression(jobExecution, jobInstance, feed);
+        OrderSpecifier<?> sortOrder = ascending ? sortExpression.asc() : sortExpression.desc();
+        OrderSpecifier<Long> idOrder = ascending ? jobExecution.jobExecutionId.asc() : jobExecution.jobExecutionId.desc();
+        List<JpaBatchJobExecution> jobs;
+        if (!seekSort.isNullable()) {
+            if (token != null) {
+                where.and(seekSort.after(jobExecution, jobInstance, feed, ascending, token.getLastValue(), token.getLastId()));
+            }
+            jobs = findSeekPage(jobExecution, jobInstance, feed, feedQuery, where, limit + 1L, sortOrder, idOrder);
+        } else {
+            //jobs without a time sort before every time. They are paged on their own, ordered by id, so the time column is compared directly and its index can be used
+            Predicate nullTimes = sortExpression.isNull();
+            Predicate times = sortExpression.isNotNull();
+            boolean tokenInNullTimes = token != null && token.getLastValue().isEmpty();
+            if (token != null) {
+                BooleanExpression idAfter = ascending ? jobExecution.jobExecutionId.gt(token.getLastId()) : jobExecution.jobExecutionId.lt(token.getLastId());
+                if (tokenInNullTimes) {
+                    nullTimes = idAfter.and(nullTimes);
+                } else {
+                    times = seekSort.after(jobExecution, jobInstance, feed, ascending, token.getLastValue(), token.getLastId());
+                }
+            }
+            Predicate nullTimesWhere = new BooleanBuilder(where).and(nullTimes);
+            Predicate timesWhere = new BooleanBuilder(where).and(times);
+            jobs = new ArrayList<>();
+            if (ascending) {
+                if (token == null || tokenInNullTimes) {
+                    jobs.addAll(findSeekPage(jobExecution, jobInstance, feed, feedQuery, nullTimesWhere, limit + 1L, idOrder));
+                }
+                if (jobs.size() <= limit) {
+                    jobs.addAll(findSeekPage(jobExecution, jobInstance, feed, feedQuery, timesWhere, limit + 1L - jobs.size(), sortOrder, idOrder));
+                }
+            } else {
+                if (!tokenInNullTimes) {
+                    jobs.addAll(findSeekPage(jobExecution, jobInstance, feed, feedQuery, timesWhere, limit + 1L, sortOrder, idOrder));
+                }
+                if (jobs.size() <= limit) {
+                    jobs.addAll(findSeekPage(jobExecution, jobInstance, feed, feedQuery, nullTimesWhere, limit + 1L - jobs.size(), idOrder));
+                }
+            }
+        }
 
-        BooleanBuilder whereBuilder = new BooleanBuilder();
-        if (StringUtils.isNotBlank(filter)) {
-            whereBuilder.and(GenericQueryDslFilter.buildFilter(jobExecution, filter));
+        String nextToken = null;
+        if (jobs.size() > limit) {
+            jobs = jobs.subList(0, limit);
+            JpaBatchJobExecution last = jobs.get(limit - 1);
+            nextToken = new ContinuationToken(filter, seekSort.property, order.getDirection(), seekSort.value(last), last.getJobExecutionId(), total, totalCapped).encode();
         }
+        return new ContinuationPageImpl<>(jobs, nextToken, total, totalCapped);
+    }
 
-        JPAQuery
-            query = factory.select(
-            Projections.constructor(JpaBatchJobExecutionStatusCounts.class,
-                                    jobState.as("status"),
-                                    jobExecution.count().as("count")))
+    private List<JpaBatchJobExecution> findSeekPage(QJpaBatchJobExecution jobExecution, QJpaBatchJobInstance jobInstance, QJpaOpsManagerFeed feed, boolean feedQuery, Predicate where,
+                                                    long limit, OrderSpecifier<?>... orders) {
+        JPAQuery<JpaBatchJobExecution> query = factory.select(jobExecution)
             .from(jobExecution)
-            .where(whereBuilder)
-            .groupBy(jobState);
-
-        return (List<JobStatusCount>) query.fetch();
-
+            .join(jobExecution.jobInstance, jobInstance).fetchJoin()
+            .join(jobInstance.feed, feed).fetchJoin();
+        if (!feedQuery) {
+            query.join(jobExecution.nifiEventJobExecution).fetchJoin();
+        }
+        return query.where(where).orderBy(orders).limit(limit).fetch();
     }
 
+
+    /**
+     * Get count of Jobs grouped by Status
+     * Unfiltered and running or failed counts are read from the {@link JobStatusCountStore}, any other filter is counted from the job executions.
+     */
     @Override
-    public List<JobStatusCount> getJobStatusCountByDate() {
+    public List<JobStatusCount> getJobStatusCount(String filter) {
+        if (StringUtils.isBlank(filter)) {
+            return jobStatusCountStore.getJobStatusCount(null);
+        } else if (RUNNING_OR_FAILED_FILTER.equals(filter)) {
+            return jobStatusCountStore.getJobStatusCount(ImmutableList.of(JobStatusCountStore.RUNNING, JobStatusCountStore.FAILED));
+        }
 
         QJpaBatchJobExecution jobExecution = QJpaBatchJobExecution.jpaBatchJobExecution;
 
-        List<BatchJobExecution.JobStatus> runningStatus = ImmutableList.of(BatchJobExecution.JobStatus.STARTED, BatchJobExecution.JobStatus.STARTING);
+        StringExpression jobState = JobStatusCountStore.statusCountName(jobExecution);
 
-        com.querydsl.core.types.dsl.StringExpression jobState = new CaseBuilder().when(jobExecution.status.eq(BatchJobExecution.JobStatus.FAILED)).then("FAILED")
-            .when(jobExecution.status.in(runningStatus)).then("RUNNING")
-            .otherwise(jobExecution.status.stringValue());
+        BooleanBuilder whereBuilder = new BooleanBuilder();
+        whereBuilder.and(GenericQueryDslFilter.buildFilter(jobExecution, filter));
 
         JPAQuery
             query = factory.select(
             Projections.constructor(JpaBatchJobExecutionStatusCounts.class,
                                     jobState.as("status"),
-                                    jobExecution.startYear,
-                                    jobExecution.startMonth,
-                                    jobExecution.startDay,
                                     jobExecution.count().as("count")))
             .from(jobExecution)
-            .groupBy(jobState, jobExecution.startYear, jobExecution.startMonth, jobExecution.startDay);
+            .where(whereBuilder)
+            .groupBy(jobState);
 
         return (List<JobStatusCount>) query.fetch();
 
     }
 
+    @Override
+    public List<JobStatusCount> getJobStatusCountByDate() {
+        return jobStatusCountStore.getJobStatusCountByDate(null, null);
+    }
+
     /**
      * gets job executions grouped by status and Day looking back from Now - the supplied {@code period}
+     * Without a filter the counts are read from the {@link JobStatusCountStore}, which counts whole days so the first day includes the jobs started before Now - the {@code period}.
      *
      * @param period period to look back from the current time to get job execution status
      */
     @Override
     public List<JobStatusCount> getJobStatusCountByDateFromNow(ReadablePeriod period, String filter) {
+        if (StringUtils.isBlank(filter)) {
+            return jobStatusCountStore.getJobStatusCountByDate(null, DateTimeUtil.getNowUTCTime().minus(period));
+        }
 
         QJpaBatchJobExecution jobExecution = QJpaBatchJobExecution.jpaBatchJobExecution;
 
-        List<BatchJobExecution.JobStatus> runningStatus = ImmutableList.of(BatchJobExecution.JobStatus.STARTED, BatchJobExecution.JobStatus.STARTING);
-
-        com.querydsl.core.types.dsl.StringExpression jobState = new CaseBuilder().when(jobExecution.status.eq(BatchJobExecution.JobStatus.FAILED)).then("FAILED")
-            .when(jobExecution.status.in(runningStatus)).then("RUNNING")
-            .otherwise(jobExecution.status.stringValue());
+        StringExpression jobState = JobStatusCountStore.statusCountName(jobExecution);
 
         BooleanBuilder whereBuilder = new BooleanBuilder();
         whereBuilder.and(jobExecution.startTime.goe(DateTimeUtil.getNowUTCTime().minus(period)));
-        if (StringUtils.isNotBlank(filter)) {
-            whereBuilder.and(GenericQueryDslFilter.buildFilter(jobExecution, filter));
-        }
+        whereBuilder.and(GenericQueryDslFilter.buildFilter(jobExecution, filter));
 
         JPAQuery
             query = factory.select(
@@ -705,4 +914,91 @@ public class JpaBatchJobExecutionProvider extends QueryDslPagingSupport<JpaBatch
     */
 
 
+
+    /**
+     * The sort properties that job executions can be seeked on.
+     * Each is paired with the job execution id so the position is unique.
+     * The columns are compared directly, never through a function, so an index on the sort column can seek to the position.
+     * Jobs without a start or end time have an empty last value and are paged separately.
+     */
+    private enum SeekSort {
+        JOB_EXECUTION_ID("jobExecutionId"),
+        START_TIME("startTimeMillis"),
+        END_TIME("endTimeMillis"),
+        FEED_NAME(CommonFilterTranslations.jobExecutionFeedNameFilterKey),
+        JOB_NAME("jobInstance.jobName");
+
+        private final String property;
+
+        SeekSort(String property) {
+            this.property = property;
+        }
+
+        /**
+         * @return true if the sort column can be null
+         */
+        boolean isNullable() {
+            return this == START_TIME || this == END_TIME;
+        }
+
+        static SeekSort forProperty(String property) {
+            for (SeekSort seekSort : values()) {
+                if (seekSort.property.equalsIgnoreCase(property)) {
+                    return seekSort;
+                }
+            }
+            return null;
+        }
+
+        ComparableExpressionBase<?> expression(QJpaBatchJobExecution jobExecution, QJpaBatchJobInstance jobInstance, QJpaOpsManagerFeed feed) {
+            switch (this) {
+                case START_TIME:
+                    return jobExecution.startTimeMillis;
+                case END_TIME:
+                    return jobExecution.endTimeMillis;
+                case FEED_NAME:
+                    return feed.name;
+                case JOB_NAME:
+                    return jobInstance.jobName;
+                default:
+                    return jobExecution.jobExecutionId;
+            }
+        }
+
+        String value(JpaBatchJobExecution jobExecution) {
+            switch (this) {
+                case START_TIME:
+                    return jobExecution.getStartTimeMillis() != null ? Long.toString(jobExecution.getStartTimeMillis()) : "";
+                case END_TIME:
+                    return jobExecution.getEndTimeMillis() != null ? Long.toString(jobExecution.getEndTimeMillis()) : "";
+                case FEED_NAME:
+                    return jobExecution.getJobInstance().getFeed().getName();
+                case JOB_NAME:
+                    return jobExecution.getJobInstance().getJobName();
+                default:
+                    return Long.toString(jobExecution.getJobExecutionId());
+            }
+        }
+
+        /**
+         * Rows that sort after the given position, written as {@code a <= v and (a < v or id < x)} for a descending sort
+         * so the leading {@code a <= v} is a range the database can seek to rather than an OR it has to scan
+         */
+        @SuppressWarnings("unchecked")
+        Predicate after(QJpaBatchJobExecution jobExecution, QJpaBatchJobInstance jobInstance, QJpaOpsManagerFeed feed, boolean ascending, String lastValue, long lastId) {
+            ComparableExpressionBase<?> expression = expression(jobExecution, jobInstance, feed);
+            BooleanExpression idAfter = ascending ? jobExecution.jobExecutionId.gt(lastId) : jobExecution.jobExecutionId.lt(lastId);
+            if (this == JOB_EXECUTION_ID) {
+                return idAfter;
+            }
+            if (expression instanceof NumberExpression) {
+                NumberExpression<Long> number = (NumberExpression<Long>) expression;
+                Long value = Long.valueOf(lastValue);
+                return ascending ? number.goe(value).and(number.gt(value).or(idAfter)) : number.loe(value).and(number.lt(value).or(idAfter));
+            } else {
+                StringExpression string = (StringExpression) expression;
+                return ascending ? string.goe(lastValue).and(string.gt(lastValue).or(idAfter)) : string.loe(lastValue).and(string.lt(lastValue).or(idAfter));
+            }
+        }
+    }
 }
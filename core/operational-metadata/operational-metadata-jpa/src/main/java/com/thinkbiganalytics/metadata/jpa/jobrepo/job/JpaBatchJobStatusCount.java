@@ -0,0 +1,181 @@
+package com.thinkbiganalytics.metadata.jpa.jobrepo.job;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+/**
+ * A running count of the job executions for a feed that started on a given day and are in a given status.
+ * The status is the one reported by the job status charts: {@code FAILED}, {@code RUNNING} for started or starting jobs, or the job status name otherwise.
+ * Rows are maintained by the {@link JobStatusCountStore} as jobs are saved.
+ */
+@Entity
+@Table(name = "BATCH_JOB_STATUS_COUNT")
+public class JpaBatchJobStatusCount implements Serializable {
+
+    @EmbeddedId
+    private BatchJobStatusCountPK statusCountPK;
+
+    @Column(name = "JOB_COUNT", nullable = false)
+    private Long jobCount = 0L;
+
+    public JpaBatchJobStatusCount() {
+
+    }
+
+    public JpaBatchJobStatusCount(BatchJobStatusCountPK statusCountPK) {
+        this.statusCountPK = statusCountPK;
+    }
+
+    public JpaBatchJobStatusCount(String feedName, Integer startYear, Integer startMonth, Integer startDay, String status, Long jobCount) {
+        this.statusCountPK = new BatchJobStatusCountPK(feedName, startYear, startMonth, startDay, status);
+        this.jobCount = jobCount;
+    }
+
+    public BatchJobStatusCountPK getStatusCountPK() {
+        return statusCountPK;
+    }
+
+    public void setStatusCountPK(BatchJobStatusCountPK statusCountPK) {
+        this.statusCountPK = statusCountPK;
+    }
+
+    public Long getJobCount() {
+        return jobCount;
+    }
+
+    public void setJobCount(Long jobCount) {
+        this.jobCount = jobCount;
+    }
+
+    @Embeddable
+    public static class BatchJobStatusCountPK implements Serializable {
+
+        @Column(name = "FEED_NAME")
+        private String feedName;
+
+        @Column(name = "START_YEAR")
+        private Integer startYear;
+
+        @Column(name = "START_MONTH")
+        private Integer startMonth;
+
+        @Column(name = "START_DAY")
+        private Integer startDay;
+
+        @Column(name = "STATUS", length = 10)
+        private String status;
+
+        public BatchJobStatusCountPK() {
+
+        }
+
+        public BatchJobStatusCountPK(String feedName, Integer startYear, Integer startMonth, Integer startDay, String status) {
+            this.feedName = feedName;
+            this.startYear = startYear;
+            this.startMonth = startMonth;
+            this.startDay = startDay;
+            this.status = status;
+        }
+
+        public String getFeedName() {
+            return feedName;
+        }
+
+        public void setFeedName(String feedName) {
+            this.feedName = feedName;
+        }
+
+        public Integer getStartYear() {
+            return startYear;
+        }
+
+        public void setStartYear(Integer startYear) {
+            this.startYear = startYear;
+        }
+
+        public Integer getStartMonth() {
+            return startMonth;
+        }
+
+        public void setStartMonth(Integer startMonth) {
+            this.startMonth = startMonth;
+        }
+
+        public Integer getStartDay() {
+            return startDay;
+        }
+
+        public void setStartDay(Integer startDay) {
+            this.startDay = startDay;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            BatchJobStatusCountPK that = (BatchJobStatusCountPK) o;
+
+            if (!feedName.equals(that.feedName)) {
+                return false;
+            }
+            if (!startYear.equals(that.startYear)) {
+                return false;
+            }
+            if (!startMonth.equals(that.startMonth)) {
+                return false;
+            }
+            if (!startDay.equals(that.startDay)) {
+                return false;
+            }
+            return status.equals(that.status);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = feedName.hashCode();
+            result = 31 * result + startYear.hashCode();
+            result = 31 * result + startMonth.hashCode();
+            result = 31 * result + startDay.hashCode();
+            result = 31 * result + status.hashCode();
+            return result;
+        }
+    }
+}
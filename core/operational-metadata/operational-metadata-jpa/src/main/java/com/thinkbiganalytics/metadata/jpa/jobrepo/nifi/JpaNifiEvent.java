@@ -33,13 +33,14 @@ import javax.persistence.Column;
 import javax.persistence.Embeddable;
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
 /**
  * Entity to store the NiFi Provenance Events
  */
 @Entity
-@Table(name = "NIFI_EVENT")
+@Table(name = "NIFI_EVENT", indexes = @Index(name = "NIFI_EVENT_IDX2", columnList = "JOB_FLOW_FILE_ID"))
 public class JpaNifiEvent extends AbstractAuditedEntity implements NifiEvent {
 
     @Column(name = "CLUSTER_NODE_ID")
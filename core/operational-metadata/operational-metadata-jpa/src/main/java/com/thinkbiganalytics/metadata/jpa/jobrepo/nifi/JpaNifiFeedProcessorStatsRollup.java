@@ -0,0 +1,295 @@
+package com.thinkbiganalytics.metadata.jpa.jobrepo.nifi;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiFeedProcessorStats;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Type;
+import org.joda.time.DateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Statistics for a feed and processor pre-aggregated into a fixed time bucket (minute, hour or day).
+ * Rows are maintained incrementally as each {@link JpaNifiFeedProcessorStats} record is saved so that queries over large time frames
+ * only need to read one row per processor per bucket rather than every raw collection interval.
+ * The unique key stops two Kylo nodes from each creating a row for the same new bucket.
+ */
+@Entity
+@Table(name = "NIFI_FEED_PROCESSOR_STATS_ROLLUP",
+       uniqueConstraints = @UniqueConstraint(name = "UK_NIFI_STATS_ROLLUP_FEED_BUCKET", columnNames = {"FM_FEED_NAME", "BUCKET", "BUCKET_TIME", "NIFI_PROCESSOR_ID"}))
+public class JpaNifiFeedProcessorStatsRollup {
+
+    @Id
+    @GeneratedValue(generator = "uuid2")
+    @GenericGenerator(name = "uuid2", strategy = "uuid2")
+    @Column(name = "id", unique = true)
+    private String id;
+    @Enumerated(EnumType.STRING)
+    @Column(name = "BUCKET", length = 10)
+    private Bucket bucket;
+    @Type(type = "org.jadira.usertype.dateandtime.joda.PersistentDateTime")
+    @Column(name = "BUCKET_TIME")
+    private DateTime bucketTime;
+    @Column(name = "FM_FEED_NAME")
+    private String feedName;
+    @Column(name = "NIFI_PROCESSOR_ID")
+    private String processorId;
+    @Column(name = "PROCESSOR_NAME")
+    private String processorName;
+    @Column(name = "NIFI_FEED_PROCESS_GROUP_ID")
+    private String feedProcessGroupId;
+    @Type(type = "org.jadira.usertype.dateandtime.joda.PersistentDateTime")
+    @Column(name = "MIN_EVENT_TIME")
+    private DateTime minEventTime;
+    @Type(type = "org.jadira.usertype.dateandtime.joda.PersistentDateTime")
+    @Column(name = "MAX_EVENT_TIME")
+    private DateTime maxEventTime;
+    @Column(name = "DURATION_MILLIS")
+    private Long duration = 0L;
+    @Column(name = "BYTES_IN")
+    private Long bytesIn = 0L;
+    @Column(name = "BYTES_OUT")
+    private Long bytesOut = 0L;
+    @Column(name = "TOTAL_EVENTS")
+    private Long totalCount = 0L;
+    @Column(name = "JOBS_STARTED")
+    private Long jobsStarted = 0L;
+    @Column(name = "JOBS_FINISHED")
+    private Long jobsFinished = 0L;
+    @Column(name = "JOBS_FAILED")
+    private Long jobsFailed = 0L;
+    @Column(name = "JOB_DURATION")
+    private Long jobDuration = 0L;
+    @Column(name = "SUCCESSFUL_JOB_DURATION")
+    private Long successfulJobDuration = 0L;
+    @Column(name = "PROCESSORS_FAILED")
+    private Long processorsFailed = 0L;
+    @Column(name = "FLOW_FILES_STARTED")
+    private Long flowFilesStarted = 0L;
+    @Column(name = "FLOW_FILES_FINISHED")
+    private Long flowFilesFinished = 0L;
+    /**
+     * the number of raw stats records that have been added to this bucket
+     */
+    @Column(name = "RAW_COUNT")
+    private Long rawCount = 0L;
+
+    public JpaNifiFeedProcessorStatsRollup() {
+    }
+
+    public JpaNifiFeedProcessorStatsRollup(Bucket bucket, DateTime bucketTime, String feedName, String processorId) {
+        this.bucket = bucket;
+        this.bucketTime = bucketTime;
+        this.feedName = feedName;
+        this.processorId = processorId;
+    }
+
+    private static Long add(Long current, Long value) {
+        if (value == null) {
+            return current;
+        }
+        return current == null ? value : current + value;
+    }
+
+    /**
+     * Add the counts of a raw stats record to this bucket
+     *
+     * @param stats the raw stats that fall into this bucket
+     */
+    public void add(NifiFeedProcessorStats stats) {
+        if (stats.getProcessorName() != null) {
+            processorName = stats.getProcessorName();
+        }
+        if (stats.getFeedProcessGroupId() != null) {
+            feedProcessGroupId = stats.getFeedProcessGroupId();
+        }
+        if (stats.getMinEventTime() != null && (minEventTime == null || stats.getMinEventTime().isBefore(minEventTime))) {
+            minEventTime = stats.getMinEventTime();
+        }
+        if (stats.getMaxEventTime() != null && (maxEventTime == null || stats.getMaxEventTime().isAfter(maxEventTime))) {
+            maxEventTime = stats.getMaxEventTime();
+        }
+        duration = add(duration, stats.getDuration());
+        bytesIn = add(bytesIn, stats.getBytesIn());
+        bytesOut = add(bytesOut, stats.getBytesOut());
+        totalCount = add(totalCount, stats.getTotalCount());
+        jobsStarted = add(jobsStarted, stats.getJobsStarted());
+        jobsFinished = add(jobsFinished, stats.getJobsFinished());
+        jobsFailed = add(jobsFailed, stats.getJobsFailed());
+        jobDuration = add(jobDuration, stats.getJobDuration());
+        successfulJobDuration = add(successfulJobDuration, stats.getSuccessfulJobDuration());
+        processorsFailed = add(processorsFailed, stats.getProcessorsFailed());
+        flowFilesStarted = add(flowFilesStarted, stats.getFlowFilesStarted());
+        flowFilesFinished = add(flowFilesFinished, stats.getFlowFilesFinished());
+        rawCount = add(rawCount, 1L);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Bucket getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(Bucket bucket) {
+        this.bucket = bucket;
+    }
+
+    public DateTime getBucketTime() {
+        return bucketTime;
+    }
+
+    public void setBucketTime(DateTime bucketTime) {
+        this.bucketTime = bucketTime;
+    }
+
+    public String getFeedName() {
+        return feedName;
+    }
+
+    public void setFeedName(String feedName) {
+        this.feedName = feedName;
+    }
+
+    public String getProcessorId() {
+        return processorId;
+    }
+
+    public void setProcessorId(String processorId) {
+        this.processorId = processorId;
+    }
+
+    public String getProcessorName() {
+        return processorName;
+    }
+
+    public void setProcessorName(String processorName) {
+        this.processorName = processorName;
+    }
+
+    public String getFeedProcessGroupId() {
+        return feedProcessGroupId;
+    }
+
+    public void setFeedProcessGroupId(String feedProcessGroupId) {
+        this.feedProcessGroupId = feedProcessGroupId;
+    }
+
+    public DateTime getMinEventTime() {
+        return minEventTime;
+    }
+
+    public DateTime getMaxEventTime() {
+        return maxEventTime;
+    }
+
+    public Long getDuration() {
+        return duration;
+    }
+
+    public Long getBytesIn() {
+        return bytesIn;
+    }
+
+    public Long getBytesOut() {
+        return bytesOut;
+    }
+
+    public Long getTotalCount() {
+        return totalCount;
+    }
+
+    public Long getJobsStarted() {
+        return jobsStarted;
+    }
+
+    public Long getJobsFinished() {
+        return jobsFinished;
+    }
+
+    public Long getJobsFailed() {
+        return jobsFailed;
+    }
+
+    public Long getJobDuration() {
+        return jobDuration;
+    }
+
+    public Long getSuccessfulJobDuration() {
+        return successfulJobDuration;
+    }
+
+    public Long getProcessorsFailed() {
+        return processorsFailed;
+    }
+
+    public Long getFlowFilesStarted() {
+        return flowFilesStarted;
+    }
+
+    public Long getFlowFilesFinished() {
+        return flowFilesFinished;
+    }
+
+    public Long getRawCount() {
+        return rawCount;
+    }
+
+    /**
+     * The size of the time bucket a rollup row covers
+     */
+    public static enum Bucket {
+        MINUTE(1000L * 60), HOUR(MINUTE.millis * 60), DAY(HOUR.millis * 24);
+
+        private final long millis;
+
+        Bucket(long millis) {
+            this.millis = millis;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * Truncate the time down to the start of the bucket that contains it.
+         * Buckets are aligned to the epoch so a day bucket starts at midnight UTC.
+         */
+        public DateTime bucketStart(DateTime time) {
+            long t = time.getMillis();
+            return new DateTime(t - Math.floorMod(t, millis));
+        }
+    }
+}
@@ -29,15 +29,34 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
 /**
  * Provider creating and accessing the {@link JpaNifiEvent}
  */
 @Service
 public class NifiEventProvider {
 
+    /**
+     * The max number of event ids used in a single query when checking for existing events
+     */
+    private static final int EXISTS_QUERY_BATCH_SIZE = 500;
+
     @Autowired
     private JPAQueryFactory factory;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
     private NifiEventRepository repository;
 
     @Autowired
@@ -86,4 +105,44 @@ public class NifiEventProvider {
         return repository.exists(new JpaNifiEvent.NiFiEventPK(eventRecordDTO.getEventId(), eventRecordDTO.getFlowFileUuid()));
     }
 
+    /**
+     * Find the events that have not been saved yet, querying for the existing events in batches instead of one query per event
+     *
+     * @param events the provenance events to check
+     * @return the events that do not exist, in the same order as the incoming {@code events}.  Only the first event is kept if the same event is in the list more than once.
+     */
+    public List<ProvenanceEventRecordDTO> findNewEvents(List<ProvenanceEventRecordDTO> events) {
+        Set<JpaNifiEvent.NiFiEventPK> existing = new HashSet<>();
+        List<Long> eventIds = events.stream().map(ProvenanceEventRecordDTO::getEventId).distinct().collect(Collectors.toList());
+        for (int i = 0; i < eventIds.size(); i += EXISTS_QUERY_BATCH_SIZE) {
+            existing.addAll(repository.findEventKeys(eventIds.subList(i, Math.min(i + EXISTS_QUERY_BATCH_SIZE, eventIds.size()))));
+        }
+        //adding the key marks it as existing so a duplicate later in the list is dropped
+        return events.stream()
+            .filter(event -> existing.add(new JpaNifiEvent.NiFiEventPK(event.getEventId(), event.getFlowFileUuid())))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Persist new events.
+     * The events are persisted rather than merged since they are known to be new, which allows the inserts to be sent to the database as a JDBC batch when the transaction is flushed.
+     * An event that is in the list more than once is only persisted once, since a duplicate key would fail the whole batch when it is flushed.
+     *
+     * @param events new provenance events that do not exist in the database
+     * @return the nifi events, one for each incoming event.  Duplicate events share the same nifi event.
+     */
+    public List<NifiEvent> create(List<ProvenanceEventRecordDTO> events) {
+        List<NifiEvent> nifiEvents = new ArrayList<>(events.size());
+        Map<JpaNifiEvent.NiFiEventPK, NifiEvent> persisted = new HashMap<>(events.size());
+        for (ProvenanceEventRecordDTO event : events) {
+            NifiEvent nifiEvent = persisted.computeIfAbsent(new JpaNifiEvent.NiFiEventPK(event.getEventId(), event.getFlowFileUuid()), key -> {
+                NifiEvent newEvent = toNifiEvent(event);
+                entityManager.persist(newEvent);
+                return newEvent;
+            });
+            nifiEvents.add(nifiEvent);
+        }
+        return nifiEvents;
+    }
+
 }
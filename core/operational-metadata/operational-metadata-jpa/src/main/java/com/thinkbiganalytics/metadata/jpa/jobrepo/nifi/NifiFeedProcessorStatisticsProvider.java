@@ -26,13 +26,23 @@ import com.querydsl.core.types.Projections;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiFeedProcessorStats;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.JpaNifiFeedProcessorStatsRollup.Bucket;
 
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Provider for accessing the statstics for a feed and processor
@@ -40,23 +50,137 @@ import java.util.List;
 @Service
 public class NifiFeedProcessorStatisticsProvider implements com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiFeedProcessorStatisticsProvider {
 
+    private static final Logger log = LoggerFactory.getLogger(NifiFeedProcessorStatisticsProvider.class);
+
+    /**
+     * The minimum number of buckets a time window needs to span before the rollup for that bucket size is queried instead of finer grained data
+     */
+    private static final int MIN_BUCKETS_PER_WINDOW = 24;
+
     @Autowired
     private JPAQueryFactory factory;
 
     private NifiFeedProcessorStatisticsRepository statisticsRepository;
 
+    private NifiFeedProcessorStatsRollupRepository rollupRepository;
+
     private NifiEventRepository nifiEventRepository;
 
+    /**
+     * The number of days raw stats are kept. Queries that start before this use the rollups.
+     */
+    @Value("${kylo.ops.mgr.stats.raw.retention.days:7}")
+    private int rawRetentionDays = 7;
+
     @Autowired
-    public NifiFeedProcessorStatisticsProvider(NifiFeedProcessorStatisticsRepository repository, NifiEventRepository nifiEventRepository) {
+    public NifiFeedProcessorStatisticsProvider(NifiFeedProcessorStatisticsRepository repository, NifiFeedProcessorStatsRollupRepository rollupRepository,
+                                               NifiEventRepository nifiEventRepository) {
         this.statisticsRepository = repository;
+        this.rollupRepository = rollupRepository;
         this.nifiEventRepository = nifiEventRepository;
     }
 
 
     @Override
     public NifiFeedProcessorStats create(NifiFeedProcessorStats t) {
-        return statisticsRepository.save((JpaNifiFeedProcessorStats) t);
+        JpaNifiFeedProcessorStats stats = statisticsRepository.save((JpaNifiFeedProcessorStats) t);
+        rollup(Lists.newArrayList(stats));
+        return stats;
+    }
+
+    @Override
+    public List<? extends JpaNifiFeedProcessorStats> create(List<NifiFeedProcessorStats> stats) {
+        List<JpaNifiFeedProcessorStats> saved = statisticsRepository.save(stats.stream().map(s -> (JpaNifiFeedProcessorStats) s).collect(Collectors.toList()));
+        rollup(saved);
+        return saved;
+    }
+
+    @Override
+    public int deleteRawStatisticsOlderThan(DateTime time) {
+        // the newest stats of each cluster node hold the event id NiFi resumes from, so they are kept however old they are
+        List<Long> keepEventIds = statisticsRepository.findMaxEventIdPerClusterNode().stream().filter(Objects::nonNull).collect(Collectors.toList());
+        int deleted = keepEventIds.isEmpty() ? statisticsRepository.deleteOlderThan(time) : statisticsRepository.deleteOlderThan(time, keepEventIds);
+        log.info("Removed {} raw feed processor statistics older than {}", deleted, time);
+        return deleted;
+    }
+
+    public int getRawRetentionDays() {
+        return rawRetentionDays;
+    }
+
+    public void setRawRetentionDays(int rawRetentionDays) {
+        this.rawRetentionDays = rawRetentionDays;
+    }
+
+    /**
+     * Add the stats to their minute, hour and day rollups.
+     * All the buckets touched by the stats are loaded and locked with one query, updated in memory and saved.
+     * If another transaction creates one of the same new buckets first the unique key on the rollup table fails this transaction and the caller should retry it.
+     */
+    private void rollup(List<? extends NifiFeedProcessorStats> statsList) {
+        Set<String> feedNames = new HashSet<>();
+        Set<DateTime> bucketTimes = new HashSet<>();
+        for (NifiFeedProcessorStats stats : statsList) {
+            DateTime time = bucketEventTime(stats);
+            if (time != null) {
+                feedNames.add(stats.getFeedName());
+                for (Bucket bucket : Bucket.values()) {
+                    bucketTimes.add(bucket.bucketStart(time));
+                }
+            }
+        }
+        if (feedNames.isEmpty()) {
+            return;
+        }
+
+        Map<String, JpaNifiFeedProcessorStatsRollup> rollups = new HashMap<>();
+        for (JpaNifiFeedProcessorStatsRollup existing : rollupRepository.findForBuckets(feedNames, bucketTimes)) {
+            rollups.put(rollupKey(existing.getBucket(), existing.getBucketTime(), existing.getFeedName(), existing.getProcessorId()), existing);
+        }
+
+        Map<String, JpaNifiFeedProcessorStatsRollup> updated = new HashMap<>();
+        for (NifiFeedProcessorStats stats : statsList) {
+            DateTime time = bucketEventTime(stats);
+            if (time == null) {
+                continue;
+            }
+            for (Bucket bucket : Bucket.values()) {
+                DateTime bucketTime = bucket.bucketStart(time);
+                String key = rollupKey(bucket, bucketTime, stats.getFeedName(), stats.getProcessorId());
+                JpaNifiFeedProcessorStatsRollup rollup = rollups.computeIfAbsent(key, k -> new JpaNifiFeedProcessorStatsRollup(bucket, bucketTime, stats.getFeedName(), stats.getProcessorId()));
+                rollup.add(stats);
+                updated.put(key, rollup);
+            }
+        }
+        rollupRepository.save(updated.values());
+    }
+
+    private DateTime bucketEventTime(NifiFeedProcessorStats stats) {
+        return stats.getMinEventTime() != null ? stats.getMinEventTime() : stats.getMaxEventTime();
+    }
+
+    private String rollupKey(Bucket bucket, DateTime bucketTime, String feedName, String processorId) {
+        return bucket + "|" + bucketTime.getMillis() + "|" + feedName + "|" + processorId;
+    }
+
+    /**
+     * Pick the coarsest rollup that still gives at least {@link #MIN_BUCKETS_PER_WINDOW} buckets over the window.
+     * Short windows read the raw stats unless they start before the raw stats have been purged.
+     *
+     * @return the bucket to query, or null to query the raw stats
+     */
+    public Bucket bucketFor(DateTime start, DateTime end) {
+        long window = end.getMillis() - start.getMillis();
+        Bucket selected = null;
+        for (Bucket bucket : Bucket.values()) {
+            if (bucket.getMillis() * MIN_BUCKETS_PER_WINDOW <= window) {
+                selected = bucket;
+            }
+        }
+        if (selected == null && rawRetentionDays > 0 && start.isBefore(DateTime.now().minusDays(rawRetentionDays))) {
+            selected = Bucket.MINUTE;
+        }
+        return selected;
     }
 
     public List<? extends JpaNifiFeedProcessorStats> findFeedProcessorStatisticsByProcessorId(String feedName, TimeFrame timeFrame) {
@@ -114,6 +238,16 @@ public class NifiFeedProcessorStatisticsProvider implements com.thinkbiganalytic
 
     @Override
     public List<? extends JpaNifiFeedProcessorStats> findFeedProcessorStatisticsByProcessorId(String feedName, DateTime start, DateTime end) {
+        return findFeedProcessorStatisticsByProcessorId(feedName, start, end, bucketFor(start, end));
+    }
+
+    /**
+     * Query the stats using the given rollup bucket, or the raw stats if the bucket is null
+     */
+    public List<? extends JpaNifiFeedProcessorStats> findFeedProcessorStatisticsByProcessorId(String feedName, DateTime start, DateTime end, Bucket bucket) {
+        if (bucket != null) {
+            return findFeedProcessorStatisticsByProcessorIdRollup(feedName, start, end, bucket);
+        }
         QJpaNifiFeedProcessorStats stats = QJpaNifiFeedProcessorStats.jpaNifiFeedProcessorStats;
         JPAQuery
             query = factory.select(
@@ -138,6 +272,16 @@ public class NifiFeedProcessorStatisticsProvider implements com.thinkbiganalytic
 
     @Override
     public List<? extends JpaNifiFeedProcessorStats> findFeedProcessorStatisticsByProcessorName(String feedName, DateTime start, DateTime end) {
+        return findFeedProcessorStatisticsByProcessorName(feedName, start, end, bucketFor(start, end));
+    }
+
+    /**
+     * Query the stats using the given rollup bucket, or the raw stats if the bucket is null
+     */
+    public List<? extends JpaNifiFeedProcessorStats> findFeedProcessorStatisticsByProcessorName(String feedName, DateTime start, DateTime end, Bucket bucket) {
+        if (bucket != null) {
+            return findFeedProcessorStatisticsByProcessorNameRollup(feedName, start, end, bucket);
+        }
         QJpaNifiFeedProcessorStats stats = QJpaNifiFeedProcessorStats.jpaNifiFeedProcessorStats;
         JPAQuery
             query = factory.select(
@@ -160,6 +304,16 @@ public class NifiFeedProcessorStatisticsProvider implements com.thinkbiganalytic
     }
 
     public List<? extends JpaNifiFeedProcessorStats> findForFeedStatisticsGroupedByTime(String feedName, DateTime start, DateTime end) {
+        return findForFeedStatisticsGroupedByTime(feedName, start, end, bucketFor(start, end));
+    }
+
+    /**
+     * Query the stats using the given rollup bucket, or the raw stats if the bucket is null
+     */
+    public List<? extends JpaNifiFeedProcessorStats> findForFeedStatisticsGroupedByTime(String feedName, DateTime start, DateTime end, Bucket bucket) {
+        if (bucket != null) {
+            return findForFeedStatisticsGroupedByTimeRollup(feedName, start, end, bucket);
+        }
         QJpaNifiFeedProcessorStats stats = QJpaNifiFeedProcessorStats.jpaNifiFeedProcessorStats;
         JPAQuery
             query = factory.select(
@@ -183,6 +337,81 @@ public class NifiFeedProcessorStatisticsProvider implements com.thinkbiganalytic
         return (List<JpaNifiFeedProcessorStats>) query.fetch();
     }
 
+    /**
+     * Match the buckets overlapping the window. The start is aligned down to its bucket so the partial leading bucket is included.
+     */
+    private Predicate rollupWithin(String feedName, DateTime start, DateTime end, Bucket bucket) {
+        QJpaNifiFeedProcessorStatsRollup rollup = QJpaNifiFeedProcessorStatsRollup.jpaNifiFeedProcessorStatsRollup;
+        return rollup.feedName.eq(feedName)
+            .and(rollup.bucket.eq(bucket))
+            .and(rollup.bucketTime.goe(bucket.bucketStart(start)))
+            .and(rollup.bucketTime.loe(end));
+    }
+
+    private List<? extends JpaNifiFeedProcessorStats> findFeedProcessorStatisticsByProcessorIdRollup(String feedName, DateTime start, DateTime end, Bucket bucket) {
+        QJpaNifiFeedProcessorStatsRollup rollup = QJpaNifiFeedProcessorStatsRollup.jpaNifiFeedProcessorStatsRollup;
+        JPAQuery
+            query = factory.select(
+            Projections.bean(JpaNifiFeedProcessorStats.class,
+                             rollup.feedName, rollup.processorId, rollup.processorName,
+                             rollup.bytesIn.sum().as("bytesIn"), rollup.bytesOut.sum().as("bytesOut"), rollup.duration.sum().as("duration"),
+                             rollup.jobsStarted.sum().as("jobsStarted"), rollup.jobsFinished.sum().as("jobsFinished"), rollup.jobDuration.sum().as("jobDuration"),
+                             rollup.flowFilesStarted.sum().as("flowFilesStarted"), rollup.flowFilesFinished.sum().as("flowFilesFinished"), rollup.totalCount.sum().as("totalCount"),
+                             rollup.maxEventTime.max().as("maxEventTime"), rollup.minEventTime.min().as("minEventTime"), rollup.jobsFailed.sum().as("jobsFailed"),
+                             rollup.rawCount.sum().as("resultSetCount"))
+        )
+            .from(rollup)
+            .where(rollupWithin(feedName, start, end, bucket))
+            .groupBy(rollup.feedName, rollup.processorId, rollup.processorName)
+            .orderBy(rollup.processorName.asc());
+
+        return (List<JpaNifiFeedProcessorStats>) query.fetch();
+    }
+
+    private List<? extends JpaNifiFeedProcessorStats> findFeedProcessorStatisticsByProcessorNameRollup(String feedName, DateTime start, DateTime end, Bucket bucket) {
+        QJpaNifiFeedProcessorStatsRollup rollup = QJpaNifiFeedProcessorStatsRollup.jpaNifiFeedProcessorStatsRollup;
+        JPAQuery
+            query = factory.select(
+            Projections.bean(JpaNifiFeedProcessorStats.class,
+                             rollup.feedName, rollup.processorName,
+                             rollup.bytesIn.sum().as("bytesIn"), rollup.bytesOut.sum().as("bytesOut"), rollup.duration.sum().as("duration"),
+                             rollup.jobsStarted.sum().as("jobsStarted"), rollup.jobsFinished.sum().as("jobsFinished"), rollup.jobDuration.sum().as("jobDuration"),
+                             rollup.flowFilesStarted.sum().as("flowFilesStarted"), rollup.flowFilesFinished.sum().as("flowFilesFinished"), rollup.totalCount.sum().as("totalCount"),
+                             rollup.maxEventTime.max().as("maxEventTime"), rollup.minEventTime.min().as("minEventTime"), rollup.jobsFailed.sum().as("jobsFailed"),
+                             rollup.rawCount.sum().as("resultSetCount"))
+        )
+            .from(rollup)
+            .where(rollupWithin(feedName, start, end, bucket))
+            .groupBy(rollup.feedName, rollup.processorName)
+            .orderBy(rollup.processorName.asc());
+
+        return (List<JpaNifiFeedProcessorStats>) query.fetch();
+    }
+
+    /**
+     * Each bucket is returned as a single point in time using the start of the bucket as its maxEventTime
+     */
+    private List<? extends JpaNifiFeedProcessorStats> findForFeedStatisticsGroupedByTimeRollup(String feedName, DateTime start, DateTime end, Bucket bucket) {
+        QJpaNifiFeedProcessorStatsRollup rollup = QJpaNifiFeedProcessorStatsRollup.jpaNifiFeedProcessorStatsRollup;
+        JPAQuery
+            query = factory.select(
+            Projections.bean(JpaNifiFeedProcessorStats.class,
+                             rollup.feedName,
+                             rollup.bytesIn.sum().as("bytesIn"), rollup.bytesOut.sum().as("bytesOut"), rollup.duration.sum().as("duration"),
+                             rollup.jobsStarted.sum().as("jobsStarted"), rollup.jobsFinished.sum().as("jobsFinished"), rollup.jobDuration.sum().as("jobDuration"),
+                             rollup.flowFilesStarted.sum().as("flowFilesStarted"), rollup.flowFilesFinished.sum().as("flowFilesFinished"),
+                             rollup.bucketTime.as("maxEventTime"),
+                             rollup.jobsFailed.sum().as("jobsFailed"), rollup.totalCount.sum().as("totalCount"),
+                             rollup.rawCount.sum().as("resultSetCount"))
+        )
+            .from(rollup)
+            .where(rollupWithin(feedName, start, end, bucket))
+            .groupBy(rollup.feedName, rollup.bucketTime)
+            .orderBy(rollup.bucketTime.asc());
+
+        return (List<JpaNifiFeedProcessorStats>) query.fetch();
+    }
+
 
     @Override
     public Long findMaxEventId(String clusterNodeId) {
@@ -22,10 +22,12 @@ package com.thinkbiganalytics.metadata.jpa.jobrepo.nifi;
 
 import org.joda.time.DateTime;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.querydsl.QueryDslPredicateExecutor;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -42,4 +44,15 @@ public interface NifiFeedProcessorStatisticsRepository extends JpaRepository<Jpa
     @Query(value = "select max(stats.maxEventId) from JpaNifiFeedProcessorStats as stats where stats.clusterNodeId = :clusterNodeId")
     Long findMaxEventId(@Param("clusterNodeId") String clusterNodeId);
 
+    @Query(value = "select max(stats.maxEventId) from JpaNifiFeedProcessorStats as stats group by stats.clusterNodeId")
+    List<Long> findMaxEventIdPerClusterNode();
+
+    @Modifying
+    @Query(value = "delete from JpaNifiFeedProcessorStats as stats where stats.maxEventTime < :time")
+    int deleteOlderThan(@Param("time") DateTime time);
+
+    @Modifying
+    @Query(value = "delete from JpaNifiFeedProcessorStats as stats where stats.maxEventTime < :time and stats.maxEventId not in (:keepEventIds)")
+    int deleteOlderThan(@Param("time") DateTime time, @Param("keepEventIds") Collection<Long> keepEventIds);
+
 }
@@ -176,6 +176,17 @@ public class JpaMetricAssessment<D extends Serializable> extends AbstractAudited
         this.comparables = comparables;
     }
 
+    List<Comparable<? extends Serializable>> getComparables() {
+        return comparables;
+    }
+
+    /**
+     * @return true if this assessment is compared using the {@link DefaultComparator}
+     */
+    boolean isDefaultComparator() {
+        return comparator instanceof JpaMetricAssessment.DefaultComparator;
+    }
+
     public String getMetricDescription() {
         return metricDescription;
     }
@@ -158,6 +158,17 @@ public class JpaObligationAssessment extends AbstractAuditedEntity implements Ob
         this.comparables = comparables;
     }
 
+    List<Comparable<? extends Serializable>> getComparables() {
+        return comparables;
+    }
+
+    /**
+     * @return true if this assessment is compared using the {@link #DEF_COMPARATOR}
+     */
+    boolean isDefaultComparator() {
+        return comparator == DEF_COMPARATOR;
+    }
+
     @Override
     public int compareTo(ObligationAssessment obAssessment) {
         return this.comparator.compare(this, obAssessment);
@@ -35,6 +35,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -52,6 +54,9 @@ public class JpaServiceLevelAssessmentProvider implements ServiceLevelAssessment
     @Inject
     private ServiceLevelAgreementProvider slaProvider;
 
+    @Inject
+    private ServiceLevelAssessmentFingerprintStore fingerprintStore;
+
     /**
      * metadataAccess.commit(() -> { ServiceLevelAgreement sla = slaProvider.getAgreement(slaId);
      */
@@ -79,7 +84,23 @@ public class JpaServiceLevelAssessmentProvider implements ServiceLevelAssessment
      * @return the saved assessment
      */
     public ServiceLevelAssessment save(ServiceLevelAssessment assessment) {
-        return this.serviceLevelAssessmentRepository.save((JpaServiceLevelAssessment) assessment);
+        fingerprintStore.ensureLoaded();
+        JpaServiceLevelAssessment saved = this.serviceLevelAssessmentRepository.save((JpaServiceLevelAssessment) assessment);
+        fingerprintStore.saved(Collections.singleton((JpaServiceLevelAssessment) assessment));
+        return saved;
+    }
+
+    /**
+     * save a batch of sla assessments to the database
+     *
+     * @param assessments the assessments to save
+     * @return the saved assessments
+     */
+    public List<JpaServiceLevelAssessment> saveAll(Collection<JpaServiceLevelAssessment> assessments) {
+        fingerprintStore.ensureLoaded();
+        List<JpaServiceLevelAssessment> saved = this.serviceLevelAssessmentRepository.save(assessments);
+        fingerprintStore.saved(assessments);
+        return saved;
     }
 
     /**
@@ -45,4 +45,10 @@ public interface JpaServiceLevelAssessmentRepository extends JpaRepository<JpaSe
            + "                              and assessment2.id != :assessmentId)")
     List<JpaServiceLevelAssessment> findLatestAssessmentsNotEqualTo(@Param("id") String id, @Param("assessmentId") ServiceLevelAssessment.ID assessmentId);
 
+    @Query(" select assessment from JpaServiceLevelAssessment assessment "
+           + "where assessment.createdTime = (select max(assessment2.createdTime) "
+           + "                              from JpaServiceLevelAssessment as assessment2 "
+           + "                              where assessment2.slaId = assessment.slaId)")
+    List<JpaServiceLevelAssessment> findLatestAssessmentsForAllAgreements();
+
 }
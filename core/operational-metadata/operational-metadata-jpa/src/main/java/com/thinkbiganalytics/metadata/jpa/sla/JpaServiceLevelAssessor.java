@@ -23,6 +23,7 @@ package com.thinkbiganalytics.metadata.jpa.sla;
  * #L%
  */
 
+import com.google.common.collect.Lists;
 import com.thinkbiganalytics.metadata.api.MetadataAccess;
 import com.thinkbiganalytics.metadata.sla.api.AssessmentResult;
 import com.thinkbiganalytics.metadata.sla.api.Metric;
@@ -35,6 +36,7 @@ import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAgreement;
 import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAgreement.ID;
 import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAssessment;
 import com.thinkbiganalytics.metadata.sla.spi.AssessorNotFoundException;
+import com.thinkbiganalytics.metadata.sla.spi.BatchMetricAssessor;
 import com.thinkbiganalytics.metadata.sla.spi.MetricAssessmentBuilder;
 import com.thinkbiganalytics.metadata.sla.spi.MetricAssessor;
 import com.thinkbiganalytics.metadata.sla.spi.ObligationAssessmentBuilder;
@@ -44,17 +46,29 @@ import com.thinkbiganalytics.metadata.sla.spi.ServiceLevelAssessor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 /**
@@ -74,6 +88,14 @@ public class JpaServiceLevelAssessor implements ServiceLevelAssessor {
     private ServiceLevelAgreementProvider agreementProvider;
 
 
+    /**
+     * The number of SLAs assessed concurrently when assessing a batch of SLAs
+     */
+    @Value("${sla.assessment.parallelism:4}")
+    private int parallelism = 4;
+
+    private ForkJoinPool assessmentPool;
+
     private ObligationAssessor<? extends Obligation> defaultObligationAssessor;
 
     private Set<ObligationAssessor<? extends Obligation>> obligationAssessors;
@@ -86,6 +108,23 @@ public class JpaServiceLevelAssessor implements ServiceLevelAssessor {
         this.defaultObligationAssessor = new DefaultObligationAssessor();
     }
 
+    @PostConstruct
+    private void startAssessmentPool() {
+        this.parallelism = Math.max(1, this.parallelism);
+        this.assessmentPool = new ForkJoinPool(this.parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("sla-assessment-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    @PreDestroy
+    private void stopAssessmentPool() {
+        if (this.assessmentPool != null) {
+            this.assessmentPool.shutdownNow();
+        }
+    }
+
 
     /*
     * (non-Javadoc)
@@ -166,57 +205,197 @@ public class JpaServiceLevelAssessor implements ServiceLevelAssessor {
 
         ServiceLevelAssessment assessment = null;
 
-        ServiceLevelAgreement serviceLevelAgreement = sla;
         assessment = this.metadataAccess.commit(() -> {
-            AssessmentResult combinedResult = AssessmentResult.FAILURE;
-            try {
+            JpaServiceLevelAssessment slaAssessment = evaluate(sla);
+            //save it
+            assessmentProvider.save(slaAssessment);
+            return slaAssessment;
+        }, MetadataAccess.SERVICE);
+        return assessment;
+    }
+
+    /**
+     * Assess the SLAs (coming from JCR) together.
+     * Assessors supporting it first prefetch the data for all of their metrics, the SLAs are then evaluated on the assessment pool
+     * with each worker reading its share of the SLAs in a single session, and the assessments are saved in one transaction.
+     *
+     * @param slas the SLAs to be assessed
+     */
+    @Override
+    public Map<ID, ServiceLevelAssessment> assess(Collection<? extends ServiceLevelAgreement> slas) {
+        Map<ID, ServiceLevelAssessment> assessments = new LinkedHashMap<>();
+        if (slas.isEmpty()) {
+            return assessments;
+        }
+        Map<ID, ServiceLevelAgreement> agreements = new LinkedHashMap<>();
+        for (ServiceLevelAgreement sla : slas) {
+            agreements.put(sla.getId(), sla);
+        }
 
-                //create the new Assessment
-                JpaServiceLevelAssessment slaAssessment = new JpaServiceLevelAssessment();
-                slaAssessment.setId(JpaServiceLevelAssessment.SlaAssessmentId.create());
-                slaAssessment.setAgreement(serviceLevelAgreement);
-                List<ObligationGroup> groups = sla.getObligationGroups();
-
-                for (ObligationGroup group : groups) {
-                    Condition condition = group.getCondition();
-                    AssessmentResult groupResult = AssessmentResult.SUCCESS;
-                    Set<ObligationAssessment> obligationAssessments = new HashSet<>();
-                    log.debug("Assessing obligation group {} with {} obligations", group, group.getObligations().size());
-                    for (Obligation ob : group.getObligations()) {
-                        ObligationAssessment obAssessment = assess(ob, slaAssessment);
-                        obligationAssessments.add(obAssessment);
-                        // slaAssessment.add(obAssessment);
-                        groupResult = groupResult.max(obAssessment.getResult());
+        long start = System.currentTimeMillis();
+        Set<BatchMetricAssessor<Metric, ?>> prefetched = prefetch(agreements.values());
+        long prefetchEnd = System.currentTimeMillis();
+        try {
+            Map<ID, JpaServiceLevelAssessment> evaluated = evaluateInParallel(new ArrayList<>(agreements.keySet()));
+            long evaluateEnd = System.currentTimeMillis();
+
+            this.metadataAccess.commit(() -> {
+                List<JpaServiceLevelAssessment> toSave = new ArrayList<>();
+                for (Map.Entry<ID, ServiceLevelAgreement> entry : agreements.entrySet()) {
+                    JpaServiceLevelAssessment assessment = evaluated.get(entry.getKey());
+                    if (assessment != null) {
+                        //refer to the caller's agreement rather than the copy loaded by the worker session
+                        assessment.setAgreement(entry.getValue());
+                        toSave.add(assessment);
+                        assessments.put(entry.getKey(), assessment);
                     }
-                    slaAssessment.setObligationAssessments(obligationAssessments);
+                }
+                assessmentProvider.saveAll(toSave);
+            }, MetadataAccess.SERVICE);
+
+            log.info("Assessed {} of {} SLAs in {} ms (prefetch: {} ms, evaluate: {} ms, save: {} ms)", assessments.size(), agreements.size(), System.currentTimeMillis() - start,
+                     prefetchEnd - start, evaluateEnd - prefetchEnd, System.currentTimeMillis() - evaluateEnd);
+        } finally {
+            for (BatchMetricAssessor<Metric, ?> assessor : prefetched) {
+                assessor.clearPrefetched();
+            }
+        }
+        return assessments;
+    }
 
-                    // Short-circuit required or sufficient if necessary.
-                    switch (condition) {
-                        case REQUIRED:
-                            if (groupResult == AssessmentResult.FAILURE) {
-                                return completeAssessment(slaAssessment, groupResult);
-                            }
-                            break;
-                        case SUFFICIENT:
-                            if (groupResult != AssessmentResult.FAILURE) {
-                                return completeAssessment(slaAssessment, groupResult);
+    /**
+     * Hands each batch metric assessor all of the metrics it accepts in the given SLAs so their inputs can be loaded together
+     *
+     * @return the assessors holding prefetched data
+     */
+    @SuppressWarnings("unchecked")
+    private Set<BatchMetricAssessor<Metric, ?>> prefetch(Collection<ServiceLevelAgreement> slas) {
+        Map<BatchMetricAssessor<Metric, ?>, List<Metric>> metricsByAssessor = new HashMap<>();
+        for (ServiceLevelAgreement sla : slas) {
+            for (ObligationGroup group : sla.getObligationGroups()) {
+                for (Obligation ob : group.getObligations()) {
+                    for (Metric metric : ob.getMetrics()) {
+                        try {
+                            MetricAssessor<Metric, ?> assessor = findAssessor(metric);
+                            if (assessor instanceof BatchMetricAssessor) {
+                                metricsByAssessor.computeIfAbsent((BatchMetricAssessor<Metric, ?>) assessor, a -> new ArrayList<>()).add(metric);
                             }
-                            break;
-                        default:
+                        } catch (AssessorNotFoundException e) {
+                            //reported when the metric is assessed
+                        }
                     }
+                }
+            }
+        }
+
+        Set<BatchMetricAssessor<Metric, ?>> prefetched = new HashSet<>();
+        metricsByAssessor.forEach((assessor, metrics) -> {
+            try {
+                assessor.prefetch(metrics);
+                prefetched.add(assessor);
+            } catch (Exception e) {
+                log.warn("Unable to prefetch the data for {} metrics using {}.  They will be assessed individually", metrics.size(), assessor, e);
+            }
+        });
+        return prefetched;
+    }
+
+    /**
+     * Splits the SLAs among the assessment pool.  Each task evaluates its share of the SLAs inside a single read session.
+     */
+    private Map<ID, JpaServiceLevelAssessment> evaluateInParallel(List<ID> slaIds) {
+        int chunkSize = (slaIds.size() + parallelism - 1) / parallelism;
+        List<Callable<Map<ID, JpaServiceLevelAssessment>>> tasks = new ArrayList<>();
+        for (List<ID> ids : Lists.partition(slaIds, chunkSize)) {
+            tasks.add(() -> this.metadataAccess.read(() -> evaluateAll(ids), MetadataAccess.SERVICE));
+        }
 
-                    // Required condition but non-failure, sufficient condition but non-success, or optional condition:
-                    // continue assessing groups and retain the best of the group results.
-                    combinedResult = combinedResult.min(groupResult);
+        Map<ID, JpaServiceLevelAssessment> evaluated = new HashMap<>();
+        try {
+            for (Future<Map<ID, JpaServiceLevelAssessment>> future : assessmentPool.invokeAll(tasks)) {
+                try {
+                    evaluated.putAll(future.get());
+                } catch (ExecutionException e) {
+                    log.error("Unable to assess a batch of SLAs", e.getCause());
                 }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return evaluated;
+    }
 
-                return completeAssessment(slaAssessment, combinedResult);
+    /**
+     * Needs to be wrapped in metadataAccess.read
+     */
+    private Map<ID, JpaServiceLevelAssessment> evaluateAll(List<ID> slaIds) {
+        Map<ID, JpaServiceLevelAssessment> evaluated = new HashMap<>();
+        for (ID id : slaIds) {
+            ServiceLevelAgreement sla = agreementProvider.getAgreement(id);
+            if (sla != null) {
+                try {
+                    evaluated.put(id, evaluate(sla));
+                } catch (AssessorNotFoundException e) {
+                    log.info("SLA assessment failed.  Assessor Not found: {} - Exception: {}", sla.getName(), e);
+                } catch (Exception e) {
+                    log.error("Unable to assess SLA {}", sla.getName(), e);
+                }
+            }
+        }
+        return evaluated;
+    }
 
-            } finally {
-                log.debug("Completed assessment of SLA {}: {}", sla.getName(), combinedResult);
+    /**
+     * Evaluates the obligations of the SLA without saving the resulting assessment.
+     */
+    private JpaServiceLevelAssessment evaluate(ServiceLevelAgreement sla) {
+        ServiceLevelAgreement serviceLevelAgreement = sla;
+        AssessmentResult combinedResult = AssessmentResult.FAILURE;
+        try {
+            //create the new Assessment
+            JpaServiceLevelAssessment slaAssessment = new JpaServiceLevelAssessment();
+            slaAssessment.setId(JpaServiceLevelAssessment.SlaAssessmentId.create());
+            slaAssessment.setAgreement(serviceLevelAgreement);
+            List<ObligationGroup> groups = sla.getObligationGroups();
+
+            for (ObligationGroup group : groups) {
+                Condition condition = group.getCondition();
+                AssessmentResult groupResult = AssessmentResult.SUCCESS;
+                Set<ObligationAssessment> obligationAssessments = new HashSet<>();
+                log.debug("Assessing obligation group {} with {} obligations", group, group.getObligations().size());
+                for (Obligation ob : group.getObligations()) {
+                    ObligationAssessment obAssessment = assess(ob, slaAssessment);
+                    obligationAssessments.add(obAssessment);
+                    // slaAssessment.add(obAssessment);
+                    groupResult = groupResult.max(obAssessment.getResult());
+                }
+                slaAssessment.setObligationAssessments(obligationAssessments);
+
+                // Short-circuit required or sufficient if necessary.
+                switch (condition) {
+                    case REQUIRED:
+                        if (groupResult == AssessmentResult.FAILURE) {
+                            return completeAssessment(slaAssessment, groupResult);
+                        }
+                        break;
+                    case SUFFICIENT:
+                        if (groupResult != AssessmentResult.FAILURE) {
+                            return completeAssessment(slaAssessment, groupResult);
+                        }
+                        break;
+                    default:
+                }
+
+                // Required condition but non-failure, sufficient condition but non-success, or optional condition:
+                // continue assessing groups and retain the best of the group results.
+                combinedResult = combinedResult.min(groupResult);
             }
-        }, MetadataAccess.SERVICE);
-        return assessment;
+
+            return completeAssessment(slaAssessment, combinedResult);
+
+        } finally {
+            log.debug("Completed assessment of SLA {}: {}", sla.getName(), combinedResult);
+        }
     }
 
     private ObligationAssessment assess(Obligation ob, JpaServiceLevelAssessment serviceLevelAssessment) {
@@ -231,7 +410,7 @@ public class JpaServiceLevelAssessor implements ServiceLevelAssessor {
         return builder.build();
     }
 
-    private ServiceLevelAssessment completeAssessment(JpaServiceLevelAssessment slaAssessment, AssessmentResult result) {
+    private JpaServiceLevelAssessment completeAssessment(JpaServiceLevelAssessment slaAssessment, AssessmentResult result) {
         slaAssessment.setResult(result);
         String slaName = slaAssessment.getAgreement() != null ? slaAssessment.getAgreement().getName() : "";
         if (result == AssessmentResult.SUCCESS) {
@@ -241,8 +420,6 @@ public class JpaServiceLevelAssessor implements ServiceLevelAssessor {
             slaAssessment.setMessage("At least one of the SLA obligations for '" + slaName + "' resulted in the status: " + result);
         }
 
-        //save it
-        assessmentProvider.save(slaAssessment);
         return slaAssessment;
     }
 
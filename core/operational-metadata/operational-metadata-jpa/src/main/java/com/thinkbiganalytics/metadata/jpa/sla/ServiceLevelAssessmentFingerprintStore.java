@@ -0,0 +1,282 @@
+package com.thinkbiganalytics.metadata.jpa.sla;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.thinkbiganalytics.metadata.sla.api.AssessmentResult;
+import com.thinkbiganalytics.metadata.sla.api.MetricAssessment;
+import com.thinkbiganalytics.metadata.sla.api.ObligationAssessment;
+import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAssessment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+/**
+ * Keeps a fingerprint of the latest two assessments of each SLA so a new assessment can be compared against the previous one in memory,
+ * rather than loading the previous assessment and its SLA on every check.
+ *
+ * A fingerprint holds the values the default comparators of {@link JpaServiceLevelAssessment}, {@link JpaObligationAssessment} and {@link JpaMetricAssessment} look at:
+ * the results and comparables of the assessment, its obligations and their metrics. Two fingerprints are equal when those assessments compare as equal.
+ *
+ * The store is loaded with the latest assessment of each SLA on the first save and is then updated as assessments are committed through the {@link JpaServiceLevelAssessmentProvider}.
+ * When it can't answer, for example when an assessment uses a custom comparator, {@link Change#UNKNOWN} is returned and the caller should compare the assessments itself.
+ */
+@Component
+public class ServiceLevelAssessmentFingerprintStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceLevelAssessmentFingerprintStore.class);
+
+    @Inject
+    private JpaServiceLevelAssessmentRepository assessmentRepository;
+
+    /**
+     * sla id to its latest assessments
+     */
+    private final Map<String, AgreementAssessments> agreements = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    /**
+     * Compare an assessment to the assessment made before it for the same SLA.
+     *
+     * @param assessment an assessment that has been saved
+     * @return how the assessment differs from the previous one, or {@link Change#UNKNOWN} if the store can't tell
+     */
+    public Change compareToPrevious(ServiceLevelAssessment assessment) {
+        if (!loaded || assessment.getServiceLevelAgreementId() == null || assessment.getId() == null) {
+            return Change.UNKNOWN;
+        }
+        AgreementAssessments assessments = agreements.get(assessment.getServiceLevelAgreementId());
+        return assessments != null ? assessments.compareToPrevious(assessment.getId()) : Change.UNKNOWN;
+    }
+
+    /**
+     * Load the latest assessment of each SLA if the store is empty.
+     * This is called before assessments are saved so the saved assessments don't get taken as the latest ones.
+     */
+    void ensureLoaded() {
+        if (!loaded) {
+            synchronized (agreements) {
+                if (!loaded) {
+                    long start = System.currentTimeMillis();
+                    List<JpaServiceLevelAssessment> latest = assessmentRepository.findLatestAssessmentsForAllAgreements();
+                    for (JpaServiceLevelAssessment assessment : latest) {
+                        agreements.put(assessment.getSlaId(), new AgreementAssessments(Fingerprint.of(assessment), null, false));
+                    }
+                    loaded = true;
+                    log.info("Loaded the latest assessment of {} SLAs in {} ms", agreements.size(), (System.currentTimeMillis() - start));
+                }
+            }
+        }
+    }
+
+    /**
+     * Record assessments that have been saved. The store is updated once the current transaction commits.
+     * The assessments passed to the repository are used rather than the merged copies it returns, as the copies don't keep any custom comparators.
+     *
+     * @param assessments the saved assessments
+     */
+    void saved(Collection<JpaServiceLevelAssessment> assessments) {
+        List<Fingerprint> fingerprints = assessments.stream()
+            .filter(assessment -> assessment.getSlaId() != null && assessment.getId() != null)
+            .map(Fingerprint::of)
+            .collect(Collectors.toList());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    apply(fingerprints);
+                }
+            });
+        } else {
+            apply(fingerprints);
+        }
+    }
+
+    /**
+     * Clear the store so it is loaded again on the next save
+     */
+    public void invalidateAll() {
+        synchronized (agreements) {
+            loaded = false;
+            agreements.clear();
+        }
+    }
+
+    private void apply(List<Fingerprint> fingerprints) {
+        if (!loaded) {
+            return;
+        }
+        for (Fingerprint fingerprint : fingerprints) {
+            agreements.compute(fingerprint.slaId, (slaId, assessments) -> assessments == null
+                                                                            ? new AgreementAssessments(fingerprint, null, true)
+                                                                            : assessments.next(fingerprint));
+        }
+    }
+
+    /**
+     * How an assessment compares to the previous assessment of its SLA
+     */
+    public enum Change {
+        /**
+         * there is no previous assessment
+         */
+        NEW,
+        /**
+         * the previous assessment does not compare as equal
+         */
+        CHANGED,
+        /**
+         * the previous assessment compares as equal
+         */
+        UNCHANGED,
+        /**
+         * the store doesn't know the previous assessment, or can't compare them
+         */
+        UNKNOWN
+    }
+
+    /**
+     * The latest two assessments of an SLA
+     */
+    private static class AgreementAssessments {
+
+        private final Fingerprint latest;
+        private final Fingerprint previous;
+
+        /**
+         * false when the store was loaded with the latest assessment only
+         */
+        private final boolean previousKnown;
+
+        AgreementAssessments(Fingerprint latest, Fingerprint previous, boolean previousKnown) {
+            this.latest = latest;
+            this.previous = previous;
+            this.previousKnown = previousKnown;
+        }
+
+        AgreementAssessments next(Fingerprint fingerprint) {
+            if (Objects.equals(latest.assessmentId, fingerprint.assessmentId)) {
+                return new AgreementAssessments(fingerprint, previous, previousKnown);
+            }
+            return new AgreementAssessments(fingerprint, latest, true);
+        }
+
+        Change compareToPrevious(ServiceLevelAssessment.ID assessmentId) {
+            if (!Objects.equals(latest.assessmentId, assessmentId) || !latest.defaultComparison || !previousKnown) {
+                return Change.UNKNOWN;
+            } else if (previous == null) {
+                return Change.NEW;
+            } else {
+                return latest.equals(previous) ? Change.UNCHANGED : Change.CHANGED;
+            }
+        }
+    }
+
+    /**
+     * The values of an assessment that are used when comparing it to another one.
+     * Obligations and metrics are compared after sorting them, so they are kept in multisets.
+     */
+    static class Fingerprint {
+
+        private final String slaId;
+        private final ServiceLevelAssessment.ID assessmentId;
+        private final AssessmentResult result;
+        private final Multiset<List<Object>> obligations;
+
+        /**
+         * true if every obligation and metric is compared with its default comparator
+         */
+        private final boolean defaultComparison;
+
+        private Fingerprint(String slaId, ServiceLevelAssessment.ID assessmentId, AssessmentResult result, Multiset<List<Object>> obligations, boolean defaultComparison) {
+            this.slaId = slaId;
+            this.assessmentId = assessmentId;
+            this.result = result;
+            this.obligations = obligations;
+            this.defaultComparison = defaultComparison;
+        }
+
+        static Fingerprint of(JpaServiceLevelAssessment assessment) {
+            boolean defaultComparison = true;
+            Multiset<List<Object>> obligations = HashMultiset.create();
+            for (ObligationAssessment obligationAssessment : assessment.getObligationAssessments()) {
+                Multiset<List<Object>> metrics = HashMultiset.create();
+                for (MetricAssessment metricAssessment : obligationAssessment.getMetricAssessments()) {
+                    if (metricAssessment instanceof JpaMetricAssessment) {
+                        JpaMetricAssessment jpaMetricAssessment = (JpaMetricAssessment) metricAssessment;
+                        defaultComparison &= jpaMetricAssessment.isDefaultComparator();
+                        metrics.add(Arrays.asList(metricAssessment.getResult(), copy(jpaMetricAssessment.getComparables())));
+                    } else {
+                        defaultComparison = false;
+                    }
+                }
+                if (obligationAssessment instanceof JpaObligationAssessment) {
+                    JpaObligationAssessment jpaObligationAssessment = (JpaObligationAssessment) obligationAssessment;
+                    defaultComparison &= jpaObligationAssessment.isDefaultComparator();
+                    obligations.add(Arrays.asList(obligationAssessment.getResult(), copy(jpaObligationAssessment.getComparables()), metrics));
+                } else {
+                    defaultComparison = false;
+                }
+            }
+            return new Fingerprint(assessment.getSlaId(), assessment.getId(), assessment.getResult(), obligations, defaultComparison);
+        }
+
+        private static List<Comparable<? extends Serializable>> copy(List<Comparable<? extends Serializable>> comparables) {
+            return comparables != null ? new ArrayList<>(comparables) : Collections.emptyList();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint that = (Fingerprint) o;
+            return result == that.result && obligations.equals(that.obligations);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(result, obligations);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.thinkbiganalytics.metadata.jpa.support;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.jobrepo.ContinuationPage;
+
+import java.util.List;
+
+/**
+ * A page of keyset paged results
+ */
+public class ContinuationPageImpl<T> implements ContinuationPage<T> {
+
+    private final List<T> content;
+    private final String continuationToken;
+    private final long total;
+    private final boolean totalCapped;
+
+    public ContinuationPageImpl(List<T> content, String continuationToken, long total, boolean totalCapped) {
+        this.content = content;
+        this.continuationToken = continuationToken;
+        this.total = total;
+        this.totalCapped = totalCapped;
+    }
+
+    @Override
+    public List<T> getContent() {
+        return content;
+    }
+
+    @Override
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+
+    @Override
+    public long getTotal() {
+        return total;
+    }
+
+    @Override
+    public boolean isTotalCapped() {
+        return totalCapped;
+    }
+}
@@ -0,0 +1,113 @@
+package com.thinkbiganalytics.metadata.jpa.support;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * The position of the last row on a page of keyset paged results, passed back to the client as an opaque string.
+ * The token also carries the total counted for the first page so later pages don't count again,
+ * and a hash of the filter and sort so a token can't be replayed against a different query.
+ */
+public class ContinuationToken {
+
+    private static final String VERSION = "1";
+
+    private static final String SEPARATOR = "\n";
+
+    private final int queryHash;
+    private final long lastId;
+    private final long total;
+    private final boolean totalCapped;
+    private final String lastValue;
+
+    public ContinuationToken(String filter, String sortProperty, Sort.Direction direction, String lastValue, long lastId, long total, boolean totalCapped) {
+        this(queryHash(filter, sortProperty, direction), lastValue, lastId, total, totalCapped);
+    }
+
+    private ContinuationToken(int queryHash, String lastValue, long lastId, long total, boolean totalCapped) {
+        this.queryHash = queryHash;
+        this.lastValue = lastValue;
+        this.lastId = lastId;
+        this.total = total;
+        this.totalCapped = totalCapped;
+    }
+
+    /**
+     * Parse a token returned by {@link #encode()}
+     *
+     * @param token the encoded token
+     * @return the token, or null if the token is blank
+     * @throws IllegalArgumentException if the token is not valid
+     */
+    public static ContinuationToken decode(String token) {
+        if (token == null || token.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8).split(SEPARATOR, 6);
+            if (parts.length != 6 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid continuation token " + token);
+            }
+            return new ContinuationToken(Integer.parseInt(parts[1]), parts[5], Long.parseLong(parts[2]), Long.parseLong(parts[3]), Boolean.parseBoolean(parts[4]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token " + token, e);
+        }
+    }
+
+    private static int queryHash(String filter, String sortProperty, Sort.Direction direction) {
+        return Objects.hash(filter == null ? "" : filter, sortProperty, direction);
+    }
+
+    /**
+     * Check the token was created for the same filter and sort
+     *
+     * @return true if the token can be used to page through this query
+     */
+    public boolean matches(String filter, String sortProperty, Sort.Direction direction) {
+        return queryHash == queryHash(filter, sortProperty, direction);
+    }
+
+    public String encode() {
+        String token = String.join(SEPARATOR, VERSION, Integer.toString(queryHash), Long.toString(lastId), Long.toString(total), Boolean.toString(totalCapped), lastValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getLastValue() {
+        return lastValue;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public boolean isTotalCapped() {
+        return totalCapped;
+    }
+}
@@ -0,0 +1,215 @@
+package com.thinkbiganalytics.metadata.jpa.feed;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.feed.FeedHealth;
+import com.thinkbiganalytics.metadata.api.feed.FeedHealthChanges;
+import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeed;
+import com.thinkbiganalytics.metadata.api.jobrepo.ExecutionConstants;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
+import com.thinkbiganalytics.metadata.config.OperationalMetadataConfig;
+import com.thinkbiganalytics.metadata.jpa.TestJpaConfiguration;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.job.JpaBatchJobExecution;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.job.JpaBatchJobInstance;
+import com.thinkbiganalytics.spring.CommonsSpringConfiguration;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.UUID;
+
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+/**
+ * Checks the in memory feed health stays in step with the FEED_HEALTH_VW as jobs change.
+ * The view is created as a table by hibernate in H2, so the rows are written directly.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@TestPropertySource(locations = "classpath:test-application.properties")
+@SpringApplicationConfiguration(classes = {CommonsSpringConfiguration.class, OperationalMetadataConfig.class, TestJpaConfiguration.class})
+public class FeedHealthStoreTest {
+
+    @Inject
+    private FeedHealthStore feedHealthStore;
+
+    @Inject
+    private MetadataAccess metadataAccess;
+
+    @Inject
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setup() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("delete from FEED_HEALTH_VW");
+        feedHealthStore.invalidateAll();
+    }
+
+    @Test
+    public void testJobUpdatesAreAppliedIncrementally() {
+        OpsManagerFeed feed = feed("health.incremental");
+        insertHealthRow(feed, 10L, 2L, 8L, 0L, 0L);
+        insertHealthRow(feed("health.other"), 20L, 1L, 0L, 0L, 0L);
+
+        long version = metadataAccess.read(() -> feedHealthStore.getFeedHealthChanges(0L)).getVersion();
+
+        feedHealthStore.jobChanged(job(feed, 11L, BatchJobExecution.JobStatus.STARTED, ExecutionConstants.ExitCode.EXECUTING));
+        FeedHealth health = metadataAccess.read(() -> feedHealthStore.getFeedHealth(feed.getName()));
+        assertCounts(health, 11L, 2L, 8L, 0L, 1L);
+        Assert.assertEquals(Long.valueOf(11L), health.getJobExecutionId());
+
+        feedHealthStore.jobChanged(job(feed, 11L, BatchJobExecution.JobStatus.FAILED, ExecutionConstants.ExitCode.FAILED));
+        health = metadataAccess.read(() -> feedHealthStore.getFeedHealth(feed.getName()));
+        assertCounts(health, 11L, 3L, 8L, 0L, 0L);
+        Assert.assertEquals(BatchJobExecution.JobStatus.FAILED, health.getStatus());
+
+        feedHealthStore.jobChanged(job(feed, 11L, BatchJobExecution.JobStatus.ABANDONED, ExecutionConstants.ExitCode.FAILED));
+        health = metadataAccess.read(() -> feedHealthStore.getFeedHealth(feed.getName()));
+        assertCounts(health, 11L, 2L, 8L, 1L, 0L);
+
+        //three updates to one feed are coalesced into a single change
+        FeedHealthChanges changes = metadataAccess.read(() -> feedHealthStore.getFeedHealthChanges(version));
+        Assert.assertFalse(changes.isCompleteRefresh());
+        Assert.assertEquals(1, changes.getFeedHealth().size());
+        Assert.assertEquals(feed.getName(), changes.getFeedHealth().get(0).getFeedName());
+
+        FeedHealthChanges noChanges = metadataAccess.read(() -> feedHealthStore.getFeedHealthChanges(changes.getVersion()));
+        Assert.assertTrue(noChanges.getFeedHealth().isEmpty());
+    }
+
+    @Test
+    public void testCheckJobsCountAgainstTheCheckedFeed() {
+        OpsManagerFeed feed = feed("health.checked");
+        JpaOpsManagerFeed checkFeed = (JpaOpsManagerFeed) feed("health.check");
+        checkFeed.setFeedType(OpsManagerFeed.FeedType.CHECK);
+        checkFeed.setFeedsToCheck(Collections.singleton(feed));
+        insertHealthRow(feed, 5L, 0L, 5L, 0L, 0L);
+
+        metadataAccess.read(() -> feedHealthStore.getFeedHealth());
+        feedHealthStore.jobChanged(job(checkFeed, 6L, BatchJobExecution.JobStatus.COMPLETED, ExecutionConstants.ExitCode.COMPLETED));
+
+        FeedHealth health = metadataAccess.read(() -> feedHealthStore.getFeedHealth(feed.getName()));
+        assertCounts(health, 6L, 0L, 6L, 0L, 0L);
+        //the latest job only comes from the feed itself
+        Assert.assertEquals(Long.valueOf(5L), health.getJobExecutionId());
+        Assert.assertNull(metadataAccess.read(() -> feedHealthStore.getFeedHealth(checkFeed.getName())));
+    }
+
+    @Test
+    public void testUnknownJobsReloadTheFeed() {
+        OpsManagerFeed feed = feed("health.reload");
+        OpsManagerFeed newFeed = feed("health.new");
+        insertHealthRow(feed, 10L, 10L, 0L, 0L, 0L);
+        long version = metadataAccess.read(() -> feedHealthStore.getFeedHealthChanges(0L)).getVersion();
+
+        //an older job the store never saw, so the feed is reloaded from the view
+        jdbcTemplate.update("update FEED_HEALTH_VW set FAILED_COUNT = 1, COMPLETED_COUNT = 9 where FEED_NAME = ?", feed.getName());
+        feedHealthStore.jobChanged(job(feed, 4L, BatchJobExecution.JobStatus.FAILED, ExecutionConstants.ExitCode.FAILED));
+        assertCounts(metadataAccess.read(() -> feedHealthStore.getFeedHealth(feed.getName())), 10L, 1L, 9L, 0L, 0L);
+
+        //the first job of a feed isn't in the view yet either
+        insertHealthRow(newFeed, 1L, 0L, 0L, 0L, 1L);
+        feedHealthStore.jobChanged(job(newFeed, 1L, BatchJobExecution.JobStatus.STARTED, ExecutionConstants.ExitCode.EXECUTING));
+        assertCounts(metadataAccess.read(() -> feedHealthStore.getFeedHealth(newFeed.getName())), 1L, 0L, 0L, 0L, 1L);
+
+        //deleting a feed can't be sent as a delta
+        jdbcTemplate.update("delete from FEED_HEALTH_VW where FEED_NAME = ?", newFeed.getName());
+        feedHealthStore.invalidate(newFeed.getName());
+        FeedHealthChanges changes = metadataAccess.read(() -> feedHealthStore.getFeedHealthChanges(version));
+        Assert.assertTrue(changes.isCompleteRefresh());
+        Assert.assertEquals(1, changes.getFeedHealth().size());
+    }
+
+    /**
+     * Jobs starting and finishing between reads are served from memory, the view is only queried for the initial load
+     */
+    @Test
+    public void testReadsAreServedFromMemory() {
+        int feedCount = 20;
+        OpsManagerFeed[] feeds = new OpsManagerFeed[feedCount];
+        for (int i = 0; i < feedCount; i++) {
+            feeds[i] = feed("health.memory_" + i);
+            insertHealthRow(feeds[i], 100L, 10L, 90L, 0L, 0L);
+        }
+        Assert.assertEquals(feedCount, metadataAccess.read(() -> feedHealthStore.getFeedHealth()).size());
+
+        //the store no longer needs the view once it is loaded
+        jdbcTemplate.update("delete from FEED_HEALTH_VW");
+        long jobId = 1000L;
+        for (int i = 0; i < feedCount * 2; i++) {
+            OpsManagerFeed feed = feeds[i % feedCount];
+            jobId++;
+            feedHealthStore.jobChanged(job(feed, jobId, BatchJobExecution.JobStatus.STARTED, ExecutionConstants.ExitCode.EXECUTING));
+            feedHealthStore.jobChanged(job(feed, jobId, BatchJobExecution.JobStatus.COMPLETED, ExecutionConstants.ExitCode.COMPLETED));
+            Assert.assertEquals(feedCount, metadataAccess.read(() -> feedHealthStore.getFeedHealth()).size());
+        }
+        for (OpsManagerFeed feed : feeds) {
+            assertCounts(metadataAccess.read(() -> feedHealthStore.getFeedHealth(feed.getName())), 102L, 10L, 92L, 0L, 0L);
+        }
+        Assert.assertEquals(Long.valueOf(jobId), metadataAccess.read(() -> feedHealthStore.getFeedHealth(feeds[feedCount - 1].getName())).getJobExecutionId());
+    }
+
+    private static void assertCounts(FeedHealth health, Long all, Long failed, Long completed, Long abandoned, Long running) {
+        Assert.assertNotNull(health);
+        Assert.assertEquals(all, health.getAllCount());
+        Assert.assertEquals(failed, health.getFailedCount());
+        Assert.assertEquals(completed, health.getCompletedCount());
+        Assert.assertEquals(abandoned, health.getAbandonedCount());
+        Assert.assertEquals(running, health.getRunningCount());
+    }
+
+    private static OpsManagerFeed feed(String name) {
+        return new JpaOpsManagerFeed(new OpsManagerFeedId(UUID.randomUUID()), name);
+    }
+
+    private static BatchJobExecution job(OpsManagerFeed feed, Long jobExecutionId, BatchJobExecution.JobStatus status, ExecutionConstants.ExitCode exitCode) {
+        JpaBatchJobInstance jobInstance = new JpaBatchJobInstance();
+        jobInstance.setJobInstanceId(jobExecutionId);
+        jobInstance.setFeed(feed);
+        JpaBatchJobExecution jobExecution = new JpaBatchJobExecution();
+        jobExecution.setJobExecutionId(jobExecutionId);
+        jobExecution.setJobInstance(jobInstance);
+        jobExecution.setStatus(status);
+        jobExecution.setExitCode(exitCode);
+        return jobExecution;
+    }
+
+    private void insertHealthRow(OpsManagerFeed feed, Long all, Long failed, Long completed, Long abandoned, Long running) {
+        ByteBuffer feedId = ByteBuffer.allocate(16);
+        UUID uuid = ((OpsManagerFeedId) feed.getId()).getUuid();
+        feedId.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        jdbcTemplate.update("insert into FEED_HEALTH_VW (FEED_ID, FEED_NAME, JOB_EXECUTION_ID, JOB_INSTANCE_ID, STATUS, EXIT_CODE, ALL_COUNT, FAILED_COUNT, COMPLETED_COUNT, "
+                            + "ABANDONED_COUNT, RUNNING_COUNT) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                            feedId.array(), feed.getName(), all, all, "COMPLETED", "COMPLETED", all, failed, completed, abandoned, running);
+    }
+}
@@ -0,0 +1,191 @@
+package com.thinkbiganalytics.metadata.jpa.job;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeed;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecutionProvider;
+import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiEvent;
+import com.thinkbiganalytics.metadata.config.OperationalMetadataConfig;
+import com.thinkbiganalytics.metadata.jpa.TestJpaConfiguration;
+import com.thinkbiganalytics.metadata.jpa.feed.OpsFeedManagerFeedProvider;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.NifiEventProvider;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+import com.thinkbiganalytics.spring.CommonsSpringConfiguration;
+
+import org.joda.time.DateTime;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+/**
+ * Verifies the batched, one transaction per job, persistence of provenance events used by the ProvenanceEventReceiver saves the same jobs as the per event persistence
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@TestPropertySource(locations = "classpath:test-application.properties")
+@SpringApplicationConfiguration(classes = {CommonsSpringConfiguration.class, OperationalMetadataConfig.class, TestJpaConfiguration.class})
+public class BatchedProvenanceEventPersistenceTest {
+
+    private static final String FEED_NAME = "test.provenance_events";
+
+    private static final int JOBS = 20;
+
+    private static final int EVENTS_PER_JOB = 10;
+
+    private static final AtomicLong eventIds = new AtomicLong(1000000L);
+
+    @Inject
+    private BatchJobExecutionProvider jobExecutionProvider;
+
+    @Inject
+    private NifiEventProvider nifiEventProvider;
+
+    @Inject
+    private OpsFeedManagerFeedProvider feedProvider;
+
+    @Inject
+    private MetadataAccess metadataAccess;
+
+    @Before
+    public void setup() {
+        metadataAccess.commit(() -> {
+            if (feedProvider.findByName(FEED_NAME) == null) {
+                OpsManagerFeed.ID id = feedProvider.resolveId(UUID.randomUUID().toString());
+                feedProvider.save(id, FEED_NAME);
+            }
+            return null;
+        }, MetadataAccess.SERVICE);
+    }
+
+    @Test
+    public void testPerEventPersistence() {
+        List<List<ProvenanceEventRecordDTO>> jobs = createJobs();
+        for (List<ProvenanceEventRecordDTO> job : jobs) {
+            for (ProvenanceEventRecordDTO event : job) {
+                if (metadataAccess.read(() -> nifiEventProvider.exists(event), MetadataAccess.SERVICE)) {
+                    continue;
+                }
+                BatchJobExecution jobExecution = metadataAccess.commit(() -> jobExecutionProvider.getOrCreateJobExecution(event), MetadataAccess.SERVICE);
+                metadataAccess.commit(() -> {
+                    NifiEvent nifiEvent = nifiEventProvider.create(event);
+                    return jobExecutionProvider.save(jobExecutionProvider.findByJobExecutionId(jobExecution.getJobExecutionId()), event, nifiEvent);
+                }, MetadataAccess.SERVICE);
+            }
+        }
+        assertPersisted(jobs);
+    }
+
+    @Test
+    public void testBatchedPersistence() {
+        List<List<ProvenanceEventRecordDTO>> jobs = createJobs();
+        for (List<ProvenanceEventRecordDTO> job : jobs) {
+            List<ProvenanceEventRecordDTO> newEvents = metadataAccess.read(() -> nifiEventProvider.findNewEvents(job), MetadataAccess.SERVICE);
+            metadataAccess.commit(() -> {
+                List<NifiEvent> nifiEvents = nifiEventProvider.create(newEvents);
+                return jobExecutionProvider.saveJobEvents(newEvents, nifiEvents);
+            }, MetadataAccess.SERVICE);
+        }
+        assertPersisted(jobs);
+
+        //replaying the same events should find nothing new
+        for (List<ProvenanceEventRecordDTO> job : jobs) {
+            List<ProvenanceEventRecordDTO> newEvents = metadataAccess.read(() -> nifiEventProvider.findNewEvents(job), MetadataAccess.SERVICE);
+            Assert.assertTrue(newEvents.isEmpty());
+        }
+    }
+
+    /**
+     * Verify an event delivered twice in the same batch is only saved once and does not fail the rest of the batch
+     */
+    @Test
+    public void testDuplicateEventsInBatch() {
+        List<ProvenanceEventRecordDTO> job = createJobs().get(0);
+        List<ProvenanceEventRecordDTO> batch = new ArrayList<>(job);
+        batch.add(2, job.get(1));
+
+        List<ProvenanceEventRecordDTO> newEvents = metadataAccess.read(() -> nifiEventProvider.findNewEvents(batch), MetadataAccess.SERVICE);
+        Assert.assertEquals(job, newEvents);
+
+        //the duplicate is also ignored when the events are persisted directly
+        List<NifiEvent> nifiEvents = metadataAccess.commit(() -> nifiEventProvider.create(batch), MetadataAccess.SERVICE);
+        Assert.assertEquals(batch.size(), nifiEvents.size());
+        Assert.assertSame(nifiEvents.get(1), nifiEvents.get(2));
+        for (ProvenanceEventRecordDTO event : job) {
+            Assert.assertTrue(metadataAccess.read(() -> nifiEventProvider.exists(event), MetadataAccess.SERVICE));
+        }
+    }
+
+    private void assertPersisted(List<List<ProvenanceEventRecordDTO>> jobs) {
+        metadataAccess.read(() -> {
+            for (List<ProvenanceEventRecordDTO> job : jobs) {
+                for (ProvenanceEventRecordDTO event : job) {
+                    Assert.assertTrue(nifiEventProvider.exists(event));
+                }
+                ProvenanceEventRecordDTO first = job.get(0);
+                BatchJobExecution jobExecution = jobExecutionProvider.findByEventAndFlowFile(first.getEventId(), first.getJobFlowFileId());
+                Assert.assertNotNull(jobExecution);
+                Assert.assertTrue(jobExecution.isFinished());
+            }
+            return null;
+        }, MetadataAccess.SERVICE);
+    }
+
+    private List<List<ProvenanceEventRecordDTO>> createJobs() {
+        List<List<ProvenanceEventRecordDTO>> jobs = new ArrayList<>();
+        for (int i = 0; i < JOBS; i++) {
+            String jobFlowFileId = UUID.randomUUID().toString();
+            DateTime startTime = DateTime.now();
+            List<ProvenanceEventRecordDTO> events = new ArrayList<>();
+            for (int j = 0; j < EVENTS_PER_JOB; j++) {
+                ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+                event.setEventId(eventIds.incrementAndGet());
+                event.setFlowFileUuid(jobFlowFileId);
+                event.setJobFlowFileId(jobFlowFileId);
+                event.setFeedName(FEED_NAME);
+                event.setComponentId(UUID.randomUUID().toString());
+                event.setComponentName("processor " + j);
+                event.setEventType("ATTRIBUTES_MODIFIED");
+                event.setEventTime(startTime.plusMillis(j));
+                event.setStartTime(startTime);
+                event.setEventDuration(1L);
+                event.setIsBatchJob(true);
+                event.setIsStartOfJob(j == 0);
+                event.setIsEndOfJob(j == EVENTS_PER_JOB - 1);
+                event.setIsFinalJobEvent(j == EVENTS_PER_JOB - 1);
+                events.add(event);
+            }
+            jobs.add(events);
+        }
+        return jobs;
+    }
+}
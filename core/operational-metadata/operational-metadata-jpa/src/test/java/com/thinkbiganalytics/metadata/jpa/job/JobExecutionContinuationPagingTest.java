@@ -0,0 +1,264 @@
+package com.thinkbiganalytics.metadata.jpa.job;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeed;
+import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeedProvider;
+import com.thinkbiganalytics.metadata.api.jobrepo.ContinuationPage;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
+import com.thinkbiganalytics.metadata.config.OperationalMetadataConfig;
+import com.thinkbiganalytics.metadata.jpa.TestJpaConfiguration;
+import com.thinkbiganalytics.metadata.jpa.feed.OpsManagerFeedId;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.job.JpaBatchJobExecutionProvider;
+import com.thinkbiganalytics.spring.CommonsSpringConfiguration;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+/**
+ * Checks paging through job executions with continuation tokens.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@TestPropertySource(locations = "classpath:test-application.properties")
+@SpringApplicationConfiguration(classes = {CommonsSpringConfiguration.class, OperationalMetadataConfig.class, TestJpaConfiguration.class})
+public class JobExecutionContinuationPagingTest {
+
+    /**
+     * ids well past anything the key generator hands out to the other tests
+     */
+    private static final long FIRST_ID = 5_000_000L;
+
+    @Inject
+    private JpaBatchJobExecutionProvider jobExecutionProvider;
+
+    @Inject
+    private OpsManagerFeedProvider feedProvider;
+
+    @Inject
+    private MetadataAccess metadataAccess;
+
+    @Inject
+    private DataSource dataSource;
+
+    private long nextId = FIRST_ID;
+
+    @After
+    public void cleanup() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("delete from BATCH_JOB_EXECUTION where JOB_EXECUTION_ID >= ?", FIRST_ID);
+        jdbcTemplate.update("delete from BATCH_JOB_INSTANCE where JOB_INSTANCE_ID >= ?", FIRST_ID);
+        jobExecutionProvider.setSeekCountLimit(10000);
+    }
+
+    @Test
+    public void testContinuationPagesVisitEveryJobInOrder() {
+        String feedName = "paging.order";
+        List<long[]> jobs = createJobs(feedName, 250, 40);
+        String filter = "feed==" + feedName;
+
+        //start time descending, ties broken by the newest job first
+        List<Long> expected = jobs.stream()
+            .sorted(Comparator.<long[]>comparingLong(job -> job[1]).thenComparingLong(job -> job[0]).reversed())
+            .map(job -> job[0])
+            .collect(Collectors.toList());
+        Assert.assertEquals(expected, pageThrough(filter, new Sort(Sort.Direction.DESC, "startTime"), 20));
+
+        List<Long> ascending = jobs.stream().map(job -> job[0]).sorted().collect(Collectors.toList());
+        Assert.assertEquals(ascending, pageThrough(filter, new Sort(Sort.Direction.ASC, "executionId"), 33));
+
+        ContinuationPage<? extends BatchJobExecution> first = metadataAccess.read(() -> jobExecutionProvider.findAll(filter, null, 20, ""));
+        Assert.assertEquals(250L, first.getTotal());
+        Assert.assertFalse(first.isTotalCapped());
+
+        jobExecutionProvider.setSeekCountLimit(100);
+        ContinuationPage<? extends BatchJobExecution> capped = metadataAccess.read(() -> jobExecutionProvider.findAll(filter, null, 20, null));
+        Assert.assertEquals(100L, capped.getTotal());
+        Assert.assertTrue(capped.isTotalCapped());
+        //later pages carry the total from the first page
+        ContinuationPage<? extends BatchJobExecution> second = metadataAccess.read(() -> jobExecutionProvider.findAll(filter, null, 20, capped.getContinuationToken()));
+        Assert.assertEquals(100L, second.getTotal());
+        Assert.assertTrue(second.isTotalCapped());
+    }
+
+    @Test
+    public void testTokenFromAnotherQueryIsRejected() {
+        String feedName = "paging.token";
+        createJobs(feedName, 30, 30);
+        String filter = "feed==" + feedName;
+        String token = metadataAccess.read(() -> jobExecutionProvider.findAll(filter, null, 10, null)).getContinuationToken();
+        Assert.assertNotNull(token);
+
+        try {
+            metadataAccess.read(() -> jobExecutionProvider.findAll(filter, new Sort(Sort.Direction.ASC, "startTime"), 10, token));
+            Assert.fail("The token was created for a different sort");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        try {
+            metadataAccess.read(() -> jobExecutionProvider.findAll(filter, null, 10, "not a token"));
+            Assert.fail("The token is not valid");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    /**
+     * Jobs that haven't started sort before every start time, so they come first ascending and last descending
+     */
+    @Test
+    public void testJobsWithoutATimeArePagedSeparately() {
+        String feedName = "paging.nulls";
+        List<long[]> jobs = createJobs(feedName, 60, 20);
+        String filter = "feed==" + feedName;
+        List<Long> notStarted = jobs.stream().filter(job -> job[0] % 4 == 0).map(job -> job[0]).collect(Collectors.toList());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.batchUpdate("update BATCH_JOB_EXECUTION set START_TIME = null where JOB_EXECUTION_ID = ?", notStarted.stream().map(id -> new Object[]{id}).collect(Collectors.toList()));
+
+        List<Long> started = jobs.stream()
+            .filter(job -> job[0] % 4 != 0)
+            .sorted(Comparator.<long[]>comparingLong(job -> job[1]).thenComparingLong(job -> job[0]))
+            .map(job -> job[0])
+            .collect(Collectors.toList());
+
+        List<Long> ascending = new ArrayList<>(notStarted);
+        ascending.addAll(started);
+        Assert.assertEquals(ascending, pageThrough(filter, new Sort(Sort.Direction.ASC, "startTime"), 7));
+
+        List<Long> descending = new ArrayList<>(ascending);
+        Collections.reverse(descending);
+        Assert.assertEquals(descending, pageThrough(filter, new Sort(Sort.Direction.DESC, "startTime"), 7));
+    }
+
+    /**
+     * The seek compares the start time column itself, not a function of it, so an index on START_TIME can seek to the position
+     */
+    @Test
+    public void testSeekComparesTheSortColumn() {
+        String feedName = "paging.sql";
+        createJobs(feedName, 30, 30);
+        String filter = "feed==" + feedName;
+        Sort sort = new Sort(Sort.Direction.DESC, "startTime");
+        String token = metadataAccess.read(() -> jobExecutionProvider.findAll(filter, sort, 10, null)).getContinuationToken();
+
+        List<String> statements = captureSql(() -> metadataAccess.read(() -> jobExecutionProvider.findAll(filter, sort, 10, token)));
+        List<String> pageQueries = statements.stream().map(String::toLowerCase).filter(sql -> sql.contains(" order by ")).collect(Collectors.toList());
+        Assert.assertFalse(pageQueries.isEmpty());
+        for (String sql : pageQueries) {
+            Assert.assertFalse(sql, sql.contains("coalesce"));
+        }
+        String where = pageQueries.get(0).substring(pageQueries.get(0).indexOf(" where "));
+        Assert.assertTrue(where, Pattern.compile("\\.start_time<=\\?").matcher(where).find());
+        Assert.assertTrue(where, Pattern.compile("order by \\w+\\.start_time desc").matcher(where).find());
+    }
+
+    /**
+     * Collect the SQL hibernate logs while the action runs
+     */
+    private List<String> captureSql(Runnable action) {
+        List<String> statements = new ArrayList<>();
+        AppenderSkeleton appender = new AppenderSkeleton() {
+            @Override
+            protected void append(LoggingEvent event) {
+                statements.add(event.getRenderedMessage());
+            }
+
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public boolean requiresLayout() {
+                return false;
+            }
+        };
+        org.apache.log4j.Logger sqlLogger = org.apache.log4j.Logger.getLogger("org.hibernate.SQL");
+        sqlLogger.addAppender(appender);
+        try {
+            action.run();
+        } finally {
+            sqlLogger.removeAppender(appender);
+        }
+        return statements;
+    }
+
+    private List<Long> pageThrough(String filter, Sort sort, int pageSize) {
+        List<Long> ids = new ArrayList<>();
+        String token = "";
+        do {
+            String pageToken = token;
+            ContinuationPage<? extends BatchJobExecution> page = metadataAccess.read(() -> jobExecutionProvider.findAll(filter, sort, pageSize, pageToken));
+            page.getContent().forEach(job -> ids.add(job.getJobExecutionId()));
+            Assert.assertTrue(page.getContent().size() <= pageSize);
+            token = page.getContinuationToken();
+        } while (token != null);
+        return ids;
+    }
+
+    /**
+     * Insert jobs for a feed directly, sharing start times between jobs so the sort has ties
+     *
+     * @return the job execution id and start time of each job
+     */
+    private List<long[]> createJobs(String feedName, int count, int distinctStartTimes) {
+        OpsManagerFeed feed = metadataAccess.commit(() -> feedProvider.save(feedProvider.resolveId(UUID.randomUUID().toString()), feedName));
+        UUID uuid = ((OpsManagerFeedId) feed.getId()).getUuid();
+        byte[] feedId = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+
+        long baseTime = System.currentTimeMillis() - 1000L * 60 * 60 * 24 * 30;
+        List<long[]> jobs = new ArrayList<>();
+        List<Object[]> instances = new ArrayList<>();
+        List<Object[]> executions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long id = nextId++;
+            long startTime = baseTime + (i % distinctStartTimes) * 1000L;
+            jobs.add(new long[]{id, startTime});
+            instances.add(new Object[]{id, 0L, feedName, feedName + id, feedId});
+            executions.add(new Object[]{id, 0L, id, startTime, startTime + 500L, "COMPLETED", "COMPLETED"});
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.batchUpdate("insert into BATCH_JOB_INSTANCE (JOB_INSTANCE_ID, VERSION, JOB_NAME, JOB_KEY, FEED_ID) values (?, ?, ?, ?, ?)", instances);
+        jdbcTemplate.batchUpdate("insert into BATCH_JOB_EXECUTION (JOB_EXECUTION_ID, VERSION, JOB_INSTANCE_ID, START_TIME, END_TIME, STATUS, EXIT_CODE) values (?, ?, ?, ?, ?, ?, ?)",
+                                 executions);
+        return jobs;
+    }
+}
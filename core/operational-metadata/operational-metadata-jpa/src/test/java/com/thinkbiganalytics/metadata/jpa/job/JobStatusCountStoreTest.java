@@ -0,0 +1,306 @@
+package com.thinkbiganalytics.metadata.jpa.job;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.collect.ImmutableList;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.StringExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeed;
+import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeedProvider;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecutionProvider;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.JobStatusCount;
+import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiEvent;
+import com.thinkbiganalytics.metadata.config.OperationalMetadataConfig;
+import com.thinkbiganalytics.metadata.jpa.TestJpaConfiguration;
+import com.thinkbiganalytics.metadata.jpa.feed.OpsManagerFeedId;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.job.JobStatusCountStore;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.job.JpaBatchJobExecutionStatusCounts;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.job.QJpaBatchJobExecution;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.NifiEventProvider;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+import com.thinkbiganalytics.spring.CommonsSpringConfiguration;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+/**
+ * Checks the job status counts stay in step with the job executions as jobs are saved
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@TestPropertySource(locations = "classpath:test-application.properties")
+@SpringApplicationConfiguration(classes = {CommonsSpringConfiguration.class, OperationalMetadataConfig.class, TestJpaConfiguration.class})
+public class JobStatusCountStoreTest {
+
+    /**
+     * ids well past anything the key generator hands out to the other tests
+     */
+    private static final long FIRST_ID = 6_000_000L;
+
+    private static final AtomicLong eventIds = new AtomicLong(2000000L);
+
+    private static final String[] STATUSES = {"COMPLETED", "COMPLETED", "COMPLETED", "FAILED", "STARTED", "ABANDONED", "STOPPED"};
+
+    @Inject
+    private BatchJobExecutionProvider jobExecutionProvider;
+
+    @Inject
+    private OpsManagerFeedProvider feedProvider;
+
+    @Inject
+    private NifiEventProvider nifiEventProvider;
+
+    @Inject
+    private JobStatusCountStore jobStatusCountStore;
+
+    @Inject
+    private JPAQueryFactory factory;
+
+    @Inject
+    private MetadataAccess metadataAccess;
+
+    @Inject
+    private DataSource dataSource;
+
+    private long nextId = FIRST_ID;
+
+    @After
+    public void cleanup() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("delete from BATCH_JOB_EXECUTION where JOB_EXECUTION_ID >= ? and JOB_EXECUTION_ID < ?", FIRST_ID, FIRST_ID + 1_000_000L);
+        jdbcTemplate.update("delete from BATCH_JOB_INSTANCE where JOB_INSTANCE_ID >= ? and JOB_INSTANCE_ID < ?", FIRST_ID, FIRST_ID + 1_000_000L);
+        jobStatusCountStore.setCacheEnabled(true);
+    }
+
+    @Test
+    public void testCountsFollowJobSaves() {
+        String feedName = "counts.consistency";
+        List<Long> jobIds = createJobs(feedName, 300, 10);
+        metadataAccess.commit(() -> jobStatusCountStore.rebuild(feedName), MetadataAccess.SERVICE);
+        assertCountsMatch(feedName);
+
+        //new jobs from provenance events, some of them failing
+        for (int i = 0; i < 6; i++) {
+            List<ProvenanceEventRecordDTO> events = createJobEvents(feedName, i % 3 == 0);
+            metadataAccess.commit(() -> {
+                List<NifiEvent> nifiEvents = nifiEventProvider.create(events);
+                return jobExecutionProvider.saveJobEvents(events, nifiEvents);
+            }, MetadataAccess.SERVICE);
+        }
+        assertCountsMatch(feedName);
+
+        //fail running jobs, abandon failed ones and move the start day of others
+        for (int i = 0; i < jobIds.size(); i += 7) {
+            Long jobId = jobIds.get(i);
+            metadataAccess.commit(() -> {
+                BatchJobExecution jobExecution = jobExecutionProvider.findByJobExecutionId(jobId);
+                if (jobExecution.getStatus() == BatchJobExecution.JobStatus.STARTED) {
+                    jobExecution.setStatus(BatchJobExecution.JobStatus.FAILED);
+                } else if (jobExecution.getStatus() == BatchJobExecution.JobStatus.FAILED) {
+                    jobExecution.setStatus(BatchJobExecution.JobStatus.ABANDONED);
+                } else {
+                    jobExecution.setStartTime(jobExecution.getStartTime().minusDays(1));
+                }
+                return jobExecutionProvider.save(jobExecution);
+            }, MetadataAccess.SERVICE);
+        }
+        assertCountsMatch(feedName);
+
+        //a rolled back save leaves the counts alone
+        Long jobId = jobIds.get(1);
+        try {
+            metadataAccess.commit(() -> {
+                BatchJobExecution jobExecution = jobExecutionProvider.findByJobExecutionId(jobId);
+                jobExecution.setStatus(BatchJobExecution.JobStatus.FAILED);
+                jobExecutionProvider.save(jobExecution);
+                throw new IllegalStateException("rollback");
+            }, MetadataAccess.SERVICE);
+            Assert.fail("The transaction should roll back");
+        } catch (RuntimeException e) {
+            //expected
+        }
+        assertCountsMatch(feedName);
+    }
+
+    @Test
+    public void testRunningOrFailedCounts() {
+        String feedName = "counts.running_failed";
+        createJobs(feedName, 70, 7);
+        metadataAccess.commit(() -> jobStatusCountStore.rebuild(null), MetadataAccess.SERVICE);
+
+        Map<String, Long> expected = toMap(metadataAccess.read(() -> groupJobs(null, false), MetadataAccess.SERVICE));
+        expected.keySet().retainAll(ImmutableList.of(JobStatusCountStore.RUNNING, JobStatusCountStore.FAILED));
+        Map<String, Long> actual = toMap(metadataAccess.read(() -> jobExecutionProvider.getJobStatusCount(BatchJobExecutionProvider.RUNNING_OR_FAILED_FILTER), MetadataAccess.SERVICE));
+        Assert.assertEquals(expected, actual);
+    }
+
+    /**
+     * The daily counts since a date match grouping the job executions, whether or not they come from the cache
+     */
+    @Test
+    public void testDailyCountsSince() {
+        String feedName = "counts.since";
+        createJobs(feedName, 700, 90);
+        metadataAccess.commit(() -> jobStatusCountStore.rebuild(null), MetadataAccess.SERVICE);
+        DateTime since = DateTime.now(DateTimeZone.UTC).minusDays(30);
+
+        Map<String, Long> expected = toMap(metadataAccess.read(() -> groupJobs(since, true), MetadataAccess.SERVICE));
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertTrue(expected.size() < toMap(metadataAccess.read(() -> groupJobs(null, true), MetadataAccess.SERVICE)).size());
+
+        jobStatusCountStore.setCacheEnabled(false);
+        Assert.assertEquals(expected, toMap(metadataAccess.read(() -> jobStatusCountStore.getJobStatusCountByDate(null, since), MetadataAccess.SERVICE)));
+        jobStatusCountStore.setCacheEnabled(true);
+        Assert.assertEquals(expected, toMap(metadataAccess.read(() -> jobStatusCountStore.getJobStatusCountByDate(null, since), MetadataAccess.SERVICE)));
+        Assert.assertEquals(expected, toMap(metadataAccess.read(() -> jobStatusCountStore.getJobStatusCountByDate(null, since), MetadataAccess.SERVICE)));
+    }
+
+    private void assertCountsMatch(String feedName) {
+        Map<String, Long> expected = toMap(metadataAccess.read(() -> groupJobs(null, true, feedName), MetadataAccess.SERVICE));
+        Map<String, Long> actual = toMap(metadataAccess.read(() -> jobStatusCountStore.getJobStatusCountByDate(feedName, null), MetadataAccess.SERVICE));
+        Assert.assertEquals(expected, actual);
+    }
+
+    private List<JobStatusCount> groupJobs(DateTime since, boolean byDay) {
+        return groupJobs(since, byDay, null);
+    }
+
+    /**
+     * Group the job executions the way the job status counts were computed before they were maintained as jobs are saved
+     */
+    private List<JobStatusCount> groupJobs(DateTime since, boolean byDay, String feedName) {
+        QJpaBatchJobExecution jobExecution = QJpaBatchJobExecution.jpaBatchJobExecution;
+        StringExpression jobState = new CaseBuilder().when(jobExecution.status.eq(BatchJobExecution.JobStatus.FAILED)).then("FAILED")
+            .when(jobExecution.status.in(BatchJobExecution.JobStatus.STARTED, BatchJobExecution.JobStatus.STARTING)).then("RUNNING")
+            .otherwise(jobExecution.status.stringValue());
+        BooleanBuilder whereBuilder = new BooleanBuilder();
+        whereBuilder.and(jobExecution.startYear.isNotNull());
+        if (since != null) {
+            whereBuilder.and(jobExecution.startTime.goe(since.withTimeAtStartOfDay()));
+        }
+        if (feedName != null) {
+            whereBuilder.and(jobExecution.jobInstance.jobName.eq(feedName));
+        }
+        if (byDay) {
+            return new ArrayList<>(factory.select(Projections.constructor(JpaBatchJobExecutionStatusCounts.class, jobState, jobExecution.startYear, jobExecution.startMonth,
+                                                                          jobExecution.startDay, jobExecution.count()))
+                                       .from(jobExecution)
+                                       .where(whereBuilder)
+                                       .groupBy(jobState, jobExecution.startYear, jobExecution.startMonth, jobExecution.startDay)
+                                       .fetch());
+        } else {
+            return new ArrayList<>(factory.select(Projections.constructor(JpaBatchJobExecutionStatusCounts.class, jobState, jobExecution.count()))
+                                       .from(jobExecution)
+                                       .where(whereBuilder)
+                                       .groupBy(jobState)
+                                       .fetch());
+        }
+    }
+
+    private Map<String, Long> toMap(List<JobStatusCount> counts) {
+        Map<String, Long> map = new HashMap<>();
+        for (JobStatusCount count : counts) {
+            String key = count.getDate() != null ? count.getStatus() + " " + count.getDate().toLocalDate() : count.getStatus();
+            map.merge(key, count.getCount(), Long::sum);
+        }
+        map.values().removeIf(count -> count == 0L);
+        return map;
+    }
+
+    /**
+     * Insert jobs for a feed directly, spread over the given number of days
+     *
+     * @return the job execution ids
+     */
+    private List<Long> createJobs(String feedName, int count, int days) {
+        OpsManagerFeed feed = metadataAccess.commit(() -> feedProvider.save(feedProvider.resolveId(UUID.randomUUID().toString()), feedName), MetadataAccess.SERVICE);
+        UUID uuid = ((OpsManagerFeedId) feed.getId()).getUuid();
+        byte[] feedId = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+
+        DateTime baseTime = DateTime.now(DateTimeZone.UTC).minusDays(days);
+        List<Long> jobIds = new ArrayList<>();
+        List<Object[]> instances = new ArrayList<>();
+        List<Object[]> executions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long id = nextId++;
+            DateTime startTime = baseTime.plusDays(i % days).plusMinutes(i % 1000);
+            String status = STATUSES[i % STATUSES.length];
+            jobIds.add(id);
+            instances.add(new Object[]{id, 0L, feedName, feedName + id, feedId});
+            executions.add(new Object[]{id, 0L, id, startTime.getMillis(), startTime.getYear(), startTime.getMonthOfYear(), startTime.getDayOfMonth(), status,
+                                        "STARTED".equals(status) ? "EXECUTING" : status});
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.batchUpdate("insert into BATCH_JOB_INSTANCE (JOB_INSTANCE_ID, VERSION, JOB_NAME, JOB_KEY, FEED_ID) values (?, ?, ?, ?, ?)", instances);
+        jdbcTemplate.batchUpdate("insert into BATCH_JOB_EXECUTION (JOB_EXECUTION_ID, VERSION, JOB_INSTANCE_ID, START_TIME, START_YEAR, START_MONTH, START_DAY, STATUS, EXIT_CODE) "
+                                 + "values (?, ?, ?, ?, ?, ?, ?, ?, ?)", executions);
+        return jobIds;
+    }
+
+    private List<ProvenanceEventRecordDTO> createJobEvents(String feedName, boolean failed) {
+        String jobFlowFileId = UUID.randomUUID().toString();
+        DateTime startTime = DateTime.now();
+        List<ProvenanceEventRecordDTO> events = new ArrayList<>();
+        for (int j = 0; j < 3; j++) {
+            ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+            event.setEventId(eventIds.incrementAndGet());
+            event.setFlowFileUuid(jobFlowFileId);
+            event.setJobFlowFileId(jobFlowFileId);
+            event.setFeedName(feedName);
+            event.setComponentId(UUID.randomUUID().toString());
+            event.setComponentName("processor " + j);
+            event.setEventType("ATTRIBUTES_MODIFIED");
+            event.setEventTime(startTime.plusMillis(j));
+            event.setStartTime(startTime);
+            event.setEventDuration(1L);
+            event.setIsBatchJob(true);
+            event.setIsStartOfJob(j == 0);
+            event.setIsEndOfJob(j == 2);
+            event.setIsFinalJobEvent(j == 2);
+            event.setHasFailedEvents(failed && j == 2);
+            events.add(event);
+        }
+        return events;
+    }
+}
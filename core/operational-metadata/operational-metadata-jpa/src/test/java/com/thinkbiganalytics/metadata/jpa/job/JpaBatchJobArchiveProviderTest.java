@@ -0,0 +1,230 @@
+package com.thinkbiganalytics.metadata.jpa.job;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeedProvider;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.ArchivedBatchJobExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobArchiveStatus;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecutionProvider;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.JobStatusCount;
+import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiEvent;
+import com.thinkbiganalytics.metadata.config.OperationalMetadataConfig;
+import com.thinkbiganalytics.metadata.jpa.TestJpaConfiguration;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.job.JobStatusCountStore;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.job.JpaArchivedBatchJobExecution;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.job.JpaBatchJobArchiveProvider;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.NifiEventProvider;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+import com.thinkbiganalytics.spring.CommonsSpringConfiguration;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+/**
+ * Archives jobs created from provenance events and checks they are removed from the live tables and can still be read
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@TestPropertySource(locations = "classpath:test-application.properties")
+@SpringApplicationConfiguration(classes = {CommonsSpringConfiguration.class, OperationalMetadataConfig.class, TestJpaConfiguration.class})
+public class JpaBatchJobArchiveProviderTest {
+
+    private static final AtomicLong eventIds = new AtomicLong(3000000L);
+
+    private static final int EVENTS_PER_JOB = 3;
+
+    /**
+     * the test jobs run before this so jobs left by the other tests aren't archived
+     */
+    private static final DateTime CUTOFF = DateTime.now().minusDays(30);
+
+    @Inject
+    private JpaBatchJobArchiveProvider archiveProvider;
+
+    @Inject
+    private BatchJobExecutionProvider jobExecutionProvider;
+
+    @Inject
+    private OpsManagerFeedProvider feedProvider;
+
+    @Inject
+    private NifiEventProvider nifiEventProvider;
+
+    @Inject
+    private JobStatusCountStore jobStatusCountStore;
+
+    @Inject
+    private MetadataAccess metadataAccess;
+
+    @Inject
+    private DataSource dataSource;
+
+    @After
+    public void cleanup() {
+        new JdbcTemplate(dataSource).update("delete from BATCH_JOB_EXECUTION_ARCHIVE");
+        archiveProvider.setBatchSize(200);
+    }
+
+    @Test
+    public void testArchiveFinishedJobs() {
+        String feedName = "archive.jobs";
+        int jobCount = 25;
+        List<String> jobFlowFiles = createJobs(feedName, jobCount);
+        List<Long> jobIds = jobIds(jobFlowFiles);
+        Long archivedJobId = jobIds.get(0);
+        Long latestJobId = jobIds.get(jobIds.size() - 1);
+        BatchJobExecution liveJob = metadataAccess.read(() -> {
+            BatchJobExecution jobExecution = jobExecutionProvider.findByJobExecutionId(archivedJobId);
+            jobExecution.getStepExecutions().size();
+            jobExecution.getJobParametersAsMap();
+            return jobExecution;
+        }, MetadataAccess.SERVICE);
+
+        //archive in several batches
+        archiveProvider.setBatchSize(10);
+        long archived = archiveProvider.archive(CUTOFF);
+        Assert.assertEquals(jobCount - 1, archived);
+
+        //the latest job is kept for the feed's health, everything else is gone from the live tables
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        List<Long> liveJobIds = jdbcTemplate.queryForList("select e.JOB_EXECUTION_ID from BATCH_JOB_EXECUTION e join BATCH_JOB_INSTANCE i on i.JOB_INSTANCE_ID = e.JOB_INSTANCE_ID "
+                                                          + "where i.JOB_NAME = ?", Long.class, feedName);
+        Assert.assertEquals(1, liveJobIds.size());
+        Assert.assertEquals(latestJobId, liveJobIds.get(0));
+        Assert.assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject("select count(*) from BATCH_STEP_EXECUTION where JOB_EXECUTION_ID = ?", Integer.class, archivedJobId));
+        Assert.assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject("select count(*) from NIFI_EVENT where JOB_FLOW_FILE_ID = ?", Integer.class, jobFlowFiles.get(0)));
+        Assert.assertEquals(Integer.valueOf(EVENTS_PER_JOB),
+                            jdbcTemplate.queryForObject("select count(*) from NIFI_EVENT where JOB_FLOW_FILE_ID = ?", Integer.class, jobFlowFiles.get(jobCount - 1)));
+
+        //the status counts only include the live job
+        long counted = metadataAccess.read(() -> jobStatusCountStore.getJobStatusCountByDate(feedName, null), MetadataAccess.SERVICE).stream().mapToLong(JobStatusCount::getCount).sum();
+        Assert.assertEquals(1L, counted);
+
+        //archived jobs can still be read
+        ArchivedBatchJobExecution archivedJob = metadataAccess.read(() -> archiveProvider.findArchivedJob(archivedJobId), MetadataAccess.SERVICE);
+        Assert.assertNotNull(archivedJob);
+        Assert.assertEquals(feedName, archivedJob.getFeedName());
+        Assert.assertEquals(liveJob.getStatus(), archivedJob.getStatus());
+        Assert.assertEquals(liveJob.getEndTime(), archivedJob.getEndTime());
+        Assert.assertEquals(liveJob.getJobParametersAsMap(), archivedJob.getJobParametersAsMap());
+        Assert.assertEquals(liveJob.getStepExecutions().size(), archivedJob.getStepExecutions().size());
+        Assert.assertNull(metadataAccess.read(() -> archiveProvider.findArchivedJob(latestJobId), MetadataAccess.SERVICE));
+
+        List<? extends ArchivedBatchJobExecution> page = metadataAccess.read(() -> archiveProvider.findArchivedJobs(feedName, null, 10), MetadataAccess.SERVICE);
+        Assert.assertEquals(10, page.size());
+        Long before = page.get(page.size() - 1).getJobExecutionId();
+        List<? extends ArchivedBatchJobExecution> nextPage = metadataAccess.read(() -> archiveProvider.findArchivedJobs(feedName, before, 100), MetadataAccess.SERVICE);
+        Assert.assertEquals(jobCount - 11, nextPage.size());
+        Assert.assertTrue(nextPage.stream().allMatch(job -> job.getJobExecutionId() < before));
+
+        //archiving again finds nothing new
+        Assert.assertEquals(0L, archiveProvider.archive(CUTOFF));
+
+        BatchJobArchiveStatus status = metadataAccess.read(() -> archiveProvider.getArchiveStatus(), MetadataAccess.SERVICE);
+        Assert.assertEquals(jobCount - 1, status.getArchivedJobCount());
+        Assert.assertTrue(((JpaArchivedBatchJobExecution) archivedJob).getJobDetailsSize() > 0);
+    }
+
+    /**
+     * Archive a larger number of jobs in one run
+     */
+    @Test
+    public void testArchiveManyJobs() {
+        int jobCount = 500;
+        createJobs("archive.many", jobCount);
+        long archived = archiveProvider.archive(CUTOFF);
+        Assert.assertEquals(jobCount - 1, archived);
+
+        BatchJobArchiveStatus status = metadataAccess.read(() -> archiveProvider.getArchiveStatus(), MetadataAccess.SERVICE);
+        Assert.assertEquals(archived, status.getLastRunArchivedJobs());
+        Assert.assertTrue(status.getLastRunArchivedRows() >= archived);
+    }
+
+    private List<Long> jobIds(List<String> jobFlowFiles) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        List<Long> jobIds = new ArrayList<>();
+        for (String flowFile : jobFlowFiles) {
+            jobIds.add(jdbcTemplate.queryForObject("select JOB_EXECUTION_ID from BATCH_NIFI_JOB where FLOW_FILE_ID = ?", Long.class, flowFile));
+        }
+        return jobIds;
+    }
+
+    /**
+     * Create finished jobs for a feed from provenance events, one second apart and before the {@link #CUTOFF}
+     *
+     * @return the job flow file ids
+     */
+    private List<String> createJobs(String feedName, int count) {
+        metadataAccess.commit(() -> feedProvider.save(feedProvider.resolveId(UUID.randomUUID().toString()), feedName), MetadataAccess.SERVICE);
+        DateTime baseTime = CUTOFF.minusSeconds(count + 1);
+        List<String> jobFlowFiles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String jobFlowFileId = UUID.randomUUID().toString();
+            List<ProvenanceEventRecordDTO> events = createJobEvents(feedName, jobFlowFileId, baseTime.plusSeconds(i), i % 4 == 0);
+            metadataAccess.commit(() -> {
+                List<NifiEvent> nifiEvents = nifiEventProvider.create(events);
+                return jobExecutionProvider.saveJobEvents(events, nifiEvents);
+            }, MetadataAccess.SERVICE);
+            jobFlowFiles.add(jobFlowFileId);
+        }
+        return jobFlowFiles;
+    }
+
+    private List<ProvenanceEventRecordDTO> createJobEvents(String feedName, String jobFlowFileId, DateTime startTime, boolean failed) {
+        List<ProvenanceEventRecordDTO> events = new ArrayList<>();
+        for (int j = 0; j < EVENTS_PER_JOB; j++) {
+            ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+            event.setEventId(eventIds.incrementAndGet());
+            event.setFlowFileUuid(jobFlowFileId);
+            event.setJobFlowFileId(jobFlowFileId);
+            event.setFeedName(feedName);
+            event.setComponentId(UUID.randomUUID().toString());
+            event.setComponentName("processor " + j);
+            event.setEventType("ATTRIBUTES_MODIFIED");
+            event.setEventTime(startTime.plusMillis(j));
+            event.setStartTime(startTime);
+            event.setEventDuration(1L);
+            event.setIsBatchJob(true);
+            event.setIsStartOfJob(j == 0);
+            event.setIsEndOfJob(j == EVENTS_PER_JOB - 1);
+            event.setIsFinalJobEvent(j == EVENTS_PER_JOB - 1);
+            event.setHasFailedEvents(failed && j == EVENTS_PER_JOB - 1);
+            events.add(event);
+        }
+        return events;
+    }
+}
@@ -23,16 +23,22 @@ package com.thinkbiganalytics.metadata.jpa.job;
 import com.querydsl.core.BooleanBuilder;
 import com.thinkbiganalytics.DateTimeUtil;
 import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeedProvider;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecutionProvider;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.JobStatusCount;
+import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiEvent;
 import com.thinkbiganalytics.metadata.config.OperationalMetadataConfig;
 import com.thinkbiganalytics.metadata.jpa.TestJpaConfiguration;
 import com.thinkbiganalytics.metadata.jpa.jobrepo.job.QJpaBatchJobExecution;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.NifiEventProvider;
 import com.thinkbiganalytics.metadata.jpa.support.GenericQueryDslFilter;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
 import com.thinkbiganalytics.spring.CommonsSpringConfiguration;
 
+import org.joda.time.DateTime;
 import org.joda.time.Period;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.boot.test.SpringApplicationConfiguration;
@@ -43,9 +49,14 @@ import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -57,6 +68,7 @@ import javax.inject.Inject;
 @SpringApplicationConfiguration(classes = {CommonsSpringConfiguration.class, OperationalMetadataConfig.class, TestJpaConfiguration.class})
 public class JpaBatchJobExecutionTest {
 
+    private static final AtomicLong eventIds = new AtomicLong(4000000L);
 
     @Inject
     private BatchJobExecutionProvider jobExecutionProvider;
@@ -64,6 +76,12 @@ public class JpaBatchJobExecutionTest {
     @Inject
     private MetadataAccess operationalMetadataAccess;
 
+    @Inject
+    private OpsManagerFeedProvider feedProvider;
+
+    @Inject
+    private NifiEventProvider nifiEventProvider;
+
     public static Map<String, Field> getFields(Class<?> cl) {
         return Arrays.asList(cl.getDeclaredFields()).stream().collect(Collectors.toMap(f -> f.getName(), f -> f));
     }
@@ -107,4 +125,57 @@ public class JpaBatchJobExecutionTest {
         });
 
     }
+
+    @Test
+    public void testFindLatestCompletedJobForFeeds() {
+        createJobs("latest.jobs.a", DateTime.now().minusHours(1), false, false, true);
+        createJobs("latest.jobs.b", DateTime.now().minusHours(2), false, false);
+        Set<String> feedNames = new HashSet<>(Arrays.asList("latest.jobs.a", "latest.jobs.b", "latest.jobs.none"));
+
+        operationalMetadataAccess.read(() -> {
+            Map<String, BatchJobExecution> latestJobs = jobExecutionProvider.findLatestCompletedJobForFeeds(feedNames);
+            Assert.assertEquals(2, latestJobs.size());
+            for (String feedName : feedNames) {
+                BatchJobExecution expected = jobExecutionProvider.findLatestCompletedJobForFeed(feedName);
+                BatchJobExecution actual = latestJobs.get(feedName);
+                Assert.assertEquals(expected != null ? expected.getJobExecutionId() : null, actual != null ? actual.getJobExecutionId() : null);
+            }
+            Assert.assertEquals(BatchJobExecution.JobStatus.COMPLETED, latestJobs.get("latest.jobs.a").getStatus());
+            return null;
+        }, MetadataAccess.SERVICE);
+    }
+
+    /**
+     * Creates a job for the feed from provenance events for each of the flags, one second apart, failing the jobs flagged true
+     */
+    private void createJobs(String feedName, DateTime startTime, boolean... failed) {
+        operationalMetadataAccess.commit(() -> feedProvider.save(feedProvider.resolveId(UUID.randomUUID().toString()), feedName), MetadataAccess.SERVICE);
+        for (int i = 0; i < failed.length; i++) {
+            String jobFlowFileId = UUID.randomUUID().toString();
+            List<ProvenanceEventRecordDTO> events = new ArrayList<>();
+            for (int j = 0; j < 2; j++) {
+                ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+                event.setEventId(eventIds.incrementAndGet());
+                event.setFlowFileUuid(jobFlowFileId);
+                event.setJobFlowFileId(jobFlowFileId);
+                event.setFeedName(feedName);
+                event.setComponentId(UUID.randomUUID().toString());
+                event.setComponentName("processor " + j);
+                event.setEventType("ATTRIBUTES_MODIFIED");
+                event.setEventTime(startTime.plusSeconds(i).plusMillis(j));
+                event.setStartTime(startTime.plusSeconds(i));
+                event.setEventDuration(1L);
+                event.setIsBatchJob(true);
+                event.setIsStartOfJob(j == 0);
+                event.setIsEndOfJob(j == 1);
+                event.setIsFinalJobEvent(j == 1);
+                event.setHasFailedEvents(failed[i] && j == 1);
+                events.add(event);
+            }
+            operationalMetadataAccess.commit(() -> {
+                List<NifiEvent> nifiEvents = nifiEventProvider.create(events);
+                return jobExecutionProvider.saveJobEvents(events, nifiEvents);
+            }, MetadataAccess.SERVICE);
+        }
+    }
 }
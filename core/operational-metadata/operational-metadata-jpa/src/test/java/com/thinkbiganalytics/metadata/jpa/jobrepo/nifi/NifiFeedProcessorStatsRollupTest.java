@@ -0,0 +1,276 @@
+package com.thinkbiganalytics.metadata.jpa.jobrepo.nifi;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiFeedProcessorStats;
+import com.thinkbiganalytics.metadata.config.OperationalMetadataConfig;
+import com.thinkbiganalytics.metadata.jpa.TestJpaConfiguration;
+import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.JpaNifiFeedProcessorStatsRollup.Bucket;
+import com.thinkbiganalytics.spring.CommonsSpringConfiguration;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.hibernate.exception.ConstraintViolationException;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+/**
+ * Checks the minute, hour and day rollups of the feed processor stats against the raw stats and the purge of the raw stats.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@TestPropertySource(locations = "classpath:test-application.properties")
+@SpringApplicationConfiguration(classes = {CommonsSpringConfiguration.class, OperationalMetadataConfig.class, TestJpaConfiguration.class})
+public class NifiFeedProcessorStatsRollupTest {
+
+    private static final String FEED_NAME = "test.processor_stats";
+
+    private static final String[] PROCESSORS = {"GetFile", "UpdateAttribute", "PutHDFS"};
+
+    private static final int DAYS = 3;
+
+    private static final int STATS_PER_HOUR = 4;
+
+    private static final Set<String> loadedFeeds = new HashSet<>();
+
+    /**
+     * each stats message gets the next event id, as NiFi sends them
+     */
+    private static final AtomicLong eventId = new AtomicLong();
+
+    /**
+     * midnight UTC, far enough back that all the generated stats are in the past
+     */
+    private static final DateTime START = Bucket.DAY.bucketStart(DateTime.now().minusDays(DAYS + 2));
+
+    @Inject
+    private NifiFeedProcessorStatisticsProvider statisticsProvider;
+
+    @Inject
+    private NifiFeedProcessorStatisticsRepository statisticsRepository;
+
+    @Inject
+    private NifiFeedProcessorStatsRollupRepository rollupRepository;
+
+    @Inject
+    private MetadataAccess metadataAccess;
+
+    private int rawRetentionDays;
+
+    @Before
+    public void setup() {
+        rawRetentionDays = statisticsProvider.getRawRetentionDays();
+        statisticsProvider.setRawRetentionDays(0);
+        loadStats(FEED_NAME, DAYS);
+    }
+
+    @After
+    public void tearDown() {
+        statisticsProvider.setRawRetentionDays(rawRetentionDays);
+    }
+
+    /**
+     * Load the days of stats, one message per hour as the JMS receiver would get them
+     */
+    private void loadStats(String feedName, int days) {
+        if (!loadedFeeds.add(feedName)) {
+            return;
+        }
+        long intervalMillis = TimeUnit.HOURS.toMillis(1) / STATS_PER_HOUR;
+        for (int hour = 0; hour < days * 24; hour++) {
+            List<NifiFeedProcessorStats> message = new ArrayList<>();
+            long messageEventId = eventId.incrementAndGet();
+            for (int i = 0; i < STATS_PER_HOUR; i++) {
+                DateTime minTime = START.plusHours(hour).plus(i * intervalMillis);
+                for (String processor : PROCESSORS) {
+                    NifiFeedProcessorStats stats = newStats(feedName, processor, minTime, minTime.plus(intervalMillis - 1));
+                    stats.setMaxEventId(messageEventId);
+                    message.add(stats);
+                }
+            }
+            metadataAccess.commit(() -> statisticsProvider.create(message), MetadataAccess.SERVICE);
+        }
+    }
+
+    private NifiFeedProcessorStats newStats(String feedName, String processor, DateTime minTime, DateTime maxTime) {
+        JpaNifiFeedProcessorStats stats = new JpaNifiFeedProcessorStats(feedName, processor + "-id");
+        stats.setProcessorName(processor);
+        stats.setMinEventTime(minTime);
+        stats.setMaxEventTime(maxTime);
+        stats.setCollectionTime(maxTime);
+        stats.setTotalCount(10L);
+        stats.setBytesIn(100L);
+        stats.setBytesOut(50L);
+        stats.setDuration(20L);
+        stats.setJobsStarted(1L);
+        stats.setJobsFinished(1L);
+        stats.setFlowFilesStarted(2L);
+        stats.setFlowFilesFinished(2L);
+        return stats;
+    }
+
+    private long totalCount(List<? extends JpaNifiFeedProcessorStats> stats) {
+        return stats.stream().mapToLong(JpaNifiFeedProcessorStats::getTotalCount).sum();
+    }
+
+    private long bytesIn(List<? extends JpaNifiFeedProcessorStats> stats) {
+        return stats.stream().mapToLong(JpaNifiFeedProcessorStats::getBytesIn).sum();
+    }
+
+    @Test
+    public void testRollupsMatchRawStats() {
+        DateTime end = START.plusDays(DAYS);
+        List<? extends JpaNifiFeedProcessorStats>
+            raw = metadataAccess.read(() -> statisticsProvider.findFeedProcessorStatisticsByProcessorId(FEED_NAME, START, end, null), MetadataAccess.SERVICE);
+        Assert.assertEquals(PROCESSORS.length, raw.size());
+        long expectedTotal = DAYS * 24 * STATS_PER_HOUR * PROCESSORS.length * 10L;
+        Assert.assertEquals(expectedTotal, totalCount(raw));
+
+        for (Bucket bucket : Bucket.values()) {
+            List<? extends JpaNifiFeedProcessorStats>
+                rollup = metadataAccess.read(() -> statisticsProvider.findFeedProcessorStatisticsByProcessorId(FEED_NAME, START, end, bucket), MetadataAccess.SERVICE);
+            Assert.assertEquals(bucket.name(), PROCESSORS.length, rollup.size());
+            Assert.assertEquals(bucket.name(), totalCount(raw), totalCount(rollup));
+            Assert.assertEquals(bucket.name(), bytesIn(raw), bytesIn(rollup));
+
+            List<? extends JpaNifiFeedProcessorStats>
+                byName = metadataAccess.read(() -> statisticsProvider.findFeedProcessorStatisticsByProcessorName(FEED_NAME, START, end, bucket), MetadataAccess.SERVICE);
+            Assert.assertEquals(bucket.name(), totalCount(raw), totalCount(byName));
+        }
+
+        List<? extends JpaNifiFeedProcessorStats>
+            hourly = metadataAccess.read(() -> statisticsProvider.findForFeedStatisticsGroupedByTime(FEED_NAME, START, end, Bucket.HOUR), MetadataAccess.SERVICE);
+        Assert.assertEquals(DAYS * 24, hourly.size());
+        Assert.assertEquals(expectedTotal, totalCount(hourly));
+    }
+
+    /**
+     * A window starting part way through a bucket includes that whole bucket rather than dropping it
+     */
+    @Test
+    public void testRollupIncludesLeadingPartialBucket() {
+        DateTime start = START.plusHours(1).plusMinutes(30);
+        DateTime end = START.plusHours(3).minusMinutes(1);
+        List<? extends JpaNifiFeedProcessorStats>
+            hourly = metadataAccess.read(() -> statisticsProvider.findForFeedStatisticsGroupedByTime(FEED_NAME, start, end, Bucket.HOUR), MetadataAccess.SERVICE);
+        Assert.assertEquals(2, hourly.size());
+        Assert.assertEquals(START.plusHours(1).getMillis(), hourly.get(0).getMaxEventTime().getMillis());
+        Assert.assertEquals(START.plusHours(2).getMillis(), hourly.get(1).getMaxEventTime().getMillis());
+        Assert.assertEquals(2 * STATS_PER_HOUR * PROCESSORS.length * 10L, totalCount(hourly));
+
+        List<? extends JpaNifiFeedProcessorStats>
+            daily = metadataAccess.read(() -> statisticsProvider.findFeedProcessorStatisticsByProcessorId(FEED_NAME, start, end, Bucket.DAY), MetadataAccess.SERVICE);
+        Assert.assertEquals(24 * STATS_PER_HOUR * PROCESSORS.length * 10L, totalCount(daily));
+    }
+
+    /**
+     * Two rows for the same bucket, feed and processor are rejected so concurrent rollups on different Kylo nodes fail and retry instead of double counting
+     */
+    @Test
+    public void testDuplicateRollupBucketRejected() {
+        DateTime bucketTime = Bucket.MINUTE.bucketStart(START);
+        try {
+            metadataAccess.commit(() -> {
+                rollupRepository.saveAndFlush(new JpaNifiFeedProcessorStatsRollup(Bucket.MINUTE, bucketTime, FEED_NAME + "_duplicate", "GetFile-id"));
+                rollupRepository.saveAndFlush(new JpaNifiFeedProcessorStatsRollup(Bucket.MINUTE, bucketTime, FEED_NAME + "_duplicate", "GetFile-id"));
+            }, MetadataAccess.SERVICE);
+            Assert.fail("Expected the duplicate rollup bucket to be rejected");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(ExceptionUtils.indexOfType(e, ConstraintViolationException.class) >= 0);
+        }
+    }
+
+    @Test
+    public void testBucketSelection() {
+        DateTime end = DateTime.now();
+        Assert.assertNull(statisticsProvider.bucketFor(end.minusMinutes(10), end));
+        Assert.assertEquals(Bucket.MINUTE, statisticsProvider.bucketFor(end.minusHours(1), end));
+        Assert.assertEquals(Bucket.HOUR, statisticsProvider.bucketFor(end.minusDays(1), end));
+        Assert.assertEquals(Bucket.HOUR, statisticsProvider.bucketFor(end.minusDays(7), end));
+        Assert.assertEquals(Bucket.DAY, statisticsProvider.bucketFor(end.minusDays(30), end));
+
+        // raw stats are gone once they are older than the retention so the rollups are used
+        statisticsProvider.setRawRetentionDays(7);
+        Assert.assertEquals(Bucket.MINUTE, statisticsProvider.bucketFor(end.minusDays(8), end.minusDays(8).plusMinutes(10)));
+        Assert.assertNull(statisticsProvider.bucketFor(end.minusMinutes(10), end));
+    }
+
+    @Test
+    public void testPurgeRawStatsKeepsRollups() {
+        String feedName = FEED_NAME + "_purge";
+        loadStats(feedName, DAYS);
+        DateTime end = START.plusDays(DAYS);
+        DateTime cutoff = START.plusDays(DAYS).minusHours(DAYS * 12);
+        long before = totalCount(metadataAccess.read(() -> statisticsProvider.findFeedProcessorStatisticsByProcessorId(feedName, START, end, Bucket.DAY), MetadataAccess.SERVICE));
+
+        metadataAccess.commit(() -> statisticsProvider.deleteRawStatisticsOlderThan(cutoff), MetadataAccess.SERVICE);
+
+        long raw = totalCount(metadataAccess.read(() -> statisticsProvider.findFeedProcessorStatisticsByProcessorId(feedName, START, end, null), MetadataAccess.SERVICE));
+        long after = totalCount(metadataAccess.read(() -> statisticsProvider.findFeedProcessorStatisticsByProcessorId(feedName, START, end, Bucket.DAY), MetadataAccess.SERVICE));
+        Assert.assertEquals(before / 2, raw);
+        Assert.assertEquals(before, after);
+    }
+
+    /**
+     * The newest stats of each cluster node are kept however old they are so NiFi resumes from their event id after a quiet period
+     */
+    @Test
+    public void testPurgeKeepsNewestStatsPerClusterNode() {
+        String feedName = FEED_NAME + "_cluster";
+        DateTime old = START.minusDays(10);
+        List<NifiFeedProcessorStats> stats = new ArrayList<>();
+        long firstEventId = 1_000_000L;
+        for (int i = 0; i < 3; i++) {
+            for (String node : new String[]{"node-a", "node-b"}) {
+                NifiFeedProcessorStats nodeStats = newStats(feedName, PROCESSORS[0], old.plusMinutes(i), old.plusMinutes(i));
+                nodeStats.setClusterNodeId(node);
+                nodeStats.setMaxEventId(firstEventId + i * 10 + ("node-a".equals(node) ? 0 : 1));
+                stats.add(nodeStats);
+            }
+        }
+        metadataAccess.commit(() -> statisticsProvider.create(stats), MetadataAccess.SERVICE);
+
+        metadataAccess.commit(() -> statisticsProvider.deleteRawStatisticsOlderThan(START), MetadataAccess.SERVICE);
+
+        List<? extends JpaNifiFeedProcessorStats>
+            remaining = metadataAccess.read(() -> statisticsProvider.findFeedProcessorStatisticsByProcessorId(feedName, old.minusDays(1), START, null), MetadataAccess.SERVICE);
+        Assert.assertEquals(2 * 10L, totalCount(remaining));
+        Assert.assertEquals(Long.valueOf(firstEventId + 20), metadataAccess.read(() -> statisticsProvider.findMaxEventId("node-a"), MetadataAccess.SERVICE));
+        Assert.assertEquals(Long.valueOf(firstEventId + 21), metadataAccess.read(() -> statisticsProvider.findMaxEventId("node-b"), MetadataAccess.SERVICE));
+        Assert.assertEquals(Long.valueOf(firstEventId + 21), metadataAccess.read(() -> statisticsRepository.findMaxEventId(), MetadataAccess.SERVICE));
+    }
+
+}
@@ -0,0 +1,261 @@
+package com.thinkbiganalytics.metadata.jpa.sla;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-jpa
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.config.OperationalMetadataConfig;
+import com.thinkbiganalytics.metadata.jpa.TestJpaConfiguration;
+import com.thinkbiganalytics.metadata.sla.api.AssessmentResult;
+import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAgreement;
+import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAssessment;
+import com.thinkbiganalytics.metadata.sla.spi.ServiceLevelAgreementProvider;
+import com.thinkbiganalytics.spring.CommonsSpringConfiguration;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.inject.Inject;
+
+/**
+ * Checks the alerting decisions made from the assessment fingerprints match comparing the assessments loaded from the database.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@TestPropertySource(locations = "classpath:test-application.properties")
+@SpringApplicationConfiguration(classes = {CommonsSpringConfiguration.class, OperationalMetadataConfig.class, TestJpaConfiguration.class})
+public class ServiceLevelAssessmentFingerprintStoreTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceLevelAssessmentFingerprintStoreTest.class);
+
+    private static final AssessmentResult[] RESULTS = AssessmentResult.values();
+
+    @Inject
+    private ServiceLevelAssessmentFingerprintStore fingerprintStore;
+
+    @Inject
+    private JpaServiceLevelAssessmentProvider assessmentProvider;
+
+    @Inject
+    private JpaServiceLevelAssessmentRepository assessmentRepository;
+
+    @Inject
+    private ServiceLevelAgreementProvider slaProvider;
+
+    @Inject
+    private MetadataAccess metadataAccess;
+
+    @Before
+    public void setup() {
+        metadataAccess.commit(() -> assessmentRepository.deleteAll());
+        fingerprintStore.invalidateAll();
+    }
+
+    @Test
+    public void testAlertDecisionsMatchComparingThePreviousAssessment() throws Exception {
+        Random random = new Random(17);
+        List<ServiceLevelAgreement> agreements = agreements("fingerprint.decision", 20);
+        int alerts = 0;
+        int checks = 0;
+
+        for (int round = 0; round < 15; round++) {
+            for (ServiceLevelAgreement agreement : agreements) {
+                JpaServiceLevelAssessment assessment = assessment(agreement, random);
+                metadataAccess.commit(() -> assessmentProvider.save(assessment));
+
+                ServiceLevelAssessmentFingerprintStore.Change change = fingerprintStore.compareToPrevious(assessment);
+                Assert.assertNotEquals(ServiceLevelAssessmentFingerprintStore.Change.UNKNOWN, change);
+                boolean expected = shouldAlertFromPrevious(agreement, assessment);
+                Assert.assertEquals("round " + round + " of " + agreement.getName(), expected, shouldAlertFromFingerprint(assessment, change));
+                alerts += expected ? 1 : 0;
+                checks++;
+            }
+            //keep the created times of an agreement's assessments apart
+            Thread.sleep(5);
+        }
+        log.info("{} of {} assessments alerted", alerts, checks);
+        Assert.assertTrue(alerts > 0 && alerts < checks);
+    }
+
+    @Test
+    public void testStoreLoadsTheLatestAssessments() throws Exception {
+        ServiceLevelAgreement agreement = agreements("fingerprint.load", 1).get(0);
+        Random random = new Random(3);
+        JpaServiceLevelAssessment first = assessment(agreement, random);
+        metadataAccess.commit(() -> assessmentProvider.save(first));
+        Thread.sleep(5);
+
+        //the assessment made before the latest one isn't loaded, so the store can't compare the latest assessment
+        fingerprintStore.invalidateAll();
+        Assert.assertEquals(ServiceLevelAssessmentFingerprintStore.Change.UNKNOWN, fingerprintStore.compareToPrevious(first));
+
+        JpaServiceLevelAssessment second = copy(agreement, first);
+        metadataAccess.commit(() -> assessmentProvider.save(second));
+        Assert.assertEquals(ServiceLevelAssessmentFingerprintStore.Change.UNCHANGED, fingerprintStore.compareToPrevious(second));
+        Assert.assertEquals(ServiceLevelAssessmentFingerprintStore.Change.UNKNOWN, fingerprintStore.compareToPrevious(first));
+    }
+
+    @Test
+    public void testCustomComparatorIsNotCompared() {
+        ServiceLevelAgreement agreement = agreements("fingerprint.comparator", 1).get(0);
+        JpaServiceLevelAssessment assessment = assessment(agreement, new Random(5));
+        JpaObligationAssessment obligationAssessment = (JpaObligationAssessment) assessment.getObligationAssessments().iterator().next();
+        obligationAssessment.setComparator((o1, o2) -> 0);
+        metadataAccess.commit(() -> assessmentProvider.save(assessment));
+
+        Assert.assertEquals(ServiceLevelAssessmentFingerprintStore.Change.UNKNOWN, fingerprintStore.compareToPrevious(assessment));
+    }
+
+    @Test
+    public void testBatchedAssessmentsAreCompared() throws Exception {
+        Random random = new Random(11);
+        List<ServiceLevelAgreement> agreements = agreements("fingerprint.batch", 10);
+        List<JpaServiceLevelAssessment> first = new ArrayList<>();
+        for (ServiceLevelAgreement agreement : agreements) {
+            first.add(assessment(agreement, random));
+        }
+        metadataAccess.commit(() -> assessmentProvider.saveAll(first));
+        first.forEach(assessment -> Assert.assertEquals(ServiceLevelAssessmentFingerprintStore.Change.NEW, fingerprintStore.compareToPrevious(assessment)));
+        Thread.sleep(5);
+
+        List<JpaServiceLevelAssessment> second = new ArrayList<>();
+        for (int i = 0; i < agreements.size(); i++) {
+            second.add(copy(agreements.get(i), first.get(i)));
+        }
+        metadataAccess.commit(() -> assessmentProvider.saveAll(second));
+        second.forEach(assessment -> Assert.assertEquals(ServiceLevelAssessmentFingerprintStore.Change.UNCHANGED, fingerprintStore.compareToPrevious(assessment)));
+        Thread.sleep(5);
+
+        List<JpaServiceLevelAssessment> third = new ArrayList<>();
+        for (int i = 0; i < agreements.size(); i++) {
+            JpaServiceLevelAssessment changed = copy(agreements.get(i), second.get(i));
+            ((JpaObligationAssessment) changed.getObligationAssessments().iterator().next()).setComparables(new ArrayList<>(Arrays.asList("changed", 0L)));
+            third.add(changed);
+        }
+        metadataAccess.commit(() -> assessmentProvider.saveAll(third));
+        for (JpaServiceLevelAssessment assessment : third) {
+            Assert.assertEquals(ServiceLevelAssessmentFingerprintStore.Change.CHANGED, fingerprintStore.compareToPrevious(assessment));
+            Assert.assertEquals(shouldAlertFromPrevious(assessment.getAgreement(), assessment),
+                                shouldAlertFromFingerprint(assessment, ServiceLevelAssessmentFingerprintStore.Change.CHANGED));
+        }
+    }
+
+    /**
+     * The decision made by the checker before the fingerprints were kept
+     */
+    private boolean shouldAlertFromPrevious(ServiceLevelAgreement agreement, ServiceLevelAssessment assessment) {
+        return metadataAccess.read(() -> {
+            ServiceLevelAssessment previous = assessmentProvider.findLatestAssessmentNotEqualTo(agreement.getId(), assessment.getId());
+            if (previous != null) {
+                assessmentProvider.ensureServiceLevelAgreementOnAssessment(previous);
+                return !assessment.getResult().equals(AssessmentResult.SUCCESS) && assessment.compareTo(previous) != 0;
+            } else {
+                return !assessment.getResult().equals(AssessmentResult.SUCCESS);
+            }
+        });
+    }
+
+    private boolean shouldAlertFromFingerprint(ServiceLevelAssessment assessment, ServiceLevelAssessmentFingerprintStore.Change change) {
+        return !assessment.getResult().equals(AssessmentResult.SUCCESS)
+               && (change == ServiceLevelAssessmentFingerprintStore.Change.NEW || change == ServiceLevelAssessmentFingerprintStore.Change.CHANGED);
+    }
+
+    private List<ServiceLevelAgreement> agreements(String prefix, int count) {
+        List<ServiceLevelAgreement> agreements = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            agreements.add(slaProvider.builder().name(prefix + i).build());
+        }
+        return agreements;
+    }
+
+    /**
+     * Build an assessment from a small set of values so consecutive assessments are often equal.
+     * The number of obligations and metrics is fixed for each agreement, as it is when assessing an SLA.
+     */
+    private JpaServiceLevelAssessment assessment(ServiceLevelAgreement agreement, Random random) {
+        Random structure = new Random(agreement.getName().hashCode());
+        JpaServiceLevelAssessment assessment = newAssessment(agreement);
+        assessment.setResult(RESULTS[random.nextInt(RESULTS.length)]);
+        int obligations = 1 + structure.nextInt(2);
+        for (int o = 0; o < obligations; o++) {
+            JpaObligationAssessment obligationAssessment = newObligationAssessment(assessment, RESULTS[random.nextInt(2)], comparables(random));
+            int metrics = 1 + structure.nextInt(2);
+            for (int m = 0; m < metrics; m++) {
+                newMetricAssessment(obligationAssessment, RESULTS[random.nextInt(2)], comparables(random));
+            }
+        }
+        return assessment;
+    }
+
+    private JpaServiceLevelAssessment copy(ServiceLevelAgreement agreement, JpaServiceLevelAssessment original) {
+        JpaServiceLevelAssessment assessment = newAssessment(agreement);
+        assessment.setResult(original.getResult());
+        original.getObligationAssessments().stream().map(JpaObligationAssessment.class::cast).forEach(originalObligation -> {
+            JpaObligationAssessment obligationAssessment = newObligationAssessment(assessment, originalObligation.getResult(), originalObligation.getComparables());
+            originalObligation.getMetricAssessments().stream().map(JpaMetricAssessment.class::cast)
+                .forEach(originalMetric -> newMetricAssessment(obligationAssessment, originalMetric.getResult(), originalMetric.getComparables()));
+        });
+        return assessment;
+    }
+
+    private JpaServiceLevelAssessment newAssessment(ServiceLevelAgreement agreement) {
+        JpaServiceLevelAssessment assessment = new JpaServiceLevelAssessment();
+        assessment.setId(JpaServiceLevelAssessment.SlaAssessmentId.create());
+        assessment.setAgreement(agreement);
+        assessment.setMessage("assessed");
+        return assessment;
+    }
+
+    private JpaObligationAssessment newObligationAssessment(JpaServiceLevelAssessment assessment, AssessmentResult result, List<Comparable<? extends Serializable>> comparables) {
+        JpaObligationAssessment obligationAssessment = new JpaObligationAssessment();
+        obligationAssessment.setResult(result);
+        obligationAssessment.setComparables(comparables);
+        obligationAssessment.setServiceLevelAssessment(assessment);
+        assessment.getObligationAssessments().add(obligationAssessment);
+        return obligationAssessment;
+    }
+
+    private void newMetricAssessment(JpaObligationAssessment obligationAssessment, AssessmentResult result, List<Comparable<? extends Serializable>> comparables) {
+        JpaMetricAssessment<Serializable> metricAssessment = new JpaMetricAssessment<>();
+        metricAssessment.setResult(result);
+        metricAssessment.setComparables(comparables);
+        metricAssessment.setObligationAssessment(obligationAssessment);
+        obligationAssessment.addMetricAssessment(metricAssessment);
+    }
+
+    /**
+     * A feed name and a timestamp, like the comparables of the feed metrics
+     */
+    private List<Comparable<? extends Serializable>> comparables(Random random) {
+        return new ArrayList<>(Arrays.asList("feed" + random.nextInt(2), 1500000000000L + random.nextInt(2)));
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ *
+ */
+package com.thinkbiganalytics.metadata.sla.spi;
+
+/*-
+ * #%L
+ * thinkbig-sla-api
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.sla.api.Metric;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * A metric assessor that is able to load the inputs of many metrics at once.  When several SLAs are assessed together
+ * the assessor is first given all of the metrics it accepts, so that the individual assessments which follow can
+ * use the prefetched data rather than each running their own queries.
+ */
+public interface BatchMetricAssessor<M extends Metric, D extends Serializable> extends MetricAssessor<M, D> {
+
+    /**
+     * Loads the data needed to assess the given metrics.
+     *
+     * @param metrics the metrics that are about to be assessed
+     */
+    void prefetch(Collection<M> metrics);
+
+    /**
+     * Discards any data loaded by {@link #prefetch(Collection)} so later assessments see current values.
+     */
+    void clearPrefetched();
+}
@@ -22,6 +22,8 @@ package com.thinkbiganalytics.metadata.sla.spi;
 
 import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAgreement;
 
+import java.util.List;
+
 /**
  */
 public interface ServiceLevelAgreementChecker {
@@ -30,4 +32,11 @@ public interface ServiceLevelAgreementChecker {
 
     void checkAgreement(ServiceLevelAgreement agreement);
 
+    /**
+     * Assesses the given agreements together and generates alerts for any that are violated.
+     *
+     * @param agreements the agreements to check
+     */
+    void checkAgreements(List<? extends ServiceLevelAgreement> agreements);
+
 }
@@ -36,5 +36,13 @@ public interface ServiceLevelAgreementScheduler {
 
     void disableServiceLevelAgreement(ServiceLevelAgreement sla);
 
+    /**
+     * Re-assess the agreements on a feed after one of its jobs has failed or succeeded.
+     * Callers record what the assessors read about the job before calling this.
+     *
+     * @param feedName the name of the feed
+     */
+    void reassessFeedAgreements(String feedName);
+
 
 }
@@ -29,6 +29,8 @@ import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAgreement;
 import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAssessment;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
 
 /**
  * A service for producing assessments SLAs.  It is also used to register obligation and metric assessors
@@ -44,6 +46,15 @@ public interface ServiceLevelAssessor {
      */
     ServiceLevelAssessment assess(ServiceLevelAgreement sla);
 
+    /**
+     * Produces assessments of several SLAs together, such as all of the SLAs that are due at the same time.
+     * An SLA that could not be assessed is left out of the result.
+     *
+     * @param slas the SLAs to be assessed
+     * @return the assessments keyed by the ID of their SLA
+     */
+    Map<ServiceLevelAgreement.ID, ServiceLevelAssessment> assess(Collection<? extends ServiceLevelAgreement> slas);
+
     ServiceLevelAssessment findLatestAssessment(ServiceLevelAgreement sla);
 
     /**
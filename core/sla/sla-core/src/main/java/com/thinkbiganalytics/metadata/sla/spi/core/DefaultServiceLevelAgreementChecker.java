@@ -35,6 +35,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -81,46 +82,71 @@ public class DefaultServiceLevelAgreementChecker implements ServiceLevelAgreemen
 
         LOG.info("Checking {} service level agreements", list.size());
 
-        for (ServiceLevelAgreement agreement : list) {
-            checkAgreement(agreement);
-        }
+        checkAgreements(list);
 
         LOG.info("Completed checking SLAs");
 
 
     }
 
+    /**
+     * Check the Agreements, assessing them together. Caller needs to wrap this in MetadataAccesss transcation
+     */
+    public void checkAgreements(List<? extends ServiceLevelAgreement> agreements) {
+        List<ServiceLevelAgreement> assessable = new ArrayList<>();
+        for (ServiceLevelAgreement agreement : agreements) {
+            if (agreement != null && isAssessable(agreement)) {
+                assessable.add(agreement);
+            }
+        }
+        if (assessable.isEmpty()) {
+            return;
+        }
+
+        Map<ServiceLevelAgreement.ID, ServiceLevelAssessment> assessments = assessor.assess(assessable);
+        for (ServiceLevelAgreement agreement : assessable) {
+            ServiceLevelAssessment assessment = assessments.get(agreement.getId());
+            if (assessment != null) {
+                alertIfViolated(agreement, assessment);
+            }
+        }
+    }
+
     /**
      * Check the Agreement. Caller needs to wrap this in MetadataAccesss transcation
      */
     public void checkAgreement(ServiceLevelAgreement agreement) {
         if (agreement != null) {
-            Alert newAlert = null;
             if (isAssessable(agreement)) {
                 LOG.info("Assessing SLA  : " + agreement.getName());
 
                 try {
                     ServiceLevelAssessment assessment = assessor.assess(agreement);
-
-                    if (shouldAlert(agreement, assessment)) {
-                        newAlert = alertManager.create(AssessmentAlerts.VIOLATION_ALERT_TYPE,
-                                                       Alert.Level.FATAL,
-                                                       "Violation of SLA: " + agreement.getName(), assessment.getId());
-
-
-                    }
+                    alertIfViolated(agreement, assessment);
                 } catch (AssessorNotFoundException e) {
                     LOG.info("SLA assessment failed.  Assessor Not found: {} - Exception: {}", agreement.getName(), e);
                 }
             }
+        }
+
+
+    }
+
+    /**
+     * Generates an alert if the assessment is a new violation of the agreement
+     */
+    private void alertIfViolated(ServiceLevelAgreement agreement, ServiceLevelAssessment assessment) {
+        if (shouldAlert(agreement, assessment)) {
+            Alert newAlert = alertManager.create(AssessmentAlerts.VIOLATION_ALERT_TYPE,
+                                                 Alert.Level.FATAL,
+                                                 "Violation of SLA: " + agreement.getName(), assessment.getId());
+
             if (newAlert != null) {
                 // Record this assessment as the latest for this SLA.
                 alertedAssessments.put(agreement.getId(), (ServiceLevelAssessment.ID) newAlert.getContent());
                 LOG.info("SLA assessment failed: {} - generated alert: {}", agreement.getName(), newAlert.getId());
             }
         }
-
-
     }
 
 
@@ -44,10 +44,12 @@ import org.slf4j.LoggerFactory;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -182,6 +184,19 @@ public class SimpleServiceLevelAssessor implements ServiceLevelAssessor {
         throw new AssessorNotFoundException(metric);
     }
 
+    @Override
+    public Map<ServiceLevelAgreement.ID, ServiceLevelAssessment> assess(Collection<? extends ServiceLevelAgreement> slas) {
+        Map<ServiceLevelAgreement.ID, ServiceLevelAssessment> assessments = new LinkedHashMap<>();
+        for (ServiceLevelAgreement sla : slas) {
+            try {
+                assessments.put(sla.getId(), assess(sla));
+            } catch (AssessorNotFoundException e) {
+                Log.info("SLA assessment failed.  Assessor Not found: {} - Exception: {}", sla.getName(), e);
+            }
+        }
+        return assessments;
+    }
+
     @Override
     public ServiceLevelAssessment findLatestAssessment(ServiceLevelAgreement sla) {
         return lastAssessments.get(sla.getId());
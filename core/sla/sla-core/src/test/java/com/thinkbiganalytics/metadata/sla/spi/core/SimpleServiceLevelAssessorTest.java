@@ -29,6 +29,9 @@ import com.thinkbiganalytics.metadata.sla.spi.AssessorNotFoundException;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Map;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class SimpleServiceLevelAssessorTest {
@@ -176,6 +179,44 @@ public class SimpleServiceLevelAssessorTest {
             .contains(AssessmentResult.WARNING);
     }
     
+    @Test
+    public void testAssessMultiple() {
+        this.assessor.registerMetricAssessor(new TestMetricAssessor(1, "1"));
+        
+        ServiceLevelAgreement sla1 = this.provider.builder()
+                .name("test1")
+                .obligationBuilder()
+                    .description("test")
+                    .metric(new TestMetric(1, "1"))
+                    .build()
+                .build();
+        ServiceLevelAgreement sla2 = this.provider.builder()
+                .name("test2")
+                .obligationBuilder()
+                    .description("test")
+                    .metric(new TestMetric(1, "1"))
+                    .build()
+                .build();
+        
+        Map<ServiceLevelAgreement.ID, ServiceLevelAssessment> assessments = this.assessor.assess(Arrays.asList(sla1, sla2));
+        
+        assertThat(assessments).hasSize(2).containsKeys(sla1.getId(), sla2.getId());
+        assertThat(assessments.get(sla2.getId()).getResult()).isEqualTo(AssessmentResult.SUCCESS);
+    }
+    
+    @Test
+    public void testAssessMultipleNoMetricAssessor() {
+        ServiceLevelAgreement sla = this.provider.builder()
+                .name("test")
+                .obligationBuilder()
+                    .description("test")
+                    .metric(new TestMetric(1, "1"))
+                    .build()
+                .build();
+        
+        assertThat(this.assessor.assess(Arrays.asList(sla))).isEmpty();
+    }
+    
     @Test(expected=AssessorNotFoundException.class)
     public void testAssessNoMetricAssessor() {
         ServiceLevelAgreement sla = this.provider.builder()
@@ -0,0 +1,161 @@
+SET SQL_MODE='ALLOW_INVALID_DATES';
+use kylo;
+delimiter //
+
+create procedure update_to_080()
+
+begin
+
+IF NOT EXISTS(SELECT table_name
+            FROM INFORMATION_SCHEMA.TABLES
+           WHERE table_schema = 'kylo'
+             AND table_name = 'NIFI_FEED_PROCESSOR_STATS_ROLLUP') THEN
+
+CREATE TABLE `NIFI_FEED_PROCESSOR_STATS_ROLLUP` (
+  `ID` varchar(45) NOT NULL,
+  `BUCKET` varchar(10) NOT NULL,
+  `BUCKET_TIME` timestamp NULL DEFAULT NULL,
+  `FM_FEED_NAME` varchar(255) NOT NULL,
+  `NIFI_PROCESSOR_ID` varchar(45) DEFAULT NULL,
+  `PROCESSOR_NAME` varchar(255) DEFAULT NULL,
+  `NIFI_FEED_PROCESS_GROUP_ID` varchar(45) DEFAULT NULL,
+  `MIN_EVENT_TIME` timestamp NULL DEFAULT NULL,
+  `MAX_EVENT_TIME` timestamp NULL DEFAULT NULL,
+  `DURATION_MILLIS` bigint(20) DEFAULT NULL,
+  `BYTES_IN` bigint(20) DEFAULT NULL,
+  `BYTES_OUT` bigint(20) DEFAULT NULL,
+  `TOTAL_EVENTS` bigint(20) DEFAULT NULL,
+  `JOBS_STARTED` bigint(20) DEFAULT NULL,
+  `JOBS_FINISHED` bigint(20) DEFAULT NULL,
+  `JOBS_FAILED` bigint(20) DEFAULT NULL,
+  `JOB_DURATION` bigint(20) DEFAULT NULL,
+  `SUCCESSFUL_JOB_DURATION` bigint(20) DEFAULT NULL,
+  `PROCESSORS_FAILED` bigint(20) DEFAULT NULL,
+  `FLOW_FILES_STARTED` bigint(20) DEFAULT NULL,
+  `FLOW_FILES_FINISHED` bigint(20) DEFAULT NULL,
+  `RAW_COUNT` bigint(20) DEFAULT NULL,
+  PRIMARY KEY (`ID`),
+  UNIQUE KEY `UK_NIFI_STATS_ROLLUP_FEED_BUCKET` (`FM_FEED_NAME`, `BUCKET`, `BUCKET_TIME`, `NIFI_PROCESSOR_ID`)
+) ENGINE=InnoDB;
+
+-- Roll up the existing raw stats so time frames older than the raw retention keep their history
+INSERT INTO `NIFI_FEED_PROCESSOR_STATS_ROLLUP` (`ID`, `BUCKET`, `BUCKET_TIME`, `FM_FEED_NAME`, `NIFI_PROCESSOR_ID`, `PROCESSOR_NAME`, `NIFI_FEED_PROCESS_GROUP_ID`,
+  `MIN_EVENT_TIME`, `MAX_EVENT_TIME`, `DURATION_MILLIS`, `BYTES_IN`, `BYTES_OUT`, `TOTAL_EVENTS`, `JOBS_STARTED`, `JOBS_FINISHED`, `JOBS_FAILED`,
+  `JOB_DURATION`, `SUCCESSFUL_JOB_DURATION`, `PROCESSORS_FAILED`, `FLOW_FILES_STARTED`, `FLOW_FILES_FINISHED`, `RAW_COUNT`)
+SELECT UUID(), 'MINUTE', b.BUCKET_TIME, b.FM_FEED_NAME, b.NIFI_PROCESSOR_ID, MAX(b.PROCESSOR_NAME), MAX(b.NIFI_FEED_PROCESS_GROUP_ID),
+  MIN(b.MIN_EVENT_TIME), MAX(b.MAX_EVENT_TIME), SUM(b.DURATION_MILLIS), SUM(b.BYTES_IN), SUM(b.BYTES_OUT), SUM(b.TOTAL_EVENTS), SUM(b.JOBS_STARTED), SUM(b.JOBS_FINISHED), SUM(b.JOBS_FAILED),
+  SUM(b.JOB_DURATION), SUM(b.SUCCESSFUL_JOB_DURATION), SUM(b.PROCESSORS_FAILED), SUM(b.FLOW_FILES_STARTED), SUM(b.FLOW_FILES_FINISHED), COUNT(*)
+FROM (SELECT s.*, FROM_UNIXTIME(FLOOR(UNIX_TIMESTAMP(COALESCE(s.MIN_EVENT_TIME, s.MAX_EVENT_TIME)) / 60) * 60) AS BUCKET_TIME
+      FROM `NIFI_FEED_PROCESSOR_STATS` s
+      WHERE COALESCE(s.MIN_EVENT_TIME, s.MAX_EVENT_TIME) IS NOT NULL) b
+GROUP BY b.BUCKET_TIME, b.FM_FEED_NAME, b.NIFI_PROCESSOR_ID;
+
+INSERT INTO `NIFI_FEED_PROCESSOR_STATS_ROLLUP` (`ID`, `BUCKET`, `BUCKET_TIME`, `FM_FEED_NAME`, `NIFI_PROCESSOR_ID`, `PROCESSOR_NAME`, `NIFI_FEED_PROCESS_GROUP_ID`,
+  `MIN_EVENT_TIME`, `MAX_EVENT_TIME`, `DURATION_MILLIS`, `BYTES_IN`, `BYTES_OUT`, `TOTAL_EVENTS`, `JOBS_STARTED`, `JOBS_FINISHED`, `JOBS_FAILED`,
+  `JOB_DURATION`, `SUCCESSFUL_JOB_DURATION`, `PROCESSORS_FAILED`, `FLOW_FILES_STARTED`, `FLOW_FILES_FINISHED`, `RAW_COUNT`)
+SELECT UUID(), 'HOUR', b.BUCKET_TIME, b.FM_FEED_NAME, b.NIFI_PROCESSOR_ID, MAX(b.PROCESSOR_NAME), MAX(b.NIFI_FEED_PROCESS_GROUP_ID),
+  MIN(b.MIN_EVENT_TIME), MAX(b.MAX_EVENT_TIME), SUM(b.DURATION_MILLIS), SUM(b.BYTES_IN), SUM(b.BYTES_OUT), SUM(b.TOTAL_EVENTS), SUM(b.JOBS_STARTED), SUM(b.JOBS_FINISHED), SUM(b.JOBS_FAILED),
+  SUM(b.JOB_DURATION), SUM(b.SUCCESSFUL_JOB_DURATION), SUM(b.PROCESSORS_FAILED), SUM(b.FLOW_FILES_STARTED), SUM(b.FLOW_FILES_FINISHED), COUNT(*)
+FROM (SELECT s.*, FROM_UNIXTIME(FLOOR(UNIX_TIMESTAMP(COALESCE(s.MIN_EVENT_TIME, s.MAX_EVENT_TIME)) / 3600) * 3600) AS BUCKET_TIME
+      FROM `NIFI_FEED_PROCESSOR_STATS` s
+      WHERE COALESCE(s.MIN_EVENT_TIME, s.MAX_EVENT_TIME) IS NOT NULL) b
+GROUP BY b.BUCKET_TIME, b.FM_FEED_NAME, b.NIFI_PROCESSOR_ID;
+
+INSERT INTO `NIFI_FEED_PROCESSOR_STATS_ROLLUP` (`ID`, `BUCKET`, `BUCKET_TIME`, `FM_FEED_NAME`, `NIFI_PROCESSOR_ID`, `PROCESSOR_NAME`, `NIFI_FEED_PROCESS_GROUP_ID`,
+  `MIN_EVENT_TIME`, `MAX_EVENT_TIME`, `DURATION_MILLIS`, `BYTES_IN`, `BYTES_OUT`, `TOTAL_EVENTS`, `JOBS_STARTED`, `JOBS_FINISHED`, `JOBS_FAILED`,
+  `JOB_DURATION`, `SUCCESSFUL_JOB_DURATION`, `PROCESSORS_FAILED`, `FLOW_FILES_STARTED`, `FLOW_FILES_FINISHED`, `RAW_COUNT`)
+SELECT UUID(), 'DAY', b.BUCKET_TIME, b.FM_FEED_NAME, b.NIFI_PROCESSOR_ID, MAX(b.PROCESSOR_NAME), MAX(b.NIFI_FEED_PROCESS_GROUP_ID),
+  MIN(b.MIN_EVENT_TIME), MAX(b.MAX_EVENT_TIME), SUM(b.DURATION_MILLIS), SUM(b.BYTES_IN), SUM(b.BYTES_OUT), SUM(b.TOTAL_EVENTS), SUM(b.JOBS_STARTED), SUM(b.JOBS_FINISHED), SUM(b.JOBS_FAILED),
+  SUM(b.JOB_DURATION), SUM(b.SUCCESSFUL_JOB_DURATION), SUM(b.PROCESSORS_FAILED), SUM(b.FLOW_FILES_STARTED), SUM(b.FLOW_FILES_FINISHED), COUNT(*)
+FROM (SELECT s.*, FROM_UNIXTIME(FLOOR(UNIX_TIMESTAMP(COALESCE(s.MIN_EVENT_TIME, s.MAX_EVENT_TIME)) / 86400) * 86400) AS BUCKET_TIME
+      FROM `NIFI_FEED_PROCESSOR_STATS` s
+      WHERE COALESCE(s.MIN_EVENT_TIME, s.MAX_EVENT_TIME) IS NOT NULL) b
+GROUP BY b.BUCKET_TIME, b.FM_FEED_NAME, b.NIFI_PROCESSOR_ID;
+
+END IF;
+
+IF NOT EXISTS(SELECT table_name
+            FROM INFORMATION_SCHEMA.TABLES
+           WHERE table_schema = 'kylo'
+             AND table_name = 'BATCH_JOB_STATUS_COUNT') THEN
+
+CREATE TABLE `BATCH_JOB_STATUS_COUNT` (
+  `FEED_NAME` varchar(255) NOT NULL,
+  `START_YEAR` int(11) NOT NULL,
+  `START_MONTH` int(11) NOT NULL,
+  `START_DAY` int(11) NOT NULL,
+  `STATUS` varchar(10) NOT NULL,
+  `JOB_COUNT` bigint(20) NOT NULL,
+  PRIMARY KEY (`FEED_NAME`, `START_YEAR`, `START_MONTH`, `START_DAY`, `STATUS`)
+) ENGINE=InnoDB;
+
+-- Count the existing jobs, new and updated jobs are counted as they are saved
+INSERT INTO `BATCH_JOB_STATUS_COUNT` (`FEED_NAME`, `START_YEAR`, `START_MONTH`, `START_DAY`, `STATUS`, `JOB_COUNT`)
+SELECT i.JOB_NAME, e.START_YEAR, e.START_MONTH, e.START_DAY,
+  CASE WHEN e.STATUS = 'FAILED' THEN 'FAILED'
+       WHEN e.STATUS IN ('STARTED', 'STARTING') THEN 'RUNNING'
+       ELSE e.STATUS END AS JOB_STATUS,
+  COUNT(*)
+FROM BATCH_JOB_EXECUTION e
+INNER JOIN BATCH_JOB_INSTANCE i ON i.JOB_INSTANCE_ID = e.JOB_INSTANCE_ID
+WHERE e.START_YEAR IS NOT NULL
+GROUP BY i.JOB_NAME, e.START_YEAR, e.START_MONTH, e.START_DAY, JOB_STATUS;
+
+END IF;
+
+IF NOT EXISTS(SELECT table_name
+            FROM INFORMATION_SCHEMA.TABLES
+           WHERE table_schema = 'kylo'
+             AND table_name = 'BATCH_JOB_EXECUTION_ARCHIVE') THEN
+
+-- Finished jobs moved out of the live job tables, the parameters, context and steps are stored as gzipped JSON in JOB_DETAILS
+CREATE TABLE `BATCH_JOB_EXECUTION_ARCHIVE` (
+  `JOB_EXECUTION_ID` bigint(20) NOT NULL,
+  `JOB_INSTANCE_ID` bigint(20) DEFAULT NULL,
+  `FEED_NAME` varchar(255) DEFAULT NULL,
+  `CREATE_TIME` bigint(20) DEFAULT NULL,
+  `START_TIME` bigint(20) DEFAULT NULL,
+  `END_TIME` bigint(20) DEFAULT NULL,
+  `STATUS` varchar(10) NOT NULL,
+  `EXIT_CODE` varchar(2500) DEFAULT NULL,
+  `EXIT_MESSAGE` varchar(2500) DEFAULT NULL,
+  `ARCHIVED_TIME` bigint(20) DEFAULT NULL,
+  `JOB_DETAILS` longblob,
+  PRIMARY KEY (`JOB_EXECUTION_ID`),
+  KEY `BATCH_JOB_EXEC_ARCHIVE_IDX1` (`FEED_NAME`, `JOB_EXECUTION_ID`)
+) ENGINE=InnoDB;
+
+END IF;
+
+IF NOT EXISTS(SELECT index_name
+            FROM INFORMATION_SCHEMA.STATISTICS
+           WHERE table_schema = 'kylo'
+             AND table_name = 'NIFI_EVENT'
+             AND index_name = 'NIFI_EVENT_IDX2') THEN
+
+-- Used to remove the provenance events of archived jobs
+CREATE INDEX NIFI_EVENT_IDX2 ON NIFI_EVENT (JOB_FLOW_FILE_ID);
+
+END IF;
+
+IF NOT EXISTS(SELECT index_name
+            FROM INFORMATION_SCHEMA.STATISTICS
+           WHERE table_schema = 'kylo'
+             AND table_name = 'KYLO_ALERT'
+             AND index_name = 'KYLO_ALERT_IDX1') THEN
+
+-- Used to read a page of the newest alerts without sorting the whole table
+CREATE INDEX KYLO_ALERT_IDX1 ON KYLO_ALERT (CREATE_TIME);
+
+END IF;
+
+END//
+
+
+delimiter ;
+
+-- Execute the procedure
+call update_to_080();
+
+-- Drop the procedure
+drop procedure update_to_080;
@@ -11,6 +11,7 @@ $MYSQL_DIR/kylo/0.4.2/update.sh $1 $2 $3
 $MYSQL_DIR/kylo/0.5.0/update.sh $1 $2 $3
 $MYSQL_DIR/kylo/0.6.0/update.sh $1 $2 $3
 $MYSQL_DIR/kylo/0.7.0/update.sh $1 $2 $3
+$MYSQL_DIR/kylo/0.8.0/update.sh $1 $2 $3
 
 mysql -h $1 -u$2 --password=$3 -e 'show databases;'
 
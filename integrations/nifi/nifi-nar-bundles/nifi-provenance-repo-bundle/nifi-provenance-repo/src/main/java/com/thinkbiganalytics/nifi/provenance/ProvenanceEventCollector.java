@@ -27,6 +27,7 @@ import com.thinkbiganalytics.nifi.provenance.model.BatchFeedProcessorEvents;
 import com.thinkbiganalytics.nifi.provenance.model.FeedFlowFile;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolder;
 import com.thinkbiganalytics.nifi.provenance.model.util.ProvenanceEventUtil;
 
 import org.apache.commons.lang3.StringUtils;
@@ -35,6 +36,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -112,45 +115,55 @@ public class ProvenanceEventCollector {
     public void process(ProvenanceEventRecordDTO event) {
         try {
             if (event != null) {
-                try {
-
-                    cacheUtil.cacheAndBuildFlowFileGraph(event);
-                    //if the Flow gets an "Empty Queue" message it means a user emptied the queue that was stuck in a connection.
-                    // this means the flow cannot complete and will be treated as a failed flow and failed job
-                    if (ProvenanceEventUtil.isFlowFileQueueEmptied(event)) {
-                        // a Drop event component id will be the connection, not the processor id. we will set the name of the component
-                        event.setComponentName("FlowFile Queue emptied");
-                        event.setIsFailure(true);
-                        event.setHasFailedEvents(true);
-                        FeedFlowFile feedFlowFile = event.getFeedFlowFile();
-                        if (feedFlowFile != null) {
-                            feedFlowFile.checkAndMarkComplete(event);
-                        }
-                        event.getFeedFlowFile().incrementFailedEvents();
-                    }
-                    //only process if we can get the feed name, otherwise its no use
-                    if (hasFeedName(event)) {
-                        //send the event off for stats processing
-                        statsCalculator.calculateStats(event);
-
-                        //batch up the data to send to kylo if this feed is marked as a batch or if the parent flow file is marked as a batch
-                        if (!event.isStream()) {
-                            batchEvent(event);
-                        }
-
-                    } else {
-                        log.error("Provenance: Cant find Feed for {} ", event);
-                    }
-
-                } catch (FeedFlowFileNotFoundException e) {
-                    log.debug("Unable to find Root flowfile.", event, event.getFlowFileUuid());
-                }
+                //the flow files are changed holding the cache lock so the journal never copies them while they are being changed
+                cacheUtil.update(() -> processEvent(event));
             }
         } catch (Exception e) {
             log.error("ERROR PROCESSING EVENT! {}.  ERROR: {} ", event, e.getMessage(), e);
         }
     }
 
+    /**
+     * Add the event to the running {@link com.thinkbiganalytics.nifi.provenance.model.FeedFlowFile} and calculate its statistics
+     *
+     * @param event the event to process
+     */
+    private void processEvent(ProvenanceEventRecordDTO event) {
+        try {
+
+            cacheUtil.cacheAndBuildFlowFileGraph(event);
+            //if the Flow gets an "Empty Queue" message it means a user emptied the queue that was stuck in a connection.
+            // this means the flow cannot complete and will be treated as a failed flow and failed job
+            if (ProvenanceEventUtil.isFlowFileQueueEmptied(event)) {
+                // a Drop event component id will be the connection, not the processor id. we will set the name of the component
+                event.setComponentName("FlowFile Queue emptied");
+                event.setIsFailure(true);
+                event.setHasFailedEvents(true);
+                FeedFlowFile feedFlowFile = event.getFeedFlowFile();
+                if (feedFlowFile != null) {
+                    feedFlowFile.checkAndMarkComplete(event);
+                }
+                event.getFeedFlowFile().incrementFailedEvents();
+            }
+            //only process if we can get the feed name, otherwise its no use
+            if (hasFeedName(event)) {
+                //send the event off for stats processing
+                statsCalculator.calculateStats(event);
+
+                //batch up the data to send to kylo if this feed is marked as a batch or if the parent flow file is marked as a batch
+                if (!event.isStream()) {
+                    batchEvent(event);
+                }
+
+            } else {
+                log.error("Provenance: Cant find Feed for {} ", event);
+            }
+
+        } catch (FeedFlowFileNotFoundException e) {
+            log.debug("Unable to find Root flowfile.", event, event.getFlowFileUuid());
+        }
+    }
+
 
     /**
      * Group the Event by Feed and then by Processor
@@ -174,27 +187,46 @@ public class ProvenanceEventCollector {
      * ProvenanceEventRecordDTOHolder } to JMS for Kylo Operations Manager to process
      */
     public void sendToJms() {
-        //update the collection time
-        List<ProvenanceEventRecordDTO> eventsSentToJms = groupedBatchEventsByFeed.values().stream()
-            .flatMap(feedProcessorEventAggregate -> feedProcessorEventAggregate.collectEventsToBeSentToJmsQueue().stream())
-            .collect(Collectors.toList());
-        sendBatchFeedEvents(eventsSentToJms);
+        collectBatchFeedEvents().forEach(provenanceEventActiveMqWriter::writeBatchEvents);
         statsCalculator.sendStats();
     }
 
     /**
-     * Send the Batched events over to JMS
+     * Collect the Batched events grouped by feed and partition them into the groups that will be sent over to JMS.
+     * Once collected the events are no longer referenced by this collector and can be sent to JMS on another thread.
      *
-     * @param elements The events to send to JMS
+     * @return the groups of events to send to JMS
      */
-    private void sendBatchFeedEvents(List<ProvenanceEventRecordDTO> elements) {
-        if (elements != null && !elements.isEmpty()) {
-            Lists.partition(elements, getJmsEventGroupSize()).forEach(eventsSubList -> {
-                ProvenanceEventRecordDTOHolder eventRecordDTOHolder = new ProvenanceEventRecordDTOHolder();
-                eventRecordDTOHolder.setEvents(Lists.newArrayList(eventsSubList));
-                provenanceEventActiveMqWriter.writeBatchEvents(eventRecordDTOHolder);
-            });
+    public List<ProvenanceEventRecordDTOHolder> collectBatchFeedEvents() {
+        List<ProvenanceEventRecordDTO> elements = groupedBatchEventsByFeed.values().stream()
+            .flatMap(feedProcessorEventAggregate -> feedProcessorEventAggregate.collectEventsToBeSentToJmsQueue().stream())
+            .collect(Collectors.toList());
+        if (elements.isEmpty()) {
+            return Collections.emptyList();
         }
+        return Lists.partition(elements, getJmsEventGroupSize()).stream().map(eventsSubList -> {
+            ProvenanceEventRecordDTOHolder eventRecordDTOHolder = new ProvenanceEventRecordDTOHolder();
+            eventRecordDTOHolder.setEvents(Lists.newArrayList(eventsSubList));
+            return eventRecordDTOHolder;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * The batch events grouped by feed and processor, with the mode and observed rate of the starting job events for each
+     *
+     * @return the batch events grouped by feed and processor
+     */
+    public Collection<BatchFeedProcessorEvents> getBatchFeedProcessorEvents() {
+        return Collections.unmodifiableCollection(groupedBatchEventsByFeed.values());
+    }
+
+    /**
+     * Collect the statistics gathered since the last collection
+     *
+     * @return the statistics to send to JMS
+     */
+    public AggregatedFeedProcessorStatisticsHolder collectStats() {
+        return statsCalculator.collectStats();
     }
 
     /**
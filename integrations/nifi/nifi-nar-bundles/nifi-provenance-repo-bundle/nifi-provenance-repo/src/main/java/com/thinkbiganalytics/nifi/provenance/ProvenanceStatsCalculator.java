@@ -59,13 +59,23 @@ public class ProvenanceStatsCalculator {
     public void sendStats() {
         if (statsHolder != null) {
             if (provenanceEventActiveMqWriter != null) {
-                provenanceEventActiveMqWriter.writeStats(statsHolder);
-                //reset the statsHolder to get new Statistics
-                statsHolder = new AggregatedFeedProcessorStatisticsHolder();
+                provenanceEventActiveMqWriter.writeStats(collectStats());
             }
         }
     }
 
+    /**
+     * Return the statistics gathered so far and reset the holder to start gathering new Statistics.
+     * The returned holder is no longer modified by this calculator and can be sent to JMS on another thread.
+     *
+     * @return the statistics gathered since the last collection
+     */
+    public AggregatedFeedProcessorStatisticsHolder collectStats() {
+        AggregatedFeedProcessorStatisticsHolder collected = statsHolder;
+        statsHolder = new AggregatedFeedProcessorStatisticsHolder();
+        return collected;
+    }
+
 
     /**
      * Group the incoming provenance event and gather statistics from it.
@@ -0,0 +1,392 @@
+package com.thinkbiganalytics.nifi.provenance.cache;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.nifi.provenance.AggregationEventProcessingStats;
+import com.thinkbiganalytics.nifi.provenance.model.FeedFlowFile;
+import com.thinkbiganalytics.nifi.provenance.model.util.FlowFileIdTable;
+import com.thinkbiganalytics.nifi.provenance.reporting.KyloProvenanceEventReportingTask;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+
+/**
+ * As a feed runs through NiFi the root {@link FeedFlowFile} keeps track of its progress and the status of its child flow files {@link FeedFlowFile#forEachActiveChildFlowFile} and last processed
+ * ProvenanceEvent {@link FeedFlowFile#getPreviousEventTime(String)} When a {@link FeedFlowFile} is marked as the complete {@link FeedFlowFile#isFeedComplete()} it will be removed from this cache via the
+ * {@link this#expire()} thread As the flow files change they are persisted to disk via the {@link FeedFlowFileJournal#append(Collection)} called by the {@link
+ * KyloProvenanceEventReportingTask} after each batch of events. This is to ensure that on startup of NiFi the tracking of the running flow files
+ * is kept in tact When NiFi starts the journal is recovered and loaded back into this cache via the {@link KyloProvenanceEventReportingTask#onConfigurationRestored()}
+ *
+ * Every root and child flow file id is indexed in a {@link FlowFileIdTable} pointing to the slot of its root {@link FeedFlowFile}, rather than as a String key of a map.
+ * When a max memory is set and the estimated size of the cache goes over it, completed flow files are expired first and then the least recently active flow files are evicted.
+ */
+public class FeedFlowFileCache {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedFlowFileCache.class);
+
+    /**
+     * Index of each cached flow file id to the slot of its FeedFlowFile in {@link #slots}
+     */
+    private final FlowFileIdTable index = new FlowFileIdTable(1);
+
+    /**
+     * The cached FeedFlowFiles.  A null slot is free
+     */
+    private final List<Slot> slots = new ArrayList<>();
+
+    /**
+     * The slot of each cached FeedFlowFile
+     */
+    private final Map<FeedFlowFile, Integer> slotsByFlowFile = new IdentityHashMap<>();
+
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    /**
+     * The max estimated size of the cache in bytes before flow files are evicted.  0 or less is unbounded
+     */
+    private final long maxMemoryBytes;
+
+    /**
+     * The amount of time the expire thread should run to check and expire the feed flow files
+     */
+    private Integer expireTimerCheckSeconds = 10;
+    /**
+     * Listeners that can get notified with a FeedFlowFile is invalidated and removed from the cache
+     */
+    private List<FeedFlowFileCacheListener> listeners = new ArrayList<>();
+    /**
+     * The last time the summary was printed
+     */
+    private DateTime lastPrintLogTime = null;
+    /**
+     * How often should the summary of whats in the cache be logged
+     * Every 5 minutes
+     */
+    private Long PRINT_LOG_MILLIS = 60 * 5000L;
+
+    public FeedFlowFileCache() {
+        this(0L);
+    }
+
+    /**
+     * @param maxMemoryBytes the max estimated size of the cache in bytes before flow files are evicted.  0 or less is unbounded
+     */
+    public FeedFlowFileCache(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        log.info("Created new FeedFlowFileCache running timer every {} seconds to check and expire finished flow files. Max memory: {} ", expireTimerCheckSeconds,
+                 maxMemoryBytes > 0 ? (maxMemoryBytes / (1024 * 1024)) + " MB" : "unbounded");
+        initTimerThread();
+    }
+
+    /**
+     * A listener can subscribe to the invalidate calls on the cache.
+     * the {@link FeedFlowFileJournal} subscribes to this cache to get messages and remove the files persisted on disk when they are completed.
+     */
+    public void subscribe(FeedFlowFileCacheListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Check to see if a given flowfile is in the cache
+     *
+     * @return true if in the cache, false if not
+     */
+    public synchronized boolean isCached(String flowFileId) {
+        return index.contains(flowFileId);
+    }
+
+
+    /**
+     * Get a FeedFlowFile from the cache.
+     * If the FeedFlowFile is not there it will return  null
+     *
+     * @return the FeedFlowFile, or null if not present
+     */
+    public synchronized FeedFlowFile getEntry(String id) {
+        int slot = (int) index.get(id, 0, -1L);
+        return slot >= 0 ? slots.get(slot).flowFile : null;
+    }
+
+
+    /**
+     * Return all the FeedFlowFiles in the cache
+     */
+    public synchronized Collection<FeedFlowFile> getFlowFiles() {
+        return new HashSet<>(slotsByFlowFile.keySet());
+    }
+
+    /**
+     * Copy all the FeedFlowFiles in the cache while holding the cache lock.
+     * Changes to the flow files are made in {@link #update(Runnable)}, so a flow file is never copied while it is being changed.
+     *
+     * @param copier creates the copy of a flow file
+     * @return the copies of the flow files
+     */
+    public synchronized <T> List<T> copyFlowFiles(FlowFileCopier<T> copier) throws IOException {
+        List<T> copies = new ArrayList<>(slotsByFlowFile.size());
+        for (FeedFlowFile flowFile : slotsByFlowFile.keySet()) {
+            copies.add(copier.copy(flowFile));
+        }
+        return copies;
+    }
+
+    /**
+     * Change the FeedFlowFiles in the cache while holding the cache lock
+     *
+     * @param update the changes to apply
+     */
+    public synchronized void update(Runnable update) {
+        update.run();
+    }
+
+    /**
+     * Add a FeedFlowFile to the cache
+     *
+     * @param flowFileId   the id of the flowfile
+     * @param feedFlowFile the FeedFlowFile to relate/add to the cache
+     */
+    public synchronized void add(String flowFileId, FeedFlowFile feedFlowFile) {
+        Integer slot = slotsByFlowFile.get(feedFlowFile);
+        if (slot == null) {
+            slot = freeSlots.isEmpty() ? slots.size() : freeSlots.pop();
+            if (slot == slots.size()) {
+                slots.add(new Slot(feedFlowFile));
+            } else {
+                slots.set(slot, new Slot(feedFlowFile));
+            }
+            slotsByFlowFile.put(feedFlowFile, slot);
+        }
+        int previousSlot = (int) index.get(flowFileId, 0, -1L);
+        if (previousSlot == slot) {
+            return;
+        }
+        index.put(flowFileId, slot);
+        slots.get(slot).references++;
+        if (previousSlot >= 0) {
+            dereference(previousSlot);
+        }
+    }
+
+
+    /**
+     * Return all the FeedFlowFiles in the cache that are complete and Done.
+     *
+     * @return the flow files that are completed
+     */
+    public List<FeedFlowFile> getCompletedFeedFlowFiles() {
+        return getFlowFiles().stream().filter(flowFile -> (flowFile.isFeedComplete())).collect(Collectors.toList());
+    }
+
+
+    /**
+     * Invalidate and remove the given FeedFlowFile from the cache
+     *
+     * @param flowFile the flow file to invalidate/remove
+     */
+    public void invalidate(FeedFlowFile flowFile) {
+        if (flowFile != null && flowFile.isFeedComplete()) {
+            remove(flowFile);
+        }
+    }
+
+    /**
+     * Invalidate and remove the flowfile from the cache
+     */
+    public synchronized void invalidate(String flowFileId) {
+        int slot = (int) index.get(flowFileId, 0, -1L);
+        if (slot >= 0) {
+            index.remove(flowFileId);
+            dereference(slot);
+        }
+    }
+
+    /**
+     * Decrement the references to a slot, removing its FeedFlowFile from the cache when no ids reference it
+     */
+    private void dereference(int slot) {
+        Slot entry = slots.get(slot);
+        entry.references--;
+        if (entry.references <= 0) {
+            slotsByFlowFile.remove(entry.flowFile);
+            slots.set(slot, null);
+            freeSlots.push(slot);
+        }
+    }
+
+    /**
+     * Remove the flow file, all of its child flow files and any other ids referencing it from the cache and notify the listeners
+     */
+    private void remove(FeedFlowFile flowFile) {
+        synchronized (this) {
+            invalidate(flowFile.getId());
+            flowFile.forEachChildFlowFile(this::invalidate);
+            Integer slot = slotsByFlowFile.remove(flowFile);
+            if (slot != null) {
+                //other flow files were pointed at this one without being registered as its children
+                index.removeIdsWithValue(slot);
+                slots.set(slot, null);
+                freeSlots.push(slot);
+            }
+        }
+        listeners.stream().forEach(flowFileCacheListener -> flowFileCacheListener.onInvalidate(flowFile));
+    }
+
+    /**
+     * @return the estimated size of the cache in bytes
+     */
+    public synchronized long getEstimatedBytes() {
+        long bytes = index.getAllocatedBytes();
+        for (FeedFlowFile flowFile : slotsByFlowFile.keySet()) {
+            bytes += flowFile.getEstimatedBytes();
+        }
+        return bytes;
+    }
+
+
+    /**
+     * Expire any completed FeedFlowFiles checking the {@link FeedFlowFile#isFeedComplete()} to determine if the FeedFlowFile is complete
+     */
+    public void expire() {
+        try {
+            long start = System.currentTimeMillis();
+            List<FeedFlowFile> rootFiles = getCompletedFeedFlowFiles();
+            if (!rootFiles.isEmpty()) {
+                for (FeedFlowFile root : rootFiles) {
+                    invalidate(root);
+                }
+                long stop = System.currentTimeMillis();
+                if (rootFiles.size() > 0) {
+                    log.info("Time to expire {} flowfile and all references {} ms. FeedFlowFile and references left in cache: {} ", rootFiles.size(), (stop - start), getFlowFiles().size());
+                }
+            }
+            enforceMaxMemory();
+            if (lastPrintLogTime == null || (lastPrintLogTime != null && DateTime.now().getMillis() - lastPrintLogTime.getMillis() > (PRINT_LOG_MILLIS))) {
+                printSummary();
+                lastPrintLogTime = DateTime.now();
+            }
+
+        } catch (Exception e) {
+            log.error("Error attempting to invalidate FeedFlowFile cache {}, {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * If the cache is over its max memory, evict the flow files that have been inactive the longest until it is back under the limit.
+     * Completed flow files have already been expired at this point, so only running flow files are evicted.
+     * Any later events for an evicted flow file will not be related to its job.
+     */
+    void enforceMaxMemory() {
+        if (maxMemoryBytes <= 0) {
+            return;
+        }
+        long estimatedBytes = getEstimatedBytes();
+        if (estimatedBytes <= maxMemoryBytes) {
+            return;
+        }
+        List<FeedFlowFile> flowFiles = new ArrayList<>(getFlowFiles());
+        //completed flow files first, then the least recently active
+        flowFiles.sort(Comparator.comparing(FeedFlowFile::isFeedComplete).reversed()
+                           .thenComparing(flowFile -> flowFile.getLastEventTime() != null ? flowFile.getLastEventTime() : 0L));
+        int evicted = 0;
+        for (FeedFlowFile flowFile : flowFiles) {
+            if (estimatedBytes <= maxMemoryBytes) {
+                break;
+            }
+            estimatedBytes -= flowFile.getEstimatedBytes();
+            remove(flowFile);
+            evicted++;
+        }
+        log.warn("The FeedFlowFile cache was over its max memory of {} bytes.  Evicted {} flow files.  The cache is now an estimated {} bytes ", maxMemoryBytes, evicted, getEstimatedBytes());
+    }
+
+    /**
+     * Log some summary data about the cache and JMS activity
+     */
+    public void printSummary() {
+        int size;
+        long childFlowFiles = 0L;
+        synchronized (this) {
+            size = index.size();
+            for (FeedFlowFile flowFile : slotsByFlowFile.keySet()) {
+                childFlowFiles += flowFile.getChildFlowFileCount();
+            }
+        }
+        log.info("FeedFlowFile Cache Size: {}, root flow files: {}, child flow files: {}, estimated memory: {} bytes ", size, getFlowFiles().size(), childFlowFiles, getEstimatedBytes());
+        log.info("ProvenanceEvent JMS Stats:  Sent {} statistics events to JMS.  Sent {} batch events to JMS ", AggregationEventProcessingStats.getStreamingEventsSent(),
+                 AggregationEventProcessingStats.getBatchEventsSent());
+
+
+    }
+
+    /**
+     * Start the timer thread using the {@link this#expireTimerCheckSeconds} as the schedule interval in SECONDS
+     */
+    private void initTimerThread() {
+        ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor();
+        service.scheduleAtFixedRate(() -> {
+            expire();
+        }, expireTimerCheckSeconds, expireTimerCheckSeconds, TimeUnit.SECONDS);
+
+
+    }
+
+    /**
+     * A cached FeedFlowFile and the number of ids in the index referencing it
+     */
+    private static class Slot {
+
+        private final FeedFlowFile flowFile;
+
+        private int references;
+
+        Slot(FeedFlowFile flowFile) {
+            this.flowFile = flowFile;
+        }
+    }
+
+
+
+    /**
+     * Creates a copy of a flow file
+     */
+    @FunctionalInterface
+    public interface FlowFileCopier<T> {
+
+        T copy(FeedFlowFile flowFile) throws IOException;
+    }
+}
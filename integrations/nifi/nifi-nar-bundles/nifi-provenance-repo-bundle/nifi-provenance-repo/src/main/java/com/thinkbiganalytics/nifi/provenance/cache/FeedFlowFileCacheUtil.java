@@ -44,7 +44,7 @@ public class FeedFlowFileCacheUtil {
     ProvenanceFeedLookup provenanceFeedLookup;
 
     @Autowired
-    FeedFlowFileGuavaCache flowFileGuavaCache;
+    FeedFlowFileCache flowFileCache;
 
     // internal counters for general stats
     AtomicLong eventCounter = new AtomicLong(0L);
@@ -61,12 +61,20 @@ public class FeedFlowFileCacheUtil {
 
 
     /**
-     * Create the FlowFile graph and cache the FlowFile with event into the GuavaCache for processing
+     * Apply changes to the cached flow files while holding the lock of the {@link FeedFlowFileCache}, so they are not changed while the journal copies them
+     *
+     * @param update the changes to apply
+     */
+    public void update(Runnable update) {
+        flowFileCache.update(update);
+    }
+
+    /**
+     * Create the FlowFile graph and cache the FlowFile with event into the FeedFlowFileCache for processing
      */
     public void cacheAndBuildFlowFileGraph(ProvenanceEventRecordDTO event) {
 
         // Get the FlowFile from the Cache.  It is LoadingCache so if the file is new the Cache will create it
-        FeedFlowFileGuavaCache flowFileCache = flowFileGuavaCache;
 
         //An event is the very first in the flow if it is a CREATE or RECEIVE event and if there are no Parent flow files
         //This indicates the start of a Job.
@@ -0,0 +1,592 @@
+package com.thinkbiganalytics.nifi.provenance.cache;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.nifi.provenance.model.FeedFlowFile;
+import com.thinkbiganalytics.nifi.provenance.model.util.FlowFileIdTable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Persist the running flowfiles to disk as they change so the processing feed status is kept when NiFi comes back up, even if NiFi was killed.
+ *
+ * After each batch of events the changes to the {@link FeedFlowFile}s are appended to a journal file and synced to disk.
+ * When the journal grows past the checkpoint size all of the flow files in the {@link FeedFlowFileCache} are written to a new checkpoint file and the journal is started over.
+ * Each checkpoint and journal has a generation so a journal older than the checkpoint, left behind by a crash during a checkpoint, is ignored.
+ *
+ * Every record is written as its length and CRC followed by the record type, the root flow file id and the flow file state.
+ * On recovery the checkpoint and then the journal are read up to the first incomplete or corrupt record,
+ * and the records are applied to the flow files in parallel, as the records of each flow file only depend on each other.
+ */
+public class FeedFlowFileJournal implements FeedFlowFileCacheListener {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedFlowFileJournal.class);
+
+    static final String CHECKPOINT_FILE = "feed-flowfile.checkpoint";
+    static final String JOURNAL_FILE = "feed-flowfile.journal";
+
+    private static final int MAGIC = 0x4B4A524E;
+    private static final int VERSION = 1;
+
+    /**
+     * The header is the magic number, the version and the generation
+     */
+    private static final int HEADER_BYTES = 16;
+
+    private static final int RECORD_PUT = 1;
+    private static final int RECORD_REMOVE = 2;
+
+    private final File directory;
+
+    /**
+     * The size of the journal in bytes before a checkpoint is written
+     */
+    private final long checkpointBytes;
+
+    /**
+     * The number of threads used to apply the records on recovery
+     */
+    private final int recoveryThreads;
+
+    /**
+     * true to force the journal to disk after each batch of changes
+     */
+    private final boolean sync;
+
+    private final FeedFlowFileCache cache;
+
+    private long generation;
+
+    private FileOutputStream journalFile;
+
+    private DataOutputStream journal;
+
+    /**
+     * The size of the current journal file
+     */
+    private long journalBytes;
+
+    /**
+     * The root flow files removed from the cache since the last append.  These are not written again if they were part of the batch
+     */
+    private final Set<String> removed = new HashSet<>();
+
+    /**
+     * The root flow files removed while a checkpoint is taking its snapshot of the cache
+     */
+    private Set<String> removedDuringCheckpoint;
+
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream();
+
+    private final DataOutputStream recordOut = new DataOutputStream(recordBuffer);
+
+    private final CRC32 crc = new CRC32();
+
+    private final long createdTime = System.currentTimeMillis();
+
+    private long bytesWritten;
+
+    private long checkpoints;
+
+    private long lastCheckpointMillis;
+
+    private long lastRecoveryMillis;
+
+    private int recoveredFlowFiles;
+
+    /**
+     * @param directory       the directory of the checkpoint and journal files
+     * @param checkpointBytes the size of the journal in bytes before a checkpoint is written
+     * @param recoveryThreads the number of threads used to apply the records on recovery
+     * @param sync            true to force the journal to disk after each batch of changes
+     * @param cache           the cache of running flow files
+     */
+    public FeedFlowFileJournal(File directory, long checkpointBytes, int recoveryThreads, boolean sync, FeedFlowFileCache cache) {
+        this.directory = directory;
+        this.checkpointBytes = checkpointBytes;
+        this.recoveryThreads = Math.max(1, recoveryThreads);
+        this.sync = sync;
+        this.cache = cache;
+        log.info("Initialize FeedFlowFileJournal at: {}, checkpoint every {} bytes, sync: {} ", directory, checkpointBytes, sync);
+        cache.subscribe(this);
+    }
+
+    /**
+     * Recover the flow files from disk and load them back into the {@link FeedFlowFileCache}.
+     * This starts the journal, so changes are only written after this is called.
+     *
+     * @return the number of root flow files loaded
+     */
+    public int loadCache() throws IOException {
+        List<FeedFlowFile> flowFiles = recover();
+        for (FeedFlowFile feedFlowFile : flowFiles) {
+            cache.add(feedFlowFile.getId(), feedFlowFile);
+            feedFlowFile.forEachActiveChildFlowFile(flowFileId -> cache.add(flowFileId, feedFlowFile));
+        }
+        return flowFiles.size();
+    }
+
+    /**
+     * Read the checkpoint and journal, then write the recovered flow files to a new checkpoint and start a new journal
+     *
+     * @return the recovered root flow files
+     */
+    public synchronized List<FeedFlowFile> recover() throws IOException {
+        long start = System.currentTimeMillis();
+        closeJournal();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the flow file journal directory " + directory);
+        }
+        Map<String, List<byte[]>> recordsById = new LinkedHashMap<>();
+        long checkpointGeneration = readRecords(new File(directory, CHECKPOINT_FILE), -1L, recordsById);
+        long journalGeneration = readRecords(new File(directory, JOURNAL_FILE), checkpointGeneration, recordsById);
+        generation = Math.max(0L, Math.max(checkpointGeneration, journalGeneration));
+
+        List<FeedFlowFile> flowFiles = applyRecords(recordsById);
+        List<FlowFileRecord> records = new ArrayList<>(flowFiles.size());
+        for (FeedFlowFile flowFile : flowFiles) {
+            records.add(new FlowFileRecord(flowFile, encodeRecord(RECORD_PUT, flowFile, false)));
+        }
+        writeCheckpoint(records);
+
+        lastRecoveryMillis = System.currentTimeMillis() - start;
+        recoveredFlowFiles = flowFiles.size();
+        log.info("Recovered {} running flow files from the flow file journal in {} ms ", recoveredFlowFiles, lastRecoveryMillis);
+        return flowFiles;
+    }
+
+    /**
+     * Append the changes of the flow files to the journal and sync it to disk.
+     * A checkpoint is written if the journal has grown past the checkpoint size.
+     *
+     * @param flowFiles the root flow files changed by the last batch of events
+     */
+    public void append(Collection<FeedFlowFile> flowFiles) throws IOException {
+        boolean checkpoint;
+        synchronized (this) {
+            if (journal == null) {
+                log.debug("The flow file journal has not been recovered yet.  Skipping {} changed flow files ", flowFiles.size());
+                return;
+            }
+            for (FeedFlowFile flowFile : flowFiles) {
+                if (!removed.contains(flowFile.getId())) {
+                    journalBytes += writeRecord(journal, RECORD_PUT, flowFile, true);
+                    flowFile.setJournaled(true);
+                }
+            }
+            removed.clear();
+            commit();
+            checkpoint = journalBytes >= checkpointBytes;
+        }
+        if (checkpoint) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Write all of the flow files in the cache to a new checkpoint and start a new journal
+     */
+    public void checkpoint() throws IOException {
+        synchronized (this) {
+            if (journal == null) {
+                return;
+            }
+            removedDuringCheckpoint = new HashSet<>();
+        }
+        //the flow files are copied holding the cache lock, so they are not changed while they are copied, and written to disk from the copies.
+        //the cache is not read while holding the lock of this journal as the cache notifies this journal while holding its own lock
+        List<FlowFileRecord> flowFiles;
+        try {
+            flowFiles = cache.copyFlowFiles(flowFile -> new FlowFileRecord(flowFile, encodeRecord(RECORD_PUT, flowFile, false)));
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                removedDuringCheckpoint = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            try {
+                List<FlowFileRecord> running = new ArrayList<>(flowFiles.size());
+                for (FlowFileRecord flowFile : flowFiles) {
+                    if (!removedDuringCheckpoint.contains(flowFile.flowFile.getId())) {
+                        running.add(flowFile);
+                    }
+                }
+                writeCheckpoint(running);
+            } finally {
+                removedDuringCheckpoint = null;
+            }
+        }
+    }
+
+    /**
+     * When the {@link FeedFlowFileCache} is invalidated then it is also removed from the journal if it was written to it.
+     */
+    @Override
+    public synchronized void onInvalidate(FeedFlowFile flowFile) {
+        removed.add(flowFile.getId());
+        if (removedDuringCheckpoint != null) {
+            removedDuringCheckpoint.add(flowFile.getId());
+        }
+        if (flowFile.isJournaled() && journal != null) {
+            try {
+                //synced with the next append
+                journalBytes += writeRecord(journal, RECORD_REMOVE, flowFile, true);
+            } catch (IOException e) {
+                log.warn("Unable to journal the removal of the flow file {}. {} ", flowFile.getId(), e.getMessage());
+            }
+            flowFile.setJournaled(false);
+        }
+    }
+
+    /**
+     * Sync and close the journal.  No checkpoint is written, the journal is replayed when NiFi starts
+     */
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            commit();
+        }
+        closeJournal();
+    }
+
+    /**
+     * @return the bytes written to the journal and checkpoints
+     */
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return the bytes written to the journal and checkpoints per second since this journal was created
+     */
+    public synchronized long getBytesWrittenPerSecond() {
+        long elapsed = System.currentTimeMillis() - createdTime;
+        return elapsed > 0 ? (bytesWritten * 1000L) / elapsed : 0L;
+    }
+
+    /**
+     * @return the time, in millis, the last recovery took
+     */
+    public synchronized long getLastRecoveryMillis() {
+        return lastRecoveryMillis;
+    }
+
+    /**
+     * @return the number of root flow files loaded by the last recovery
+     */
+    public synchronized int getRecoveredFlowFiles() {
+        return recoveredFlowFiles;
+    }
+
+    /**
+     * @return the size of the current journal file
+     */
+    public synchronized long getJournalBytes() {
+        return journalBytes;
+    }
+
+    private void writeCheckpoint(List<FlowFileRecord> flowFiles) throws IOException {
+        long start = System.currentTimeMillis();
+        long nextGeneration = generation + 1;
+        File checkpointFile = new File(directory, CHECKPOINT_FILE);
+        File tempFile = new File(directory, CHECKPOINT_FILE + ".tmp");
+        long bytes = HEADER_BYTES;
+        try (FileOutputStream file = new FileOutputStream(tempFile);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+            writeHeader(out, nextGeneration);
+            for (FlowFileRecord flowFile : flowFiles) {
+                bytes += writeRecord(out, flowFile.record);
+                flowFile.flowFile.setJournaled(true);
+            }
+            out.flush();
+            file.getChannel().force(true);
+        }
+        Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        generation = nextGeneration;
+        bytesWritten += bytes;
+
+        //start the journal for the new generation
+        closeJournal();
+        journalFile = new FileOutputStream(new File(directory, JOURNAL_FILE), false);
+        journal = new DataOutputStream(new BufferedOutputStream(journalFile, 64 * 1024));
+        writeHeader(journal, generation);
+        journalBytes = HEADER_BYTES;
+        bytesWritten += HEADER_BYTES;
+        commit();
+
+        checkpoints++;
+        lastCheckpointMillis = System.currentTimeMillis() - start;
+        log.info("Wrote a flow file checkpoint with {} flow files ({} bytes) in {} ms. {} ", flowFiles.size(), bytes, lastCheckpointMillis, this);
+    }
+
+    private void commit() throws IOException {
+        journal.flush();
+        if (sync) {
+            journalFile.getChannel().force(false);
+        }
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            try {
+                journal.close();
+            } finally {
+                journal = null;
+                journalFile = null;
+            }
+        }
+    }
+
+    private void writeHeader(DataOutputStream out, long generation) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(generation);
+    }
+
+    /**
+     * Write a record of the flow file
+     *
+     * @return the number of bytes written
+     */
+    private int writeRecord(DataOutputStream out, int type, FeedFlowFile flowFile, boolean changesOnly) throws IOException {
+        recordBuffer.reset();
+        writeRecordBody(recordOut, type, flowFile, changesOnly);
+        recordOut.flush();
+        return writeRecord(out, recordBuffer.toByteArray());
+    }
+
+    /**
+     * Write an encoded record with its length and checksum
+     *
+     * @return the number of bytes written
+     */
+    private int writeRecord(DataOutputStream out, byte[] record) throws IOException {
+        crc.reset();
+        crc.update(record, 0, record.length);
+        out.writeInt(record.length);
+        out.writeInt((int) crc.getValue());
+        out.write(record);
+        bytesWritten += record.length + 8;
+        return record.length + 8;
+    }
+
+    /**
+     * Encode a record of the flow file into a new array.  This does not use the shared record buffer so it can be called without holding the lock of this journal
+     */
+    private static byte[] encodeRecord(int type, FeedFlowFile flowFile, boolean changesOnly) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(buffer);
+        writeRecordBody(out, type, flowFile, changesOnly);
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    private static void writeRecordBody(DataOutputStream out, int type, FeedFlowFile flowFile, boolean changesOnly) throws IOException {
+        out.writeByte(type);
+        FlowFileIdTable.writeId(out, flowFile.getId());
+        if (type == RECORD_PUT) {
+            flowFile.write(out, changesOnly);
+        }
+    }
+
+    /**
+     * Read the valid records from the file, grouping them by the root flow file id.
+     * Reading stops at the first incomplete or corrupt record, which is expected at the end of the journal if NiFi was killed while writing it.
+     *
+     * @param file          the checkpoint or journal file
+     * @param minGeneration the records are only read if the file is at least this generation
+     * @param recordsById   the records of each root flow file, in order
+     * @return the generation of the file, or -1 if it was not read
+     */
+    private long readRecords(File file, long minGeneration, Map<String, List<byte[]>> recordsById) throws IOException {
+        if (!file.isFile()) {
+            return -1L;
+        }
+        int records = 0;
+        long fileGeneration;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    log.warn("Ignoring the flow file journal file {} as it is not a supported format ", file);
+                    return -1L;
+                }
+                fileGeneration = in.readLong();
+            } catch (EOFException e) {
+                return -1L;
+            }
+            if (fileGeneration < minGeneration) {
+                log.info("Ignoring the flow file journal file {} as its generation {} is older than the checkpoint generation {} ", file, fileGeneration, minGeneration);
+                return -1L;
+            }
+            while (true) {
+                byte[] record;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length <= 0 || length > file.length()) {
+                        log.warn("Stopped reading {} at an invalid record after {} records ", file, records);
+                        break;
+                    }
+                    record = new byte[length];
+                    in.readFully(record);
+                    crc.reset();
+                    crc.update(record, 0, length);
+                    if ((int) crc.getValue() != checksum) {
+                        log.warn("Stopped reading {} at a corrupt record after {} records ", file, records);
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record, 1, record.length - 1));
+                String flowFileId = FlowFileIdTable.readId(recordIn);
+                recordsById.computeIfAbsent(flowFileId, id -> new ArrayList<>()).add(record);
+                records++;
+            }
+        }
+        log.info("Read {} records from the flow file journal file {} ", records, file);
+        return Math.max(fileGeneration, 0L);
+    }
+
+    /**
+     * Apply the records of each root flow file in order, applying the records of different flow files in parallel
+     *
+     * @return the flow files that were not removed
+     */
+    private List<FeedFlowFile> applyRecords(Map<String, List<byte[]>> recordsById) throws IOException {
+        List<Map.Entry<String, List<byte[]>>> entries = new ArrayList<>(recordsById.entrySet());
+        if (entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int threads = Math.min(recoveryThreads, entries.size());
+        int chunkSize = (int) Math.ceil((double) entries.size() / threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<FeedFlowFile>>> chunks = new ArrayList<>();
+            for (int chunkStart = 0; chunkStart < entries.size(); chunkStart += chunkSize) {
+                List<Map.Entry<String, List<byte[]>>> chunk = entries.subList(chunkStart, Math.min(chunkStart + chunkSize, entries.size()));
+                chunks.add(executor.submit(() -> {
+                    List<FeedFlowFile> flowFiles = new ArrayList<>();
+                    for (Map.Entry<String, List<byte[]>> entry : chunk) {
+                        FeedFlowFile flowFile = applyRecords(entry.getKey(), entry.getValue());
+                        if (flowFile != null) {
+                            flowFiles.add(flowFile);
+                        }
+                    }
+                    return flowFiles;
+                }));
+            }
+            List<FeedFlowFile> flowFiles = new ArrayList<>();
+            for (Future<List<FeedFlowFile>> chunk : chunks) {
+                flowFiles.addAll(chunk.get());
+            }
+            return flowFiles;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while recovering the flow file journal", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to recover the flow file journal", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private FeedFlowFile applyRecords(String flowFileId, List<byte[]> records) {
+        FeedFlowFile flowFile = null;
+        try {
+            for (byte[] record : records) {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+                int type = in.readByte();
+                FlowFileIdTable.readId(in);
+                if (type == RECORD_REMOVE) {
+                    flowFile = null;
+                } else {
+                    if (flowFile == null) {
+                        flowFile = new FeedFlowFile(flowFileId);
+                    }
+                    flowFile.read(in);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to recover the flow file {}.  It will not be tracked. {} ", flowFileId, e.getMessage());
+            return null;
+        }
+        return flowFile;
+    }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder sb = new StringBuilder("FeedFlowFileJournal{");
+        sb.append("generation=").append(generation);
+        sb.append(", journalBytes=").append(journalBytes);
+        sb.append(", bytesWritten=").append(bytesWritten);
+        sb.append(", bytesWrittenPerSecond=").append(getBytesWrittenPerSecond());
+        sb.append(", checkpoints=").append(checkpoints);
+        sb.append(", lastCheckpointMillis=").append(lastCheckpointMillis);
+        sb.append(", lastRecoveryMillis=").append(lastRecoveryMillis);
+        sb.append(", recoveredFlowFiles=").append(recoveredFlowFiles);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    /**
+     * A flow file along with the copy of it encoded as a checkpoint record
+     */
+    private static class FlowFileRecord {
+
+        private final FeedFlowFile flowFile;
+
+        private final byte[] record;
+
+        private FlowFileRecord(FeedFlowFile flowFile, byte[] record) {
+            this.flowFile = flowFile;
+            this.record = record;
+        }
+    }
+}
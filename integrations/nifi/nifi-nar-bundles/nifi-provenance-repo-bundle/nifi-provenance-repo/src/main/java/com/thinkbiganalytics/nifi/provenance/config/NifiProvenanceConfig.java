@@ -26,9 +26,11 @@ import com.thinkbiganalytics.nifi.provenance.ProvenanceEventObjectPool;
 import com.thinkbiganalytics.nifi.provenance.ProvenanceFeedLookup;
 import com.thinkbiganalytics.nifi.provenance.ProvenanceStatsCalculator;
 import com.thinkbiganalytics.nifi.provenance.cache.FeedFlowFileCacheUtil;
-import com.thinkbiganalytics.nifi.provenance.cache.FeedFlowFileGuavaCache;
-import com.thinkbiganalytics.nifi.provenance.cache.FeedFlowFileMapDbCache;
+import com.thinkbiganalytics.nifi.provenance.cache.FeedFlowFileCache;
+import com.thinkbiganalytics.nifi.provenance.cache.FeedFlowFileJournal;
 import com.thinkbiganalytics.nifi.provenance.jms.ProvenanceEventActiveMqWriter;
+import com.thinkbiganalytics.nifi.provenance.model.codec.ProvenanceBinaryCodec;
+import com.thinkbiganalytics.nifi.provenance.model.util.FlowFileGraphMemory;
 import com.thinkbiganalytics.nifi.provenance.util.SpringApplicationContext;
 
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
@@ -38,6 +40,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.File;
+
 /**
  * Spring bean configuration for Kylo NiFi Provenance
  */
@@ -46,10 +50,52 @@ public class NifiProvenanceConfig {
 
     private static final Logger log = LoggerFactory.getLogger(NifiProvenanceConfig.class);
     /**
-     * location of where map db should store the persist cache file to disk
+     * directory of the journal and checkpoint of the running flow files
+     **/
+    @Value("${kylo.provenance.feedflowfile.journal.location:/opt/nifi/feed_flowfile_cache/journal}")
+    private String feedFlowFileJournalLocation;
+
+    /**
+     * size of the journal before a checkpoint of all the running flow files is written
+     **/
+    @Value("${kylo.provenance.feedflowfile.journal.checkpoint.mb:64}")
+    private long feedFlowFileJournalCheckpointMb;
+
+    /**
+     * true to force the journal to disk after each batch of events
+     **/
+    @Value("${kylo.provenance.feedflowfile.journal.sync:true}")
+    private boolean feedFlowFileJournalSync;
+
+    /**
+     * number of threads used to apply the journal on startup
+     **/
+    @Value("${kylo.provenance.feedflowfile.journal.recovery.threads:4}")
+    private int feedFlowFileJournalRecoveryThreads;
+
+    /**
+     * format of the JMS messages sent to Kylo, either binary or java (serialization)
+     **/
+    @Value("${kylo.provenance.jms.payload.format:binary}")
+    private String jmsPayloadFormat;
+
+    /**
+     * compression of the binary JMS messages, either deflate or none
+     **/
+    @Value("${kylo.provenance.jms.payload.compression:deflate}")
+    private String jmsPayloadCompression;
+
+    /**
+     * max estimated memory of the running flow file graphs before the least recently active flow files are evicted.  0 is unbounded
+     **/
+    @Value("${kylo.provenance.feedflowfile.cache.max.memory.mb:512}")
+    private long feedFlowFileCacheMaxMemoryMb;
+
+    /**
+     * flow file graph tables of at least this size are stored off heap.  -1 keeps them all on the heap
      **/
-    @Value("${kylo.provenance.feedflowfile.mapdb.cache.location:/opt/nifi/feed-flowfile-cache.db}")
-    private String feedFlowFileMapDbCacheLocation;
+    @Value("${kylo.provenance.feedflowfile.cache.offheap.threshold.kb:-1}")
+    private long feedFlowFileCacheOffHeapThresholdKb;
 
     @Bean
     public SpringApplicationContext springApplicationContext() {
@@ -74,14 +120,15 @@ public class NifiProvenanceConfig {
     }
 
     @Bean
-    public FeedFlowFileMapDbCache feedFlowFileMapDbCache() {
-        String location = feedFlowFileMapDbCacheLocation;
-        return new FeedFlowFileMapDbCache(location);
+    public FeedFlowFileJournal feedFlowFileJournal() {
+        return new FeedFlowFileJournal(new File(feedFlowFileJournalLocation), feedFlowFileJournalCheckpointMb * 1024L * 1024L, feedFlowFileJournalRecoveryThreads, feedFlowFileJournalSync,
+                                       feedFlowFileCache());
     }
 
     @Bean
-    public FeedFlowFileGuavaCache feedFlowFileGuavaCache() {
-        return new FeedFlowFileGuavaCache();
+    public FeedFlowFileCache feedFlowFileCache() {
+        FlowFileGraphMemory.setOffHeapThresholdBytes(feedFlowFileCacheOffHeapThresholdKb < 0 ? -1L : feedFlowFileCacheOffHeapThresholdKb * 1024L);
+        return new FeedFlowFileCache(feedFlowFileCacheMaxMemoryMb * 1024L * 1024L);
     }
 
     @Bean
@@ -91,7 +138,13 @@ public class NifiProvenanceConfig {
 
     @Bean
     public ProvenanceEventActiveMqWriter provenanceEventActiveMqWriter() {
-        return new ProvenanceEventActiveMqWriter();
+        if ("java".equalsIgnoreCase(jmsPayloadFormat)) {
+            log.info("Sending provenance events to JMS as serialized java objects");
+            return new ProvenanceEventActiveMqWriter();
+        }
+        ProvenanceBinaryCodec.Compression compression = ProvenanceBinaryCodec.Compression.valueOf(jmsPayloadCompression.trim().toUpperCase());
+        log.info("Sending provenance events to JMS in the {} format with {} compression", ProvenanceBinaryCodec.PAYLOAD_FORMAT, compression);
+        return new ProvenanceEventActiveMqWriter(new ProvenanceBinaryCodec(compression));
     }
 
     @Bean
@@ -24,12 +24,15 @@ import com.thinkbiganalytics.activemq.SendJmsMessage;
 import com.thinkbiganalytics.nifi.activemq.Queues;
 import com.thinkbiganalytics.nifi.provenance.AggregationEventProcessingStats;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.codec.ProvenanceBinaryCodec;
 import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.io.IOException;
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -42,6 +45,8 @@ import javax.annotation.PostConstruct;
  * 2 Queues are used.  The Queue names are constants shared with Kylo Operations Manager found in the {@link Queues} class.
  * Queues.PROVENANCE_EVENT_STATS_QUEUE  is the Statistics Queue name for creating the Summary statistics
  * Queues.FEED_MANAGER_QUEUE is the Batch Provenance Events Queue for creating the Jobs/Steps in Kylo
+ *
+ * When a {@link ProvenanceBinaryCodec} is set the messages are sent in its binary format, otherwise they are sent as Java serialized objects.
  */
 public class ProvenanceEventActiveMqWriter {
 
@@ -54,10 +59,19 @@ public class ProvenanceEventActiveMqWriter {
 
     private Map<String, Set<JmsSendListener>> listeners = new HashMap<>();
 
+    /**
+     * The codec used to encode the messages, or null to use Java serialization
+     */
+    private ProvenanceBinaryCodec codec;
+
     public ProvenanceEventActiveMqWriter() {
 
     }
 
+    public ProvenanceEventActiveMqWriter(ProvenanceBinaryCodec codec) {
+        this.codec = codec;
+    }
+
     public void subscribe(JmsSendListener listener) {
         this.listeners.computeIfAbsent(listener.getDestination(), (d) -> new HashSet<JmsSendListener>()).add(listener);
     }
@@ -89,18 +103,21 @@ public class ProvenanceEventActiveMqWriter {
      * Send the Statistics to JMS using the JMS Queue {@link Queues.PROVENANCE_EVENT_STATS_QUEUE}
      *
      * @param stats that statistics to send to JMS
+     * @return true if the stats were sent, or there was nothing to send, false if an error occurred
      */
-    public void writeStats(AggregatedFeedProcessorStatisticsHolder stats) {
+    public boolean writeStats(AggregatedFeedProcessorStatisticsHolder stats) {
         try {
             if (stats.getEventCount().get() > 0) {
                 logger.info("SENDING AGGREGATED STAT to JMS {} ", stats);
-                sendJmsMessage.sendSerializedObjectToQueue(Queues.PROVENANCE_EVENT_STATS_QUEUE, stats);
+                send(Queues.PROVENANCE_EVENT_STATS_QUEUE, stats);
                 AggregationEventProcessingStats.addStreamingEvents(stats.getEventCount().intValue());
                 notifySuccess(Queues.PROVENANCE_EVENT_STATS_QUEUE, stats);
             }
+            return true;
         } catch (Exception e) {
             logger.error("JMS Error has occurred sending stats. Temporary queue has been disabled in this current version.", e);
             notifyError(Queues.PROVENANCE_EVENT_STATS_QUEUE, stats, e.getMessage());
+            return false;
         }
     }
 
@@ -108,17 +125,27 @@ public class ProvenanceEventActiveMqWriter {
      * Send the Batched Events to the JMS Queue {@link Queues.FEED_MANAGER_QUEUE}
      *
      * @param events the events to send to JMS
+     * @return true if the events were sent, false if an error occurred
      */
-    public void writeBatchEvents(ProvenanceEventRecordDTOHolder events) {
+    public boolean writeBatchEvents(ProvenanceEventRecordDTOHolder events) {
         try {
             logger.info("SENDING Events to JMS {} ", events);
-            sendJmsMessage.sendSerializedObjectToQueue(Queues.FEED_MANAGER_QUEUE, events);
+            send(Queues.FEED_MANAGER_QUEUE, events);
             AggregationEventProcessingStats.addBatchEvents(events.getEvents().size());
             notifySuccess(Queues.FEED_MANAGER_QUEUE, events);
+            return true;
         } catch (Exception e) {
             logger.error("Error writing sending JMS ", e);
             notifyError(Queues.FEED_MANAGER_QUEUE, events, e.getMessage());
+            return false;
+        }
+    }
 
+    private void send(String queueName, Serializable payload) throws IOException {
+        if (codec != null) {
+            sendJmsMessage.sendBytesToQueue(queueName, codec.encode(payload), ProvenanceBinaryCodec.PAYLOAD_FORMAT);
+        } else {
+            sendJmsMessage.sendSerializedObjectToQueue(queueName, payload);
         }
     }
 
@@ -20,6 +20,7 @@ package com.thinkbiganalytics.nifi.provenance.reporting;
  * #L%
  */
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.thinkbiganalytics.metadata.rest.model.nifi.NiFiFlowCacheSync;
 import com.thinkbiganalytics.nifi.core.api.metadata.KyloNiFiFlowProvider;
 import com.thinkbiganalytics.nifi.core.api.metadata.MetadataProviderService;
@@ -27,9 +28,12 @@ import com.thinkbiganalytics.nifi.provenance.ProvenanceEventCollector;
 import com.thinkbiganalytics.nifi.provenance.ProvenanceEventObjectPool;
 import com.thinkbiganalytics.nifi.provenance.ProvenanceEventRecordConverter;
 import com.thinkbiganalytics.nifi.provenance.ProvenanceFeedLookup;
-import com.thinkbiganalytics.nifi.provenance.cache.FeedFlowFileMapDbCache;
+import com.thinkbiganalytics.nifi.provenance.cache.FeedFlowFileJournal;
 import com.thinkbiganalytics.nifi.provenance.jms.ProvenanceEventActiveMqWriter;
+import com.thinkbiganalytics.nifi.provenance.model.FeedFlowFile;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolder;
 import com.thinkbiganalytics.nifi.provenance.util.SpringApplicationContext;
 
 import org.apache.commons.lang3.StringUtils;
@@ -56,13 +60,22 @@ import org.joda.time.DateTime;
 import org.springframework.beans.BeansException;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 /**
  */
@@ -103,7 +116,7 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
         .build();
     protected static final PropertyDescriptor MAX_BATCH_FEED_EVENTS_PER_SECOND = new PropertyDescriptor.Builder()
         .name("Max batch feed events per second")
-        .description("The maximum number of events/second for a given feed allowed to go through to Kylo.  This is used to safeguard Kylo against a feed that starts acting like a stream")
+        .description("The maximum number of events/second for a given feed allowed to go through to Kylo.  This is used to safeguard Kylo against a feed that starts acting like a stream.  The feed is treated as a batch feed again once its rate drops to half this value")
         .required(false)
         .defaultValue("10")
         .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
@@ -128,6 +141,22 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
         .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
         .expressionLanguageSupported(true)
         .build();
+
+    protected static final PropertyDescriptor EVENT_CONVERSION_THREADS = new PropertyDescriptor.Builder()
+        .name("Event conversion threads")
+        .description(
+            "The number of threads used to convert the NiFi provenance events before they are processed for Kylo.  Events are fetched, converted, collected and sent to JMS in a pipeline so the conversion of one batch overlaps with sending the previous batch to JMS.")
+        .defaultValue("2")
+        .required(false)
+        .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+        .expressionLanguageSupported(true)
+        .build();
+
+    /**
+     * The max number of processed batches that can be waiting to be sent to JMS before the next batch is processed
+     */
+    private static final int MAX_BATCHES_PENDING_SEND = 2;
+
     PropertyDescriptor METADATA_SERVICE = new PropertyDescriptor.Builder()
         .name("Metadata Service")
         .description("Think Big metadata service")
@@ -153,13 +182,11 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
      */
     private StateManager stateManager;
     /**
-     * Listener when JMS successfully posts its events to the queue.
-     * Used to update the StateManager storage value to ensure Kylo processes all events that have been successfully sent to the queue
+     * Listener when JMS posts its events to the queue.
      */
     private KyloReportingTaskJmsListeners.KyloReportingTaskBatchJmsListener batchJmsListener;
     /**
-     * Listener when JMS successfully posts its events to the queue.
-     * Used to update the StateManager storage value to ensure Kylo processes all events that have been successfully sent to the queue
+     * Listener when JMS posts its stats to the queue.
      */
     private KyloReportingTaskJmsListeners.KyloReportingTaskStatsJmsListener statsJmsListener;
     /**
@@ -201,9 +228,25 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
      */
     private Long initialId;
     /**
-     * track nifiQueryTime for provenance lookup
+     * value from EVENT_CONVERSION_THREADS
+     */
+    private int eventConversionThreads = 2;
+    /**
+     * Queries the provenance repository for the next batch of events while the current batch is processed
+     */
+    private ExecutorService fetchExecutor;
+    /**
+     * Converts the NiFi events to the Kylo DTO objects
+     */
+    private ExecutorService conversionExecutor;
+    /**
+     * Sends the processed batches to JMS in order
      */
-    private Long nifiQueryTime = 0L;
+    private ExecutorService sendExecutor;
+    /**
+     * Track the throughput of each stage of the processing pipeline
+     */
+    private final ProvenanceEventPipelineStats pipelineStats = new ProvenanceEventPipelineStats();
     private NodeIdStrategy nodeIdStrategy;
     /**
      * count the number of retry attempts when getting the flowfileMapDB Cache
@@ -230,6 +273,7 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
         properties.add(LAST_EVENT_ID_NOT_FOUND_VALUE);
         properties.add(INITIAL_EVENT_ID_VALUE);
         properties.add(PROCESSING_BATCH_SIZE);
+        properties.add(EVENT_CONVERSION_THREADS);
         return properties;
     }
 
@@ -247,6 +291,8 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
         this.processingBatchSize = context.getProperty(PROCESSING_BATCH_SIZE).asInteger();
         this.lastEventIdNotFoundValue = LAST_EVENT_ID_NOT_FOUND_OPTION.valueOf(context.getProperty(LAST_EVENT_ID_NOT_FOUND_VALUE).getValue());
         this.initialEventIdValue = INITIAL_EVENT_ID_OPTION.valueOf(context.getProperty(INITIAL_EVENT_ID_VALUE).getValue());
+        Integer conversionThreads = context.getProperty(EVENT_CONVERSION_THREADS).asInteger();
+        initializeExecutors(conversionThreads == null || conversionThreads < 1 ? 2 : conversionThreads);
 
         //reset the initial id to null for the ability to be reset
         initialId = null;
@@ -266,16 +312,16 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
 
     /**
      * this.getIdentifier().toLowerCase().contains("mock")
-     * When shutting down the ActiveFlowFile information is persisted to Disk
+     * When shutting down the ActiveFlowFile journal is synced and closed.  The flow files were already persisted to disk as they changed
      */
     @OnShutdown
     public final void onShutdown(ConfigurationContext configurationContext) {
-        getLogger().info("onShutdown: Attempting to persist any active flow files to disk");
+        getLogger().info("onShutdown: Closing the active flow file journal");
         abortProcessing();
+        shutdownExecutors();
         try {
-            //persist running flowfile metadata to disk
-            int persistedRootFlowFiles = getFlowFileMapDbCache().persistFlowFiles();
-            getLogger().info("onShutdown: Finished persisting {} root flow files to disk ", new Object[]{persistedRootFlowFiles});
+            getFeedFlowFileJournal().close();
+            getLogger().info("onShutdown: Finished closing the active flow file journal. {} ", new Object[]{getFeedFlowFileJournal()});
         } catch (Exception e) {
             //ok to swallow exception here.  this is called when NiFi is shutting down
         }
@@ -291,14 +337,14 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
     public final void onConfigurationRestored() {
         if (initializing.compareAndSet(false, true)) {
             try {
-                getLogger().info("onConfigurationRestored: Attempting to load any persisted files from disk into the Guava Cache");
+                getLogger().info("onConfigurationRestored: Attempting to load any persisted files from disk into the FeedFlowFileCache");
 
                 loadSpring(true);
                 //rebuild mem flowfile metadata from disk
-                initializeFlowFilesFromMapDbCache();
+                initializeFlowFilesFromJournal();
             } catch (Exception e) {
                 getLogger().warn(
-                    "Error attempting to restore FlowFile MapDB cache in onConfigurationRestored with message: {}.  The Reporting Task will attempt to initialize this again at the start of the first trigger.",
+                    "Error attempting to restore FlowFile journal in onConfigurationRestored with message: {}.  The Reporting Task will attempt to initialize this again at the start of the first trigger.",
                     new Object[]{e.getMessage()});
                 initializationError = true;
             } finally {
@@ -308,17 +354,18 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
     }
 
     /**
-     * attempt to load the data from disk into the Guava Cache
+     * attempt to load the data from disk into the FeedFlowFileCache
      */
-    private void initializeFlowFilesFromMapDbCache() {
-        int loadedRootFlowFiles = getFlowFileMapDbCache().loadGuavaCache();
-        getLogger().info("initializeFlowFilesFromMapDbCache: Finished loading {} persisted files from disk into the Guava Cache", new Object[]{loadedRootFlowFiles});
+    private void initializeFlowFilesFromJournal() throws IOException {
+        int loadedRootFlowFiles = getFeedFlowFileJournal().loadCache();
+        getLogger().info("initializeFlowFilesFromJournal: Finished loading {} persisted files from disk into the FeedFlowFileCache in {} ms",
+                         new Object[]{loadedRootFlowFiles, getFeedFlowFileJournal().getLastRecoveryMillis()});
     }
 
     /**
      * Ensures the flow files stored in the cache from the last time NiFi was shut down are loaded
      */
-    private void ensureInitializeFlowFileMapDbCache() {
+    private void ensureInitializeFlowFileJournal() {
         if (initializationError) {
             getLogger().info("Errors was found initializing the Flow files... attempting to resolve now");
             initializing.set(true);
@@ -326,11 +373,11 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
             boolean retry = initializeFlowFilesRetryAttempts < 3;
             if (retry) {
                 try {
-                    initializeFlowFilesFromMapDbCache();
+                    initializeFlowFilesFromJournal();
                 } catch (Exception e) {
                     initializeFlowFilesRetryAttempts++;
                     if (initializeFlowFilesRetryAttempts < 3) {
-                        getLogger().error("Retry to get mapDbCache  with attempt # {}", new Object[]{initializeFlowFilesRetryAttempts});
+                        getLogger().error("Retry to recover the flow file journal with attempt # {}", new Object[]{initializeFlowFilesRetryAttempts});
                         //wait
                         try {
                             Thread.sleep(300L);
@@ -338,9 +385,9 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
 
                         }
                         //retry
-                        ensureInitializeFlowFileMapDbCache();
+                        ensureInitializeFlowFileJournal();
                     } else {
-                        getLogger().error("ERROR attempting to initialize the FlowFile MapDB cache.  Any events running midstream before NiFi was restarted may not be finished in Kylo {} ",
+                        getLogger().error("ERROR attempting to initialize the FlowFile journal.  Any events running midstream before NiFi was restarted may not be finished in Kylo {} ",
                                           new Object[]{e.getMessage()}, e);
                     }
                 } finally {
@@ -351,6 +398,46 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
         }
     }
 
+    /**
+     * Create the thread pools used to fetch, convert and send the events.
+     * The conversion pool is recreated if the number of threads has changed.
+     *
+     * @param conversionThreads the number of threads used to convert the events
+     */
+    private synchronized void initializeExecutors(int conversionThreads) {
+        if (fetchExecutor == null) {
+            fetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("kylo-provenance-fetch-%d").build());
+        }
+        if (sendExecutor == null) {
+            sendExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("kylo-provenance-send-%d").build());
+        }
+        if (conversionExecutor == null || conversionThreads != eventConversionThreads) {
+            if (conversionExecutor != null) {
+                conversionExecutor.shutdown();
+            }
+            conversionExecutor = Executors.newFixedThreadPool(conversionThreads, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("kylo-provenance-convert-%d").build());
+            eventConversionThreads = conversionThreads;
+        }
+    }
+
+    /**
+     * Shutdown the thread pools used to fetch, convert and send the events
+     */
+    private synchronized void shutdownExecutors() {
+        if (fetchExecutor != null) {
+            fetchExecutor.shutdown();
+            fetchExecutor = null;
+        }
+        if (conversionExecutor != null) {
+            conversionExecutor.shutdown();
+            conversionExecutor = null;
+        }
+        if (sendExecutor != null) {
+            sendExecutor.shutdown();
+            sendExecutor = null;
+        }
+    }
+
     /**
      * ensure Spring is loaded and Beans are autowired correctly.
      *
@@ -469,7 +556,7 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
     /**
      * * Responsible to querying the provenance data and sending the events to Kylo, both the streaming event aggregration and the batch event data A boolean {@code processing} flag is used to prevent
      * multiple threads from running this trigger at the same time. 1. sets the Boolean flag to processing 2. queries NiFi provenance to determine the set of Events to process and send to Kylo 3.
-     * aggregrates and processes the batch events and sends to Kylo via JMS 4. Callback listeners for the JMS will update the {@code StateManager} setting the {@code LAST_EVENT_ID_KEY} value. 5. Upon
+     * aggregrates and processes the batch events and sends to Kylo via JMS 4. Once all the events up to a given id have been sent to JMS the {@code StateManager} is updated setting the {@code LAST_EVENT_ID_KEY} value. 5. Upon
      * any failure the {@code abortProcessing()} will be called
      */
     @Override
@@ -481,7 +568,7 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
             return;
         }
 
-        ensureInitializeFlowFileMapDbCache();
+        ensureInitializeFlowFileJournal();
 
         if (!isInitializing() && processing.compareAndSet(false, true)) {
 
@@ -532,9 +619,9 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
                 long start = System.currentTimeMillis();
                 //split this into batches of events, maxing at 500 if not specified
                 int batchSize = processingBatchSize == null || processingBatchSize < 1 ? 500 : processingBatchSize;
-                //setup the object pool to be able to store at least the processing batch size amount
+                //setup the object pool to be able to store the events for the batch being processed and the batches waiting to be sent to JMS
                 ProvenanceEventObjectPool pool = getProvenanceEventObjectPool();
-                int total = processingBatchSize + 100;
+                int total = batchSize * (MAX_BATCHES_PENDING_SEND + 1) + 100;
                 pool.setMaxIdle(total);
                 pool.setMaxTotal(total);
 
@@ -545,47 +632,69 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
                         new Object[]{nifiFlowSyncId, recordCount, nextId, batches, batchSize});
                 }
 
-                //reset the queryTime holder
-                nifiQueryTime = 0L;
-                while (recordCount > 0) {
-                    if (!isProcessing()) {
-                        break;
-                    }
-                    long min = lastEventId + 1;
-                    long max = (min + (batchSize - 1)) > maxEventId ? maxEventId : (min + (batchSize - 1));
-                    int batchAmount = new Long(max - (min < 0 ? 0 : min)).intValue() + 1;
-                    if (batchAmount <= 0) {
-                        break;
-                    } else {
-                        lastEventId = processEventsInRange(provenance, min, max);
-                        recordCount -= batchAmount;
-                        recordCount = recordCount < 0 ? 0 : recordCount;
-                        setLastEventId(lastEventId);
-
-                        if (lastLogTime == null || (DateTime.now().getMillis() - lastLogTime.getMillis() > logReportingTimeMs)) {
-                            lastLogTime = DateTime.now();
-                            getLogger().info(
-                                "KyloProvenanceEventReportingTask onTrigger Info: ReportingTask is in a long running process.  Currently processing Event id: {}.  {} events remaining to be processed. ",
-                                new Object[]{lastEventId, recordCount});
+                //reset the stage statistics
+                pipelineStats.reset();
+                //the last event id is only advanced once all the events before it have been sent to JMS
+                ProvenanceEventRangeTracker rangeTracker = new ProvenanceEventRangeTracker(lastEventId);
+                Deque<Future<?>> pendingSends = new ArrayDeque<>();
+                Future<List<ProvenanceEventRecord>> nextBatch = null;
+                try {
+                    while (recordCount > 0) {
+                        //stop dispatching batches once one fails, they will be processed again on the next run
+                        if (!isProcessing() || rangeTracker.isFailed()) {
+                            break;
+                        }
+                        long min = lastEventId + 1;
+                        long max = (min + (batchSize - 1)) > maxEventId ? maxEventId : (min + (batchSize - 1));
+                        int batchAmount = new Long(max - (min < 0 ? 0 : min)).intValue() + 1;
+                        if (batchAmount <= 0) {
+                            break;
+                        } else {
+                            Future<List<ProvenanceEventRecord>> batch = nextBatch != null ? nextBatch : fetchEventsInRange(provenance, min, max);
+                            recordCount -= batchAmount;
+                            recordCount = recordCount < 0 ? 0 : recordCount;
+                            //query the next batch while this one is processed
+                            nextBatch = recordCount > 0 ? fetchEventsInRange(provenance, max + 1, (max + batchSize) > maxEventId ? maxEventId : (max + batchSize)) : null;
+
+                            processEventsInRange(batch.get(), min, max, rangeTracker, pendingSends);
+                            lastEventId = max;
+
+                            if (lastLogTime == null || (DateTime.now().getMillis() - lastLogTime.getMillis() > logReportingTimeMs)) {
+                                lastLogTime = DateTime.now();
+                                getLogger().info(
+                                    "KyloProvenanceEventReportingTask onTrigger Info: ReportingTask is in a long running process.  Currently processing Event id: {}.  {} events remaining to be processed. {} ",
+                                    new Object[]{lastEventId, recordCount, pipelineStats});
+                            }
+                        }
+                        if (!isProcessing()) {
+                            break;
                         }
-                    }
-                    if (!isProcessing()) {
-                        break;
-                    }
 
 
+                    }
+                } finally {
+                    if (nextBatch != null) {
+                        nextBatch.cancel(false);
+                    }
+                    waitForPendingSends(pendingSends);
                 }
                 if (totalRecords > 0 && isProcessing()) {
                     long processingTime = (System.currentTimeMillis() - start);
+                    long nifiQueryTime = pipelineStats.getTimeMillis(ProvenanceEventPipelineStats.Stage.FETCH);
                     getLogger().info(
-                        "KyloProvenanceEventReportingTask onTrigger Info: ReportingTask finished. Last Event id: {}. Total time to process {} events was {} ms.  Total time spent querying for events in Nifi was {} ms.  Kylo ProcessingTime: {} ms ",
-                        new Object[]{lastEventId, totalRecords, processingTime, nifiQueryTime, processingTime - nifiQueryTime});
+                        "KyloProvenanceEventReportingTask onTrigger Info: ReportingTask finished. Last Event id: {}. Total time to process {} events was {} ms.  Total time spent querying for events in Nifi was {} ms.  Kylo ProcessingTime: {} ms.  {} ",
+                        new Object[]{rangeTracker.getLastAcknowledgedEventId(), totalRecords, processingTime, nifiQueryTime, processingTime - nifiQueryTime, pipelineStats});
+                    getLogger().debug("KyloProvenanceEventReportingTask flow file journal: {} ", new Object[]{getFeedFlowFileJournal()});
+                    getLogger().debug("KyloProvenanceEventReportingTask batch feed event rates: {} ", new Object[]{getProvenanceEventCollector().getBatchFeedProcessorEvents()});
                 }
 
                 finishProcessing(totalRecords);
 
-            } catch (IOException e) {
+            } catch (IOException | ExecutionException e) {
                 getLogger().error(e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                getLogger().error("Interrupted while processing the provenance events", e);
             } finally {
                 abortProcessing();
             }
@@ -731,85 +840,243 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
     }
 
     /**
-     * processes all events inclusive in the range
+     * Query the provenance repository, on the fetch thread, for all the events inclusive in the range.
      *
      * @param provenance the repository to query
      * @param minEventId the minEventId to query
      * @param maxEventId the maxEvent id to query
-     * @return the lastEventId processed
+     * @return the events in the range sorted by their event id
      */
-    private Long processEventsInRange(ProvenanceEventRepository provenance, Long minEventId, Long maxEventId) throws IOException {
-        Long lastEventId = null;
-
-        int recordCount = new Long(maxEventId - (minEventId < 0 ? 0 : minEventId)).intValue();
-        currentProcessingMessage = "Finding all Events between " + minEventId + " - " + maxEventId;
+    private Future<List<ProvenanceEventRecord>> fetchEventsInRange(ProvenanceEventRepository provenance, Long minEventId, Long maxEventId) {
+        return fetchExecutor.submit(() -> {
+            long start = System.nanoTime();
+            //add one to the record count to get the correct number in the range including the maxEventId
+            int recordCount = new Long(maxEventId - (minEventId < 0 ? 0 : minEventId)).intValue() + 1;
+            //only keep the events in the range, any events after the range will be part of the next batch
+            List<ProvenanceEventRecord> events = provenance.getEvents(minEventId, recordCount).stream()
+                .filter(event -> event.getEventId() >= minEventId && event.getEventId() <= maxEventId)
+                .sorted(new ProvenanceEventRecordComparator())
+                .collect(Collectors.toList());
+            pipelineStats.record(ProvenanceEventPipelineStats.Stage.FETCH, events.size(), System.nanoTime() - start);
+            return events;
+        });
+    }
 
-        //add one to the record count to get the correct number in the range including the maxEventId
-        recordCount += 1;
-        long start = System.currentTimeMillis();
-        final List<ProvenanceEventRecord> events = provenance.getEvents(minEventId, recordCount);
+    /**
+     * processes all events inclusive in the range.
+     * The events are converted on the conversion threads, then collected in order, and then sent to JMS on the send thread.
+     * The range is acknowledged in the {@code rangeTracker} once all of its events have been sent.
+     *
+     * @param events       the events in the range sorted by their event id
+     * @param minEventId   the minEventId in the range
+     * @param maxEventId   the maxEvent id in the range
+     * @param rangeTracker the tracker used to advance the last event id
+     * @param pendingSends the batches that are being sent to JMS
+     */
+    private void processEventsInRange(List<ProvenanceEventRecord> events, Long minEventId, Long maxEventId, ProvenanceEventRangeTracker rangeTracker, Deque<Future<?>> pendingSends)
+        throws InterruptedException {
+        currentProcessingMessage = "Processing all Events between " + minEventId + " - " + maxEventId;
 
         updateNifiFlowCache();
+        rangeTracker.register(minEventId, maxEventId);
 
-        long end = System.currentTimeMillis();
-        nifiQueryTime += (end - start);
-        Collections.sort(events, new ProvenanceEventRecordComparator());
-        ProvenanceEventObjectPool pool = getProvenanceEventObjectPool();
-        List<ProvenanceEventRecordDTO> pooledEvents = new ArrayList<>(events.size());
+        ProvenanceEventRecordDTO[] pooledEvents = null;
         try {
-            for (ProvenanceEventRecord eventRecord : events) {
+            pooledEvents = convertEvents(events);
+
+            //the flow file graph needs the events in order so they are collected on this thread
+            long start = System.nanoTime();
+            int collected = 0;
+            for (ProvenanceEventRecordDTO dto : pooledEvents) {
                 if (!isProcessing()) {
                     break;
                 }
-                if (lastEventId == null || eventRecord.getEventId() != lastEventId) {
-                    ProvenanceEventRecordDTO dto = processEvent(eventRecord);
-                    if (dto != null) {
-                        pooledEvents.add(dto);
-                    }
-                }
-                lastEventId = eventRecord.getEventId();
+                getProvenanceEventCollector().process(dto);
+                collected++;
             }
+            boolean completed = collected == pooledEvents.length;
+            List<ProvenanceEventRecordDTOHolder> batchEvents = getProvenanceEventCollector().collectBatchFeedEvents();
+            AggregatedFeedProcessorStatisticsHolder stats = getProvenanceEventCollector().collectStats();
+            pipelineStats.record(ProvenanceEventPipelineStats.Stage.COLLECT, collected, System.nanoTime() - start);
+
+            journalFlowFiles(pooledEvents, collected);
+
             //Send JMS off
-            getProvenanceEventCollector().sendToJms();
+            sendEvents(minEventId, batchEvents, stats, pooledEvents, completed, rangeTracker, pendingSends);
+        } catch (InterruptedException e) {
+            returnToPool(pooledEvents);
+            throw e;
         } catch (Exception e) {
             getLogger().error("Error processing Kylo ProvenanceEvent ", e);
+            rangeTracker.fail(minEventId);
+            returnToPool(pooledEvents);
             abortProcessing();
-        } finally {
-            //return the objects back to the pool
-            pooledEvents.stream().forEach(dto -> {
-                if (dto != null) {
-                    try {
-                        dto.reset();
-                        pool.returnObject(dto);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
+        }
+    }
+
+    /**
+     * Append the flow files changed by the collected events to the {@link FeedFlowFileJournal} so they can be recovered if NiFi goes down.
+     * A failure to write the journal is logged and does not stop the events from being sent to Kylo
+     *
+     * @param events    the events in the batch
+     * @param collected the number of events that were collected
+     */
+    private void journalFlowFiles(ProvenanceEventRecordDTO[] events, int collected) {
+        long start = System.nanoTime();
+        Set<FeedFlowFile> flowFiles = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < collected; i++) {
+            if (events[i].getFeedFlowFile() != null) {
+                flowFiles.add(events[i].getFeedFlowFile());
+            }
+        }
+        try {
+            getFeedFlowFileJournal().append(flowFiles);
+        } catch (IOException e) {
+            getLogger().error("Unable to write the running flow files to the journal.  They may not be recovered if NiFi goes down. {} ", new Object[]{e.getMessage()}, e);
+        }
+        pipelineStats.record(ProvenanceEventPipelineStats.Stage.JOURNAL, collected, System.nanoTime() - start);
+    }
+
+    /**
+     * Convert the events managed by Kylo to pooled {@link ProvenanceEventRecordDTO} objects using the conversion threads.
+     *
+     * @param events the events to convert
+     * @return the converted events in the same order as the supplied events
+     */
+    private ProvenanceEventRecordDTO[] convertEvents(List<ProvenanceEventRecord> events) throws Exception {
+        long start = System.nanoTime();
+        ProvenanceFeedLookup provenanceFeedLookup = getProvenanceFeedLookup();
+        ProvenanceEventObjectPool pool = getProvenanceEventObjectPool();
+        List<ProvenanceEventRecord> kyloEvents = events.stream().filter(event -> provenanceFeedLookup.isKyloManaged(event.getComponentId())).collect(Collectors.toList());
+
+        ProvenanceEventRecordDTO[] dtos = new ProvenanceEventRecordDTO[kyloEvents.size()];
+        int chunkSize = Math.max(1, (int) Math.ceil((double) dtos.length / eventConversionThreads));
+        List<Future<Void>> conversions = new ArrayList<>();
+        for (int chunkStart = 0; chunkStart < dtos.length; chunkStart += chunkSize) {
+            final int from = chunkStart;
+            final int to = Math.min(chunkStart + chunkSize, dtos.length);
+            conversions.add(conversionExecutor.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    dtos[i] = ProvenanceEventRecordConverter.getPooledObject(pool, kyloEvents.get(i));
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<Void> conversion : conversions) {
+                conversion.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            //wait for the other conversions so all of the borrowed objects can be returned
+            for (Future<Void> conversion : conversions) {
+                try {
+                    conversion.get();
+                } catch (ExecutionException ignored) {
+                    //already handled
                 }
-            });
-            pooledEvents.clear();
+            }
+            returnToPool(dtos);
+            throw e;
+        }
+        pipelineStats.record(ProvenanceEventPipelineStats.Stage.CONVERT, dtos.length, System.nanoTime() - start);
+        return dtos;
+    }
 
+    /**
+     * Send the collected events and statistics to JMS on the send thread.
+     * If there are too many batches waiting to be sent this will wait for the oldest one to finish before submitting this one.
+     *
+     * @param minEventId   the min event id in the range of events
+     * @param batchEvents  the batch events to send
+     * @param stats        the statistics to send
+     * @param pooledEvents the pooled objects to return once the events are sent
+     * @param acknowledge  true if all of the events in the range were processed and the range should be acknowledged once sent
+     * @param rangeTracker the tracker used to advance the last event id
+     * @param pendingSends the batches that are being sent to JMS
+     */
+    private void sendEvents(Long minEventId, List<ProvenanceEventRecordDTOHolder> batchEvents, AggregatedFeedProcessorStatisticsHolder stats, ProvenanceEventRecordDTO[] pooledEvents,
+                            boolean acknowledge, ProvenanceEventRangeTracker rangeTracker, Deque<Future<?>> pendingSends) throws InterruptedException {
+        while (pendingSends.size() >= MAX_BATCHES_PENDING_SEND) {
+            waitForSend(pendingSends.poll());
         }
-        getLogger().info("ProvenanceEventPool: Pool Stats: Created:[" + pool.getCreatedCount() + "], Borrowed:[" + pool.getBorrowedCount() + "]");
+        ProvenanceEventActiveMqWriter writer = getProvenanceEventActiveMqWriter();
+        pendingSends.add(sendExecutor.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                //batches are sent in order, so skip any batch queued after one that failed
+                if (rangeTracker.isFailed()) {
+                    getLogger().debug("Skipping the events starting at event id {} since an earlier batch failed to send.  They will be processed again on the next run. ", new Object[]{minEventId});
+                    return;
+                }
+                boolean sent = true;
+                for (ProvenanceEventRecordDTOHolder holder : batchEvents) {
+                    if (!writer.writeBatchEvents(holder)) {
+                        sent = false;
+                        break;
+                    }
+                }
+                sent = sent && writer.writeStats(stats);
+                pipelineStats.record(ProvenanceEventPipelineStats.Stage.SEND, pooledEvents.length, System.nanoTime() - start);
 
-        return lastEventId == null ? minEventId : lastEventId;
+                if (!sent) {
+                    getLogger().error("Unable to send the events starting at event id {} to JMS.  They will be processed again on the next run. ", new Object[]{minEventId});
+                    rangeTracker.fail(minEventId);
+                    abortProcessing();
+                } else if (acknowledge) {
+                    Long lastEventId = rangeTracker.acknowledge(minEventId);
+                    if (lastEventId != null) {
+                        setLastEventId(lastEventId);
+                    }
+                }
+            } catch (Exception e) {
+                getLogger().error("Error sending Kylo ProvenanceEvents to JMS ", e);
+                rangeTracker.fail(minEventId);
+                abortProcessing();
+            } finally {
+                returnToPool(pooledEvents);
+            }
+        }));
+    }
+
+    /**
+     * Wait for all of the batches to be sent to JMS
+     */
+    private void waitForPendingSends(Deque<Future<?>> pendingSends) {
+        try {
+            while (!pendingSends.isEmpty()) {
+                waitForSend(pendingSends.poll());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
+    private void waitForSend(Future<?> send) throws InterruptedException {
+        try {
+            send.get();
+        } catch (ExecutionException e) {
+            getLogger().error("Error sending Kylo ProvenanceEvents to JMS ", e);
+        }
     }
 
     /**
-     * Process the Event, calculate the  statistics and send it on to JMS for Kylo Ops manager processing
-     * If the event is not found to be managed by Kylo it is returned as Null.
-     *
-     * @param event the event to process
-     * @return the converted event after being processed.
+     * return the objects back to the pool
      */
-    public ProvenanceEventRecordDTO processEvent(ProvenanceEventRecord event) throws Exception {
-        ProvenanceEventRecordDTO eventRecordDTO = null;
-        if (getProvenanceFeedLookup().isKyloManaged(event.getComponentId())) {
-            ProvenanceEventObjectPool pool = getProvenanceEventObjectPool();
-            eventRecordDTO = ProvenanceEventRecordConverter.getPooledObject(pool, event);
-            getProvenanceEventCollector().process(eventRecordDTO);
+    private void returnToPool(ProvenanceEventRecordDTO[] pooledEvents) {
+        if (pooledEvents == null) {
+            return;
+        }
+        ProvenanceEventObjectPool pool = getProvenanceEventObjectPool();
+        for (ProvenanceEventRecordDTO dto : pooledEvents) {
+            if (dto != null) {
+                try {
+                    dto.reset();
+                    pool.returnObject(dto);
+                } catch (Exception e) {
+                    getLogger().warn("Unable to return the event to the pool", e);
+                }
+            }
         }
-        return eventRecordDTO;
     }
 
     /**
@@ -817,11 +1084,11 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
      */
     private void ensureJmsListeners() {
         if (batchJmsListener == null) {
-            batchJmsListener = new KyloReportingTaskJmsListeners.KyloReportingTaskBatchJmsListener(this);
+            batchJmsListener = new KyloReportingTaskJmsListeners.KyloReportingTaskBatchJmsListener();
             getProvenanceEventActiveMqWriter().subscribe(batchJmsListener);
         }
         if (statsJmsListener == null) {
-            this.statsJmsListener = new KyloReportingTaskJmsListeners.KyloReportingTaskStatsJmsListener(this);
+            this.statsJmsListener = new KyloReportingTaskJmsListeners.KyloReportingTaskStatsJmsListener();
             getProvenanceEventActiveMqWriter().subscribe(statsJmsListener);
         }
     }
@@ -859,8 +1126,8 @@ public class KyloProvenanceEventReportingTask extends AbstractReportingTask {
      * Persistent cache that will only be used when NiFi shuts down or is started, persisting the RootFlowFile objects to help complete Statistics and event processing when NiFi shuts down with events
      * in mid flow processing
      */
-    private FeedFlowFileMapDbCache getFlowFileMapDbCache() {
-        return SpringApplicationContext.getInstance().getBean(FeedFlowFileMapDbCache.class);
+    private FeedFlowFileJournal getFeedFlowFileJournal() {
+        return SpringApplicationContext.getInstance().getBean(FeedFlowFileJournal.class);
     }
 
     private static enum LAST_EVENT_ID_NOT_FOUND_OPTION {ZERO, MAX_EVENT_ID, KYLO}
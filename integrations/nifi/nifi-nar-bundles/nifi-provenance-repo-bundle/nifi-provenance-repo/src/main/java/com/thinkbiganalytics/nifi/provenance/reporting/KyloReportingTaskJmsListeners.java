@@ -28,11 +28,9 @@ import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessor
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-
 /**
- * listeners as to when the JMS sucessfully processes the events. The {@link KyloProvenanceEventReportingTask} subscribes to the JMS events to update the lastEventId {@link
- * KyloProvenanceEventReportingTask#setLastEventId(long)} so it knows what id it should start with next time it runs.
+ * listeners as to when the JMS sends the events. The {@link KyloProvenanceEventReportingTask} updates the lastEventId {@link
+ * KyloProvenanceEventReportingTask#setLastEventId(long)} itself once every event up to that id has been sent, so these listeners only report on the messages sent.
  */
 public class KyloReportingTaskJmsListeners {
 
@@ -40,12 +38,6 @@ public class KyloReportingTaskJmsListeners {
 
     public static class KyloReportingTaskBatchJmsListener implements JmsSendListener<ProvenanceEventRecordDTOHolder> {
 
-        private KyloProvenanceEventReportingTask reportingTask;
-
-        public KyloReportingTaskBatchJmsListener(KyloProvenanceEventReportingTask reportingTask) {
-            this.reportingTask = reportingTask;
-        }
-
         @Override
         public String getDestination() {
             return Queues.FEED_MANAGER_QUEUE;
@@ -53,11 +45,7 @@ public class KyloReportingTaskJmsListeners {
 
         @Override
         public void successfulJmsMessage(String destination, ProvenanceEventRecordDTOHolder payload) {
-            try {
-                reportingTask.setLastEventId(payload.getMaxEventId());
-            } catch (IOException e) {
-                log.error("Unable to set LastEventId from JMS {}.  Tried to set it to {}, but got an error ", destination, payload.getMaxEventId(), e);
-            }
+            log.debug("Sent JMS message to {} with events between {} - {} ", destination, payload.getMinEventId(), payload.getMaxEventId());
         }
 
         @Override
@@ -70,13 +58,6 @@ public class KyloReportingTaskJmsListeners {
 
     public static class KyloReportingTaskStatsJmsListener implements JmsSendListener<AggregatedFeedProcessorStatisticsHolder> {
 
-
-        private KyloProvenanceEventReportingTask reportingTask;
-
-        public KyloReportingTaskStatsJmsListener(KyloProvenanceEventReportingTask reportingTask) {
-            this.reportingTask = reportingTask;
-        }
-
         @Override
         public String getDestination() {
             return Queues.PROVENANCE_EVENT_STATS_QUEUE;
@@ -84,11 +65,7 @@ public class KyloReportingTaskJmsListeners {
 
         @Override
         public void successfulJmsMessage(String destination, AggregatedFeedProcessorStatisticsHolder payload) {
-            try {
-                reportingTask.setLastEventId(payload.getMaxEventId());
-            } catch (IOException e) {
-                log.error("Unable to set LastEventId from JMS {}.  Tried to set it to {}, but got an error ", destination, payload.getMaxEventId(), e);
-            }
+            log.debug("Sent JMS message to {} with stats for events between {} - {} ", destination, payload.getMinEventId(), payload.getMaxEventId());
         }
 
         @Override
@@ -0,0 +1,130 @@
+package com.thinkbiganalytics.nifi.provenance.reporting;
+
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Track the number of events and the time spent in each stage of the {@link KyloProvenanceEventReportingTask} processing pipeline.
+ * This is used to report the throughput of each stage to help determine which stage is the bottleneck.
+ */
+public class ProvenanceEventPipelineStats {
+
+    /**
+     * The stages an event passes through
+     */
+    public enum Stage {
+        /**
+         * Querying the NiFi provenance repository for a page of events
+         */
+        FETCH,
+        /**
+         * Converting the NiFi events to {@link com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO} objects
+         */
+        CONVERT,
+        /**
+         * Building the flow file graph, calculating statistics and grouping the events by feed
+         */
+        COLLECT,
+        /**
+         * Appending the changed flow files to the {@link com.thinkbiganalytics.nifi.provenance.cache.FeedFlowFileJournal}
+         */
+        JOURNAL,
+        /**
+         * Sending the events and statistics to JMS
+         */
+        SEND
+    }
+
+    private final Map<Stage, AtomicLong> eventCounts = new EnumMap<>(Stage.class);
+
+    private final Map<Stage, AtomicLong> stageNanos = new EnumMap<>(Stage.class);
+
+    public ProvenanceEventPipelineStats() {
+        for (Stage stage : Stage.values()) {
+            eventCounts.put(stage, new AtomicLong(0L));
+            stageNanos.put(stage, new AtomicLong(0L));
+        }
+    }
+
+    /**
+     * Record the work done by a stage
+     *
+     * @param stage        the stage
+     * @param events       the number of events processed
+     * @param elapsedNanos the time spent processing the events
+     */
+    public void record(Stage stage, long events, long elapsedNanos) {
+        eventCounts.get(stage).addAndGet(events);
+        stageNanos.get(stage).addAndGet(elapsedNanos);
+    }
+
+    /**
+     * @return the number of events processed by the stage
+     */
+    public long getEventCount(Stage stage) {
+        return eventCounts.get(stage).get();
+    }
+
+    /**
+     * @return the time, in millis, spent in the stage
+     */
+    public long getTimeMillis(Stage stage) {
+        return TimeUnit.NANOSECONDS.toMillis(stageNanos.get(stage).get());
+    }
+
+    /**
+     * @return the number of events/second the stage processed while it was working
+     */
+    public long getEventsPerSecond(Stage stage) {
+        long nanos = stageNanos.get(stage).get();
+        return nanos > 0 ? (getEventCount(stage) * TimeUnit.SECONDS.toNanos(1)) / nanos : 0L;
+    }
+
+    /**
+     * Reset the counters
+     */
+    public void reset() {
+        for (Stage stage : Stage.values()) {
+            eventCounts.get(stage).set(0L);
+            stageNanos.get(stage).set(0L);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ProvenanceEventPipelineStats{");
+        for (Stage stage : Stage.values()) {
+            if (stage.ordinal() > 0) {
+                sb.append(", ");
+            }
+            sb.append(stage.name().toLowerCase()).append("=[events: ").append(getEventCount(stage))
+                .append(", time: ").append(getTimeMillis(stage)).append(" ms")
+                .append(", events/sec: ").append(getEventsPerSecond(stage)).append(']');
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+}
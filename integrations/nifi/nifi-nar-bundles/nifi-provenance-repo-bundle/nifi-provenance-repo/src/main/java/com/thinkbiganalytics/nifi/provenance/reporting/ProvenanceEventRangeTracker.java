@@ -0,0 +1,130 @@
+package com.thinkbiganalytics.nifi.provenance.reporting;
+
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tracks the ranges of provenance event ids that are in flight in the {@link KyloProvenanceEventReportingTask}.
+ * Ranges are registered in order as they are fetched and acknowledged as their events are successfully sent to JMS.
+ * Since the ranges may be acknowledged out of order the last event id is only advanced past the contiguous prefix of acknowledged ranges.
+ * Once a range fails no other range is acknowledged, so the last event id never moves past the failed range.
+ */
+public class ProvenanceEventRangeTracker {
+
+    /**
+     * The ranges that have not been acknowledged yet, keyed by the min event id in the range
+     */
+    private final TreeMap<Long, EventRange> pendingRanges = new TreeMap<>();
+
+    /**
+     * The last event id in the contiguous prefix of acknowledged ranges
+     */
+    private long lastAcknowledgedEventId;
+
+    /**
+     * The min event id of the first range that failed, or null if no range has failed
+     */
+    private Long failedEventId;
+
+    public ProvenanceEventRangeTracker(long lastAcknowledgedEventId) {
+        this.lastAcknowledgedEventId = lastAcknowledgedEventId;
+    }
+
+    /**
+     * Register a range of events, inclusive, that is about to be processed
+     *
+     * @param minEventId the min event id in the range
+     * @param maxEventId the max event id in the range
+     */
+    public synchronized void register(long minEventId, long maxEventId) {
+        pendingRanges.put(minEventId, new EventRange(maxEventId));
+    }
+
+    /**
+     * Acknowledge that all the events in the range starting with the {@code minEventId} have been sent.
+     *
+     * @param minEventId the min event id of a registered range
+     * @return the new last acknowledged event id if it advanced, otherwise null
+     */
+    public synchronized Long acknowledge(long minEventId) {
+        EventRange range = pendingRanges.get(minEventId);
+        if (range == null || failedEventId != null) {
+            return null;
+        }
+        range.acknowledged = true;
+
+        boolean advanced = false;
+        Map.Entry<Long, EventRange> first = pendingRanges.firstEntry();
+        while (first != null && first.getValue().acknowledged) {
+            lastAcknowledgedEventId = first.getValue().maxEventId;
+            pendingRanges.pollFirstEntry();
+            advanced = true;
+            first = pendingRanges.firstEntry();
+        }
+        return advanced ? lastAcknowledgedEventId : null;
+    }
+
+    /**
+     * Mark the range starting with the {@code minEventId} as failed.
+     * No range is acknowledged after this, and the ranges that have not been sent yet should not be sent.
+     *
+     * @param minEventId the min event id of the range that failed
+     */
+    public synchronized void fail(long minEventId) {
+        if (failedEventId == null || minEventId < failedEventId) {
+            failedEventId = minEventId;
+        }
+    }
+
+    /**
+     * @return true if any range has failed
+     */
+    public synchronized boolean isFailed() {
+        return failedEventId != null;
+    }
+
+    /**
+     * @return the last event id in the contiguous prefix of acknowledged ranges
+     */
+    public synchronized long getLastAcknowledgedEventId() {
+        return lastAcknowledgedEventId;
+    }
+
+    /**
+     * @return the number of ranges waiting to be acknowledged, or waiting on an earlier range to be acknowledged
+     */
+    public synchronized int getPendingRangeCount() {
+        return pendingRanges.size();
+    }
+
+    private static class EventRange {
+
+        private final long maxEventId;
+        private boolean acknowledged;
+
+        private EventRange(long maxEventId) {
+            this.maxEventId = maxEventId;
+        }
+    }
+}
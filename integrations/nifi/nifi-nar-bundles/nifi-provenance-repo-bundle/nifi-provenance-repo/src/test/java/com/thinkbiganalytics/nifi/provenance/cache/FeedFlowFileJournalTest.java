@@ -0,0 +1,217 @@
+package com.thinkbiganalytics.nifi.provenance.cache;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.nifi.provenance.model.FeedFlowFile;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+
+import org.joda.time.DateTime;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Recover the running flow files from the {@link FeedFlowFileJournal} as if NiFi was killed
+ */
+public class FeedFlowFileJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecoverWithoutClosing() throws Exception {
+        File directory = folder.newFolder("journal");
+        FeedFlowFileCache cache = new FeedFlowFileCache();
+        FeedFlowFileJournal journal = new FeedFlowFileJournal(directory, 1024L * 1024L, 2, true, cache);
+        Assert.assertEquals(0, journal.loadCache());
+
+        List<FeedFlowFile> flowFiles = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            flowFiles.add(split(cache, 10, 1000L * i));
+        }
+        journal.append(flowFiles);
+
+        //change some of the flow files after they were journaled
+        FeedFlowFile changed = flowFiles.get(0);
+        String child = UUID.randomUUID().toString();
+        addChild(cache, changed, child, 5000L);
+        changed.incrementFailedEvents();
+        journal.append(Collections.singletonList(changed));
+
+        //recover without closing the journal
+        FeedFlowFileCache recoveredCache = new FeedFlowFileCache();
+        FeedFlowFileJournal recovered = new FeedFlowFileJournal(directory, 1024L * 1024L, 4, true, recoveredCache);
+        Assert.assertEquals(20, recovered.loadCache());
+        Assert.assertEquals(20, recovered.getRecoveredFlowFiles());
+
+        for (FeedFlowFile flowFile : flowFiles) {
+            FeedFlowFile recoveredFlowFile = recoveredCache.getEntry(flowFile.getId());
+            Assert.assertNotNull(recoveredFlowFile);
+            Assert.assertEquals(flowFile.getChildFlowFileCount(), recoveredFlowFile.getChildFlowFileCount());
+            Assert.assertEquals(flowFile.getActiveChildFlowFileCount(), recoveredFlowFile.getActiveChildFlowFileCount());
+            Assert.assertEquals(flowFile.getFeedName(), recoveredFlowFile.getFeedName());
+            Assert.assertEquals(flowFile.hasFailedEvents(), recoveredFlowFile.hasFailedEvents());
+            flowFile.forEachActiveChildFlowFile(childId -> {
+                Assert.assertSame(recoveredFlowFile, recoveredCache.getEntry(childId));
+                Assert.assertEquals(flowFile.getPreviousEventTime(childId), recoveredFlowFile.getPreviousEventTime(childId));
+            });
+        }
+        Assert.assertEquals(5000L, recoveredCache.getEntry(child).getPreviousEventTime(child).longValue());
+        Assert.assertTrue(recoveredCache.getEntry(changed.getId()).hasFailedEvents());
+    }
+
+    @Test
+    public void testCompletedFlowFilesAndTornRecordsAreNotRecovered() throws Exception {
+        File directory = folder.newFolder("journal");
+        FeedFlowFileCache cache = new FeedFlowFileCache();
+        FeedFlowFileJournal journal = new FeedFlowFileJournal(directory, 1024L * 1024L, 2, true, cache);
+        journal.loadCache();
+
+        FeedFlowFile running = split(cache, 5, 1000L);
+        FeedFlowFile completed = split(cache, 5, 2000L);
+        journal.append(Arrays.asList(running, completed));
+
+        completed.checkAndMarkComplete(dropEvent(completed.getId()));
+        List<String> children = new ArrayList<>();
+        completed.forEachChildFlowFile(children::add);
+        children.forEach(childId -> completed.checkAndMarkComplete(dropEvent(childId)));
+        cache.invalidate(completed);
+        journal.append(Collections.singletonList(running));
+
+        //a record partially written when NiFi was killed
+        try (FileOutputStream out = new FileOutputStream(new File(directory, FeedFlowFileJournal.JOURNAL_FILE), true)) {
+            out.write(new byte[]{0, 0, 1, 0, 1, 2, 3});
+        }
+
+        FeedFlowFileCache recoveredCache = new FeedFlowFileCache();
+        FeedFlowFileJournal recovered = new FeedFlowFileJournal(directory, 1024L * 1024L, 2, true, recoveredCache);
+        Assert.assertEquals(1, recovered.loadCache());
+        Assert.assertNotNull(recoveredCache.getEntry(running.getId()));
+        Assert.assertNull(recoveredCache.getEntry(completed.getId()));
+    }
+
+    @Test
+    public void testCheckpoint() throws Exception {
+        File directory = folder.newFolder("journal");
+        FeedFlowFileCache cache = new FeedFlowFileCache();
+        //checkpoint after every append
+        FeedFlowFileJournal journal = new FeedFlowFileJournal(directory, 1L, 2, false, cache);
+        journal.loadCache();
+
+        List<FeedFlowFile> flowFiles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            FeedFlowFile flowFile = split(cache, 100, 1000L * i);
+            flowFiles.add(flowFile);
+            journal.append(Collections.singletonList(flowFile));
+        }
+        //the journal only has its header after the checkpoint
+        Assert.assertEquals(16L, journal.getJournalBytes());
+        Assert.assertEquals(16L, new File(directory, FeedFlowFileJournal.JOURNAL_FILE).length());
+        Assert.assertTrue(journal.getBytesWritten() > 0);
+
+        FeedFlowFileCache recoveredCache = new FeedFlowFileCache();
+        FeedFlowFileJournal recovered = new FeedFlowFileJournal(directory, 1024L * 1024L, 2, true, recoveredCache);
+        Assert.assertEquals(5, recovered.loadCache());
+        Map<String, FeedFlowFile> recoveredById = recoveredCache.getFlowFiles().stream().collect(Collectors.toMap(FeedFlowFile::getId, Function.identity()));
+        for (FeedFlowFile flowFile : flowFiles) {
+            Assert.assertEquals(100, recoveredById.get(flowFile.getId()).getActiveChildFlowFileCount());
+        }
+    }
+
+    /**
+     * Verify a checkpoint copies the flow files consistently while they are changed through the cache on another thread
+     */
+    @Test
+    public void testCheckpointWhileUpdating() throws Exception {
+        File directory = folder.newFolder("journal");
+        FeedFlowFileCache cache = new FeedFlowFileCache();
+        FeedFlowFileJournal journal = new FeedFlowFileJournal(directory, 1024L * 1024L, 2, false, cache);
+        journal.loadCache();
+        FeedFlowFile flowFile = split(cache, 10, 1000L);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger added = new AtomicInteger();
+        Thread updater = new Thread(() -> {
+            while (running.get()) {
+                cache.update(() -> addChild(cache, flowFile, UUID.randomUUID().toString(), 2000L));
+                added.incrementAndGet();
+            }
+        });
+        updater.start();
+        try {
+            for (int i = 0; i < 50; i++) {
+                journal.checkpoint();
+            }
+        } finally {
+            running.set(false);
+            updater.join();
+        }
+        journal.append(Collections.singletonList(flowFile));
+
+        FeedFlowFileCache recoveredCache = new FeedFlowFileCache();
+        FeedFlowFileJournal recovered = new FeedFlowFileJournal(directory, 1024L * 1024L, 2, true, recoveredCache);
+        Assert.assertEquals(1, recovered.loadCache());
+        Assert.assertEquals(10 + added.get(), recoveredCache.getEntry(flowFile.getId()).getActiveChildFlowFileCount());
+    }
+
+    private FeedFlowFile split(FeedFlowFileCache cache, int children, long eventTime) {
+        FeedFlowFile flowFile = new FeedFlowFile(UUID.randomUUID().toString());
+        flowFile.setFeedName("category.feed");
+        flowFile.setFeedProcessGroupId(UUID.randomUUID().toString());
+        cache.add(flowFile.getId(), flowFile);
+        for (int i = 0; i < children; i++) {
+            addChild(cache, flowFile, UUID.randomUUID().toString(), eventTime + i);
+        }
+        return flowFile;
+    }
+
+    private void addChild(FeedFlowFileCache cache, FeedFlowFile flowFile, String childId, long eventTime) {
+        cache.add(childId, flowFile);
+        flowFile.assignFlowFileToParent(childId, flowFile.getId());
+        flowFile.assignChildFlowFileStartTime(childId, eventTime);
+        flowFile.addChildFlowFile(childId);
+        ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+        event.setFlowFileUuid(childId);
+        event.setEventTime(new DateTime(eventTime));
+        flowFile.registerLastEventTime(event);
+    }
+
+    private ProvenanceEventRecordDTO dropEvent(String flowFileId) {
+        ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+        event.setFlowFileUuid(flowFileId);
+        event.setEventType("DROP");
+        return event;
+    }
+}
@@ -0,0 +1,96 @@
+package com.thinkbiganalytics.nifi.provenance.reporting;
+
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-repo
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProvenanceEventRangeTrackerTest {
+
+    /**
+     * Verify the last event id advances as the ranges are acknowledged in order.
+     */
+    @Test
+    public void acknowledgeInOrder() {
+        ProvenanceEventRangeTracker tracker = new ProvenanceEventRangeTracker(-1L);
+        tracker.register(0L, 99L);
+        tracker.register(100L, 199L);
+
+        Assert.assertEquals(Long.valueOf(99L), tracker.acknowledge(0L));
+        Assert.assertEquals(Long.valueOf(199L), tracker.acknowledge(100L));
+        Assert.assertEquals(199L, tracker.getLastAcknowledgedEventId());
+        Assert.assertEquals(0, tracker.getPendingRangeCount());
+    }
+
+    /**
+     * Verify the last event id does not advance past a range that has not been acknowledged.
+     */
+    @Test
+    public void acknowledgeOutOfOrder() {
+        ProvenanceEventRangeTracker tracker = new ProvenanceEventRangeTracker(9L);
+        tracker.register(10L, 19L);
+        tracker.register(20L, 29L);
+        tracker.register(30L, 39L);
+
+        Assert.assertNull(tracker.acknowledge(30L));
+        Assert.assertNull(tracker.acknowledge(20L));
+        Assert.assertEquals(9L, tracker.getLastAcknowledgedEventId());
+
+        Assert.assertEquals(Long.valueOf(39L), tracker.acknowledge(10L));
+        Assert.assertEquals(0, tracker.getPendingRangeCount());
+    }
+
+    /**
+     * Verify a range that is never acknowledged blocks the ranges after it.
+     */
+    @Test
+    public void unacknowledgedRange() {
+        ProvenanceEventRangeTracker tracker = new ProvenanceEventRangeTracker(-1L);
+        tracker.register(0L, 9L);
+        tracker.register(10L, 19L);
+        tracker.register(20L, 29L);
+
+        Assert.assertEquals(Long.valueOf(9L), tracker.acknowledge(0L));
+        Assert.assertNull(tracker.acknowledge(20L));
+        Assert.assertNull(tracker.acknowledge(40L));
+        Assert.assertEquals(9L, tracker.getLastAcknowledgedEventId());
+        Assert.assertEquals(2, tracker.getPendingRangeCount());
+    }
+
+    /**
+     * Verify no range is acknowledged after a range fails, even the ranges before it.
+     */
+    @Test
+    public void failedRange() {
+        ProvenanceEventRangeTracker tracker = new ProvenanceEventRangeTracker(-1L);
+        tracker.register(0L, 9L);
+        tracker.register(10L, 19L);
+        tracker.register(20L, 29L);
+
+        Assert.assertEquals(Long.valueOf(9L), tracker.acknowledge(0L));
+        Assert.assertFalse(tracker.isFailed());
+        tracker.fail(10L);
+        Assert.assertTrue(tracker.isFailed());
+        Assert.assertNull(tracker.acknowledge(20L));
+        Assert.assertEquals(9L, tracker.getLastAcknowledgedEventId());
+    }
+}
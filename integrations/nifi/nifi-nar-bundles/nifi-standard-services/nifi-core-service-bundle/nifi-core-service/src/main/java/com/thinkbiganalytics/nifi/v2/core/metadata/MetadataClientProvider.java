@@ -20,6 +20,9 @@ package com.thinkbiganalytics.nifi.v2.core.metadata;
  * #L%
  */
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.thinkbiganalytics.metadata.api.op.FeedDependencyDeltaResults;
 import com.thinkbiganalytics.metadata.rest.client.MetadataClient;
 import com.thinkbiganalytics.metadata.rest.model.data.Datasource;
@@ -38,22 +41,68 @@ import com.thinkbiganalytics.metadata.rest.model.op.HiveTablePartitions;
 import com.thinkbiganalytics.metadata.sla.api.Metric;
 import com.thinkbiganalytics.nifi.core.api.metadata.MetadataProvider;
 
+import org.apache.commons.lang3.SerializationUtils;
 import org.joda.time.DateTime;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
 
 import java.net.URI;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import javax.annotation.Nonnull;
 
 
+/**
+ * A {@link MetadataProvider} that calls the metadata REST API through a {@link MetadataClient}.
+ *
+ * <p>Processors look up the same feeds, datasources and feed properties for every flow file, so lookups are cached in memory.
+ * Feed ids and datasources rarely change and are kept for {@link #DEFAULT_LOOKUP_TTL_MILLIS}; only found values are cached.
+ * A feed id is evicted when the server answers a call made with it as not found or conflicting, as the feed may have been recreated.
+ * Callers are given copies of the cached datasources.
+ * Feed properties are kept for {@link #DEFAULT_PROPERTIES_TTL_MILLIS} and the cache is updated with the result of this provider's own merges and updates.</p>
+ */
 public class MetadataClientProvider implements MetadataProvider {
 
+    /**
+     * Default time in milliseconds that feed ids and datasources are cached
+     */
+    public static final long DEFAULT_LOOKUP_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Default time in milliseconds that feed properties are cached
+     */
+    public static final long DEFAULT_PROPERTIES_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Maximum number of entries in each cache
+     */
+    private static final int MAX_CACHE_SIZE = 1000;
+
     private MetadataClient client;
 
+    /**
+     * category and feed system name to feed id
+     */
+    private final Cache<String, String> feedIds;
+
+    /**
+     * datasource name to datasource
+     */
+    private final Cache<String, Datasource> datasources;
+
+    /**
+     * feed id to feed properties
+     */
+    private final Cache<String, Properties> feedProperties;
+
     /**
      * constructor creates a MetaDataClientProvider with the default URI constant
      */
@@ -80,24 +129,80 @@ public class MetadataClientProvider implements MetadataProvider {
      * @param client the MetadataClient will be used to connect with the Metadata store
      */
     public MetadataClientProvider(MetadataClient client) {
+        this(client, DEFAULT_LOOKUP_TTL_MILLIS, DEFAULT_PROPERTIES_TTL_MILLIS);
+    }
+
+    /**
+     * constructor creates a MetadataClientProvider with the required {@link MetadataClient} and cache expiry times
+     *
+     * @param client              the MetadataClient will be used to connect with the Metadata store
+     * @param lookupTtlMillis     the time in milliseconds that feed ids and datasources are cached
+     * @param propertiesTtlMillis the time in milliseconds that feed properties are cached
+     */
+    public MetadataClientProvider(MetadataClient client, long lookupTtlMillis, long propertiesTtlMillis) {
         super();
         this.client = client;
+        this.feedIds = createCache(lookupTtlMillis);
+        this.datasources = createCache(lookupTtlMillis);
+        this.feedProperties = createCache(propertiesTtlMillis);
+    }
+
+    private static <K, V> Cache<K, V> createCache(long ttlMillis) {
+        return CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHE_SIZE)
+            .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Gets the statistics of the caches, such as their hit rates, by cache name.
+     *
+     * @return the statistics of the feedIds, datasources and feedProperties caches
+     */
+    public Map<String, CacheStats> getCacheStats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        stats.put("feedIds", this.feedIds.stats());
+        stats.put("datasources", this.datasources.stats());
+        stats.put("feedProperties", this.feedProperties.stats());
+        return stats;
+    }
+
+    /**
+     * Removes all cached feed ids, datasources and feed properties.
+     */
+    public void invalidateCaches() {
+        this.feedIds.invalidateAll();
+        this.datasources.invalidateAll();
+        this.feedProperties.invalidateAll();
     }
 
     @Override
     public String getFeedId(String category, String feedName) {
-        List<Feed> feeds = this.client.getFeeds(this.client.feedCriteria().category(category).name(feedName));
-
-        if (feeds.isEmpty()) {
-            return null;
-        } else {
-            return feeds.get(0).getId();
+        String key = feedKey(category, feedName);
+        String feedId = this.feedIds.getIfPresent(key);
+
+        if (feedId == null) {
+            List<Feed> feeds = this.client.getFeeds(this.client.feedCriteria().category(category).name(feedName));
+
+            if (feeds.isEmpty()) {
+                return null;
+            } else {
+                feedId = feeds.get(0).getId();
+                this.feedIds.put(key, feedId);
+            }
         }
+
+        return feedId;
+    }
+
+    private String feedKey(String category, String feedName) {
+        return category + "." + feedName;
     }
 
     @Override
     public FeedDependencyDeltaResults getFeedDependentResultDeltas(String feedId) {
-        return this.client.getFeedDependencyDeltas(feedId);
+        return callWithFeedId(feedId, () -> this.client.getFeedDependencyDeltas(feedId));
     }
 
     /* (non-Javadoc)
@@ -105,10 +210,17 @@ public class MetadataClientProvider implements MetadataProvider {
      */
     @Override
     public Feed ensureFeed(String categoryName, String feedName, String descr) {
-        return this.client
+        String key = feedKey(categoryName, feedName);
+        this.feedIds.invalidate(key);
+        Feed feed = this.client
             .buildFeed(categoryName, feedName)
             .description(descr)
             .post();
+
+        if (feed != null && feed.getId() != null) {
+            this.feedIds.put(key, feed.getId());
+        }
+        return feed;
     }
 
     /* (non-Javadoc)
@@ -116,13 +228,21 @@ public class MetadataClientProvider implements MetadataProvider {
      */
     @Override
     public Datasource getDatasourceByName(String dsName) {
-        DatasourceCriteria criteria = this.client.datasourceCriteria().name(dsName);
-        List<Datasource> list = this.client.getDatasources(criteria);
-
-        if (list.isEmpty()) {
-            return null;
+        Datasource datasource = this.datasources.getIfPresent(dsName);
+
+        if (datasource == null) {
+            DatasourceCriteria criteria = this.client.datasourceCriteria().name(dsName);
+            List<Datasource> list = this.client.getDatasources(criteria);
+
+            if (list.isEmpty()) {
+                return null;
+            } else {
+                datasource = list.get(0);
+                this.datasources.put(dsName, SerializationUtils.clone(datasource));
+                return datasource;
+            }
         } else {
-            return list.get(0);
+            return SerializationUtils.clone(datasource);
         }
     }
 
@@ -131,7 +251,7 @@ public class MetadataClientProvider implements MetadataProvider {
      */
     @Override
     public Feed ensureFeedSource(String feedId, String datasourceId) {
-        return this.client.addSource(feedId, datasourceId);
+        return callWithFeedId(feedId, () -> this.client.addSource(feedId, datasourceId));
     }
 
     /* (non-Javadoc)
@@ -139,17 +259,17 @@ public class MetadataClientProvider implements MetadataProvider {
      */
     @Override
     public Feed ensureFeedDestination(String feedId, String datasourceId) {
-        return this.client.addDestination(feedId, datasourceId);
+        return callWithFeedId(feedId, () -> this.client.addDestination(feedId, datasourceId));
     }
 
     @Override
     public Properties updateFeedProperties(String feedId, Properties props) {
-        return this.client.mergeFeedProperties(feedId, props);
+        return mergeFeedProperties(feedId, props);
     }
 
     @Override
     public Feed ensurePrecondition(String feedId, Metric... metrics) {
-        return this.client.setPrecondition(feedId, metrics);
+        return callWithFeedId(feedId, () -> this.client.setPrecondition(feedId, metrics));
     }
 
     /* (non-Javadoc)
@@ -157,6 +277,7 @@ public class MetadataClientProvider implements MetadataProvider {
      */
     @Override
     public DirectoryDatasource ensureDirectoryDatasource(String datasetName, String descr, Path path) {
+        this.datasources.invalidate(datasetName);
         return this.client.buildDirectoryDatasource(datasetName)
             .description(descr)
             .path(path.toString())
@@ -168,6 +289,7 @@ public class MetadataClientProvider implements MetadataProvider {
      */
     @Override
     public HiveTableDatasource ensureHiveTableDatasource(String dsName, String descr, String databaseName, String tableName) {
+        this.datasources.invalidate(dsName);
         return this.client.buildHiveTableDatasource(dsName)
             .description(descr)
             .database(databaseName)
@@ -228,12 +350,55 @@ public class MetadataClientProvider implements MetadataProvider {
 
     @Override
     public Properties getFeedProperties(@Nonnull String id) {
-        return client.getFeedProperties(id);
+        Properties properties = this.feedProperties.getIfPresent(id);
+
+        if (properties == null) {
+            properties = callWithFeedId(id, () -> client.getFeedProperties(id));
+
+            if (properties == null) {
+                return null;
+            }
+            this.feedProperties.put(id, copyOf(properties));
+            return properties;
+        } else {
+            return copyOf(properties);
+        }
     }
 
     @Override
     public Properties mergeFeedProperties(@Nonnull String id, @Nonnull Properties props) {
-        return client.mergeFeedProperties(id, props);
+        this.feedProperties.invalidate(id);
+        Properties merged = callWithFeedId(id, () -> client.mergeFeedProperties(id, props));
+
+        if (merged != null) {
+            this.feedProperties.put(id, copyOf(merged));
+        }
+        return merged;
+    }
+
+    /**
+     * Calls the metadata server with a feed id.  A not found or conflict response may mean the feed was deleted and recreated
+     * with a new id, so the cached lookups of the feed id are evicted before the error is rethrown.
+     */
+    private <R> R callWithFeedId(String feedId, Supplier<R> call) {
+        try {
+            return call.get();
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND || e.getStatusCode() == HttpStatus.CONFLICT) {
+                this.feedIds.asMap().values().removeIf(feedId::equals);
+                this.feedProperties.invalidate(feedId);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Copies the properties so callers can't modify the cached ones.
+     */
+    private Properties copyOf(Properties properties) {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return copy;
     }
 
 
@@ -0,0 +1,263 @@
+package com.thinkbiganalytics.controller.metadata;
+
+/*-
+ * #%L
+ * thinkbig-nifi-core-service
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.rest.client.MetadataClient;
+import com.thinkbiganalytics.metadata.rest.model.data.Datasource;
+import com.thinkbiganalytics.metadata.rest.model.data.DatasourceCriteria;
+import com.thinkbiganalytics.metadata.rest.model.data.HiveTableDatasource;
+import com.thinkbiganalytics.metadata.rest.model.feed.Feed;
+import com.thinkbiganalytics.metadata.rest.model.feed.FeedCriteria;
+import com.thinkbiganalytics.nifi.v2.core.metadata.MetadataClientProvider;
+import com.thinkbiganalytics.nifi.v2.core.metadata.MetadataClientRecorder;
+
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.processor.ProcessSession;
+import org.apache.nifi.util.MockFlowFile;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Counts the remote calls made by the {@link MetadataClientProvider} caches and the {@link MetadataClientRecorder} using an in-process stub client.
+ */
+public class MetadataClientProviderCacheTest {
+
+    private static final int FLOW_FILES = 10000;
+
+    private StubMetadataClient client;
+    private MetadataClientProvider provider;
+    private MetadataClientRecorder recorder;
+    private ProcessSession session;
+
+    @Before
+    public void setUp() {
+        this.client = new StubMetadataClient();
+        this.provider = new MetadataClientProvider(this.client);
+        this.recorder = new MetadataClientRecorder(this.client);
+
+        this.session = Mockito.mock(ProcessSession.class);
+        Mockito.when(this.session.putAttribute(Mockito.any(FlowFile.class), Mockito.anyString(), Mockito.anyString())).thenAnswer(invocation -> {
+            MockFlowFile flowFile = (MockFlowFile) invocation.getArguments()[0];
+            flowFile.putAttributes(Collections.singletonMap((String) invocation.getArguments()[1], (String) invocation.getArguments()[2]));
+            return flowFile;
+        });
+    }
+
+    @Test
+    public void testRemoteCallsPerFlowFiles() throws Exception {
+        for (int i = 0; i < FLOW_FILES; i++) {
+            String feedId = this.provider.getFeedId("category", "feed");
+            assertThat(feedId).isEqualTo("category.feed.id");
+            assertThat(this.provider.getDatasourceByName("datasource").getId()).isEqualTo("datasource.id");
+            assertThat(this.provider.getFeedProperties(feedId).getProperty("key")).isEqualTo("value");
+
+            FlowFile flowFile = this.recorder.loadWaterMark(this.session, new MockFlowFile(i), feedId, "waterMark", "waterMark.value", "0");
+            assertThat(flowFile.getAttribute("waterMark.value")).isEqualTo(Integer.toString(i));
+            flowFile = this.recorder.recordWaterMark(this.session, flowFile, feedId, "waterMark", "waterMark.value", Integer.toString(i + 1));
+            this.recorder.commitWaterMark(this.session, flowFile, feedId, "waterMark");
+        }
+
+        assertThat(this.client.getFeedsCalls.get()).isEqualTo(1);
+        assertThat(this.client.getDatasourcesCalls.get()).isEqualTo(1);
+        assertThat(this.client.getFeedPropertiesCalls.get()).isEqualTo(1);
+        assertThat(this.client.getWaterMarkCalls.get()).isEqualTo(FLOW_FILES);
+        assertThat(this.client.updateWaterMarkCalls.get()).isEqualTo(FLOW_FILES);
+
+        assertThat(this.provider.getCacheStats().get("feedIds").hitCount()).isEqualTo(FLOW_FILES - 1);
+        assertThat(this.provider.getCacheStats().get("feedProperties").hitRate()).isGreaterThan(0.99);
+    }
+
+    @Test
+    public void testWaterMarksReadFromServer() throws Exception {
+        FlowFile flowFile = this.recorder.loadWaterMark(this.session, new MockFlowFile(1), "feed", "waterMark", "waterMark.value", "0");
+        assertThat(flowFile.getAttribute("waterMark.value")).isEqualTo("0");
+        this.recorder.releaseWaterMark(this.session, flowFile, "feed", "waterMark");
+
+        // Reset from the UI or committed by another node
+        this.client.updateHighWaterMarkValue("feed", "waterMark", "42");
+
+        flowFile = this.recorder.loadWaterMark(this.session, new MockFlowFile(2), "feed", "waterMark", "waterMark.value", "0");
+        assertThat(flowFile.getAttribute("waterMark.value")).isEqualTo("42");
+    }
+
+    @Test
+    public void testFeedIdEvictedWhenFeedNotFound() {
+        String feedId = this.provider.getFeedId("category", "feed");
+        this.provider.getFeedId("category", "feed");
+        assertThat(this.client.getFeedsCalls.get()).isEqualTo(1);
+
+        // The feed is deleted and recreated with a new id
+        this.client.missingFeedId = feedId;
+        try {
+            this.provider.getFeedProperties(feedId);
+            fail("Expected the feed to be missing");
+        } catch (HttpClientErrorException e) {
+            assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        }
+
+        this.provider.getFeedId("category", "feed");
+        assertThat(this.client.getFeedsCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDatasourcesAreCopies() {
+        Datasource first = this.provider.getDatasourceByName("datasource");
+        first.setDescription("changed");
+        Datasource second = this.provider.getDatasourceByName("datasource");
+        second.setDescription("changed again");
+        Datasource third = this.provider.getDatasourceByName("datasource");
+
+        assertThat(this.client.getDatasourcesCalls.get()).isEqualTo(1);
+        assertThat(third).isInstanceOf(HiveTableDatasource.class).isNotSameAs(second);
+        assertThat(third.getDescription()).isEqualTo("table");
+        assertThat(((HiveTableDatasource) third).getTableName()).isEqualTo("table");
+    }
+
+    @Test
+    public void testMergeFeedProperties() {
+        assertThat(this.provider.getFeedProperties("feed").getProperty("key")).isEqualTo("value");
+
+        Properties props = new Properties();
+        props.setProperty("key", "updated");
+        this.provider.mergeFeedProperties("feed", props);
+
+        assertThat(this.provider.getFeedProperties("feed").getProperty("key")).isEqualTo("updated");
+        assertThat(this.client.getFeedPropertiesCalls.get()).isEqualTo(1);
+
+        // Changes to returned properties don't affect the cache
+        this.provider.getFeedProperties("feed").setProperty("key", "changed");
+        assertThat(this.provider.getFeedProperties("feed").getProperty("key")).isEqualTo("updated");
+    }
+
+    @Test
+    public void testMissingLookupsNotCached() {
+        this.client.feedsFound = false;
+        assertThat(this.provider.getFeedId("category", "missing")).isNull();
+        assertThat(this.provider.getFeedId("category", "missing")).isNull();
+        assertThat(this.client.getFeedsCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testExpiredProperties() {
+        this.provider = new MetadataClientProvider(this.client, 0, 0);
+
+        this.provider.getFeedId("category", "feed");
+        this.provider.getFeedId("category", "feed");
+        this.provider.getFeedProperties("feed");
+        this.provider.getFeedProperties("feed");
+
+        assertThat(this.client.getFeedsCalls.get()).isEqualTo(2);
+        assertThat(this.client.getFeedPropertiesCalls.get()).isEqualTo(2);
+    }
+
+    /**
+     * A metadata client that answers from memory and counts the calls made to it
+     */
+    private static class StubMetadataClient extends MetadataClient {
+
+        final AtomicInteger getFeedsCalls = new AtomicInteger();
+        final AtomicInteger getDatasourcesCalls = new AtomicInteger();
+        final AtomicInteger getFeedPropertiesCalls = new AtomicInteger();
+        final AtomicInteger getWaterMarkCalls = new AtomicInteger();
+        final AtomicInteger updateWaterMarkCalls = new AtomicInteger();
+
+        volatile boolean feedsFound = true;
+        volatile String missingFeedId;
+
+        private final ConcurrentMap<String, Properties> feedProperties = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, String> waterMarks = new ConcurrentHashMap<>();
+
+        StubMetadataClient() {
+            super(URI.create("http://localhost:8400/proxy/v1/metadata"), "test", "test");
+        }
+
+        @Override
+        public List<Feed> getFeeds(FeedCriteria criteria) {
+            getFeedsCalls.incrementAndGet();
+            if (!feedsFound) {
+                return Collections.emptyList();
+            }
+            Feed feed = new Feed();
+            feed.setId("category.feed.id");
+            return Collections.singletonList(feed);
+        }
+
+        @Override
+        public List<Datasource> getDatasources(DatasourceCriteria criteria) {
+            getDatasourcesCalls.incrementAndGet();
+            HiveTableDatasource datasource = new HiveTableDatasource("datasource", "database", "table");
+            datasource.setId("datasource.id");
+            datasource.setDescription("table");
+            return Collections.singletonList(datasource);
+        }
+
+        @Override
+        public Properties getFeedProperties(String id) {
+            getFeedPropertiesCalls.incrementAndGet();
+            if (id.equals(missingFeedId)) {
+                throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+            }
+            Properties props = new Properties();
+            props.putAll(feedProperties.computeIfAbsent(id, key -> {
+                Properties initial = new Properties();
+                initial.setProperty("key", "value");
+                return initial;
+            }));
+            return props;
+        }
+
+        @Override
+        public Properties mergeFeedProperties(String feedId, Properties props) {
+            Properties merged = feedProperties.computeIfAbsent(feedId, key -> new Properties());
+            merged.putAll(props);
+            Properties result = new Properties();
+            result.putAll(merged);
+            return result;
+        }
+
+        @Override
+        public Optional<String> getHighWaterMarkValue(String feedId, String waterMarkName) {
+            getWaterMarkCalls.incrementAndGet();
+            return Optional.ofNullable(waterMarks.get(feedId + "." + waterMarkName));
+        }
+
+        @Override
+        public void updateHighWaterMarkValue(String feedId, String waterMarkName, String value) {
+            updateWaterMarkCalls.incrementAndGet();
+            waterMarks.put(feedId + "." + waterMarkName, value);
+        }
+    }
+}
@@ -28,11 +28,8 @@ import org.slf4j.LoggerFactory;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -42,9 +39,14 @@ public class BatchFeedProcessorEvents implements Serializable {
 
     private static final Logger log = LoggerFactory.getLogger(BatchFeedProcessorEvents.class);
     /**
-     * Map to determine if the events coming in are rapid fire.  if so they wil be suppressed based upon the supplied {@code maxEventsPerSecond} allowed
+     * The rate of the starting job events to determine if the events coming in are rapid fire.  if so they wil be suppressed based upon the supplied {@code maxEventsPerSecond} allowed
      */
-    Map<DateTime, Set<ProvenanceEventRecordDTO>> startingJobEventsBySecond = new HashMap<>();
+    private final FeedProcessorEventRate startingJobEventRate = new FeedProcessorEventRate();
+
+    /**
+     * The number of events suppressed since this group was created.  Suppressed events are still included in the feed statistics.
+     */
+    private long suppressedEvents;
     /**
      * The name of the feed.  Derived from the process group {category}.{feed}
      */
@@ -112,17 +114,22 @@ public class BatchFeedProcessorEvents implements Serializable {
     private boolean isSuppressEvent(ProvenanceEventRecordDTO event) {
         if (event.isStream() || event.getFeedFlowFile().isStream()) {
             event.setStream(true);
-            log.warn(" Event {} has been suppressed from Kylo Ops Manager. Its parent starting event was detected as a stream for feed {} and processor: {} ", event, maxEventsPerSecond, feedName,
-                     processorName);
+            suppressedEvents++;
+            log.debug(" Event {} has been suppressed from Kylo Ops Manager. Its parent starting event was detected as a stream for feed {} and processor: {} ", event, feedName, processorName);
             return true;
         } else if (event.isStartOfJob()) {
-            DateTime time = event.getEventTime().withMillisOfSecond(0);
-            startingJobEventsBySecond.computeIfAbsent(time, key -> new HashSet<ProvenanceEventRecordDTO>()).add(event);
-            if (startingJobEventsBySecond.get(time).size() > maxEventsPerSecond) {
+            FeedProcessorEventRate.Mode previousMode = startingJobEventRate.getMode();
+            FeedProcessorEventRate.Mode mode = startingJobEventRate.record(event.getEventTime().getMillis(), maxEventsPerSecond);
+            if (mode != previousMode) {
+                log.info("Feed {} and processor: {} switched to {} mode. {} events per second were detected and {} events per second are allowed for batch jobs ", feedName, processorName, mode,
+                         startingJobEventRate.getEventsPerSecond(), maxEventsPerSecond);
+            }
+            if (mode == FeedProcessorEventRate.Mode.STREAM) {
                 event.getFeedFlowFile().setStream(true);
                 event.setStream(true);
-                log.warn(" Event  {} has been suppressed from Kylo Ops Manager.  more than {} events per second were detected for feed {} and processor: {} ", event, maxEventsPerSecond, feedName,
-                         processorName);
+                suppressedEvents++;
+                log.debug(" Event  {} has been suppressed from Kylo Ops Manager.  more than {} events per second were detected for feed {} and processor: {} ", event, maxEventsPerSecond, feedName,
+                          processorName);
                 return true;
             }
         }
@@ -168,7 +175,6 @@ public class BatchFeedProcessorEvents implements Serializable {
 
         }
         lastCollectionTime = DateTime.now();
-        startingJobEventsBySecond.clear();
         return events == null ? Collections.emptyList() : events;
     }
 
@@ -232,11 +238,35 @@ public class BatchFeedProcessorEvents implements Serializable {
         return this;
     }
 
+    /**
+     * @return {@link FeedProcessorEventRate.Mode#STREAM} if the starting job events for this feed and processor are being suppressed as a stream, otherwise {@link FeedProcessorEventRate.Mode#BATCH}
+     */
+    public FeedProcessorEventRate.Mode getMode() {
+        return startingJobEventRate.getMode();
+    }
+
+    /**
+     * @return the observed number of starting job events per second
+     */
+    public double getEventsPerSecond() {
+        return startingJobEventRate.getEventsPerSecond();
+    }
+
+    /**
+     * @return the number of events suppressed from being sent as batch job events
+     */
+    public long getSuppressedEvents() {
+        return suppressedEvents;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("BatchFeedProcessorEventAggregate{");
         sb.append("feedName='").append(feedName).append('\'');
         sb.append(", processorId='").append(processorId).append('\'');
+        sb.append(", mode=").append(getMode());
+        sb.append(", eventsPerSecond=").append(getEventsPerSecond());
+        sb.append(", suppressedEvents=").append(suppressedEvents);
         sb.append('}');
         return sb.toString();
     }
@@ -20,23 +20,52 @@ package com.thinkbiganalytics.nifi.provenance.model;
  * #L%
  */
 
+import com.thinkbiganalytics.nifi.provenance.model.util.FlowFileIdTable;
+
 import org.joda.time.DateTime;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Track the FeedFlowfile and any of its child flow files as it moves through NiFi along with pointers to help calculate the event timing data and indication as to when a child flow file or this
  * entire feed flow file is complete
+ *
+ * The tracked flow file ids are kept in a single {@link FlowFileIdTable} storing each id as two longs followed by its flags, times and parent,
+ * as a flow file may be split into tens of thousands of children.
  */
 public class FeedFlowFile implements Serializable {
 
 
-    private static final long serialVersionUID = 6464904199959374630L;
+    private static final long serialVersionUID = -2594457135622432541L;
+
+    /**
+     * The indexes of the values stored for each id in the {@link #flowFiles} table
+     */
+    private static final int FLAGS = 0;
+    private static final int LAST_EVENT_TIME = 1;
+    private static final int CHILD_START_TIME = 2;
+    private static final int PARENT_MOST_SIGNIFICANT_BITS = 3;
+    private static final int PARENT_LEAST_SIGNIFICANT_BITS = 4;
+    private static final int VALUE_WIDTH = 5;
+
+    /**
+     * The flags stored for each id in the {@link #flowFiles} table
+     */
+    private static final long ACTIVE_CHILD = 1L;
+    private static final long CHILD = 1L << 1;
+    private static final long STARTED = 1L << 2;
+    private static final long HAS_LAST_EVENT_TIME = 1L << 3;
+    private static final long HAS_CHILD_START_TIME = 1L << 4;
+    private static final long HAS_PARENT = 1L << 5;
 
     /**
      * The ID of the Flow File
@@ -60,16 +89,22 @@ public class FeedFlowFile implements Serializable {
     private String feedProcessGroupId;
 
     /**
-     * When new flow files are created they get associated back to the feedflow file in this collection
+     * The flow files related to this feed flow file.
+     * For each flow file it tracks if it is an active (not dropped) child or any child, if it has started, its last event time, the time it was created as a child, and its parent
      */
-    private Set<String> activeChildFlowFiles;
+    private FlowFileIdTable flowFiles;
 
     /**
-     * reference to all child flow file ids for this feed flow file
-     * This is used when clearing the cache
+     * The number of child flow files that have not been dropped.
+     * When new flow files are created they get associated back to the feedflow file as an active child
      */
-    private Set<String> childFlowFiles;
+    private int activeChildFlowFileCount;
 
+    /**
+     * The number of child flow file ids for this feed flow file
+     * This is used when clearing the cache
+     */
+    private int childFlowFileCount;
 
     /**
      * The First Event in this flow file
@@ -93,7 +128,7 @@ public class FeedFlowFile implements Serializable {
     /**
      * Track when an event comes through that is attached to a flow file to mark the start of that flow file.
      */
-    private Set<String> flowfilesStarted;
+    private boolean hasStartedFlowFiles;
 
 
     /**
@@ -102,23 +137,16 @@ public class FeedFlowFile implements Serializable {
     private boolean isCurrentFlowFileComplete;
 
     /**
-     * Map of the flowfile to last event time.
-     * This will be used to determine the next flow file start time
+     * Parent flow files whose id is not a UUID, so can not be stored in the {@link #flowFiles} table
      */
-    private Map<String, Long> flowFileLastEventTime;
-
-
-    /**
-     * When a flowfile is cloned or forked creating other child flow files it needs to store that event time the flow was cloned to use as the start time for that next event
-     */
-    private Map<String, Long> childFlowFileStartTimes;
+    private Map<String, String> flowFileIdToOtherParentFlowFileId;
 
     /**
-     * Map the flow to its parent to help in processing the previous event time.
+     * The child flow files changed since this flow file was last written.  This is not serialized
      */
-    private Map<String, String> flowFileIdToParentFlowFileId;
+    private transient FlowFileIdTable changedFlowFiles;
 
-    private boolean isBuiltFromMapDb;
+    private boolean isJournaled;
 
 
     public FeedFlowFile(String id) {
@@ -165,12 +193,199 @@ public class FeedFlowFile implements Serializable {
         this.feedProcessGroupId = feedProcessGroupId;
     }
 
-    public Set<String> getActiveChildFlowFiles() {
-        return activeChildFlowFiles;
+    /**
+     * Call the consumer with each child flow file that has not been dropped
+     */
+    public void forEachActiveChildFlowFile(Consumer<String> consumer) {
+        forEachFlowFile(ACTIVE_CHILD, consumer);
+    }
+
+    /**
+     * Call the consumer with each child flow file of this feed flow file
+     */
+    public void forEachChildFlowFile(Consumer<String> consumer) {
+        forEachFlowFile(CHILD, consumer);
+    }
+
+    private void forEachFlowFile(long flag, Consumer<String> consumer) {
+        if (flowFiles != null) {
+            flowFiles.forEachId(flowFileId -> {
+                if (hasFlag(flowFileId, flag)) {
+                    consumer.accept(flowFileId);
+                }
+            });
+        }
+    }
+
+    public int getActiveChildFlowFileCount() {
+        return activeChildFlowFileCount;
+    }
+
+    public int getChildFlowFileCount() {
+        return childFlowFileCount;
+    }
+
+    /**
+     * Estimate the memory used to track this flow file and its children
+     *
+     * @return the estimated size in bytes
+     */
+    public long getEstimatedBytes() {
+        long bytes = 512L;
+        if (flowFiles != null) {
+            bytes += flowFiles.getAllocatedBytes();
+        }
+        if (changedFlowFiles != null) {
+            bytes += changedFlowFiles.getAllocatedBytes();
+        }
+        if (flowFileIdToOtherParentFlowFileId != null) {
+            bytes += flowFileIdToOtherParentFlowFileId.size() * 200L;
+        }
+        return bytes;
+    }
+
+    private FlowFileIdTable flowFiles() {
+        if (flowFiles == null) {
+            flowFiles = new FlowFileIdTable(VALUE_WIDTH);
+        }
+        return flowFiles;
+    }
+
+    private long flags(String flowFileId) {
+        return flowFiles != null ? flowFiles.get(flowFileId, FLAGS, 0L) : 0L;
+    }
+
+    private boolean hasFlag(String flowFileId, long flag) {
+        return (flags(flowFileId) & flag) != 0;
+    }
+
+    private void setValue(String flowFileId, int valueIndex, long value, long flag) {
+        long flags = flags(flowFileId);
+        set(flowFileId, valueIndex, value);
+        set(flowFileId, FLAGS, flags | flag);
+    }
+
+    /**
+     * Set a value for the flow file, and track the flow file as changed so it is included in the next {@link #write(DataOutput, boolean)}
+     */
+    private void set(String flowFileId, int valueIndex, long value) {
+        flowFiles().set(flowFileId, valueIndex, value);
+        if (changedFlowFiles == null) {
+            changedFlowFiles = new FlowFileIdTable(0);
+        }
+        changedFlowFiles.add(flowFileId);
+    }
+
+    /**
+     * Write the state of this flow file.
+     * Only the child flow files changed since the last write are included if {@code changesOnly} is true, otherwise all of them are written.
+     * The state written is applied to a flow file with {@link #read(DataInput)}
+     *
+     * @param out         the output to write to
+     * @param changesOnly true to only write the child flow files changed since the last write
+     */
+    public void write(DataOutput out, boolean changesOnly) throws IOException {
+        out.writeBoolean(isStream);
+        writeNullableString(out, feedName);
+        writeNullableString(out, feedProcessGroupId);
+        out.writeInt(activeChildFlowFileCount);
+        out.writeInt(childFlowFileCount);
+        writeNullableLong(out, firstEventId);
+        writeNullableLong(out, firstEventStartTime);
+        writeNullableString(out, firstEventProcessorId);
+        writeNullableLong(out, lastEventId);
+        writeNullableString(out, lastEventProcessorId);
+        writeNullableLong(out, lastEventTime);
+        out.writeInt(failedEvents.get());
+        out.writeBoolean(hasStartedFlowFiles);
+        out.writeBoolean(isCurrentFlowFileComplete);
+
+        Map<String, String> otherParents = flowFileIdToOtherParentFlowFileId != null ? flowFileIdToOtherParentFlowFileId : Collections.emptyMap();
+        out.writeInt(otherParents.size());
+        for (Map.Entry<String, String> entry : otherParents.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeUTF(entry.getValue());
+        }
+
+        FlowFileIdTable written = changesOnly ? changedFlowFiles : flowFiles;
+        out.writeInt(written != null ? written.size() : 0);
+        if (written != null) {
+            IOException[] error = new IOException[1];
+            written.forEachId(flowFileId -> {
+                if (error[0] == null) {
+                    try {
+                        FlowFileIdTable.writeId(out, flowFileId);
+                        for (int i = 0; i < VALUE_WIDTH; i++) {
+                            out.writeLong(flowFiles.get(flowFileId, i, 0L));
+                        }
+                    } catch (IOException e) {
+                        error[0] = e;
+                    }
+                }
+            });
+            if (error[0] != null) {
+                throw error[0];
+            }
+        }
+        changedFlowFiles = null;
+    }
+
+    /**
+     * Apply the state written by {@link #write(DataOutput, boolean)} to this flow file
+     *
+     * @param in the input to read from
+     */
+    public void read(DataInput in) throws IOException {
+        isStream = in.readBoolean();
+        feedName = readNullableString(in);
+        feedProcessGroupId = readNullableString(in);
+        activeChildFlowFileCount = in.readInt();
+        childFlowFileCount = in.readInt();
+        firstEventId = readNullableLong(in);
+        firstEventStartTime = readNullableLong(in);
+        firstEventProcessorId = readNullableString(in);
+        lastEventId = readNullableLong(in);
+        lastEventProcessorId = readNullableString(in);
+        lastEventTime = readNullableLong(in);
+        failedEvents.set(in.readInt());
+        hasStartedFlowFiles = in.readBoolean();
+        isCurrentFlowFileComplete = in.readBoolean();
+
+        int otherParents = in.readInt();
+        flowFileIdToOtherParentFlowFileId = otherParents > 0 ? new HashMap<>() : null;
+        for (int i = 0; i < otherParents; i++) {
+            flowFileIdToOtherParentFlowFileId.put(in.readUTF(), in.readUTF());
+        }
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String flowFileId = FlowFileIdTable.readId(in);
+            for (int v = 0; v < VALUE_WIDTH; v++) {
+                flowFiles().set(flowFileId, v, in.readLong());
+            }
+        }
+    }
+
+    private static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
     }
 
-    public Set<String> getChildFlowFiles() {
-        return childFlowFiles;
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readNullableLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
     }
 
     public Long getLastEventId() {
@@ -187,14 +402,14 @@ public class FeedFlowFile implements Serializable {
 
 
     /**
-     * flag to determine if this was build from the persistent cache
+     * flag to determine if this has been written to the persistent journal
      */
-    public boolean isBuiltFromMapDb() {
-        return isBuiltFromMapDb;
+    public boolean isJournaled() {
+        return isJournaled;
     }
 
-    public void setBuiltFromMapDb(boolean builtFromMapDb) {
-        isBuiltFromMapDb = builtFromMapDb;
+    public void setJournaled(boolean journaled) {
+        isJournaled = journaled;
     }
 
     /**
@@ -243,7 +458,7 @@ public class FeedFlowFile implements Serializable {
      * Is this feed and all the child flow files complete
      */
     public boolean isFeedComplete() {
-        return isCurrentFlowFileComplete && (activeChildFlowFiles == null || (activeChildFlowFiles != null && activeChildFlowFiles.isEmpty()));
+        return isCurrentFlowFileComplete && activeChildFlowFileCount == 0;
     }
 
     /**
@@ -262,20 +477,24 @@ public class FeedFlowFile implements Serializable {
             if (event.getFlowFileUuid().equals(this.getId())) {
                 isCurrentFlowFileComplete = true;
             } else {
-                activeChildFlowFiles.remove(event.getFlowFileUuid());
+                long flags = flags(event.getFlowFileUuid());
+                if ((flags & ACTIVE_CHILD) != 0) {
+                    set(event.getFlowFileUuid(), FLAGS, flags & ~ACTIVE_CHILD);
+                    activeChildFlowFileCount--;
+                }
             }
         }
     }
 
     public void addChildFlowFile(String childFlowFileId) {
-        if (activeChildFlowFiles == null) {
-            activeChildFlowFiles = new HashSet<>();
+        long flags = flags(childFlowFileId);
+        if ((flags & ACTIVE_CHILD) == 0) {
+            activeChildFlowFileCount++;
         }
-        if (childFlowFiles == null) {
-            childFlowFiles = new HashSet<>();
+        if ((flags & CHILD) == 0) {
+            childFlowFileCount++;
         }
-        activeChildFlowFiles.add(childFlowFileId);
-        childFlowFiles.add(childFlowFileId);
+        set(childFlowFileId, FLAGS, flags | ACTIVE_CHILD | CHILD);
     }
 
     /**
@@ -287,11 +506,9 @@ public class FeedFlowFile implements Serializable {
 
 
     public boolean checkIfEventStartsTheFlowFile(ProvenanceEventRecordDTO eventRecordDTO) {
-        if (flowfilesStarted == null || (flowfilesStarted != null && flowfilesStarted.contains(eventRecordDTO.getFlowFileUuid()))) {
-            if (flowfilesStarted == null) {
-                flowfilesStarted = new HashSet<>();
-            }
-            flowfilesStarted.add(eventRecordDTO.getFlowFileUuid());
+        if (!hasStartedFlowFiles || hasFlag(eventRecordDTO.getFlowFileUuid(), STARTED)) {
+            hasStartedFlowFiles = true;
+            set(eventRecordDTO.getFlowFileUuid(), FLAGS, flags(eventRecordDTO.getFlowFileUuid()) | STARTED);
             eventRecordDTO.setStartOfFlowFile(true);
         }
         return eventRecordDTO.isStartOfFlowFile();
@@ -299,37 +516,56 @@ public class FeedFlowFile implements Serializable {
 
     public Long getPreviousEventTime(String flowfileId) {
 
-        if (flowFileLastEventTime != null && flowFileLastEventTime.containsKey(flowfileId)) {
-            return flowFileLastEventTime.get(flowfileId);
-        } else if (childFlowFileStartTimes != null && childFlowFileStartTimes.containsKey(flowfileId)) {
-            return childFlowFileStartTimes.get(flowfileId);
-        } else if (flowFileIdToParentFlowFileId != null && flowFileIdToParentFlowFileId.containsKey(flowfileId) && !flowfileId.equals(flowFileIdToParentFlowFileId.get(flowfileId))) {
-            return getPreviousEventTime(flowFileIdToParentFlowFileId.get(flowfileId));
+        long flags = flags(flowfileId);
+        String parentFlowFileId;
+        if ((flags & HAS_LAST_EVENT_TIME) != 0) {
+            return flowFiles.get(flowfileId, LAST_EVENT_TIME, 0L);
+        } else if ((flags & HAS_CHILD_START_TIME) != 0) {
+            return flowFiles.get(flowfileId, CHILD_START_TIME, 0L);
+        } else if ((parentFlowFileId = getParentFlowFileId(flowfileId)) != null && !flowfileId.equals(parentFlowFileId)) {
+            return getPreviousEventTime(parentFlowFileId);
         } else {
             return null;
         }
     }
 
-    public void registerLastEventTime(ProvenanceEventRecordDTO eventRecordDTO) {
-        if (flowFileLastEventTime == null) {
-            flowFileLastEventTime = new HashMap<>();
+    /**
+     * @return the parent assigned to the flow file, or null if none
+     */
+    private String getParentFlowFileId(String flowFileId) {
+        if (hasFlag(flowFileId, HAS_PARENT)) {
+            return new UUID(flowFiles.get(flowFileId, PARENT_MOST_SIGNIFICANT_BITS, 0L), flowFiles.get(flowFileId, PARENT_LEAST_SIGNIFICANT_BITS, 0L)).toString();
         }
-        flowFileLastEventTime.put(eventRecordDTO.getFlowFileUuid(), eventRecordDTO.getEventTime().getMillis());
+        return flowFileIdToOtherParentFlowFileId != null ? flowFileIdToOtherParentFlowFileId.get(flowFileId) : null;
+    }
+
+    public void registerLastEventTime(ProvenanceEventRecordDTO eventRecordDTO) {
+        setValue(eventRecordDTO.getFlowFileUuid(), LAST_EVENT_TIME, eventRecordDTO.getEventTime().getMillis(), HAS_LAST_EVENT_TIME);
 
     }
 
     public void assignFlowFileToParent(String childFlowFileId, String parentFlowFileId) {
-        if (flowFileIdToParentFlowFileId == null) {
-            flowFileIdToParentFlowFileId = new HashMap<>();
+        if (FlowFileIdTable.isCanonicalUuid(parentFlowFileId)) {
+            UUID parent = UUID.fromString(parentFlowFileId);
+            set(childFlowFileId, PARENT_LEAST_SIGNIFICANT_BITS, parent.getLeastSignificantBits());
+            setValue(childFlowFileId, PARENT_MOST_SIGNIFICANT_BITS, parent.getMostSignificantBits(), HAS_PARENT);
+            if (flowFileIdToOtherParentFlowFileId != null) {
+                flowFileIdToOtherParentFlowFileId.remove(childFlowFileId);
+            }
+        } else {
+            if (flowFileIdToOtherParentFlowFileId == null) {
+                flowFileIdToOtherParentFlowFileId = new HashMap<>();
+            }
+            flowFileIdToOtherParentFlowFileId.put(childFlowFileId, parentFlowFileId);
+            long flags = flags(childFlowFileId);
+            if ((flags & HAS_PARENT) != 0) {
+                set(childFlowFileId, FLAGS, flags & ~HAS_PARENT);
+            }
         }
-        flowFileIdToParentFlowFileId.put(childFlowFileId, parentFlowFileId);
     }
 
     public void assignChildFlowFileStartTime(String flowFileId, Long eventTime) {
-        if (childFlowFileStartTimes == null) {
-            childFlowFileStartTimes = new HashMap<>();
-        }
-        childFlowFileStartTimes.put(flowFileId, eventTime);
+        setValue(flowFileId, CHILD_START_TIME, eventTime, HAS_CHILD_START_TIME);
     }
 
     public Long calculateJobDuration(ProvenanceEventRecordDTO event) {
@@ -348,7 +584,7 @@ public class FeedFlowFile implements Serializable {
         sb.append("id='").append(id).append('\'');
         sb.append(", isStream=").append(isStream);
         sb.append(", feedName='").append(feedName).append('\'');
-        sb.append(", activeFlowFiles ='").append(activeChildFlowFiles != null ? activeChildFlowFiles.size() : "null").append('\'');
+        sb.append(", activeFlowFiles ='").append(activeChildFlowFileCount).append('\'');
         sb.append('}');
         return sb.toString();
     }
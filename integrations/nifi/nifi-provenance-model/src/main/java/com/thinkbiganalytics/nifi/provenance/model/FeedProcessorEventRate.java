@@ -0,0 +1,128 @@
+package com.thinkbiganalytics.nifi.provenance.model;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-model
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+/**
+ * Tracks the rate of the starting job events for a feed and processor to decide if its jobs are batch jobs or a stream.
+ *
+ * The events are counted in a sliding window of one second slots, so recording an event does not allocate.
+ * A feed switches to a stream once more than the max events per second start within a second.
+ * It returns to batch once it has been a stream for the length of the window and the rate over the window has dropped to half the max events per second.
+ */
+public class FeedProcessorEventRate implements Serializable {
+
+    /**
+     * The number of seconds in the sliding window
+     */
+    static final int WINDOW_SECONDS = 5;
+
+    public enum Mode {
+        BATCH, STREAM
+    }
+
+    /**
+     * The second of each slot in the window
+     */
+    private final long[] slotSeconds = new long[WINDOW_SECONDS];
+
+    /**
+     * The number of events in each slot in the window
+     */
+    private final int[] slotCounts = new int[WINDOW_SECONDS];
+
+    /**
+     * The latest second an event was recorded
+     */
+    private long latestSecond = Long.MIN_VALUE;
+
+    /**
+     * The second the feed switched to a stream
+     */
+    private long streamSince;
+
+    private Mode mode = Mode.BATCH;
+
+    public FeedProcessorEventRate() {
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            slotSeconds[i] = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Record a starting job event
+     *
+     * @param eventTimeMillis    the time of the event
+     * @param maxEventsPerSecond the max number of events per second for the feed to be considered a batch feed
+     * @return the mode after recording the event
+     */
+    public Mode record(long eventTimeMillis, int maxEventsPerSecond) {
+        long second = Math.floorDiv(eventTimeMillis, 1000L);
+        int slot = (int) Math.floorMod(second, (long) WINDOW_SECONDS);
+        if (slotSeconds[slot] != second) {
+            if (slotSeconds[slot] > second) {
+                //the event is older than the window, count it in the current second
+                second = latestSecond;
+                slot = (int) Math.floorMod(second, (long) WINDOW_SECONDS);
+            } else {
+                slotSeconds[slot] = second;
+                slotCounts[slot] = 0;
+            }
+        }
+        int count = ++slotCounts[slot];
+        latestSecond = Math.max(latestSecond, second);
+
+        if (mode == Mode.BATCH) {
+            if (count > maxEventsPerSecond) {
+                mode = Mode.STREAM;
+                streamSince = latestSecond;
+            }
+        } else if (latestSecond - streamSince >= WINDOW_SECONDS && getEventsPerSecond() * 2 <= maxEventsPerSecond) {
+            mode = Mode.BATCH;
+        }
+        return mode;
+    }
+
+    /**
+     * @return the average number of events per second over the window up to the latest event
+     */
+    public double getEventsPerSecond() {
+        if (latestSecond == Long.MIN_VALUE) {
+            return 0d;
+        }
+        long total = 0;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            if (slotSeconds[i] > latestSecond - WINDOW_SECONDS) {
+                total += slotCounts[i];
+            }
+        }
+        return total / (double) WINDOW_SECONDS;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isStream() {
+        return mode == Mode.STREAM;
+    }
+}
@@ -184,7 +184,12 @@ public class ProvenanceEventRecordDTO implements Serializable {
 
     @JsonProperty("attributes")
     private Map<String, String> attributeMap;
-    private FeedFlowFile feedFlowFile;
+
+    /**
+     * The root flow file graph is only needed while the event is being processed in NiFi.
+     * It is not sent to Kylo, which also allows the events to be sent to JMS while the graph continues to be updated by newer events.
+     */
+    private transient FeedFlowFile feedFlowFile;
 
     public ProvenanceEventRecordDTO() {
 
@@ -437,10 +442,26 @@ public class ProvenanceEventRecordDTO implements Serializable {
         return previousEventId;
     }
 
+    public void setPreviousEventId(Long previousEventId) {
+        this.previousEventId = previousEventId;
+    }
+
+    public String getPreviousFlowfileId() {
+        return previousFlowfileId;
+    }
+
+    public void setPreviousFlowfileId(String previousFlowfileId) {
+        this.previousFlowfileId = previousFlowfileId;
+    }
+
     public DateTime getPreviousEventTime() {
         return previousEventTime;
     }
 
+    public void setPreviousEventTime(DateTime previousEventTime) {
+        this.previousEventTime = previousEventTime;
+    }
+
 
     public DateTime getEventTime() {
         return eventTime;
@@ -582,7 +603,7 @@ public class ProvenanceEventRecordDTO implements Serializable {
 
     public void setIsFinalJobEvent(boolean isFinalJobEvent) {
         this.isFinalJobEvent = isFinalJobEvent;
-        if (this.isFinalJobEvent) {
+        if (this.isFinalJobEvent && getFeedFlowFile() != null) {
             this.hasFailedEvents = getFeedFlowFile().hasFailedEvents();
         }
     }
@@ -0,0 +1,532 @@
+package com.thinkbiganalytics.nifi.provenance.model.codec;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-model
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.nifi.provenance.KyloProcessorFlowType;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatistics;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolder;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedProcessorStatistics;
+import com.thinkbiganalytics.nifi.provenance.model.stats.GroupedStats;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary encoding of the provenance batches ({@link ProvenanceEventRecordDTOHolder}) and statistics ({@link AggregatedFeedProcessorStatisticsHolder})
+ * sent from the KyloReportingTask to Kylo Operations Manager over JMS.
+ *
+ * Every payload starts with a 5 byte header: the magic bytes 'K' 'P', the format version, the compression and the payload type.
+ * The body is a fixed sequence of fields per type.  New fields must only be appended to the end of a type and require the {@link #VERSION} to be incremented
+ * so older payloads can still be read.
+ *
+ * JMS messages carrying this format are BytesMessages with the "kylo_payload_format" property set to {@link #PAYLOAD_FORMAT}.
+ * Messages without the property are Java serialized objects.
+ */
+public class ProvenanceBinaryCodec {
+
+    /**
+     * The name of the payload format written by this codec
+     */
+    public static final String PAYLOAD_FORMAT = "kylo-provenance-binary";
+
+    /**
+     * The current version of the format
+     */
+    public static final int VERSION = 1;
+
+    static final int MAGIC_1 = 'K';
+    static final int MAGIC_2 = 'P';
+
+    static final int TYPE_EVENTS = 1;
+    static final int TYPE_STATS = 2;
+
+    private static final int EVENT_START_OF_JOB = 1;
+    private static final int EVENT_END_OF_JOB = 1 << 1;
+    private static final int EVENT_FINAL_JOB_EVENT = 1 << 2;
+    private static final int EVENT_BATCH_JOB = 1 << 3;
+    private static final int EVENT_HAS_FAILED_EVENTS = 1 << 4;
+    private static final int EVENT_START_OF_FLOW_FILE = 1 << 5;
+    private static final int EVENT_FAILURE = 1 << 6;
+    private static final int EVENT_STREAM = 1 << 7;
+
+    private final Compression compression;
+
+    /**
+     * Create a codec that compresses payloads using {@link Compression#DEFLATE}
+     */
+    public ProvenanceBinaryCodec() {
+        this(Compression.DEFLATE);
+    }
+
+    /**
+     * @param compression the compression used when encoding.  Decoding always uses the compression recorded in the payload.
+     */
+    public ProvenanceBinaryCodec(Compression compression) {
+        this.compression = compression;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return true if the object is one of the types supported by this codec
+     */
+    public boolean canEncode(Object payload) {
+        return payload instanceof ProvenanceEventRecordDTOHolder || payload instanceof AggregatedFeedProcessorStatisticsHolder;
+    }
+
+    /**
+     * Encode a provenance batch or statistics object
+     *
+     * @param payload a {@link ProvenanceEventRecordDTOHolder} or {@link AggregatedFeedProcessorStatisticsHolder}
+     * @return the encoded bytes
+     */
+    public byte[] encode(Object payload) throws IOException {
+        if (payload instanceof ProvenanceEventRecordDTOHolder) {
+            return encodeEvents((ProvenanceEventRecordDTOHolder) payload);
+        } else if (payload instanceof AggregatedFeedProcessorStatisticsHolder) {
+            return encodeStats((AggregatedFeedProcessorStatisticsHolder) payload);
+        }
+        throw new IllegalArgumentException("Unable to encode " + (payload != null ? payload.getClass().getName() : null) + " as " + PAYLOAD_FORMAT);
+    }
+
+    /**
+     * Decode a payload created by {@link #encode(Object)}
+     *
+     * @return the {@link ProvenanceEventRecordDTOHolder} or {@link AggregatedFeedProcessorStatisticsHolder}
+     */
+    public Object decode(byte[] payload) throws IOException {
+        InputStream body = openBody(payload);
+        int type = payload[4];
+        ProvenanceBinaryInput in = new ProvenanceBinaryInput(body);
+        try {
+            if (type == TYPE_EVENTS) {
+                return readEvents(in);
+            } else if (type == TYPE_STATS) {
+                return readStats(in);
+            }
+        } finally {
+            body.close();
+        }
+        throw new IOException("Unknown " + PAYLOAD_FORMAT + " payload type " + type);
+    }
+
+    public byte[] encodeEvents(ProvenanceEventRecordDTOHolder holder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + (holder.getEvents() != null ? holder.getEvents().size() * 128 : 0));
+        Deflater deflater = writeHeader(bytes, TYPE_EVENTS);
+        try {
+            OutputStream body = deflater != null ? new BufferedOutputStream(new DeflaterOutputStream(bytes, deflater, 8192), 8192) : bytes;
+            writeEvents(new ProvenanceBinaryOutput(body), holder);
+            body.close();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public ProvenanceEventRecordDTOHolder decodeEvents(byte[] payload) throws IOException {
+        Object decoded = decode(payload);
+        if (decoded instanceof ProvenanceEventRecordDTOHolder) {
+            return (ProvenanceEventRecordDTOHolder) decoded;
+        }
+        throw new IOException("Payload is not a " + ProvenanceEventRecordDTOHolder.class.getSimpleName());
+    }
+
+    public byte[] encodeStats(AggregatedFeedProcessorStatisticsHolder holder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        Deflater deflater = writeHeader(bytes, TYPE_STATS);
+        try {
+            OutputStream body = deflater != null ? new BufferedOutputStream(new DeflaterOutputStream(bytes, deflater, 8192), 8192) : bytes;
+            writeStats(new ProvenanceBinaryOutput(body), holder);
+            body.close();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public AggregatedFeedProcessorStatisticsHolder decodeStats(byte[] payload) throws IOException {
+        Object decoded = decode(payload);
+        if (decoded instanceof AggregatedFeedProcessorStatisticsHolder) {
+            return (AggregatedFeedProcessorStatisticsHolder) decoded;
+        }
+        throw new IOException("Payload is not a " + AggregatedFeedProcessorStatisticsHolder.class.getSimpleName());
+    }
+
+    /**
+     * Write the header
+     *
+     * @return the deflater to compress the body with, or null if the body is not compressed
+     */
+    private Deflater writeHeader(ByteArrayOutputStream bytes, int type) {
+        bytes.write(MAGIC_1);
+        bytes.write(MAGIC_2);
+        bytes.write(VERSION);
+        bytes.write(compression.getId());
+        bytes.write(type);
+        return compression == Compression.DEFLATE ? new Deflater(Deflater.BEST_SPEED) : null;
+    }
+
+    /**
+     * Validate the header and return a stream over the (uncompressed) body
+     */
+    private InputStream openBody(byte[] payload) throws IOException {
+        if (payload == null || payload.length < 5 || payload[0] != MAGIC_1 || payload[1] != MAGIC_2) {
+            throw new IOException("Payload is not in the " + PAYLOAD_FORMAT + " format");
+        }
+        int version = payload[2];
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported " + PAYLOAD_FORMAT + " version " + version + ". This version supports up to version " + VERSION);
+        }
+        InputStream body = new ByteArrayInputStream(payload, 5, payload.length - 5);
+        Compression payloadCompression = Compression.fromId(payload[3]);
+        if (payloadCompression == Compression.DEFLATE) {
+            body = new BufferedInputStream(new InflaterInputStream(body, new Inflater(), 8192) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    inf.end();
+                }
+            }, 8192);
+        }
+        return body;
+    }
+
+    private void writeEvents(ProvenanceBinaryOutput out, ProvenanceEventRecordDTOHolder holder) throws IOException {
+        out.writeString(holder.getBatchId());
+        List<ProvenanceEventRecordDTO> events = holder.getEvents();
+        if (events == null) {
+            out.writeVarLong(0);
+            return;
+        }
+        out.writeVarLong(events.size() + 1L);
+        //event ids and times are written as the difference from the previous event in the batch
+        long previousEventId = 0L;
+        long previousEventTime = 0L;
+        for (ProvenanceEventRecordDTO event : events) {
+            out.writeByte(flags(event));
+            out.writeString(event.getId());
+            if (event.getEventId() != null) {
+                out.writeByte(1);
+                out.writeSignedVarLong(event.getEventId() - previousEventId);
+                previousEventId = event.getEventId();
+            } else {
+                out.writeByte(0);
+            }
+            if (event.getEventTime() != null) {
+                out.writeByte(1);
+                out.writeSignedVarLong(event.getEventTime().getMillis() - previousEventTime);
+                out.writeString(event.getEventTime().getZone().getID());
+                previousEventTime = event.getEventTime().getMillis();
+            } else {
+                out.writeByte(0);
+            }
+            out.writeNullableLong(event.getPreviousEventId());
+            out.writeString(event.getPreviousFlowfileId());
+            out.writeDateTime(event.getPreviousEventTime());
+            out.writeDateTime(event.getStartTime());
+            out.writeNullableLong(event.getEventDuration());
+            out.writeString(event.getEventType());
+            out.writeString(event.getFlowFileUuid());
+            out.writeString(event.getFileSize());
+            out.writeNullableLong(event.getFileSizeBytes());
+            out.writeString(event.getClusterNodeId());
+            out.writeString(event.getClusterNodeAddress());
+            out.writeString(event.getGroupId());
+            out.writeString(event.getComponentId());
+            out.writeString(event.getComponentType());
+            out.writeString(event.getComponentName());
+            out.writeStrings(event.getParentUuids());
+            out.writeStrings(event.getChildUuids());
+            out.writeString(event.getDetails());
+            out.writeString(event.getSourceConnectionIdentifier());
+            out.writeNullableLong(event.getInputContentClaimFileSizeBytes());
+            out.writeString(event.getInputContentClaimFileSize());
+            out.writeNullableLong(event.getOutputContentClaimFileSizeBytes());
+            out.writeString(event.getOutputContentClaimFileSize());
+            out.writeStrings(event.getRelatedRootFlowFiles());
+            out.writeString(event.getProcessorType() != null ? event.getProcessorType().name() : null);
+            out.writeString(event.getJobFlowFileId());
+            out.writeNullableLong(event.getJobEventId());
+            out.writeString(event.getFeedName());
+            out.writeString(event.getFeedProcessGroupId());
+            out.writeString(event.getBatchId());
+            out.writeString(event.getRelationship());
+            out.writeStringMap(event.getUpdatedAttributes());
+            out.writeStringMap(event.getPreviousAttributes());
+            out.writeValueMap(event.getAdditionalProperties());
+            out.writeStringMap(event.getAttributeMap());
+        }
+    }
+
+    private ProvenanceEventRecordDTOHolder readEvents(ProvenanceBinaryInput in) throws IOException {
+        ProvenanceEventRecordDTOHolder holder = new ProvenanceEventRecordDTOHolder();
+        holder.setBatchId(in.readString());
+        int size = in.readSize();
+        if (size == 0) {
+            holder.setEvents(null);
+            return holder;
+        }
+        List<ProvenanceEventRecordDTO> events = new ArrayList<>(size - 1);
+        long previousEventId = 0L;
+        long previousEventTime = 0L;
+        for (int i = 0; i < size - 1; i++) {
+            ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+            int flags = in.readByte();
+            event.setId(in.readString());
+            if (in.readByte() == 1) {
+                previousEventId += in.readSignedVarLong();
+                event.setEventId(previousEventId);
+            }
+            if (in.readByte() == 1) {
+                previousEventTime += in.readSignedVarLong();
+                event.setEventTime(new DateTime(previousEventTime, DateTimeZone.forID(in.readString())));
+            }
+            event.setPreviousEventId(in.readNullableLong());
+            event.setPreviousFlowfileId(in.readString());
+            event.setPreviousEventTime(in.readDateTime());
+            event.setStartTime(in.readDateTime());
+            event.setEventDuration(in.readNullableLong());
+            event.setEventType(in.readString());
+            event.setFlowFileUuid(in.readString());
+            event.setFileSize(in.readString());
+            event.setFileSizeBytes(in.readNullableLong());
+            event.setClusterNodeId(in.readString());
+            event.setClusterNodeAddress(in.readString());
+            event.setGroupId(in.readString());
+            event.setComponentId(in.readString());
+            event.setComponentType(in.readString());
+            event.setComponentName(in.readString());
+            event.setParentUuids(in.readStrings(ArrayList::new));
+            event.setChildUuids(in.readStrings(ArrayList::new));
+            event.setDetails(in.readString());
+            event.setSourceConnectionIdentifier(in.readString());
+            event.setInputContentClaimFileSizeBytes(in.readNullableLong());
+            event.setInputContentClaimFileSize(in.readString());
+            event.setOutputContentClaimFileSizeBytes(in.readNullableLong());
+            event.setOutputContentClaimFileSize(in.readString());
+            event.setRelatedRootFlowFiles(in.readStrings(HashSet::new));
+            String processorType = in.readString();
+            event.setProcessorType(processorType != null ? KyloProcessorFlowType.valueOf(processorType) : null);
+            event.setJobFlowFileId(in.readString());
+            event.setJobEventId(in.readNullableLong());
+            event.setFeedName(in.readString());
+            event.setFeedProcessGroupId(in.readString());
+            event.setBatchId(in.readString());
+            event.setRelationship(in.readString());
+            event.setUpdatedAttributes(in.readStringMap());
+            event.setPreviousAttributes(in.readStringMap());
+            event.setAdditionalProperties(in.readValueMap());
+            event.setAttributeMap(in.readStringMap());
+
+            event.setIsStartOfJob((flags & EVENT_START_OF_JOB) != 0);
+            event.setIsEndOfJob((flags & EVENT_END_OF_JOB) != 0);
+            event.setIsFinalJobEvent((flags & EVENT_FINAL_JOB_EVENT) != 0);
+            event.setIsBatchJob((flags & EVENT_BATCH_JOB) != 0);
+            event.setHasFailedEvents((flags & EVENT_HAS_FAILED_EVENTS) != 0);
+            event.setStartOfFlowFile((flags & EVENT_START_OF_FLOW_FILE) != 0);
+            event.setIsFailure((flags & EVENT_FAILURE) != 0);
+            event.setStream((flags & EVENT_STREAM) != 0);
+            events.add(event);
+        }
+        holder.setEvents(events);
+        return holder;
+    }
+
+    private int flags(ProvenanceEventRecordDTO event) {
+        int flags = 0;
+        flags |= event.isStartOfJob() ? EVENT_START_OF_JOB : 0;
+        flags |= event.isEndOfJob() ? EVENT_END_OF_JOB : 0;
+        flags |= event.isFinalJobEvent() ? EVENT_FINAL_JOB_EVENT : 0;
+        flags |= event.isBatchJob() ? EVENT_BATCH_JOB : 0;
+        flags |= event.isHasFailedEvents() ? EVENT_HAS_FAILED_EVENTS : 0;
+        flags |= event.isStartOfFlowFile() ? EVENT_START_OF_FLOW_FILE : 0;
+        flags |= event.isFailure() ? EVENT_FAILURE : 0;
+        flags |= event.isStream() ? EVENT_STREAM : 0;
+        return flags;
+    }
+
+    private void writeStats(ProvenanceBinaryOutput out, AggregatedFeedProcessorStatisticsHolder holder) throws IOException {
+        out.writeString(holder.getCollectionId());
+        out.writeDateTime(holder.getMinTime());
+        out.writeDateTime(holder.getMaxTime());
+        out.writeSignedVarLong(holder.getEventCount().get());
+        out.writeNullableLong(holder.getMinEventId());
+        out.writeNullableLong(holder.getMaxEventId());
+        Map<String, AggregatedFeedProcessorStatistics> feedStatistics = holder.getFeedStatistics();
+        out.writeVarLong(feedStatistics.size());
+        for (Map.Entry<String, AggregatedFeedProcessorStatistics> feedEntry : feedStatistics.entrySet()) {
+            AggregatedFeedProcessorStatistics feedStats = feedEntry.getValue();
+            out.writeString(feedEntry.getKey());
+            out.writeString(feedStats.getFeedName());
+            out.writeString(feedStats.getProcessGroup());
+            out.writeString(feedStats.getCollectionId());
+            out.writeNullableLong(feedStats.getTotalEvents());
+            out.writeNullableLong(feedStats.getMinEventId());
+            out.writeNullableLong(feedStats.getMaxEventId());
+            Map<String, AggregatedProcessorStatistics> processorStats = feedStats.getProcessorStats();
+            out.writeVarLong(processorStats.size());
+            for (Map.Entry<String, AggregatedProcessorStatistics> processorEntry : processorStats.entrySet()) {
+                AggregatedProcessorStatistics processorStat = processorEntry.getValue();
+                out.writeString(processorEntry.getKey());
+                out.writeString(processorStat.getProcessorId());
+                out.writeString(processorStat.getProcessorName());
+                writeGroupedStats(out, processorStat.getStats());
+            }
+        }
+    }
+
+    private AggregatedFeedProcessorStatisticsHolder readStats(ProvenanceBinaryInput in) throws IOException {
+        AggregatedFeedProcessorStatisticsHolder holder = new AggregatedFeedProcessorStatisticsHolder();
+        holder.setCollectionId(in.readString());
+        holder.setMinTime(in.readDateTime());
+        holder.setMaxTime(in.readDateTime());
+        holder.setEventCount(new AtomicLong(in.readSignedVarLong()));
+        holder.setMinEventId(in.readNullableLong());
+        holder.setMaxEventId(in.readNullableLong());
+        int feeds = in.readSize();
+        for (int i = 0; i < feeds; i++) {
+            String key = in.readString();
+            AggregatedFeedProcessorStatistics feedStats = new AggregatedFeedProcessorStatistics();
+            feedStats.setFeedName(in.readString());
+            feedStats.setProcessGroup(in.readString());
+            feedStats.setCollectionId(in.readString());
+            feedStats.setTotalEvents(in.readNullableLong());
+            feedStats.setMinEventId(in.readNullableLong());
+            feedStats.setMaxEventId(in.readNullableLong());
+            int processors = in.readSize();
+            for (int p = 0; p < processors; p++) {
+                String processorKey = in.readString();
+                String processorId = in.readString();
+                String processorName = in.readString();
+                AggregatedProcessorStatistics processorStat = new AggregatedProcessorStatistics(processorId, processorName, null);
+                processorStat.setStats(readGroupedStats(in));
+                feedStats.getProcessorStats().put(processorKey, processorStat);
+            }
+            holder.getFeedStatistics().put(key, feedStats);
+        }
+        return holder;
+    }
+
+    private void writeGroupedStats(ProvenanceBinaryOutput out, GroupedStats stats) throws IOException {
+        if (stats == null) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(1);
+        out.writeString(stats.getGroupKey());
+        out.writeDateTime(stats.getMinTime());
+        out.writeDateTime(stats.getMaxTime());
+        out.writeDateTime(stats.getTime());
+        out.writeSignedVarLong(stats.getBytesIn());
+        out.writeSignedVarLong(stats.getBytesOut());
+        out.writeSignedVarLong(stats.getDuration());
+        out.writeSignedVarLong(stats.getTotalCount());
+        out.writeSignedVarLong(stats.getJobsStarted());
+        out.writeSignedVarLong(stats.getJobsFinished());
+        out.writeSignedVarLong(stats.getProcessorsFailed());
+        out.writeSignedVarLong(stats.getFlowFilesStarted());
+        out.writeSignedVarLong(stats.getFlowFilesFinished());
+        out.writeSignedVarLong(stats.getJobsFailed());
+        out.writeSignedVarLong(stats.getSuccessfulJobDuration());
+        out.writeSignedVarLong(stats.getJobDuration());
+        out.writeSignedVarLong(stats.getMaxEventId());
+        out.writeString(stats.getClusterNodeId());
+        out.writeString(stats.getClusterNodeAddress());
+    }
+
+    private GroupedStats readGroupedStats(ProvenanceBinaryInput in) throws IOException {
+        if (in.readByte() == 0) {
+            return null;
+        }
+        GroupedStats stats = new GroupedStats();
+        stats.setGroupKey(in.readString());
+        stats.setMinTime(in.readDateTime());
+        stats.setMaxTime(in.readDateTime());
+        stats.setTime(in.readDateTime());
+        stats.setBytesIn(in.readSignedVarLong());
+        stats.setBytesOut(in.readSignedVarLong());
+        stats.setDuration(in.readSignedVarLong());
+        stats.setTotalCount(in.readSignedVarLong());
+        stats.setJobsStarted(in.readSignedVarLong());
+        stats.setJobsFinished(in.readSignedVarLong());
+        stats.setProcessorsFailed(in.readSignedVarLong());
+        stats.setFlowFilesStarted(in.readSignedVarLong());
+        stats.setFlowFilesFinished(in.readSignedVarLong());
+        stats.setJobsFailed(in.readSignedVarLong());
+        stats.setSuccessfulJobDuration(in.readSignedVarLong());
+        stats.setJobDuration(in.readSignedVarLong());
+        stats.setMaxEventId(in.readSignedVarLong());
+        stats.setClusterNodeId(in.readString());
+        stats.setClusterNodeAddress(in.readString());
+        return stats;
+    }
+
+    /**
+     * Compression applied to the body of the payload
+     */
+    public enum Compression {
+        NONE(0), DEFLATE(1);
+
+        private final int id;
+
+        Compression(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        static Compression fromId(int id) throws IOException {
+            for (Compression compression : values()) {
+                if (compression.id == id) {
+                    return compression;
+                }
+            }
+            throw new IOException("Unknown " + PAYLOAD_FORMAT + " compression " + id);
+        }
+    }
+}
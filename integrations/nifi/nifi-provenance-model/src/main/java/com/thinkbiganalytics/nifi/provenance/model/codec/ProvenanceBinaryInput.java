@@ -0,0 +1,221 @@
+package com.thinkbiganalytics.nifi.provenance.model.codec;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-model
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+/**
+ * Reads the primitive values written by {@link ProvenanceBinaryOutput}
+ */
+class ProvenanceBinaryInput {
+
+    private final InputStream in;
+
+    private final List<String> strings = new ArrayList<>();
+
+    ProvenanceBinaryInput(InputStream in) {
+        this.in = in;
+    }
+
+    int readByte() throws IOException {
+        int value = in.read();
+        if (value < 0) {
+            throw new EOFException("Unexpected end of provenance payload");
+        }
+        return value;
+    }
+
+    long readVarLong() throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length number in provenance payload");
+    }
+
+    long readSignedVarLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    Long readNullableLong() throws IOException {
+        return readByte() == 0 ? null : readSignedVarLong();
+    }
+
+    DateTime readDateTime() throws IOException {
+        if (readByte() == 0) {
+            return null;
+        }
+        long millis = readSignedVarLong();
+        String zone = readString();
+        return new DateTime(millis, DateTimeZone.forID(zone));
+    }
+
+    String readString() throws IOException {
+        int tag = readSize();
+        switch (tag) {
+            case ProvenanceBinaryOutput.STRING_NULL:
+                return null;
+            case ProvenanceBinaryOutput.STRING_UTF8: {
+                byte[] bytes = new byte[readSize()];
+                readFully(bytes);
+                String value = new String(bytes, StandardCharsets.UTF_8);
+                strings.add(value);
+                return value;
+            }
+            case ProvenanceBinaryOutput.STRING_UUID: {
+                String value = new UUID(readFixedLong(), readFixedLong()).toString();
+                strings.add(value);
+                return value;
+            }
+            default:
+                int index = tag - ProvenanceBinaryOutput.STRING_REFERENCE;
+                if (index >= strings.size()) {
+                    throw new IOException("Invalid string reference " + index + " in provenance payload");
+                }
+                return strings.get(index);
+        }
+    }
+
+    /**
+     * Read a collection of strings into a new collection created by the supplied factory
+     *
+     * @return the collection, or null if a null collection was written
+     */
+    <C extends Collection<String>> C readStrings(IntFunction<C> factory) throws IOException {
+        int size = readSize();
+        if (size == 0) {
+            return null;
+        }
+        C values = factory.apply(size - 1);
+        for (int i = 0; i < size - 1; i++) {
+            values.add(readString());
+        }
+        return values;
+    }
+
+    Map<String, String> readStringMap() throws IOException {
+        int size = readSize();
+        if (size == 0) {
+            return null;
+        }
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < size - 1; i++) {
+            values.put(readString(), readString());
+        }
+        return values;
+    }
+
+    /**
+     * Read a map of values written by {@link ProvenanceBinaryOutput#writeValueMap(Map)}
+     *
+     * @return the map, or null if a null map was written
+     */
+    Map<String, Object> readValueMap() throws IOException {
+        int size = readSize();
+        if (size == 0) {
+            return null;
+        }
+        Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < size - 1; i++) {
+            values.put(readString(), readValue());
+        }
+        return values;
+    }
+
+    private Object readValue() throws IOException {
+        int tag = readByte();
+        switch (tag) {
+            case ProvenanceBinaryOutput.VALUE_NULL:
+                return null;
+            case ProvenanceBinaryOutput.VALUE_STRING:
+                return readString();
+            case ProvenanceBinaryOutput.VALUE_INTEGER:
+                return (int) readSignedVarLong();
+            case ProvenanceBinaryOutput.VALUE_LONG:
+                return readSignedVarLong();
+            case ProvenanceBinaryOutput.VALUE_DOUBLE:
+                return Double.longBitsToDouble(readFixedLong());
+            case ProvenanceBinaryOutput.VALUE_BOOLEAN:
+                return readByte() != 0;
+            case ProvenanceBinaryOutput.VALUE_SERIALIZED: {
+                byte[] bytes = new byte[readSize()];
+                readFully(bytes);
+                try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return objectIn.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Unable to read a serialized value in provenance payload", e);
+                }
+            }
+            default:
+                throw new IOException("Invalid value type " + tag + " in provenance payload");
+        }
+    }
+
+    /**
+     * Read a non negative length or count
+     */
+    int readSize() throws IOException {
+        long size = readVarLong();
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new IOException("Invalid size " + size + " in provenance payload");
+        }
+        return (int) size;
+    }
+
+    private long readFixedLong() throws IOException {
+        long value = 0L;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    private void readFully(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            int read = in.read(bytes, offset, bytes.length - offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of provenance payload");
+            }
+            offset += read;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.thinkbiganalytics.nifi.provenance.model.codec;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-model
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.joda.time.DateTime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes the primitive values of the {@link ProvenanceBinaryCodec} format.
+ *
+ * Numbers are written as variable length integers and every distinct string is written once per message.
+ * Repeated strings (feed names, processor ids, flow file ids) are written as a reference into the string table.
+ */
+class ProvenanceBinaryOutput {
+
+    static final int STRING_NULL = 0;
+    static final int STRING_UTF8 = 1;
+    static final int STRING_UUID = 2;
+    static final int STRING_REFERENCE = 3;
+
+    static final int VALUE_NULL = 0;
+    static final int VALUE_STRING = 1;
+    static final int VALUE_INTEGER = 2;
+    static final int VALUE_LONG = 3;
+    static final int VALUE_DOUBLE = 4;
+    static final int VALUE_BOOLEAN = 5;
+    static final int VALUE_SERIALIZED = 6;
+
+    private final OutputStream out;
+
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    ProvenanceBinaryOutput(OutputStream out) {
+        this.out = out;
+    }
+
+    void writeByte(int value) throws IOException {
+        out.write(value);
+    }
+
+    /**
+     * Write an unsigned variable length long
+     */
+    void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Write a signed variable length long using zig zag encoding so small negative values stay small
+     */
+    void writeSignedVarLong(long value) throws IOException {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeNullableLong(Long value) throws IOException {
+        if (value == null) {
+            out.write(0);
+        } else {
+            out.write(1);
+            writeSignedVarLong(value);
+        }
+    }
+
+    void writeDateTime(DateTime value) throws IOException {
+        if (value == null) {
+            out.write(0);
+        } else {
+            out.write(1);
+            writeSignedVarLong(value.getMillis());
+            writeString(value.getZone().getID());
+        }
+    }
+
+    void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarLong(STRING_NULL);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeVarLong(STRING_REFERENCE + index);
+            return;
+        }
+        strings.put(value, strings.size());
+
+        UUID uuid = toUuid(value);
+        if (uuid != null) {
+            writeVarLong(STRING_UUID);
+            writeFixedLong(uuid.getMostSignificantBits());
+            writeFixedLong(uuid.getLeastSignificantBits());
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(STRING_UTF8);
+            writeVarLong(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Write a collection of strings.  The size is offset by one so a null collection can be distinguished from an empty one.
+     */
+    void writeStrings(Collection<String> values) throws IOException {
+        if (values == null) {
+            writeVarLong(0);
+            return;
+        }
+        writeVarLong(values.size() + 1L);
+        for (String value : values) {
+            writeString(value);
+        }
+    }
+
+    /**
+     * Write a map of strings.  The size is offset by one so a null map can be distinguished from an empty one.
+     */
+    void writeStringMap(Map<String, String> values) throws IOException {
+        if (values == null) {
+            writeVarLong(0);
+            return;
+        }
+        writeVarLong(values.size() + 1L);
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            writeString(entry.getKey());
+            writeString(entry.getValue());
+        }
+    }
+
+    /**
+     * Write a map of values keeping the type of each value so it is read back as the same type.
+     * Strings, integers, longs, doubles and booleans are written natively, any other value must be {@link Serializable} and is written using Java serialization.
+     * The size is offset by one so a null map can be distinguished from an empty one.
+     */
+    void writeValueMap(Map<String, Object> values) throws IOException {
+        if (values == null) {
+            writeVarLong(0);
+            return;
+        }
+        writeVarLong(values.size() + 1L);
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            writeString(entry.getKey());
+            writeValue(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void writeValue(String key, Object value) throws IOException {
+        if (value == null) {
+            out.write(VALUE_NULL);
+        } else if (value instanceof String) {
+            out.write(VALUE_STRING);
+            writeString((String) value);
+        } else if (value instanceof Integer) {
+            out.write(VALUE_INTEGER);
+            writeSignedVarLong((Integer) value);
+        } else if (value instanceof Long) {
+            out.write(VALUE_LONG);
+            writeSignedVarLong((Long) value);
+        } else if (value instanceof Double) {
+            out.write(VALUE_DOUBLE);
+            writeFixedLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Boolean) {
+            out.write(VALUE_BOOLEAN);
+            out.write((Boolean) value ? 1 : 0);
+        } else if (value instanceof Serializable) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+                objectOut.writeObject(value);
+            }
+            out.write(VALUE_SERIALIZED);
+            writeVarLong(bytes.size());
+            bytes.writeTo(out);
+        } else {
+            throw new IOException("Unable to write the value of " + key + ". " + value.getClass().getName() + " is not Serializable");
+        }
+    }
+
+    private void writeFixedLong(long value) throws IOException {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    /**
+     * Only canonical lower case UUID strings are written as 16 bytes so the decoded string is always identical to the original
+     */
+    private static UUID toUuid(String value) {
+        if (value.length() != 36 || value.charAt(8) != '-' || value.charAt(13) != '-' || value.charAt(18) != '-' || value.charAt(23) != '-') {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(value);
+            return uuid.toString().equals(value) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -75,14 +75,50 @@ public class AggregatedFeedProcessorStatisticsHolder implements Serializable {
         return eventCount;
     }
 
+    public void setEventCount(AtomicLong eventCount) {
+        this.eventCount = eventCount;
+    }
+
+    public DateTime getMinTime() {
+        return minTime;
+    }
+
+    public void setMinTime(DateTime minTime) {
+        this.minTime = minTime;
+    }
+
+    public DateTime getMaxTime() {
+        return maxTime;
+    }
+
+    public void setMaxTime(DateTime maxTime) {
+        this.maxTime = maxTime;
+    }
+
+    public String getCollectionId() {
+        return collectionId;
+    }
+
+    public void setCollectionId(String collectionId) {
+        this.collectionId = collectionId;
+    }
+
     public Long getMinEventId() {
         return minEventId;
     }
 
+    public void setMinEventId(Long minEventId) {
+        this.minEventId = minEventId;
+    }
+
     public Long getMaxEventId() {
         return maxEventId;
     }
 
+    public void setMaxEventId(Long maxEventId) {
+        this.maxEventId = maxEventId;
+    }
+
     public Map<String, AggregatedFeedProcessorStatistics> getFeedStatistics() {
         return feedStatistics;
     }
@@ -0,0 +1,73 @@
+package com.thinkbiganalytics.nifi.provenance.model.util;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-model
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Allocates the storage used by the {@link FlowFileIdTable}s of the flow file graph.
+ *
+ * Tables are allocated on the heap unless off heap storage is enabled and the table is at least {@link #getOffHeapThresholdBytes()}.
+ * This lets the few very large graphs (i.e. a split into tens of thousands of flow files) spill out of the NiFi heap while small graphs stay on the heap.
+ * Off heap memory is limited by the JVM -XX:MaxDirectMemorySize setting and is freed when the table is garbage collected.
+ */
+public final class FlowFileGraphMemory {
+
+    /**
+     * The min size in bytes of a table allocated off heap.  A negative value keeps all tables on the heap
+     */
+    private static volatile long offHeapThresholdBytes = -1L;
+
+    private FlowFileGraphMemory() {
+
+    }
+
+    public static long getOffHeapThresholdBytes() {
+        return offHeapThresholdBytes;
+    }
+
+    /**
+     * @param offHeapThresholdBytes the min size in bytes of a table allocated off heap, or a negative value to keep all tables on the heap
+     */
+    public static void setOffHeapThresholdBytes(long offHeapThresholdBytes) {
+        FlowFileGraphMemory.offHeapThresholdBytes = offHeapThresholdBytes;
+    }
+
+    /**
+     * Allocate a zeroed buffer of longs
+     *
+     * @param longs the number of longs
+     * @return the buffer
+     */
+    static LongBuffer allocate(long longs) {
+        if (longs > Integer.MAX_VALUE / Long.BYTES) {
+            throw new IllegalArgumentException("Unable to allocate a flow file table of " + longs + " entries");
+        }
+        long bytes = longs * Long.BYTES;
+        long threshold = offHeapThresholdBytes;
+        if (threshold >= 0 && bytes >= threshold) {
+            return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        return LongBuffer.allocate((int) longs);
+    }
+}
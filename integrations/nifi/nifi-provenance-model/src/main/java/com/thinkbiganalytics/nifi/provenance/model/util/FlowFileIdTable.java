@@ -0,0 +1,580 @@
+package com.thinkbiganalytics.nifi.provenance.model.util;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-model
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * An open addressing hash table keyed by flow file id.
+ *
+ * NiFi flow file ids are UUIDs.  Rather than storing each id as a 36 character String in a HashMap/HashSet entry, the id is stored as two longs inside a single {@link LongBuffer}
+ * followed by {@code valueWidth} long values.  A table with a value width of 0 is a set.
+ * The buffer is allocated by {@link FlowFileGraphMemory} and may be off heap for large tables.
+ *
+ * Ids that are not canonical lower case UUIDs are kept in a regular map so any id can be stored.
+ *
+ * This class is not thread safe.
+ */
+public class FlowFileIdTable implements Serializable {
+
+    private static final long serialVersionUID = -3171484735046924372L;
+
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Grow the table when it is more than 2/3 full
+     */
+    private static final int LOAD_FACTOR_NUMERATOR = 2;
+    private static final int LOAD_FACTOR_DENOMINATOR = 3;
+
+    /**
+     * the number of long values stored with each id
+     */
+    private final int valueWidth;
+
+    /**
+     * the id (msb, lsb) followed by the values for each slot.  A slot with an id of (0,0) is empty
+     */
+    private transient LongBuffer table;
+
+    private transient int capacity;
+
+    private transient int size;
+
+    /**
+     * The nil UUID (0,0) marks empty slots, so its values are kept separately
+     */
+    private transient long[] nilIdValues;
+
+    /**
+     * ids that are not canonical UUIDs
+     */
+    private transient Map<String, long[]> otherIds;
+
+    public FlowFileIdTable(int valueWidth) {
+        if (valueWidth < 0) {
+            throw new IllegalArgumentException("The value width must not be negative");
+        }
+        this.valueWidth = valueWidth;
+    }
+
+    public int getValueWidth() {
+        return valueWidth;
+    }
+
+    /**
+     * @return the number of ids in the table
+     */
+    public int size() {
+        return size + (nilIdValues != null ? 1 : 0) + (otherIds != null ? otherIds.size() : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean contains(String id) {
+        if (id == null) {
+            return false;
+        }
+        if (!isCanonicalUuid(id)) {
+            return otherIds != null && otherIds.containsKey(id);
+        }
+        long msb = mostSignificantBits(id);
+        long lsb = leastSignificantBits(id);
+        if (msb == 0L && lsb == 0L) {
+            return nilIdValues != null;
+        }
+        return findSlot(msb, lsb) >= 0;
+    }
+
+    /**
+     * Add an id to the table, leaving its values unchanged if it is already present
+     *
+     * @return true if the id was added, false if it was already present
+     */
+    public boolean add(String id) {
+        requireId(id);
+        if (!isCanonicalUuid(id)) {
+            if (otherIds == null) {
+                otherIds = new HashMap<>();
+            }
+            return otherIds.putIfAbsent(id, new long[valueWidth]) == null;
+        }
+        long msb = mostSignificantBits(id);
+        long lsb = leastSignificantBits(id);
+        if (msb == 0L && lsb == 0L) {
+            if (nilIdValues != null) {
+                return false;
+            }
+            nilIdValues = new long[valueWidth];
+            return true;
+        }
+        if (findSlot(msb, lsb) >= 0) {
+            return false;
+        }
+        ensureCapacity(size + 1);
+        insertSlot(msb, lsb);
+        size++;
+        return true;
+    }
+
+    /**
+     * Set the first value for an id, adding the id if needed
+     */
+    public void put(String id, long value) {
+        checkWidth(1);
+        set(id, 0, value);
+    }
+
+    /**
+     * Set the first two values for an id, adding the id if needed
+     */
+    public void put(String id, long value0, long value1) {
+        checkWidth(2);
+        set(id, 0, value0);
+        set(id, 1, value1);
+    }
+
+    /**
+     * Get a value for an id
+     *
+     * @param id           the flow file id
+     * @param valueIndex   the index of the value, less than the {@link #getValueWidth()}
+     * @param defaultValue the value returned if the id is not in the table
+     * @return the value, or the {@code defaultValue} if the id is not in the table
+     */
+    public long get(String id, int valueIndex, long defaultValue) {
+        checkWidth(valueIndex + 1);
+        if (id == null) {
+            return defaultValue;
+        }
+        if (!isCanonicalUuid(id)) {
+            long[] values = otherIds != null ? otherIds.get(id) : null;
+            return values != null ? values[valueIndex] : defaultValue;
+        }
+        long msb = mostSignificantBits(id);
+        long lsb = leastSignificantBits(id);
+        if (msb == 0L && lsb == 0L) {
+            return nilIdValues != null ? nilIdValues[valueIndex] : defaultValue;
+        }
+        int slot = findSlot(msb, lsb);
+        return slot >= 0 ? table.get(slot * stride() + 2 + valueIndex) : defaultValue;
+    }
+
+    /**
+     * Remove an id from the table
+     *
+     * @return true if the id was removed, false if it was not present
+     */
+    public boolean remove(String id) {
+        if (id == null) {
+            return false;
+        }
+        if (!isCanonicalUuid(id)) {
+            return otherIds != null && otherIds.remove(id) != null;
+        }
+        long msb = mostSignificantBits(id);
+        long lsb = leastSignificantBits(id);
+        if (msb == 0L && lsb == 0L) {
+            boolean removed = nilIdValues != null;
+            nilIdValues = null;
+            return removed;
+        }
+        int slot = findSlot(msb, lsb);
+        if (slot < 0) {
+            return false;
+        }
+        deleteSlot(slot);
+        size--;
+        return true;
+    }
+
+    /**
+     * Remove every id whose first value equals the given value
+     *
+     * @return the number of ids removed
+     */
+    public int removeIdsWithValue(long value) {
+        checkWidth(1);
+        int removed = 0;
+        if (nilIdValues != null && nilIdValues[0] == value) {
+            nilIdValues = null;
+            removed++;
+        }
+        if (otherIds != null) {
+            int before = otherIds.size();
+            otherIds.values().removeIf(values -> values[0] == value);
+            removed += before - otherIds.size();
+        }
+        if (table != null) {
+            //collect the matching ids first as deleting a slot shifts the entries after it
+            int stride = stride();
+            long[] matches = new long[16];
+            int matchCount = 0;
+            for (int slot = 0; slot < capacity; slot++) {
+                long msb = table.get(slot * stride);
+                long lsb = table.get(slot * stride + 1);
+                if ((msb != 0L || lsb != 0L) && table.get(slot * stride + 2) == value) {
+                    if (matchCount * 2 + 2 > matches.length) {
+                        matches = Arrays.copyOf(matches, matches.length * 2);
+                    }
+                    matches[matchCount * 2] = msb;
+                    matches[matchCount * 2 + 1] = lsb;
+                    matchCount++;
+                }
+            }
+            for (int i = 0; i < matchCount; i++) {
+                deleteSlot(findSlot(matches[i * 2], matches[i * 2 + 1]));
+                size--;
+            }
+            removed += matchCount;
+        }
+        return removed;
+    }
+
+    /**
+     * Call the consumer with each id in the table
+     */
+    public void forEachId(Consumer<String> consumer) {
+        if (nilIdValues != null) {
+            consumer.accept(new UUID(0L, 0L).toString());
+        }
+        if (table != null) {
+            int stride = stride();
+            for (int slot = 0; slot < capacity; slot++) {
+                long msb = table.get(slot * stride);
+                long lsb = table.get(slot * stride + 1);
+                if (msb != 0L || lsb != 0L) {
+                    consumer.accept(new UUID(msb, lsb).toString());
+                }
+            }
+        }
+        if (otherIds != null) {
+            otherIds.keySet().forEach(consumer);
+        }
+    }
+
+    /**
+     * @return a new set containing all the ids in the table
+     */
+    public Set<String> toSet() {
+        Set<String> ids = new HashSet<>(Math.max(16, size() * 4 / 3 + 1));
+        forEachId(ids::add);
+        return ids;
+    }
+
+    /**
+     * Remove all the ids and release the table's memory
+     */
+    public void clear() {
+        table = null;
+        capacity = 0;
+        size = 0;
+        nilIdValues = null;
+        otherIds = null;
+    }
+
+    /**
+     * @return the number of bytes held by the table storage
+     */
+    public long getAllocatedBytes() {
+        return capacity * (long) stride() * Long.BYTES;
+    }
+
+    /**
+     * @return true if the table storage is off heap
+     */
+    public boolean isOffHeap() {
+        return table != null && table.isDirect();
+    }
+
+    private void checkWidth(int width) {
+        if (width > valueWidth) {
+            throw new IllegalArgumentException("This table stores " + valueWidth + " values per id");
+        }
+    }
+
+    private int stride() {
+        return 2 + valueWidth;
+    }
+
+    /**
+     * Set a value for an id, adding the id if needed
+     *
+     * @param id         the flow file id
+     * @param valueIndex the index of the value, less than the {@link #getValueWidth()}
+     * @param value      the value
+     */
+    public void set(String id, int valueIndex, long value) {
+        checkWidth(valueIndex + 1);
+        requireId(id);
+        if (!isCanonicalUuid(id)) {
+            if (otherIds == null) {
+                otherIds = new HashMap<>();
+            }
+            otherIds.computeIfAbsent(id, key -> new long[valueWidth])[valueIndex] = value;
+            return;
+        }
+        long msb = mostSignificantBits(id);
+        long lsb = leastSignificantBits(id);
+        if (msb == 0L && lsb == 0L) {
+            if (nilIdValues == null) {
+                nilIdValues = new long[valueWidth];
+            }
+            nilIdValues[valueIndex] = value;
+            return;
+        }
+        int slot = findSlot(msb, lsb);
+        if (slot < 0) {
+            ensureCapacity(size + 1);
+            slot = insertSlot(msb, lsb);
+            size++;
+        }
+        table.put(slot * stride() + 2 + valueIndex, value);
+    }
+
+    private static void requireId(String id) {
+        if (id == null) {
+            throw new IllegalArgumentException("The flow file id must not be null");
+        }
+    }
+
+    private int findSlot(long msb, long lsb) {
+        if (table == null) {
+            return -1;
+        }
+        int stride = stride();
+        int mask = capacity - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (true) {
+            long slotMsb = table.get(slot * stride);
+            long slotLsb = table.get(slot * stride + 1);
+            if (slotMsb == msb && slotLsb == lsb) {
+                return slot;
+            }
+            if (slotMsb == 0L && slotLsb == 0L) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Insert an id known not to be in the table, with zero values
+     */
+    private int insertSlot(long msb, long lsb) {
+        int stride = stride();
+        int mask = capacity - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (table.get(slot * stride) != 0L || table.get(slot * stride + 1) != 0L) {
+            slot = (slot + 1) & mask;
+        }
+        table.put(slot * stride, msb);
+        table.put(slot * stride + 1, lsb);
+        return slot;
+    }
+
+    /**
+     * Remove the entry in the slot, shifting back any following entries of the probe sequence so no tombstones are needed
+     */
+    private void deleteSlot(int slot) {
+        int stride = stride();
+        int mask = capacity - 1;
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            long msb = table.get(next * stride);
+            long lsb = table.get(next * stride + 1);
+            if (msb == 0L && lsb == 0L) {
+                break;
+            }
+            int home = hash(msb, lsb) & mask;
+            //move the entry into the hole unless its home slot lies cyclically in (hole, next]
+            boolean homeBetween = hole <= next ? (home > hole && home <= next) : (home > hole || home <= next);
+            if (!homeBetween) {
+                for (int i = 0; i < stride; i++) {
+                    table.put(hole * stride + i, table.get(next * stride + i));
+                }
+                hole = next;
+            }
+        }
+        for (int i = 0; i < stride; i++) {
+            table.put(hole * stride + i, 0L);
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (table != null && (long) required * LOAD_FACTOR_DENOMINATOR <= (long) capacity * LOAD_FACTOR_NUMERATOR) {
+            return;
+        }
+        int newCapacity = Math.max(MIN_CAPACITY, capacity);
+        while ((long) required * LOAD_FACTOR_DENOMINATOR > (long) newCapacity * LOAD_FACTOR_NUMERATOR) {
+            newCapacity <<= 1;
+        }
+        rehash(newCapacity);
+    }
+
+    private void rehash(int newCapacity) {
+        LongBuffer oldTable = table;
+        int oldCapacity = capacity;
+        int stride = stride();
+        table = FlowFileGraphMemory.allocate((long) newCapacity * stride);
+        capacity = newCapacity;
+        if (oldTable != null) {
+            for (int slot = 0; slot < oldCapacity; slot++) {
+                long msb = oldTable.get(slot * stride);
+                long lsb = oldTable.get(slot * stride + 1);
+                if (msb != 0L || lsb != 0L) {
+                    int newSlot = insertSlot(msb, lsb);
+                    for (int i = 2; i < stride; i++) {
+                        table.put(newSlot * stride + i, oldTable.get(slot * stride + i));
+                    }
+                }
+            }
+        }
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return (int) h;
+    }
+
+    /**
+     * Only canonical lower case UUID strings are stored as two longs, so the id returned from the table is always identical to the id stored
+     */
+    public static boolean isCanonicalUuid(String id) {
+        if (id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write a flow file id, as two longs if it is a canonical UUID
+     *
+     * @param out the output to write to
+     * @param id  the flow file id
+     */
+    public static void writeId(DataOutput out, String id) throws IOException {
+        if (isCanonicalUuid(id)) {
+            out.writeBoolean(true);
+            out.writeLong(mostSignificantBits(id));
+            out.writeLong(leastSignificantBits(id));
+        } else {
+            out.writeBoolean(false);
+            out.writeUTF(id);
+        }
+    }
+
+    /**
+     * Read a flow file id written by {@link #writeId(DataOutput, String)}
+     *
+     * @param in the input to read from
+     * @return the flow file id
+     */
+    public static String readId(DataInput in) throws IOException {
+        if (in.readBoolean()) {
+            return new UUID(in.readLong(), in.readLong()).toString();
+        }
+        return in.readUTF();
+    }
+
+    private static long mostSignificantBits(String id) {
+        return (hex(id, 0, 8) << 32) | (hex(id, 9, 13) << 16) | hex(id, 14, 18);
+    }
+
+    private static long leastSignificantBits(String id) {
+        return (hex(id, 19, 23) << 48) | hex(id, 24, 36);
+    }
+
+    private static long hex(String id, int start, int end) {
+        long value = 0L;
+        for (int i = start; i < end; i++) {
+            value = (value << 4) | Character.digit(id.charAt(i), 16);
+        }
+        return value;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size());
+        IOException[] error = new IOException[1];
+        forEachId(id -> {
+            if (error[0] != null) {
+                return;
+            }
+            try {
+                writeId(out, id);
+                for (int i = 0; i < valueWidth; i++) {
+                    out.writeLong(get(id, i, 0L));
+                }
+            } catch (IOException e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        if (count > 0) {
+            ensureCapacity(count);
+        }
+        for (int i = 0; i < count; i++) {
+            String id = readId(in);
+            add(id);
+            for (int v = 0; v < valueWidth; v++) {
+                set(id, v, in.readLong());
+            }
+        }
+    }
+}
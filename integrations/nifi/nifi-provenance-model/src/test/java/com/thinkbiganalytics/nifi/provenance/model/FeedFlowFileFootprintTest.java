@@ -0,0 +1,107 @@
+package com.thinkbiganalytics.nifi.provenance.model;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-model
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.nifi.provenance.model.util.FlowFileGraphMemory;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Verify the size of a {@link FeedFlowFile} split into many children stays bounded.
+ */
+public class FeedFlowFileFootprintTest {
+
+    private static final int CHILDREN = 5000;
+
+    @After
+    public void resetOffHeap() {
+        FlowFileGraphMemory.setOffHeapThresholdBytes(-1L);
+    }
+
+    @Test
+    public void testSplitFlowFootprint() {
+        String rootId = UUID.randomUUID().toString();
+        List<String> childIds = childIds(CHILDREN);
+        long eventTime = DateTime.now().getMillis();
+
+        FeedFlowFile flowFile = split(rootId, childIds, eventTime);
+        Assert.assertEquals(CHILDREN, flowFile.getChildFlowFileCount());
+        Assert.assertEquals(eventTime, flowFile.getPreviousEventTime(childIds.get(CHILDREN - 1)).longValue());
+        //a table of at most 1.5 * CHILDREN * 2 slots of 7 longs
+        Assert.assertTrue(flowFile.getEstimatedBytes() < CHILDREN * 200L);
+
+        FlowFileGraphMemory.setOffHeapThresholdBytes(64 * 1024L);
+        FeedFlowFile offHeapFlowFile = split(rootId, childIds, eventTime);
+        Assert.assertEquals(CHILDREN, offHeapFlowFile.getChildFlowFileCount());
+        Assert.assertEquals(eventTime, offHeapFlowFile.getPreviousEventTime(childIds.get(CHILDREN - 1)).longValue());
+        Assert.assertEquals(flowFile.getEstimatedBytes(), offHeapFlowFile.getEstimatedBytes());
+    }
+
+    @Test
+    public void testSplitFlowCompletes() {
+        String rootId = UUID.randomUUID().toString();
+        List<String> childIds = childIds(1000);
+        FeedFlowFile flowFile = split(rootId, childIds, DateTime.now().getMillis());
+        flowFile.checkAndMarkComplete(dropEvent(rootId));
+        Assert.assertFalse(flowFile.isFeedComplete());
+        childIds.forEach(childId -> flowFile.checkAndMarkComplete(dropEvent(childId)));
+        Assert.assertTrue(flowFile.isFeedComplete());
+        Assert.assertEquals(0, flowFile.getActiveChildFlowFileCount());
+        Assert.assertEquals(1000, flowFile.getChildFlowFileCount());
+    }
+
+    private List<String> childIds(int count) {
+        List<String> childIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            childIds.add(UUID.randomUUID().toString());
+        }
+        return childIds;
+    }
+
+    private FeedFlowFile split(String rootId, List<String> childIds, long eventTime) {
+        FeedFlowFile flowFile = new FeedFlowFile(rootId);
+        for (String childId : childIds) {
+            flowFile.assignFlowFileToParent(childId, rootId);
+            flowFile.assignChildFlowFileStartTime(childId, eventTime);
+            flowFile.addChildFlowFile(childId);
+            ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+            event.setFlowFileUuid(childId);
+            event.setEventTime(new DateTime(eventTime));
+            flowFile.registerLastEventTime(event);
+            flowFile.checkIfEventStartsTheFlowFile(event);
+        }
+        return flowFile;
+    }
+
+    private ProvenanceEventRecordDTO dropEvent(String flowFileId) {
+        ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+        event.setFlowFileUuid(flowFileId);
+        event.setEventType("DROP");
+        return event;
+    }
+}
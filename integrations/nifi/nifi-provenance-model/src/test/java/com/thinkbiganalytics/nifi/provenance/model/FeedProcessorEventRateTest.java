@@ -0,0 +1,76 @@
+package com.thinkbiganalytics.nifi.provenance.model;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-model
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link FeedProcessorEventRate} switches a feed between batch and stream with hysteresis
+ */
+public class FeedProcessorEventRateTest {
+
+    private static final int MAX_EVENTS_PER_SECOND = 10;
+
+    @Test
+    public void testSwitchToStreamAndBack() {
+        FeedProcessorEventRate rate = new FeedProcessorEventRate();
+        long start = 1000000L;
+        for (int i = 0; i < MAX_EVENTS_PER_SECOND; i++) {
+            Assert.assertEquals(FeedProcessorEventRate.Mode.BATCH, rate.record(start + i, MAX_EVENTS_PER_SECOND));
+        }
+        Assert.assertEquals(FeedProcessorEventRate.Mode.STREAM, rate.record(start + 500, MAX_EVENTS_PER_SECOND));
+
+        //stays a stream while the rate stays high
+        for (int second = 1; second < 10; second++) {
+            for (int i = 0; i < 8; i++) {
+                Assert.assertEquals(FeedProcessorEventRate.Mode.STREAM, rate.record(start + second * 1000L + i, MAX_EVENTS_PER_SECOND));
+            }
+        }
+        Assert.assertEquals(8d, rate.getEventsPerSecond(), 0.01d);
+
+        //returns to batch once the rate drops to half of the max
+        Assert.assertEquals(FeedProcessorEventRate.Mode.STREAM, rate.record(start + 10000L, MAX_EVENTS_PER_SECOND));
+        Assert.assertEquals(FeedProcessorEventRate.Mode.BATCH, rate.record(start + 14000L, MAX_EVENTS_PER_SECOND));
+        Assert.assertEquals(0.4d, rate.getEventsPerSecond(), 0.01d);
+    }
+
+    @Test
+    public void testStaysStreamForTheWindow() {
+        FeedProcessorEventRate rate = new FeedProcessorEventRate();
+        long start = 1000000L;
+        for (int i = 0; i <= MAX_EVENTS_PER_SECOND; i++) {
+            rate.record(start + i, MAX_EVENTS_PER_SECOND);
+        }
+        Assert.assertTrue(rate.isStream());
+        Assert.assertEquals(FeedProcessorEventRate.Mode.STREAM, rate.record(start + 1000L, MAX_EVENTS_PER_SECOND));
+        Assert.assertEquals(FeedProcessorEventRate.Mode.BATCH, rate.record(start + FeedProcessorEventRate.WINDOW_SECONDS * 1000L, MAX_EVENTS_PER_SECOND));
+    }
+
+    @Test
+    public void testLateEventsAreCounted() {
+        FeedProcessorEventRate rate = new FeedProcessorEventRate();
+        long start = 1000000L;
+        rate.record(start + 10000L, MAX_EVENTS_PER_SECOND);
+        rate.record(start, MAX_EVENTS_PER_SECOND);
+        Assert.assertEquals(2d / FeedProcessorEventRate.WINDOW_SECONDS, rate.getEventsPerSecond(), 0.01d);
+    }
+}
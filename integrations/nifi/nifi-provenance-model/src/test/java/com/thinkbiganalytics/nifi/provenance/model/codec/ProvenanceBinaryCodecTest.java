@@ -0,0 +1,377 @@
+package com.thinkbiganalytics.nifi.provenance.model.codec;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-model
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.nifi.provenance.KyloProcessorFlowType;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
+import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolder;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatistics;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolder;
+import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedProcessorStatistics;
+import com.thinkbiganalytics.nifi.provenance.model.stats.GroupedStats;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ProvenanceBinaryCodecTest {
+
+    /**
+     * Verify every field of a batch of events survives a round trip, with and without compression.
+     */
+    @Test
+    public void eventsRoundTrip() throws Exception {
+        ProvenanceEventRecordDTOHolder holder = eventHolder(50);
+        for (ProvenanceBinaryCodec.Compression compression : ProvenanceBinaryCodec.Compression.values()) {
+            ProvenanceBinaryCodec codec = new ProvenanceBinaryCodec(compression);
+            ProvenanceEventRecordDTOHolder decoded = codec.decodeEvents(codec.encodeEvents(holder));
+
+            Assert.assertEquals(holder.getBatchId(), decoded.getBatchId());
+            Assert.assertEquals(holder.getEvents().size(), decoded.getEvents().size());
+            for (int i = 0; i < holder.getEvents().size(); i++) {
+                assertEventEquals(holder.getEvents().get(i), decoded.getEvents().get(i));
+            }
+        }
+    }
+
+    /**
+     * Verify null and empty values are preserved.
+     */
+    @Test
+    public void eventsWithNullValuesRoundTrip() throws Exception {
+        ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+        event.setEventId(5L);
+        event.setChildUuids(new ArrayList<>());
+        event.setAdditionalProperties(null);
+        ProvenanceEventRecordDTOHolder holder = new ProvenanceEventRecordDTOHolder();
+        holder.setEvents(Arrays.asList(event));
+
+        ProvenanceBinaryCodec codec = new ProvenanceBinaryCodec();
+        ProvenanceEventRecordDTOHolder decoded = codec.decodeEvents(codec.encodeEvents(holder));
+        assertEventEquals(event, decoded.getEvents().get(0));
+
+        holder.setEvents(null);
+        Assert.assertNull(codec.decodeEvents(codec.encodeEvents(holder)).getEvents());
+    }
+
+    /**
+     * Verify the additional properties are read back with the same value types.
+     */
+    @Test
+    public void additionalPropertiesKeepTheirType() throws Exception {
+        ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+        event.setEventId(5L);
+        event.setAdditionalProperty("string", "value");
+        event.setAdditionalProperty("integer", -3);
+        event.setAdditionalProperty("long", 1L << 40);
+        event.setAdditionalProperty("double", 1.5d);
+        event.setAdditionalProperty("boolean", true);
+        event.setAdditionalProperty("list", new ArrayList<>(Arrays.asList("a", "b")));
+        event.setAdditionalProperty("null", null);
+        ProvenanceEventRecordDTOHolder holder = new ProvenanceEventRecordDTOHolder();
+        holder.setEvents(Arrays.asList(event));
+
+        ProvenanceBinaryCodec codec = new ProvenanceBinaryCodec();
+        Map<String, Object> decoded = codec.decodeEvents(codec.encodeEvents(holder)).getEvents().get(0).getAdditionalProperties();
+        Assert.assertEquals(event.getAdditionalProperties(), decoded);
+        Assert.assertEquals(Integer.class, decoded.get("integer").getClass());
+        Assert.assertEquals(Long.class, decoded.get("long").getClass());
+        Assert.assertTrue(decoded.containsKey("null"));
+    }
+
+    /**
+     * Verify a value that cannot be serialized is rejected rather than written as a string.
+     */
+    @Test(expected = IOException.class)
+    public void additionalPropertyNotSerializable() throws Exception {
+        ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+        event.setEventId(5L);
+        event.setAdditionalProperty("object", new Object());
+        ProvenanceEventRecordDTOHolder holder = new ProvenanceEventRecordDTOHolder();
+        holder.setEvents(Arrays.asList(event));
+
+        new ProvenanceBinaryCodec().encodeEvents(holder);
+    }
+
+    /**
+     * Verify the aggregated statistics survive a round trip.
+     */
+    @Test
+    public void statsRoundTrip() throws Exception {
+        AggregatedFeedProcessorStatisticsHolder holder = statsHolder();
+        ProvenanceBinaryCodec codec = new ProvenanceBinaryCodec();
+        Object decodedObject = codec.decode(codec.encode(holder));
+        Assert.assertTrue(decodedObject instanceof AggregatedFeedProcessorStatisticsHolder);
+        AggregatedFeedProcessorStatisticsHolder decoded = (AggregatedFeedProcessorStatisticsHolder) decodedObject;
+
+        Assert.assertEquals(holder.getCollectionId(), decoded.getCollectionId());
+        Assert.assertEquals(holder.getMinTime(), decoded.getMinTime());
+        Assert.assertEquals(holder.getMaxTime(), decoded.getMaxTime());
+        Assert.assertEquals(holder.getEventCount().get(), decoded.getEventCount().get());
+        Assert.assertEquals(holder.getMinEventId(), decoded.getMinEventId());
+        Assert.assertEquals(holder.getMaxEventId(), decoded.getMaxEventId());
+        Assert.assertEquals(holder.getFeedStatistics().keySet(), decoded.getFeedStatistics().keySet());
+
+        AggregatedFeedProcessorStatistics feedStats = holder.getFeedStatistics().get("category.feed");
+        AggregatedFeedProcessorStatistics decodedFeedStats = decoded.getFeedStatistics().get("category.feed");
+        Assert.assertEquals(feedStats.getFeedName(), decodedFeedStats.getFeedName());
+        Assert.assertEquals(feedStats.getProcessGroup(), decodedFeedStats.getProcessGroup());
+        Assert.assertEquals(feedStats.getCollectionId(), decodedFeedStats.getCollectionId());
+        Assert.assertEquals(feedStats.getTotalEvents(), decodedFeedStats.getTotalEvents());
+        Assert.assertEquals(feedStats.getMaxEventId(), decodedFeedStats.getMaxEventId());
+        Assert.assertEquals(feedStats.getProcessorStats().keySet(), decodedFeedStats.getProcessorStats().keySet());
+
+        AggregatedProcessorStatistics processorStats = feedStats.getProcessorStats().get("processor-1");
+        AggregatedProcessorStatistics decodedProcessorStats = decodedFeedStats.getProcessorStats().get("processor-1");
+        Assert.assertEquals(processorStats.getProcessorId(), decodedProcessorStats.getProcessorId());
+        Assert.assertEquals(processorStats.getProcessorName(), decodedProcessorStats.getProcessorName());
+        GroupedStats stats = processorStats.getStats();
+        GroupedStats decodedStats = decodedProcessorStats.getStats();
+        Assert.assertEquals(stats.getGroupKey(), decodedStats.getGroupKey());
+        Assert.assertEquals(stats.getMinTime(), decodedStats.getMinTime());
+        Assert.assertEquals(stats.getMaxTime(), decodedStats.getMaxTime());
+        Assert.assertEquals(stats.getTime(), decodedStats.getTime());
+        Assert.assertEquals(stats.getBytesIn(), decodedStats.getBytesIn());
+        Assert.assertEquals(stats.getBytesOut(), decodedStats.getBytesOut());
+        Assert.assertEquals(stats.getDuration(), decodedStats.getDuration());
+        Assert.assertEquals(stats.getTotalCount(), decodedStats.getTotalCount());
+        Assert.assertEquals(stats.getJobsStarted(), decodedStats.getJobsStarted());
+        Assert.assertEquals(stats.getJobsFinished(), decodedStats.getJobsFinished());
+        Assert.assertEquals(stats.getJobsFailed(), decodedStats.getJobsFailed());
+        Assert.assertEquals(stats.getProcessorsFailed(), decodedStats.getProcessorsFailed());
+        Assert.assertEquals(stats.getFlowFilesStarted(), decodedStats.getFlowFilesStarted());
+        Assert.assertEquals(stats.getFlowFilesFinished(), decodedStats.getFlowFilesFinished());
+        Assert.assertEquals(stats.getSuccessfulJobDuration(), decodedStats.getSuccessfulJobDuration());
+        Assert.assertEquals(stats.getJobDuration(), decodedStats.getJobDuration());
+        Assert.assertEquals(stats.getMaxEventId(), decodedStats.getMaxEventId());
+        Assert.assertEquals(stats.getClusterNodeId(), decodedStats.getClusterNodeId());
+        Assert.assertEquals(stats.getClusterNodeAddress(), decodedStats.getClusterNodeAddress());
+    }
+
+    /**
+     * Verify the encoded batch is smaller than the Java serialized batch it replaces.
+     */
+    @Test
+    public void smallerThanJavaSerialization() throws Exception {
+        ProvenanceEventRecordDTOHolder holder = eventHolder(500);
+        int javaBytes = javaSerialize(holder).length;
+        int binaryBytes = new ProvenanceBinaryCodec(ProvenanceBinaryCodec.Compression.NONE).encode(holder).length;
+        int deflateBytes = new ProvenanceBinaryCodec(ProvenanceBinaryCodec.Compression.DEFLATE).encode(holder).length;
+
+        Assert.assertTrue("binary " + binaryBytes + " >= java " + javaBytes, binaryBytes < javaBytes / 2);
+        Assert.assertTrue("deflate " + deflateBytes + " >= binary " + binaryBytes, deflateBytes < binaryBytes);
+    }
+
+    /**
+     * Verify payloads from an unknown format or a newer version are rejected.
+     */
+    @Test
+    public void rejectsUnknownPayloads() throws Exception {
+        ProvenanceBinaryCodec codec = new ProvenanceBinaryCodec();
+        try {
+            codec.decode(javaSerialize(eventHolder(1)));
+            Assert.fail("Expected the java serialized payload to be rejected");
+        } catch (IOException e) {
+            //expected
+        }
+
+        byte[] newerVersion = codec.encode(eventHolder(1));
+        newerVersion[2] = (byte) (ProvenanceBinaryCodec.VERSION + 1);
+        try {
+            codec.decode(newerVersion);
+            Assert.fail("Expected a newer version to be rejected");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    private ProvenanceEventRecordDTOHolder eventHolder(int count) {
+        String jobFlowFileId = UUID.randomUUID().toString();
+        DateTime start = new DateTime(2017, 3, 1, 10, 0, DateTimeZone.UTC);
+        List<ProvenanceEventRecordDTO> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ProvenanceEventRecordDTO event = new ProvenanceEventRecordDTO();
+            event.setId(UUID.randomUUID().toString());
+            event.setEventId(1000L + i);
+            event.setEventTime(start.plusMillis(i * 15));
+            event.setPreviousEventId(i > 0 ? 999L + i : null);
+            event.setPreviousFlowfileId(jobFlowFileId);
+            event.setPreviousEventTime(i > 0 ? start.plusMillis((i - 1) * 15) : null);
+            event.setStartTime(start);
+            event.setEventDuration(15L);
+            event.setEventType(i == 0 ? "CREATE" : "ATTRIBUTES_MODIFIED");
+            event.setFlowFileUuid(UUID.randomUUID().toString());
+            event.setFileSize("1.2 KB");
+            event.setFileSizeBytes(1234L);
+            event.setClusterNodeId("node-1");
+            event.setClusterNodeAddress("localhost:8080");
+            event.setGroupId("a0e1b4f1-015a-1000-b2b4-0e3c8d0a6e5d");
+            event.setComponentId("processor-" + (i % 5));
+            event.setComponentType("UpdateAttribute");
+            event.setComponentName("Update Attribute " + (i % 5));
+            event.setParentUuids(Arrays.asList(jobFlowFileId));
+            event.setChildUuids(i % 10 == 0 ? Arrays.asList(UUID.randomUUID().toString(), UUID.randomUUID().toString()) : null);
+            event.setDetails(i % 7 == 0 ? "Auto-Terminated by success Relationship" : null);
+            event.setSourceConnectionIdentifier("connection-" + (i % 5));
+            event.setInputContentClaimFileSizeBytes(1234L);
+            event.setInputContentClaimFileSize("1.2 KB");
+            event.setOutputContentClaimFileSizeBytes(2345L);
+            event.setOutputContentClaimFileSize("2.3 KB");
+            event.setRelatedRootFlowFiles(new HashSet<>(Arrays.asList(jobFlowFileId)));
+            event.setProcessorType(i % 3 == 0 ? KyloProcessorFlowType.NORMAL_FLOW : KyloProcessorFlowType.WARNING);
+            event.setJobFlowFileId(jobFlowFileId);
+            event.setJobEventId(1000L);
+            event.setFeedName("category.feed");
+            event.setFeedProcessGroupId("b1f2c5a2-015a-1000-c3c5-1f4d9e1b7f6e");
+            event.setBatchId("batch-" + i);
+            event.setRelationship("success");
+            Map<String, String> updated = new HashMap<>();
+            updated.put("filename", "file-" + i + ".csv");
+            updated.put("path", "./");
+            event.setUpdatedAttributes(updated);
+            event.setPreviousAttributes(new HashMap<>(updated));
+            event.setAttributeMap(new HashMap<>(updated));
+            event.setAdditionalProperty("count", String.valueOf(i));
+            event.setIsStartOfJob(i == 0);
+            event.setIsEndOfJob(i == count - 1);
+            event.setIsFinalJobEvent(i == count - 1);
+            event.setIsBatchJob(true);
+            event.setHasFailedEvents(i % 11 == 0);
+            event.setStartOfFlowFile(i % 2 == 0);
+            event.setIsFailure(i % 13 == 0);
+            event.setStream(i % 17 == 0);
+            events.add(event);
+        }
+        ProvenanceEventRecordDTOHolder holder = new ProvenanceEventRecordDTOHolder();
+        holder.setEvents(events);
+        return holder;
+    }
+
+    private AggregatedFeedProcessorStatisticsHolder statsHolder() {
+        DateTime time = new DateTime(2017, 3, 1, 10, 0, DateTimeZone.forID("America/Chicago"));
+        GroupedStats stats = new GroupedStats();
+        stats.setGroupKey("collection-1");
+        stats.setMinTime(time);
+        stats.setMaxTime(time.plusSeconds(30));
+        stats.setTime(time);
+        stats.setBytesIn(100L);
+        stats.setBytesOut(200L);
+        stats.setDuration(3000L);
+        stats.setTotalCount(20L);
+        stats.setJobsStarted(2L);
+        stats.setJobsFinished(1L);
+        stats.setJobsFailed(1L);
+        stats.setProcessorsFailed(3L);
+        stats.setFlowFilesStarted(4L);
+        stats.setFlowFilesFinished(5L);
+        stats.setSuccessfulJobDuration(6000L);
+        stats.setJobDuration(7000L);
+        stats.setMaxEventId(1020L);
+        stats.setClusterNodeId("node-1");
+        stats.setClusterNodeAddress("localhost:8080");
+
+        AggregatedProcessorStatistics processorStats = new AggregatedProcessorStatistics("processor-1", "Update Attribute", "collection-1");
+        processorStats.setStats(stats);
+        AggregatedFeedProcessorStatistics feedStats = new AggregatedFeedProcessorStatistics("category.feed", "collection-1");
+        feedStats.setProcessGroup("b1f2c5a2-015a-1000-c3c5-1f4d9e1b7f6e");
+        feedStats.setTotalEvents(20L);
+        feedStats.setMaxEventId(1020L);
+        feedStats.getProcessorStats().put("processor-1", processorStats);
+
+        AggregatedFeedProcessorStatisticsHolder holder = new AggregatedFeedProcessorStatisticsHolder();
+        holder.setMinTime(time);
+        holder.setMaxTime(time.plusSeconds(30));
+        holder.setEventCount(new AtomicLong(20L));
+        holder.setMaxEventId(1020L);
+        holder.getFeedStatistics().put("category.feed", feedStats);
+        return holder;
+    }
+
+    private void assertEventEquals(ProvenanceEventRecordDTO expected, ProvenanceEventRecordDTO actual) {
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getEventId(), actual.getEventId());
+        Assert.assertEquals(expected.getEventTime(), actual.getEventTime());
+        Assert.assertEquals(expected.getPreviousEventId(), actual.getPreviousEventId());
+        Assert.assertEquals(expected.getPreviousFlowfileId(), actual.getPreviousFlowfileId());
+        Assert.assertEquals(expected.getPreviousEventTime(), actual.getPreviousEventTime());
+        Assert.assertEquals(expected.getStartTime(), actual.getStartTime());
+        Assert.assertEquals(expected.getEventDuration(), actual.getEventDuration());
+        Assert.assertEquals(expected.getEventType(), actual.getEventType());
+        Assert.assertEquals(expected.getFlowFileUuid(), actual.getFlowFileUuid());
+        Assert.assertEquals(expected.getFileSize(), actual.getFileSize());
+        Assert.assertEquals(expected.getFileSizeBytes(), actual.getFileSizeBytes());
+        Assert.assertEquals(expected.getClusterNodeId(), actual.getClusterNodeId());
+        Assert.assertEquals(expected.getClusterNodeAddress(), actual.getClusterNodeAddress());
+        Assert.assertEquals(expected.getGroupId(), actual.getGroupId());
+        Assert.assertEquals(expected.getComponentId(), actual.getComponentId());
+        Assert.assertEquals(expected.getComponentType(), actual.getComponentType());
+        Assert.assertEquals(expected.getComponentName(), actual.getComponentName());
+        Assert.assertEquals(expected.getParentUuids(), actual.getParentUuids());
+        Assert.assertEquals(expected.getChildUuids(), actual.getChildUuids());
+        Assert.assertEquals(expected.getDetails(), actual.getDetails());
+        Assert.assertEquals(expected.getSourceConnectionIdentifier(), actual.getSourceConnectionIdentifier());
+        Assert.assertEquals(expected.getInputContentClaimFileSizeBytes(), actual.getInputContentClaimFileSizeBytes());
+        Assert.assertEquals(expected.getInputContentClaimFileSize(), actual.getInputContentClaimFileSize());
+        Assert.assertEquals(expected.getOutputContentClaimFileSizeBytes(), actual.getOutputContentClaimFileSizeBytes());
+        Assert.assertEquals(expected.getOutputContentClaimFileSize(), actual.getOutputContentClaimFileSize());
+        Assert.assertEquals(expected.getRelatedRootFlowFiles(), actual.getRelatedRootFlowFiles());
+        Assert.assertEquals(expected.getProcessorType(), actual.getProcessorType());
+        Assert.assertEquals(expected.getJobFlowFileId(), actual.getJobFlowFileId());
+        Assert.assertEquals(expected.getJobEventId(), actual.getJobEventId());
+        Assert.assertEquals(expected.getFeedName(), actual.getFeedName());
+        Assert.assertEquals(expected.getFeedProcessGroupId(), actual.getFeedProcessGroupId());
+        Assert.assertEquals(expected.getBatchId(), actual.getBatchId());
+        Assert.assertEquals(expected.getRelationship(), actual.getRelationship());
+        Assert.assertEquals(expected.getUpdatedAttributes(), actual.getUpdatedAttributes());
+        Assert.assertEquals(expected.getPreviousAttributes(), actual.getPreviousAttributes());
+        Assert.assertEquals(expected.getAdditionalProperties(), actual.getAdditionalProperties());
+        Assert.assertEquals(expected.getAttributeMap(), actual.getAttributeMap());
+        Assert.assertEquals(expected.isStartOfJob(), actual.isStartOfJob());
+        Assert.assertEquals(expected.isEndOfJob(), actual.isEndOfJob());
+        Assert.assertEquals(expected.isFinalJobEvent(), actual.isFinalJobEvent());
+        Assert.assertEquals(expected.isBatchJob(), actual.isBatchJob());
+        Assert.assertEquals(expected.isHasFailedEvents(), actual.isHasFailedEvents());
+        Assert.assertEquals(expected.isStartOfFlowFile(), actual.isStartOfFlowFile());
+        Assert.assertEquals(expected.isFailure(), actual.isFailure());
+        Assert.assertEquals(expected.isStream(), actual.isStream());
+    }
+
+    private byte[] javaSerialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+}
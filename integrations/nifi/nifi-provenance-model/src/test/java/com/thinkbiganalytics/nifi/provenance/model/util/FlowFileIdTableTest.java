@@ -0,0 +1,146 @@
+package com.thinkbiganalytics.nifi.provenance.model.util;
+
+/*-
+ * #%L
+ * thinkbig-nifi-provenance-model
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Test the {@link FlowFileIdTable} against a HashMap
+ */
+public class FlowFileIdTableTest {
+
+    @After
+    public void resetOffHeap() {
+        FlowFileGraphMemory.setOffHeapThresholdBytes(-1L);
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashMap() {
+        Random random = new Random(7L);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        ids.add("not-a-uuid");
+        ids.add(UUID.randomUUID().toString().toUpperCase());
+        ids.add(new UUID(0L, 0L).toString());
+
+        FlowFileIdTable table = new FlowFileIdTable(1);
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            String id = ids.get(random.nextInt(ids.size()));
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(id) != null, table.remove(id));
+            } else {
+                long value = random.nextLong();
+                expected.put(id, value);
+                table.put(id, value);
+            }
+            if (i % 1000 == 0) {
+                assertSame(expected, table);
+            }
+        }
+        assertSame(expected, table);
+    }
+
+    @Test
+    public void testSetAndRemoveIdsWithValue() {
+        FlowFileIdTable set = new FlowFileIdTable(0);
+        String id = UUID.randomUUID().toString();
+        Assert.assertTrue(set.add(id));
+        Assert.assertFalse(set.add(id));
+        Assert.assertTrue(set.contains(id));
+        Assert.assertEquals(1, set.size());
+
+        FlowFileIdTable table = new FlowFileIdTable(1);
+        for (int i = 0; i < 1000; i++) {
+            table.put(UUID.randomUUID().toString(), i % 3);
+        }
+        table.put("other", 1L);
+        Assert.assertEquals(334, table.removeIdsWithValue(1L));
+        Assert.assertEquals(667, table.size());
+        table.forEachId(remaining -> Assert.assertNotEquals(1L, table.get(remaining, 0, -1L)));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        FlowFileIdTable table = new FlowFileIdTable(2);
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            String id = UUID.randomUUID().toString();
+            table.put(id, i, -i);
+            expected.put(id, (long) i);
+        }
+        table.put("other", 5L, -5L);
+        expected.put("other", 5L);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(table);
+        }
+        FlowFileIdTable copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (FlowFileIdTable) in.readObject();
+        }
+        Assert.assertEquals(expected.size(), copy.size());
+        expected.forEach((id, value) -> {
+            Assert.assertEquals(value.longValue(), copy.get(id, 0, -1L));
+            Assert.assertEquals(-value, copy.get(id, 1, -1L));
+        });
+    }
+
+    @Test
+    public void testLargeTablesSpillOffHeap() {
+        FlowFileGraphMemory.setOffHeapThresholdBytes(64 * 1024L);
+        FlowFileIdTable table = new FlowFileIdTable(0);
+        for (int i = 0; i < 100; i++) {
+            table.add(UUID.randomUUID().toString());
+        }
+        Assert.assertFalse(table.isOffHeap());
+        for (int i = 0; i < 10000; i++) {
+            table.add(UUID.randomUUID().toString());
+        }
+        Assert.assertTrue(table.isOffHeap());
+        Assert.assertEquals(10100, table.size());
+    }
+
+    private void assertSame(Map<String, Long> expected, FlowFileIdTable table) {
+        Assert.assertEquals(expected.size(), table.size());
+        expected.forEach((id, value) -> {
+            Assert.assertTrue(table.contains(id));
+            Assert.assertEquals(value.longValue(), table.get(id, 0, -1L));
+        });
+        table.forEachId(id -> Assert.assertTrue(expected.containsKey(id)));
+    }
+}
@@ -103,7 +103,14 @@ public class DefaultNiFiFlowVisitorClient implements NiFiFlowVisitorClient {
     }
 
     public NifiFlowProcessGroup getFeedFlow(String processGroupId, NifiConnectionOrderVisitorCache cache) {
-        NifiVisitableProcessGroup visitableGroup = getFlowOrder(processGroupId, cache);
+        return toFeedFlow(getFlowOrder(processGroupId, cache));
+    }
+
+    public NifiFlowProcessGroup getFeedFlow(ProcessGroupDTO processGroup, NifiConnectionOrderVisitorCache cache) {
+        return toFeedFlow(getFlowOrder(processGroup, cache));
+    }
+
+    private NifiFlowProcessGroup toFeedFlow(NifiVisitableProcessGroup visitableGroup) {
         NifiFlowProcessGroup flow = new NifiFlowBuilder().build(visitableGroup);
         String categoryName = flow.getParentGroupName();
         String feedName = flow.getName();
@@ -1177,6 +1177,10 @@ public class LegacyNifiRestClient implements NiFiFlowVisitorClient {
         return client.flows().getFeedFlow(processGroupId);
     }
 
+    public NifiFlowProcessGroup getFeedFlow(ProcessGroupDTO processGroup, NifiConnectionOrderVisitorCache cache) throws NifiComponentNotFoundException {
+        return client.flows().getFeedFlow(processGroup, cache);
+    }
+
     public Set<ProcessorDTO> getProcessorsForFlow(String processGroupId) throws NifiComponentNotFoundException {
         return client.flows().getProcessorsForFlow(processGroupId);
     }
@@ -44,6 +44,15 @@ public interface NiFiFlowVisitorClient {
 
     NifiFlowProcessGroup getFeedFlow(String processGroupId);
 
+    /**
+     * Walks a feed process group that has already been fetched with its contents, without fetching it again
+     *
+     * @param processGroup the feed process group, with its contents
+     * @param cache        a cache of the process groups already visited, shared by the walks of other feeds
+     * @return the graph of connected processors in the feed
+     */
+    NifiFlowProcessGroup getFeedFlow(ProcessGroupDTO processGroup, NifiConnectionOrderVisitorCache cache);
+
 
     NifiFlowProcessGroup getFeedFlowForCategoryAndFeed(String categoryAndFeedName);
 
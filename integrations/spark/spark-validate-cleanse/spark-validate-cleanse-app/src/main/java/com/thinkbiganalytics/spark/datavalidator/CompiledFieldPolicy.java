@@ -0,0 +1,166 @@
+package com.thinkbiganalytics.spark.datavalidator;
+
+/*-
+ * #%L
+ * thinkbig-spark-validate-cleanse-app
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.policy.FieldPolicy;
+import com.thinkbiganalytics.policy.standardization.AcceptsEmptyValues;
+import com.thinkbiganalytics.policy.standardization.StandardizationPolicy;
+import com.thinkbiganalytics.policy.validation.ValidationPolicy;
+import com.thinkbiganalytics.policy.validation.ValidationResult;
+import com.thinkbiganalytics.spark.util.InvalidFormatException;
+import com.thinkbiganalytics.spark.validation.HCatDataType;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.List;
+
+/**
+ * The standardization and validation policies of a column, resolved once so each value can be checked without looking them up again.
+ * The parameter type of each validator is resolved up front, and the failure results are created once and shared by all values that fail the same way.
+ */
+class CompiledFieldPolicy {
+
+    private static final StandardizationPolicy[] NO_STANDARDIZERS = new StandardizationPolicy[0];
+    private static final CompiledValidator[] NO_VALIDATORS = new CompiledValidator[0];
+
+    private final HCatDataType dataType;
+    private final boolean nullable;
+    private final boolean skipSchemaValidation;
+    private final StandardizationPolicy[] standardizers;
+    private final boolean[] acceptsEmptyValues;
+    private final CompiledValidator[] validators;
+    private final ValidationResult nullResult;
+    private final ValidationResult incompatibleResult;
+
+    /**
+     * @param fieldPolicy       the policies of the column
+     * @param dataType          the target data type of the column
+     * @param validator         the validator resolving the type of value each validation policy accepts
+     */
+    CompiledFieldPolicy(FieldPolicy fieldPolicy, HCatDataType dataType, Validator validator) {
+        this.dataType = dataType;
+        this.nullable = fieldPolicy.isNullable();
+        this.skipSchemaValidation = fieldPolicy.shouldSkipSchemaValidation();
+        this.nullResult = ValidationResult.failField("null", dataType.getName(), "Cannot be null");
+        this.incompatibleResult = incompatible(dataType);
+
+        List<StandardizationPolicy> standardizationPolicies = fieldPolicy.getStandardizationPolicies();
+        this.standardizers = standardizationPolicies != null ? standardizationPolicies.toArray(NO_STANDARDIZERS) : NO_STANDARDIZERS;
+        this.acceptsEmptyValues = new boolean[this.standardizers.length];
+        for (int i = 0; i < this.standardizers.length; i++) {
+            this.acceptsEmptyValues[i] = this.standardizers[i] instanceof AcceptsEmptyValues;
+        }
+
+        List<ValidationPolicy> validationPolicies = fieldPolicy.getValidators();
+        if (validationPolicies != null) {
+            this.validators = new CompiledValidator[validationPolicies.size()];
+            for (int i = 0; i < this.validators.length; i++) {
+                ValidationPolicy policy = validationPolicies.get(i);
+                this.validators[i] = new CompiledValidator(policy, dataType, validator.resolveValidatorParamType(policy), this.incompatibleResult);
+            }
+        } else {
+            this.validators = NO_VALIDATORS;
+        }
+    }
+
+    private static ValidationResult incompatible(HCatDataType dataType) {
+        return ValidationResult.failField("incompatible", dataType.getName(), "Not convertible to " + dataType.getNativeType());
+    }
+
+    HCatDataType getDataType() {
+        return dataType;
+    }
+
+    /**
+     * Applies the standardization policies
+     */
+    String standardize(String value) {
+        String newValue = value;
+        boolean isEmpty = StringUtils.isEmpty(value);
+        for (int i = 0; i < standardizers.length; i++) {
+            if (isEmpty && !acceptsEmptyValues[i]) {
+                continue;
+            }
+            newValue = standardizers[i].convertValue(newValue);
+        }
+        return newValue;
+    }
+
+    /**
+     * Perform validation using both schema validation the validation policies
+     *
+     * @return {@link Validator#VALID_RESULT} if the value is valid, otherwise the reason it is invalid
+     */
+    ValidationResult validate(String value) {
+        if (StringUtils.isEmpty(value)) {
+            if (!nullable) {
+                return nullResult;
+            }
+        } else {
+            // Verify new value is compatible with the target Hive schema e.g. integer, double (unless checking is disabled)
+            if (!skipSchemaValidation && !dataType.isValueConvertibleToType(value)) {
+                return incompatibleResult;
+            }
+
+            for (CompiledValidator validator : validators) {
+                ValidationResult result = validator.validate(value);
+                if (result != Validator.VALID_RESULT) {
+                    return result;
+                }
+            }
+        }
+        return Validator.VALID_RESULT;
+    }
+
+    /**
+     * A validation policy along with the type of value it accepts
+     */
+    static class CompiledValidator {
+
+        private final ValidationPolicy validator;
+        private final HCatDataType dataType;
+        private final boolean nativeParam;
+        private final ValidationResult ruleResult;
+        private final ValidationResult incompatibleResult;
+
+        CompiledValidator(ValidationPolicy validator, HCatDataType dataType, Class paramType) {
+            this(validator, dataType, paramType, incompatible(dataType));
+        }
+
+        private CompiledValidator(ValidationPolicy validator, HCatDataType dataType, Class paramType, ValidationResult incompatibleResult) {
+            this.validator = validator;
+            this.dataType = dataType;
+            this.nativeParam = paramType != String.class;
+            this.ruleResult = ValidationResult.failFieldRule("rule", dataType.getName(), validator.getClass().getSimpleName(), "Rule violation");
+            this.incompatibleResult = incompatibleResult;
+        }
+
+        @SuppressWarnings("unchecked")
+        ValidationResult validate(String value) {
+            try {
+                Object nativeValue = nativeParam ? dataType.toNativeValue(value) : value;
+                return validator.validate(nativeValue) ? Validator.VALID_RESULT : ruleResult;
+            } catch (InvalidFormatException | ClassCastException e) {
+                return incompatibleResult;
+            }
+        }
+    }
+}
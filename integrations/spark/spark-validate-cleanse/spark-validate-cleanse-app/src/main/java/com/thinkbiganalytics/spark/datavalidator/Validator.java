@@ -31,7 +31,6 @@ import com.thinkbiganalytics.policy.validation.ValidationResult;
 import com.thinkbiganalytics.spark.DataSet;
 import com.thinkbiganalytics.spark.SparkContextService;
 import com.thinkbiganalytics.spark.policy.FieldPolicyLoader;
-import com.thinkbiganalytics.spark.util.InvalidFormatException;
 import com.thinkbiganalytics.spark.validation.HCatDataType;
 
 import org.apache.commons.lang.StringUtils;
@@ -76,6 +75,7 @@ public class Validator implements Serializable {
     Valid validation result
      */
     protected static ValidationResult VALID_RESULT = new ValidationResult();
+    private static final ValidationResult EMPTY_ROW_RESULT = ValidationResult.failRow("empty", "Row is empty");
     private static String REJECT_REASON_COL = "dlp_reject_reason";
     private static String VALID_INVALID_COL = "dlp_valid";
     private static String PROCESSING_DTTM_COL = "processing_dttm";
@@ -102,6 +102,11 @@ public class Validator implements Serializable {
     Cache for performance. Validators accept different parameters (numeric,string, etc) so we need to resolve the type using reflection
      */
     private Map<Class, Class> validatorParamType = new HashMap<>();
+    /*
+    Policies compiled for each column. The validator is deserialized for each task so these are compiled once per partition and reused for each of its rows.
+     */
+    private transient CompiledFieldPolicy[] compiledPolicies;
+    private transient List<ValidationResult> rowResults;
     @Autowired
     private SparkContextService scs;
     @Autowired
@@ -366,18 +371,23 @@ public class Validator implements Serializable {
      */
 
     public Row cleanseAndValidateRow(Row row) {
+        if (compiledPolicies == null) {
+            compiledPolicies = compilePolicies();
+            rowResults = new ArrayList<>();
+        }
         int nulls = 1;
 
         // Create placeholder for the new values plus two columns for validation and reject_reason
         Object[] newValues = new Object[schema.length + 2];
         boolean valid = true;
         String sbRejectReason = null;
-        List<ValidationResult> results = null;
+        List<ValidationResult> results = rowResults;
+        results.clear();
         // Iterate through columns to cleanse and validate
         for (int idx = 0; idx < schema.length; idx++) {
             ValidationResult result = VALID_RESULT;
-            FieldPolicy fieldPolicy = policies[idx];
-            HCatDataType dataType = schema[idx];
+            CompiledFieldPolicy fieldPolicy = compiledPolicies[idx];
+            HCatDataType dataType = fieldPolicy.getDataType();
 
             // Extract the value (allowing for null or missing field for odd-ball data)
             Object val = (idx == row.length() || row.isNullAt(idx) ? null : row.get(idx));
@@ -389,19 +399,18 @@ public class Validator implements Serializable {
                 }
                 newValues[idx] = val;
             } else {
-                String fieldValue = (val != null ? val.toString() : null);
+                String fieldValue = (String) val;
                 if (StringUtils.isEmpty(fieldValue)) {
                     nulls++;
                 }
                 // Perform cleansing operations
-                fieldValue = standardizeField(fieldPolicy, fieldValue);
+                fieldValue = fieldPolicy.standardize(fieldValue);
                 newValues[idx] = fieldValue;
 
                 // Record results in the appended columns
-                result = validateField(fieldPolicy, dataType, fieldValue);
+                result = fieldPolicy.validate(fieldValue);
                 if (!result.isValid()) {
                     valid = false;
-                    results = (results == null ? new Vector<ValidationResult>() : results);
                     results.add(result);
                     // Record fact that we there was an invalid column
                     accumList.get(idx).add(1);
@@ -411,12 +420,11 @@ public class Validator implements Serializable {
         // Return success unless all values were null.  That would indicate a blank line in the file.
         if (nulls >= schema.length) {
             valid = false;
-            results = (results == null ? new Vector<ValidationResult>() : results);
-            results.add(ValidationResult.failRow("empty", "Row is empty"));
+            results.add(EMPTY_ROW_RESULT);
         }
 
-        // Convert to reject reasons to JSON
-        sbRejectReason = toJSONArray(results);
+        // Convert to reject reasons to JSON only if the row failed
+        sbRejectReason = (valid ? "" : toJSONArray(results));
 
         // Record the results in the appended columns, move processing partition value last
         newValues[schema.length + 1] = newValues[schema.length - 1];
@@ -427,77 +435,48 @@ public class Validator implements Serializable {
 
     private String toJSONArray(List<ValidationResult> results) {
         // Convert to reject reasons to JSON
-        StringBuffer sb = null;
-        if (results != null) {
-            sb = new StringBuffer();
-            for (ValidationResult result : results) {
-                if (sb.length() > 0) {
-                    sb.append(",");
-                } else {
-                    sb.append("[");
-                }
-                sb.append(result.toJSON());
-            }
-            sb.append("]");
+        if (results.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (ValidationResult result : results) {
+            sb.append(sb.length() > 0 ? "," : "[");
+            sb.append(result.toJSON());
         }
-        return (sb == null ? "" : sb.toString());
+        return sb.append("]").toString();
     }
 
     /**
-     * Perform validation using both schema validation the validation policies
+     * Compiles the policies of each column for validating rows
      */
-    protected ValidationResult validateField(FieldPolicy fieldPolicy, HCatDataType fieldDataType, String fieldValue) {
-
-        boolean isEmpty = (StringUtils.isEmpty(fieldValue));
-        if (isEmpty) {
-            if (!fieldPolicy.isNullable()) {
-                return ValidationResult.failField("null", fieldDataType.getName(), "Cannot be null");
-            }
-        } else {
+    CompiledFieldPolicy[] compilePolicies() {
+        CompiledFieldPolicy[] compiled = new CompiledFieldPolicy[schema.length];
+        for (int idx = 0; idx < schema.length; idx++) {
+            compiled[idx] = new CompiledFieldPolicy(policies[idx], schema[idx], this);
+        }
+        return compiled;
+    }
 
-            // Verify new value is compatible with the target Hive schema e.g. integer, double (unless checking is disabled)
-            if (!fieldPolicy.shouldSkipSchemaValidation()) {
-                if (!fieldDataType.isValueConvertibleToType(fieldValue)) {
-                    return ValidationResult
-                        .failField("incompatible", fieldDataType.getName(),
-                                   "Not convertible to " + fieldDataType.getNativeType());
-                }
-            }
+    /**
+     * Sets the target schema and the policy of each of its columns, along with the accumulators counting the invalid values of each column.
+     */
+    void setSchema(HCatDataType[] schema, FieldPolicy[] policies, List<Accumulator<Integer>> accumulators) {
+        this.schema = schema;
+        this.policies = policies;
+        this.accumList.clear();
+        this.accumList.addAll(accumulators);
+        this.compiledPolicies = null;
+    }
 
-            // Validate type using provided validators
-            List<ValidationPolicy> validators = fieldPolicy.getValidators();
-            if (validators != null) {
-                for (ValidationPolicy validator : validators) {
-                    ValidationResult result = validateValue(validator, fieldDataType, fieldValue);
-                    if (result != VALID_RESULT) {
-                        return result;
-                    }
-                }
-            }
-        }
-        return VALID_RESULT;
+    /**
+     * Perform validation using both schema validation the validation policies
+     */
+    protected ValidationResult validateField(FieldPolicy fieldPolicy, HCatDataType fieldDataType, String fieldValue) {
+        return new CompiledFieldPolicy(fieldPolicy, fieldDataType, this).validate(fieldValue);
     }
 
     protected ValidationResult validateValue(ValidationPolicy validator, HCatDataType fieldDataType, String fieldValue) {
-        try {
-            // Resolve the type of parameter required by the validator. A cache is used to avoid cost of reflection.
-            Class expectedParamClazz = resolveValidatorParamType(validator);
-            Object nativeValue = fieldValue;
-            if (expectedParamClazz != String.class) {
-                nativeValue = fieldDataType.toNativeValue(fieldValue);
-            }
-            if (!validator.validate(nativeValue)) {
-                return ValidationResult
-                    .failFieldRule("rule", fieldDataType.getName(), validator.getClass().getSimpleName(),
-                                   "Rule violation");
-            }
-            return VALID_RESULT;
-        } catch (InvalidFormatException | ClassCastException e) {
-            return ValidationResult
-                .failField("incompatible", fieldDataType.getName(),
-                           "Not convertible to " + fieldDataType.getNativeType());
-        }
-
+        return new CompiledFieldPolicy.CompiledValidator(validator, fieldDataType, resolveValidatorParamType(validator)).validate(fieldValue);
     }
 
     /* Resolve the type of param required by the validator. A cache is used to avoid cost of reflection */
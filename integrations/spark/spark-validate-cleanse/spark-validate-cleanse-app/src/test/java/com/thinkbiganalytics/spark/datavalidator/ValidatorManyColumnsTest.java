@@ -0,0 +1,143 @@
+package com.thinkbiganalytics.spark.datavalidator;
+
+/*-
+ * #%L
+ * thinkbig-spark-validate-cleanse-app
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.policy.FieldPolicy;
+import com.thinkbiganalytics.policy.FieldPolicyBuilder;
+import com.thinkbiganalytics.policy.standardization.SimpleRegexReplacer;
+import com.thinkbiganalytics.policy.standardization.StandardizationPolicy;
+import com.thinkbiganalytics.policy.standardization.UppercaseStandardizer;
+import com.thinkbiganalytics.policy.validation.LengthValidator;
+import com.thinkbiganalytics.policy.validation.NotNullValidator;
+import com.thinkbiganalytics.policy.validation.RangeValidator;
+import com.thinkbiganalytics.policy.validation.ValidationPolicy;
+import com.thinkbiganalytics.spark.validation.HCatDataType;
+
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks {@link Validator#cleanseAndValidateRow(Row)} over synthetic rows of many columns
+ */
+public class ValidatorManyColumnsTest {
+
+    private static final int COLUMNS = 50;
+
+    /**
+     * One in this many rows has an out of range value
+     */
+    private static final int INVALID_EVERY = 20;
+
+    @Test
+    public void testCleanseAndValidateRows() {
+        Validator validator = createValidator();
+
+        for (int i = 0; i < 200; i++) {
+            Row result = validator.cleanseAndValidateRow(row(i));
+            boolean valid = i % INVALID_EVERY != 0;
+
+            assertEquals(COLUMNS + 3, result.length());
+            assertEquals("row " + i, valid ? "1" : "0", result.get(COLUMNS));
+            assertEquals(valid, "".equals(result.get(COLUMNS + 1)));
+            assertEquals("20001", result.get(COLUMNS + 2));
+            assertEquals("VALUE" + (i + 1) % 97, result.get(1));
+            assertEquals("55501" + (i % 100), result.get(4));
+            assertEquals(Double.toString((i * 31 + 2) / 7.0), result.get(2));
+        }
+    }
+
+    private Validator createValidator() {
+        Validator validator = new Validator();
+        HCatDataType[] schema = new HCatDataType[COLUMNS + 1];
+        FieldPolicy[] policies = new FieldPolicy[COLUMNS + 1];
+        for (int col = 0; col < COLUMNS; col++) {
+            schema[col] = HCatDataType.createFromDataType("col" + col, dataType(col));
+            policies[col] = policy(col);
+        }
+        schema[COLUMNS] = HCatDataType.createFromDataType("processing_dttm", "string");
+        policies[COLUMNS] = FieldPolicyBuilder.SKIP_VALIDATION;
+        validator.setSchema(schema, policies, ValidatorTest.createAccumulators(COLUMNS + 1));
+        return validator;
+    }
+
+    private String dataType(int col) {
+        switch (col % 5) {
+            case 0:
+                return "int";
+            case 2:
+                return "double";
+            default:
+                return "string";
+        }
+    }
+
+    private FieldPolicy policy(int col) {
+        ValidationPolicy validator = null;
+        StandardizationPolicy standardizer = null;
+        switch (col % 5) {
+            case 0:
+                validator = new RangeValidator(0, 1000);
+                break;
+            case 1:
+                validator = new LengthValidator(1, 20);
+                standardizer = UppercaseStandardizer.instance();
+                break;
+            case 3:
+                validator = new NotNullValidator(false, true);
+                break;
+            case 4:
+                standardizer = new SimpleRegexReplacer("-", "");
+                break;
+            default:
+                break;
+        }
+        return new FieldPolicy("many_columns", "col" + col, "col" + col, false, true,
+                               validator != null ? Collections.singletonList(validator) : Collections.<ValidationPolicy>emptyList(),
+                               standardizer != null ? Collections.singletonList(standardizer) : Collections.<StandardizationPolicy>emptyList(), false, 0);
+    }
+
+    private Row row(int i) {
+        Object[] values = new Object[COLUMNS + 1];
+        for (int col = 0; col < COLUMNS; col++) {
+            switch (col % 5) {
+                case 0:
+                    values[col] = Integer.toString(col == 0 && i % INVALID_EVERY == 0 ? 5000 : (i + col) % 1000);
+                    break;
+                case 2:
+                    values[col] = Double.toString((i * 31 + col) / 7.0);
+                    break;
+                case 4:
+                    values[col] = "555-01-" + (i % 100);
+                    break;
+                default:
+                    values[col] = "value" + (i + col) % 97;
+                    break;
+            }
+        }
+        values[COLUMNS] = "20001";
+        return RowFactory.create(values);
+    }
+}
@@ -22,6 +22,7 @@ package com.thinkbiganalytics.spark.datavalidator;
 
 import com.thinkbiganalytics.policy.FieldPoliciesJsonTransformer;
 import com.thinkbiganalytics.policy.FieldPolicy;
+import com.thinkbiganalytics.policy.FieldPolicyBuilder;
 import com.thinkbiganalytics.policy.standardization.SimpleRegexReplacer;
 import com.thinkbiganalytics.policy.standardization.StandardizationPolicy;
 import com.thinkbiganalytics.policy.validation.NotNullValidator;
@@ -30,6 +31,10 @@ import com.thinkbiganalytics.policy.validation.ValidationPolicy;
 import com.thinkbiganalytics.policy.validation.ValidationResult;
 import com.thinkbiganalytics.spark.validation.HCatDataType;
 
+import org.apache.spark.Accumulator;
+import org.apache.spark.AccumulatorParam;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -37,6 +42,8 @@ import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -130,6 +137,73 @@ public class ValidatorTest {
         return validator.validateValue(validatorPolicy, HCatDataType.createFromDataType("field1", dataType), value);
     }
 
+    @Test
+    public void testCleanseAndValidateRow() {
+        List<Accumulator<Integer>> accumulators = createAccumulators(3);
+        FieldPolicy namePolicy = new FieldPolicy("emp", "name", "name", false, false, Collections.<ValidationPolicy>emptyList(),
+                                                 Collections.<StandardizationPolicy>singletonList(new SimpleRegexReplacer("(?i)foo", "bar")), false, 0);
+        FieldPolicy agePolicy = new FieldPolicy("emp", "age", "age", false, true, Collections.<ValidationPolicy>singletonList(new RangeValidator(1, 100)),
+                                                Collections.<StandardizationPolicy>emptyList(), false, 0);
+        validator.setSchema(new HCatDataType[]{HCatDataType.createFromDataType("name", "string"), HCatDataType.createFromDataType("age", "int"),
+                                               HCatDataType.createFromDataType("processing_dttm", "string")},
+                            new FieldPolicy[]{namePolicy, agePolicy, FieldPolicyBuilder.SKIP_VALIDATION}, accumulators);
+
+        Row valid = validator.cleanseAndValidateRow(RowFactory.create("afoo", "50", "20001"));
+        assertEquals(Arrays.asList("abar", "50", "1", "", "20001"), rowValues(valid));
+
+        Row invalid = validator.cleanseAndValidateRow(RowFactory.create("foo", "500", "20001"));
+        assertEquals(Arrays.asList("bar", "500", "0", "[{\"scope\":\"field\",\"field\":\"age\",\"type\":\"rule\",\"rule\":\"RangeValidator\",\"reason\":\"Rule violation\"}]", "20001"),
+                     rowValues(invalid));
+        assertEquals(Integer.valueOf(1), accumulators.get(1).localValue());
+
+        Row empty = validator.cleanseAndValidateRow(RowFactory.create("", null, "20001"));
+        assertEquals("0", empty.get(2));
+        assertEquals("[{\"scope\":\"field\",\"field\":\"name\",\"type\":\"null\",\"reason\":\"Cannot be null\"},"
+                     + "{\"scope\":\"row\",\"type\":\"empty\",\"reason\":\"Row is empty\"}]", empty.get(3));
+
+        // Results of a failed row are not carried over to the next one
+        valid = validator.cleanseAndValidateRow(RowFactory.create("name", "1", "20001"));
+        assertEquals("1", valid.get(2));
+        assertEquals("", valid.get(3));
+    }
+
+    static List<Accumulator<Integer>> createAccumulators(int count) {
+        List<Accumulator<Integer>> accumulators = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            accumulators.add(new Accumulator<Integer>(0, new IntegerAccumulatorParam()));
+        }
+        return accumulators;
+    }
+
+    private List<Object> rowValues(Row row) {
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < row.length(); i++) {
+            values.add(row.get(i));
+        }
+        return values;
+    }
+
+    /**
+     * Sums integers without needing a Spark context
+     */
+    static class IntegerAccumulatorParam implements AccumulatorParam<Integer> {
+
+        @Override
+        public Integer addAccumulator(Integer t1, Integer t2) {
+            return t1 + t2;
+        }
+
+        @Override
+        public Integer addInPlace(Integer r1, Integer r2) {
+            return r1 + r2;
+        }
+
+        @Override
+        public Integer zero(Integer initialValue) {
+            return 0;
+        }
+    }
+
     @Test
     public void testPolicyMap() {
         String fieldPolicyJson = "[{\"profile\":true,\"index\":false,\"fieldName\":\"fieldA\",\"feedFieldName\":\"fieldA\",\"standardization\":null,\"validation\":[{\"name\":\"Not Null\","
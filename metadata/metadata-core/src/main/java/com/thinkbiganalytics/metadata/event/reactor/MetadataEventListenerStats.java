@@ -0,0 +1,110 @@
+package com.thinkbiganalytics.metadata.event.reactor;
+
+/*-
+ * #%L
+ * thinkbig-metadata-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A snapshot of the dispatch lane of one metadata event listener
+ */
+public class MetadataEventListenerStats {
+
+    private final String listener;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long delivered;
+    private final long dropped;
+    private final long failed;
+    private final double averageLatencyMillis;
+    private final double maxLatencyMillis;
+
+    public MetadataEventListenerStats(String listener, int queueDepth, int queueCapacity, long delivered, long dropped, long failed, double averageLatencyMillis,
+                                      double maxLatencyMillis) {
+        this.listener = listener;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.delivered = delivered;
+        this.dropped = dropped;
+        this.failed = failed;
+        this.averageLatencyMillis = averageLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+    }
+
+    /**
+     * @return the listener's description
+     */
+    public String getListener() {
+        return listener;
+    }
+
+    /**
+     * @return the number of events waiting to be delivered to the listener
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return the maximum number of events that can wait for the listener
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return the number of events delivered to the listener
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return the number of events dropped because the listener's queue was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return the number of events the listener failed to handle
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return the average time the listener took to handle an event
+     */
+    public double getAverageLatencyMillis() {
+        return averageLatencyMillis;
+    }
+
+    /**
+     * @return the longest time the listener took to handle an event
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: queued %d/%d, delivered %d, dropped %d, failed %d, latency avg %.2f ms max %.2f ms", listener, queueDepth, queueCapacity, delivered, dropped,
+                             failed, averageLatencyMillis, maxLatencyMillis);
+    }
+}
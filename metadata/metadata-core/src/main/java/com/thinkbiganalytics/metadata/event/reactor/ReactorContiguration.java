@@ -34,7 +34,7 @@ import reactor.Environment;
 import reactor.bus.EventBus;
 
 /**
- *
+ * Configures the Reactor event buses used by the alerts, and the {@link MetadataEventService}, which no longer uses Reactor.
  */
 @Configuration
 public class ReactorContiguration {
@@ -72,23 +72,12 @@ public class ReactorContiguration {
             .get();
     }
 
-    @Bean(name = "metadataEventBus")
-    public EventBus metadataEventBus() {
-        Environment env = reactorEnvironment();
-        Logger log = LoggerFactory.getLogger(EventBus.class.getName() + "- Metadata event bus");
-
-        return EventBus.config()
-            .env(env)
-            .dispatcher(env.getDefaultDispatcher())
-            .dispatchErrorHandler((t) -> {
-                log.error("Metadata event bus dispatch error", t);
-            })
-            .get();
-    }
-
     @Bean
-    public MetadataEventService eventService() {
-        return new ReactorMetadataEventService();
+    public MetadataEventService eventService(org.springframework.core.env.Environment env) {
+        int queueSize = env.getProperty("kylo.metadata.events.listener.queue.size", Integer.class, 1000);
+        ReactorMetadataEventService.OverflowPolicy overflowPolicy = env.getProperty("kylo.metadata.events.listener.overflow", ReactorMetadataEventService.OverflowPolicy.class,
+                                                                                    ReactorMetadataEventService.OverflowPolicy.BLOCK);
+        return new ReactorMetadataEventService(queueSize, overflowPolicy);
     }
 
 //
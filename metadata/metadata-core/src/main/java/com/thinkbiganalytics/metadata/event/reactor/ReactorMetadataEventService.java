@@ -33,35 +33,86 @@ import org.slf4j.LoggerFactory;
 import org.springframework.core.ResolvableType;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-
-import javax.inject.Inject;
-import javax.inject.Named;
-
-import reactor.bus.Event;
-import reactor.bus.EventBus;
-import reactor.bus.registry.Registration;
-import reactor.bus.selector.HeaderResolver;
-import reactor.bus.selector.Selector;
-import reactor.fn.Consumer;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
+ * Delivers metadata events to their listeners.
+ *
+ * Listeners are indexed by the event and data classes they accept, so an event is only offered to the listeners of its type,
+ * and the matching listeners for each pair of classes are worked out once.
+ * Each listener has its own single threaded lane with a bounded queue, so a slow listener only delays its own events.
+ * When a lane's queue is full the {@link OverflowPolicy} decides whether the notifier waits or the event is dropped.
+ * Events are ordered per listener only; two listeners may see the same events in a different order relative to each other.
  *
+ * <p>The events were once dispatched through a Reactor event bus, which this class no longer uses. The name and package are kept
+ * for now, along with the Reactor alert buses configured by {@link ReactorContiguration}; renaming them is left to a later change.</p>
  */
 public class ReactorMetadataEventService implements MetadataEventService {
 
     private static final Logger log = LoggerFactory.getLogger(ReactorMetadataEventService.class);
-    private final Map<MetadataEventListener<?>, Registration<?, ?>> registrations;
-    @Inject
-    @Named("metadataEventBus")
-    private EventBus eventBus;
+
+    /**
+     * the most time a listener waits for room in another listener's full queue before the event is dropped
+     */
+    private static final long LANE_PUBLISH_TIMEOUT_MILLIS = 1000L;
+
+    /**
+     * the lane whose listener is being notified on the current thread
+     */
+    private static final ThreadLocal<ListenerLane> currentLane = new ThreadLocal<>();
+
+    /**
+     * What to do with an event when a listener's queue is full
+     */
+    public enum OverflowPolicy {
+        /**
+         * wait for room in the queue. A listener publishing from its own thread only waits a short time, so two listeners publishing to
+         * each other's full queues can't wait on each other forever, and drops the event if the queue is still full.
+         * An event a listener publishes to its own full queue is dropped straight away.
+         */
+        BLOCK,
+        /**
+         * drop the event for that listener
+         */
+        DROP
+    }
+
+    private final int queueSize;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final Map<MetadataEventListener<?>, ListenerLane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * replaced whenever a listener is added or removed
+     */
+    private volatile DispatchIndex index = new DispatchIndex(Collections.emptyList());
 
     /**
      *
      */
     public ReactorMetadataEventService() {
-        this.registrations = new ConcurrentHashMap<>();
+        this(1000, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * @param queueSize      the number of events that may wait for each listener
+     * @param overflowPolicy what to do when a listener's queue is full
+     */
+    public ReactorMetadataEventService(int queueSize, OverflowPolicy overflowPolicy) {
+        this.queueSize = queueSize;
+        this.overflowPolicy = overflowPolicy;
     }
 
 
@@ -72,7 +123,11 @@ public class ReactorMetadataEventService implements MetadataEventService {
     public <E extends MetadataEvent<? extends Serializable>> void notify(E event) {
         log.debug("Notify event: {}", event);
 
-        this.eventBus.notify(event, Event.wrap(event));
+        for (ListenerLane lane : this.index.lanesFor(event)) {
+            if (lane.matches(event)) {
+                lane.offer(event);
+            }
+        }
     }
 
     /* (non-Javadoc)
@@ -82,8 +137,7 @@ public class ReactorMetadataEventService implements MetadataEventService {
     public <E extends MetadataEvent<? extends Serializable>> void addListener(MetadataEventListener<E> listener) {
         log.debug("Adding event listener: {}", listener);
 
-        Registration<?, ?> reg = this.eventBus.on(asSelector(listener), asConsumer(listener));
-        this.registrations.put(listener, reg);
+        register(listener, null);
     }
 
     /* (non-Javadoc)
@@ -93,93 +147,213 @@ public class ReactorMetadataEventService implements MetadataEventService {
     public <E extends MetadataEvent<? extends Serializable>> void addListener(MetadataEventListener<E> listener, EventMatcher<E> matcher) {
         log.debug("Adding event listener: {}", listener);
 
-        Registration<?, ?> reg = this.eventBus.on(asSelector(matcher), asConsumer(listener));
-        this.registrations.put(listener, reg);
+        register(listener, matcher);
     }
 
     @Override
     public void removeListener(MetadataEventListener<?> listener) {
         log.debug("Removing event listener: {}", listener);
 
-        Registration<?, ?> reg = this.registrations.remove(listener);
+        synchronized (this.lanes) {
+            ListenerLane lane = this.lanes.remove(listener);
 
-        if (reg != null) {
-            reg.cancel();
+            if (lane != null) {
+                this.index = new DispatchIndex(new ArrayList<>(this.lanes.values()));
+                lane.shutdown();
+            }
         }
     }
 
-    private <E extends MetadataEvent<? extends Serializable>> Selector<E> asSelector(MetadataEventListener<E> listener) {
-        return new EventTypeMatcher<>(listener);
+    /**
+     * @return the queue depth and handler latency of each listener
+     */
+    public List<MetadataEventListenerStats> getListenerStats() {
+        return this.lanes.values().stream().map(ListenerLane::stats).collect(Collectors.toList());
     }
 
-    private <E extends MetadataEvent<? extends Serializable>> Selector<E> asSelector(EventMatcher<E> matcher) {
-        // TODO Auto-generated method stub
-        return null;
+    /**
+     * Stop delivering events and release the listener threads
+     */
+    public void shutdown() {
+        synchronized (this.lanes) {
+            this.lanes.values().forEach(ListenerLane::shutdown);
+            this.lanes.clear();
+            this.index = new DispatchIndex(Collections.emptyList());
+        }
     }
 
-    private <E extends MetadataEvent<? extends Serializable>> Consumer<Event<E>> asConsumer(MetadataEventListener<E> listener) {
-        return new ListenerConsumer<>(listener);
+    @SuppressWarnings("unchecked")
+    private <E extends MetadataEvent<? extends Serializable>> void register(MetadataEventListener<E> listener, EventMatcher<E> matcher) {
+        ListenerLane lane = new ListenerLane((MetadataEventListener<MetadataEvent<?>>) (MetadataEventListener<?>) listener, (EventMatcher<MetadataEvent<?>>) (EventMatcher<?>) matcher);
+
+        synchronized (this.lanes) {
+            ListenerLane previous = this.lanes.put(listener, lane);
+            this.index = new DispatchIndex(new ArrayList<>(this.lanes.values()));
+
+            if (previous != null) {
+                previous.shutdown();
+            }
+        }
     }
 
 
-    private static class ListenerConsumer<E extends MetadataEvent<? extends Serializable>> implements Consumer<Event<E>> {
+    /**
+     * The lanes that accept each pair of event and data classes, worked out the first time an event of that pair is published.
+     * Listeners registered with an {@link EventMatcher} are still tested against each event.
+     */
+    private static class DispatchIndex {
 
-        private final MetadataEventListener<E> listener;
+        private final List<ListenerLane> lanes;
+        private final Map<DispatchKey, List<ListenerLane>> lanesByKey = new ConcurrentHashMap<>();
 
-        public ListenerConsumer(MetadataEventListener<E> listener) {
-            super();
-            this.listener = listener;
+        DispatchIndex(List<ListenerLane> lanes) {
+            this.lanes = lanes;
+        }
+
+        List<ListenerLane> lanesFor(MetadataEvent<?> event) {
+            Object data = event.getData();
+            DispatchKey key = new DispatchKey(event.getClass(), data != null ? data.getClass() : null);
+            return this.lanesByKey.computeIfAbsent(key, k -> this.lanes.stream()
+                .filter(lane -> lane.accepts(k))
+                .collect(Collectors.toList()));
+        }
+    }
+
+
+    private static class DispatchKey {
+
+        private final Class<?> eventClass;
+        private final Class<?> dataClass;
+
+        DispatchKey(Class<?> eventClass, Class<?> dataClass) {
+            this.eventClass = eventClass;
+            this.dataClass = dataClass;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            DispatchKey that = (DispatchKey) o;
+            return eventClass.equals(that.eventClass) && Objects.equals(dataClass, that.dataClass);
         }
 
         @Override
-        public void accept(Event<E> event) {
-            this.listener.notify(event.getData());
+        public int hashCode() {
+            return Objects.hash(eventClass, dataClass);
         }
     }
 
 
-    private static class EventTypeMatcher<E extends MetadataEvent<? extends Serializable>> implements EventMatcher<E>, Selector<E> {
+    /**
+     * Delivers events to one listener on its own thread
+     */
+    private class ListenerLane {
+
+        private final MetadataEventListener<MetadataEvent<?>> listener;
+        private final EventMatcher<MetadataEvent<?>> matcher;
+        private final Class<?> eventClass;
+        private final Class<?> dataClass;
+        private final ThreadPoolExecutor executor;
 
-        private final Class<? extends MetadataEvent<?>> eventClass;
-        private final Class<? extends Serializable> dataClass;
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        ListenerLane(MetadataEventListener<MetadataEvent<?>> listener, EventMatcher<MetadataEvent<?>> matcher) {
+            this.listener = listener;
+            this.matcher = matcher;
 
-        public EventTypeMatcher(MetadataEventListener<E> listener) {
             ResolvableType listenerType = ResolvableType.forClass(MetadataEventListener.class, listener.getClass());
+            Class<?> evClass = listenerType.resolveGeneric(0);
+            this.eventClass = evClass != null ? evClass : MetadataEvent.class;
+
+            Class<?> serClass = ResolvableType.forClass(MetadataEvent.class, this.eventClass).resolveGeneric(0);
+            this.dataClass = serClass != null ? serClass : Serializable.class;
+
+            String name = "metadata-event-" + listener.getClass().getSimpleName();
+            this.executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }, overflowHandler());
+            this.executor.allowCoreThreadTimeOut(true);
+        }
 
-            @SuppressWarnings("unchecked")
-            Class<? extends MetadataEvent<?>> evClass = (Class<? extends MetadataEvent<?>>) listenerType.resolveGeneric(0);
+        private RejectedExecutionHandler overflowHandler() {
+            return (task, exec) -> {
+                if (exec.isShutdown()) {
+                    return;
+                }
+                if (overflowPolicy == OverflowPolicy.BLOCK) {
+                    ListenerLane publishingLane = currentLane.get();
+                    try {
+                        if (publishingLane == null) {
+                            exec.getQueue().put(task);
+                        } else if (publishingLane == this || !exec.getQueue().offer(task, LANE_PUBLISH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                            //a lane's own thread would wait for itself to make room, and lanes waiting on each other's full queues would never finish
+                            dropped(listener);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropped(listener);
+                    }
+                } else {
+                    dropped(listener);
+                }
+            };
+        }
 
-            ResolvableType evType = ResolvableType.forClass(MetadataEvent.class, evClass);
+        private void dropped(MetadataEventListener<?> listener) {
+            if (this.dropped.incrementAndGet() % 100 == 1) {
+                log.warn("Event queue is full for listener {}, {} events dropped", listener, this.dropped.get());
+            }
+        }
 
-            @SuppressWarnings("unchecked")
-            Class<? extends Serializable> serClass = (Class<? extends Serializable>) evType.resolveGeneric(0);
+        boolean accepts(DispatchKey key) {
+            return this.eventClass.isAssignableFrom(key.eventClass) && (key.dataClass == null || this.dataClass.isAssignableFrom(key.dataClass));
+        }
 
-            this.eventClass = evClass;
-            this.dataClass = serClass;
+        boolean matches(MetadataEvent<?> event) {
+            return this.matcher == null || this.matcher.test(event);
         }
 
-        @Override
-        public boolean test(E event) {
-            if (this.eventClass.isAssignableFrom(event.getClass())) {
-                return this.dataClass.isAssignableFrom(event.getData().getClass());
-            } else {
-                return false;
-            }
+        void offer(MetadataEvent<?> event) {
+            this.executor.execute(() -> deliver(event));
         }
 
-        @Override
-        public boolean matches(E event) {
-            return test(event);
+        private void deliver(MetadataEvent<?> event) {
+            ListenerLane previousLane = currentLane.get();
+            currentLane.set(this);
+            long start = System.nanoTime();
+            try {
+                this.listener.notify(event);
+            } catch (Exception e) {
+                this.failed.incrementAndGet();
+                log.error("Metadata event listener {} failed to handle event {}", this.listener, event, e);
+            } finally {
+                long nanos = System.nanoTime() - start;
+                this.delivered.incrementAndGet();
+                this.totalNanos.addAndGet(nanos);
+                this.maxNanos.accumulateAndGet(nanos, Math::max);
+                currentLane.set(previousLane);
+            }
         }
 
-        @Override
-        public Object getObject() {
-            return null;
+        void shutdown() {
+            this.executor.shutdown();
         }
 
-        @Override
-        public HeaderResolver<?> getHeaderResolver() {
-            return null;
+        MetadataEventListenerStats stats() {
+            long count = this.delivered.get();
+            return new MetadataEventListenerStats(this.listener.toString(), this.executor.getQueue().size(), queueSize, count, this.dropped.get(), this.failed.get(),
+                                                  count > 0 ? this.totalNanos.get() / 1_000_000.0 / count : 0.0, this.maxNanos.get() / 1_000_000.0);
         }
     }
 
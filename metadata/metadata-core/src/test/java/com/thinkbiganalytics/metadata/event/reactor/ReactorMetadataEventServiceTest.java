@@ -24,15 +24,21 @@ package com.thinkbiganalytics.metadata.event.reactor;
  */
 
 import com.thinkbiganalytics.metadata.api.event.AbstractMetadataEvent;
+import com.thinkbiganalytics.metadata.api.event.EventMatcher;
 import com.thinkbiganalytics.metadata.api.event.MetadataEventListener;
 import com.thinkbiganalytics.metadata.api.event.MetadataEventService;
 
+import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -50,6 +56,14 @@ public class ReactorMetadataEventServiceTest {
     @Inject
     private MetadataEventService service;
 
+    private final List<MetadataEventListener<?>> listeners = new ArrayList<>();
+
+    @After
+    public void removeListeners() {
+        listeners.forEach(service::removeListener);
+        listeners.clear();
+    }
+
     @Test
     public void testMatchingDataType() throws Exception {
         final CompletableFuture<Integer> future = new CompletableFuture<>();
@@ -136,4 +150,195 @@ public class ReactorMetadataEventServiceTest {
 
         future.get(1, TimeUnit.SECONDS);
     }
+
+    @Test
+    public void testMatcher() throws Exception {
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        class TestEvent extends AbstractMetadataEvent<Integer> {
+
+            public TestEvent(Integer data) {
+                super(data);
+            }
+        }
+
+        class TestEventListener implements MetadataEventListener<TestEvent> {
+
+            @Override
+            public void notify(TestEvent event) {
+                future.complete(event.getData());
+            }
+        }
+
+        TestEventListener listener = new TestEventListener();
+        listeners.add(listener);
+        service.addListener(listener, (EventMatcher<TestEvent>) event -> event.getData() > 1);
+        service.notify(new TestEvent(1));
+        service.notify(new TestEvent(2));
+
+        assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+    }
+
+    @Test
+    public void testSlowListenerDoesNotDelayOthers() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        class TestEvent extends AbstractMetadataEvent<Integer> {
+
+            public TestEvent(Integer data) {
+                super(data);
+            }
+        }
+
+        class SlowListener implements MetadataEventListener<TestEvent> {
+
+            @Override
+            public void notify(TestEvent event) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        class FastListener implements MetadataEventListener<TestEvent> {
+
+            @Override
+            public void notify(TestEvent event) {
+                if (event.getData() == 3) {
+                    future.complete(event.getData());
+                }
+            }
+        }
+
+        SlowListener slow = new SlowListener();
+        FastListener fast = new FastListener();
+        listeners.add(slow);
+        listeners.add(fast);
+        service.addListener(slow);
+        service.addListener(fast);
+        for (int i = 1; i <= 3; i++) {
+            service.notify(new TestEvent(i));
+        }
+
+        try {
+            assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo(3);
+
+            // the slow listener is still handling the first event with the other two queued
+            MetadataEventListenerStats slowStats = ((ReactorMetadataEventService) service).getListenerStats().stream()
+                .filter(stats -> stats.getListener().equals(slow.toString()))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+            assertThat(slowStats.getQueueDepth()).isEqualTo(2);
+            assertThat(slowStats.getDelivered()).isEqualTo(0L);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testListenerPublishingToItsOwnFullQueue() throws Exception {
+        final ReactorMetadataEventService blockingService = new ReactorMetadataEventService(1, ReactorMetadataEventService.OverflowPolicy.BLOCK);
+        final CountDownLatch published = new CountDownLatch(1);
+        final List<Integer> received = new CopyOnWriteArrayList<>();
+
+        class TestEvent extends AbstractMetadataEvent<Integer> {
+
+            public TestEvent(Integer data) {
+                super(data);
+            }
+        }
+
+        class RepublishingListener implements MetadataEventListener<TestEvent> {
+
+            @Override
+            public void notify(TestEvent event) {
+                received.add(event.getData());
+                if (event.getData() == 0) {
+                    // more events than the queue holds, published from the listener's own thread
+                    for (int i = 1; i <= 3; i++) {
+                        blockingService.notify(new TestEvent(i));
+                    }
+                    published.countDown();
+                }
+            }
+        }
+
+        try {
+            blockingService.addListener(new RepublishingListener());
+            blockingService.notify(new TestEvent(0));
+
+            assertThat(published.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(blockingService.getListenerStats().get(0).getDropped()).isEqualTo(2);
+            Thread.sleep(200);
+            assertThat(received).containsExactly(0, 1);
+        } finally {
+            blockingService.shutdown();
+        }
+    }
+
+    @Test
+    public void testListenersPublishingToEachOthersFullQueues() throws Exception {
+        final ReactorMetadataEventService blockingService = new ReactorMetadataEventService(1, ReactorMetadataEventService.OverflowPolicy.BLOCK);
+        final CountDownLatch published = new CountDownLatch(2);
+        final List<Integer> receivedA = new CopyOnWriteArrayList<>();
+        final List<Integer> receivedB = new CopyOnWriteArrayList<>();
+
+        class EventA extends AbstractMetadataEvent<Integer> {
+
+            public EventA(Integer data) {
+                super(data);
+            }
+        }
+
+        class EventB extends AbstractMetadataEvent<Long> {
+
+            public EventB(Long data) {
+                super(data);
+            }
+        }
+
+        class ListenerA implements MetadataEventListener<EventA> {
+
+            @Override
+            public void notify(EventA event) {
+                receivedA.add(event.getData());
+                if (event.getData() == 0) {
+                    for (long i = 1; i <= 3; i++) {
+                        blockingService.notify(new EventB(i));
+                    }
+                    published.countDown();
+                }
+            }
+        }
+
+        class ListenerB implements MetadataEventListener<EventB> {
+
+            @Override
+            public void notify(EventB event) {
+                receivedB.add(event.getData().intValue());
+                if (event.getData() == 1L) {
+                    for (int i = 1; i <= 3; i++) {
+                        blockingService.notify(new EventA(i));
+                    }
+                    published.countDown();
+                }
+            }
+        }
+
+        try {
+            blockingService.addListener(new ListenerA());
+            blockingService.addListener(new ListenerB());
+            blockingService.notify(new EventA(0));
+
+            assertThat(published.await(10, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(200);
+            assertThat(receivedA).isSorted().doesNotHaveDuplicates().startsWith(0);
+            assertThat(receivedB).isSorted().doesNotHaveDuplicates().startsWith(1);
+        } finally {
+            blockingService.shutdown();
+        }
+    }
 }
@@ -205,6 +205,18 @@ public abstract class BaseJcrProvider<T, PK extends Serializable> implements Bas
 
     }
 
+    /**
+     * Executes a query selecting only the columns the caller needs, and returns them without loading the entities.
+     *
+     * @param query      the JCR-SQL2 query
+     * @param bindParams the values of the query variables, or {@code null}
+     * @return a map of column name to value for each row
+     * @see JcrQueryUtil#queryRows(Session, String, Map)
+     */
+    public List<Map<String, Object>> findRows(String query, Map<String, String> bindParams) {
+        return JcrQueryUtil.queryRows(getSession(), query, bindParams);
+    }
+
     public List<Node> findNodes(String query) {
         return Lists.newArrayList(findIterableNodes(query));
     }
@@ -41,6 +41,7 @@ import com.thinkbiganalytics.metadata.modeshape.support.JcrVersionUtil;
 import org.modeshape.jcr.api.txn.TransactionManagerLookup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
@@ -53,6 +54,8 @@ import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.jcr.Credentials;
@@ -75,6 +78,14 @@ public class JcrMetadataAccess implements MetadataAccess {
      * Namespace for user-defined items
      */
     public static final String USR_PREFIX = "usr";
+    /**
+     * The maximum number of idle sessions kept for read-only commands; 0 disables pooling
+     */
+    public static final String READ_SESSION_POOL_SIZE_PROP = "metadata.read.sessions.pool.size";
+    /**
+     * The time in milliseconds after which an idle read session is logged out
+     */
+    public static final String READ_SESSION_IDLE_TIME_PROP = "metadata.read.sessions.idle.time";
     private static final Logger log = LoggerFactory.getLogger(JcrMetadataAccess.class);
     private static final ThreadLocal<Session> activeSession = new ThreadLocal<Session>() {
         protected Session initialValue() {
@@ -113,6 +124,40 @@ public class JcrMetadataAccess implements MetadataAccess {
     @Inject
     private TransactionManagerLookup txnLookup;
 
+    @Inject
+    private Environment environment;
+
+    private JcrReadSessionPool readSessionPool;
+
+
+    @PostConstruct
+    public void init() {
+        int poolSize = this.environment.getProperty(READ_SESSION_POOL_SIZE_PROP, Integer.class, 16);
+        long idleTime = this.environment.getProperty(READ_SESSION_IDLE_TIME_PROP, Long.class, 60000L);
+        setReadSessionPool(poolSize > 0 ? new JcrReadSessionPool(this.repository, poolSize, idleTime) : null);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        setReadSessionPool(null);
+    }
+
+    /**
+     * Sets the pool of sessions used for read-only commands, closing the current one.
+     *
+     * @param pool the new pool, or null to log in a new session for each read
+     */
+    void setReadSessionPool(JcrReadSessionPool pool) {
+        JcrReadSessionPool previous = this.readSessionPool;
+        this.readSessionPool = pool;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    JcrReadSessionPool getReadSessionPool() {
+        return this.readSessionPool;
+    }
 
     public static boolean hasActiveSession() {
         return activeSession.get() != null;
@@ -308,8 +353,11 @@ public class JcrMetadataAccess implements MetadataAccess {
         Session session = activeSession.get();
 
         if (session == null) {
+            JcrReadSessionPool pool = this.readSessionPool;
+            Object poolKey = pool != null ? pool.keyOf(creds) : null;
+
             try {
-                activeSession.set(this.repository.login(creds));
+                activeSession.set(poolKey != null ? pool.borrow(poolKey, creds) : this.repository.login(creds));
 
                 TransactionManager txnMgr = this.txnLookup.getTransactionManager();
 
@@ -324,8 +372,12 @@ public class JcrMetadataAccess implements MetadataAccess {
                         log.error("Failed to rollback transaction", e);
                     }
 
-                    activeSession.get().refresh(false);
-                    activeSession.get().logout();
+                    if (poolKey != null) {
+                        pool.release(poolKey, activeSession.get());
+                    } else {
+                        activeSession.get().refresh(false);
+                        activeSession.get().logout();
+                    }
                     activeSession.remove();
                 }
             } catch (SystemException | NotSupportedException | RepositoryException e) {
@@ -0,0 +1,229 @@
+/**
+ *
+ */
+package com.thinkbiganalytics.metadata.modeshape;
+
+/*-
+ * #%L
+ * thinkbig-metadata-modeshape
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.modeshape.security.OverrideCredentials;
+import com.thinkbiganalytics.metadata.modeshape.security.SpringAuthenticationCredentials;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.jaas.JaasGrantedAuthority;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import javax.jcr.Credentials;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+/**
+ * A bounded pool of sessions used for read-only commands, so that each read doesn't log in a new session.
+ *
+ * Sessions are pooled by the principals they were logged in with, so a session is only reused for credentials that give the same access.
+ * Credentials that can't be compared, like the admin credentials, are never pooled.
+ * A session is refreshed when it is borrowed and when it is released, which discards any changes a read command may have made.
+ * Sessions that have been idle for longer than the idle time, or that don't fit in the pool, are logged out.
+ */
+public class JcrReadSessionPool {
+
+    private static final Logger log = LoggerFactory.getLogger(JcrReadSessionPool.class);
+
+    private final Repository repository;
+    private final int maxIdle;
+    private final long maxIdleTime;
+
+    /**
+     * The idle sessions, the most recently released last
+     */
+    private final LinkedList<IdleSession> idleSessions = new LinkedList<>();
+
+    /**
+     * @param repository  the repository to log in to
+     * @param maxIdle     the maximum number of idle sessions kept
+     * @param maxIdleTime the time in milliseconds after which an idle session is logged out
+     */
+    public JcrReadSessionPool(Repository repository, int maxIdle, long maxIdleTime) {
+        this.repository = repository;
+        this.maxIdle = maxIdle;
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    /**
+     * Gets the key sessions logged in with the specified credentials are pooled by.
+     *
+     * @param creds the credentials
+     * @return the key, or {@code null} if sessions for these credentials can't be pooled
+     */
+    public Object keyOf(Credentials creds) {
+        if (creds instanceof SpringAuthenticationCredentials) {
+            SpringAuthenticationCredentials springCreds = (SpringAuthenticationCredentials) creds;
+            Authentication auth = springCreds.getAuthentication();
+            if (auth == null || !auth.isAuthenticated()) {
+                return null;
+            }
+            Set<Object> grants = new HashSet<>();
+            for (GrantedAuthority grant : auth.getAuthorities()) {
+                grants.add(grant instanceof JaasGrantedAuthority ? ((JaasGrantedAuthority) grant).getPrincipal() : grant.getAuthority());
+            }
+            return Arrays.asList(SpringAuthenticationCredentials.class, auth.getName(), grants, springCreds.getPrincipals());
+        } else if (creds instanceof OverrideCredentials) {
+            OverrideCredentials overrideCreds = (OverrideCredentials) creds;
+            return Arrays.asList(OverrideCredentials.class, overrideCreds.getUserPrincipal(), overrideCreds.getRolePrincipals());
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Borrows an idle session pooled by the key, or logs in a new one.
+     *
+     * @param key   the key from {@link #keyOf(Credentials)}
+     * @param creds the credentials to log in with if there is no idle session
+     * @return the session
+     */
+    public Session borrow(Object key, Credentials creds) throws RepositoryException {
+        IdleSession idle;
+        while ((idle = take(key)) != null) {
+            try {
+                if (idle.session.isLive()) {
+                    idle.session.refresh(false);
+                    return idle.session;
+                }
+            } catch (RepositoryException | RuntimeException e) {
+                log.debug("Discarding a pooled read session that can't be refreshed", e);
+                logout(idle.session);
+            }
+        }
+
+        return this.repository.login(creds);
+    }
+
+    /**
+     * Returns a borrowed session to the pool, or logs it out if the pool is full.
+     *
+     * @param key     the key the session was borrowed with
+     * @param session the session
+     */
+    public void release(Object key, Session session) {
+        try {
+            if (!session.isLive()) {
+                return;
+            }
+            session.refresh(false);
+        } catch (RepositoryException | RuntimeException e) {
+            log.debug("Discarding a read session that can't be refreshed", e);
+            logout(session);
+            return;
+        }
+
+        List<Session> evicted = new ArrayList<>();
+        synchronized (idleSessions) {
+            evictExpired(evicted);
+            if (idleSessions.size() >= this.maxIdle && !idleSessions.isEmpty()) {
+                evicted.add(idleSessions.removeFirst().session);
+            }
+            if (idleSessions.size() < this.maxIdle) {
+                idleSessions.addLast(new IdleSession(key, session, System.currentTimeMillis()));
+            } else {
+                evicted.add(session);
+            }
+        }
+        evicted.forEach(this::logout);
+    }
+
+    /**
+     * Logs out all idle sessions.
+     */
+    public void close() {
+        List<Session> evicted = new ArrayList<>();
+        synchronized (idleSessions) {
+            idleSessions.forEach(idle -> evicted.add(idle.session));
+            idleSessions.clear();
+        }
+        evicted.forEach(this::logout);
+    }
+
+    /**
+     * @return the number of idle sessions
+     */
+    public int getIdleCount() {
+        synchronized (idleSessions) {
+            return idleSessions.size();
+        }
+    }
+
+    private IdleSession take(Object key) {
+        List<Session> evicted = new ArrayList<>();
+        IdleSession found = null;
+        synchronized (idleSessions) {
+            evictExpired(evicted);
+            for (Iterator<IdleSession> itr = idleSessions.descendingIterator(); itr.hasNext(); ) {
+                IdleSession idle = itr.next();
+                if (idle.key.equals(key)) {
+                    itr.remove();
+                    found = idle;
+                    break;
+                }
+            }
+        }
+        evicted.forEach(this::logout);
+        return found;
+    }
+
+    private void evictExpired(List<Session> evicted) {
+        long expiry = System.currentTimeMillis() - this.maxIdleTime;
+        while (!idleSessions.isEmpty() && idleSessions.getFirst().releasedTime < expiry) {
+            evicted.add(idleSessions.removeFirst().session);
+        }
+    }
+
+    private void logout(Session session) {
+        try {
+            session.logout();
+        } catch (RuntimeException e) {
+            log.debug("Failed to log out a pooled read session", e);
+        }
+    }
+
+    private static class IdleSession {
+
+        private final Object key;
+        private final Session session;
+        private final long releasedTime;
+
+        IdleSession(Object key, Session session, long releasedTime) {
+            this.key = key;
+            this.session = session;
+            this.releasedTime = releasedTime;
+        }
+    }
+}
@@ -29,7 +29,9 @@ import org.modeshape.common.collection.Problems;
 import org.modeshape.jcr.JcrRepository;
 import org.modeshape.jcr.ModeShapeEngine;
 import org.modeshape.jcr.RepositoryConfiguration;
+import org.modeshape.jcr.RepositoryConfiguration.FieldName;
 import org.modeshape.jcr.api.txn.TransactionManagerLookup;
+import org.modeshape.schematic.document.Editor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
@@ -39,6 +41,7 @@ import org.springframework.core.env.Environment;
 import org.springframework.core.io.ClassPathResource;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -61,6 +64,8 @@ public class ModeShapeEngineConfig {
                                                   "modeshape.datasource.password"
     };
 
+    private static final String LOCAL_INDEX_PROVIDER = "local";
+
     @Inject
     private Environment environment;
 
@@ -94,6 +99,7 @@ public class ModeShapeEngineConfig {
 
         ClassPathResource res = new ClassPathResource("/metadata-repository.json");
         RepositoryConfiguration config = RepositoryConfiguration.read(res.getURL());
+        config = withIndexes(config, indexDirectory(config));
 
         Problems problems = config.validate();
         if (problems.hasErrors()) {
@@ -106,6 +112,36 @@ public class ModeShapeEngineConfig {
         return config;
     }
 
+    /**
+     * Sets the directory of the local index provider, or removes the index provider and its indexes if the directory is null.
+     *
+     * @param config         the repository configuration
+     * @param indexDirectory the directory of the local indexes, or null if they are not used
+     * @return the updated repository configuration
+     */
+    public static RepositoryConfiguration withIndexes(RepositoryConfiguration config, String indexDirectory) {
+        Editor editor = config.edit();
+        if (indexDirectory != null) {
+            editor.getDocument(FieldName.INDEX_PROVIDERS).getDocument(LOCAL_INDEX_PROVIDER).setString(FieldName.DIRECTORY, indexDirectory);
+        } else {
+            editor.remove(FieldName.INDEX_PROVIDERS);
+            editor.remove(FieldName.INDEXES);
+        }
+        return new RepositoryConfiguration(editor, config.getName());
+    }
+
+    /**
+     * The local indexes are only used if modeshape.index.enabled is true.  They are kept in modeshape.index.dir, which defaults to
+     * the indexes directory under the binary storage directory of the repository.
+     */
+    private String indexDirectory(RepositoryConfiguration config) {
+        if (!this.environment.getProperty("modeshape.index.enabled", Boolean.class, false)) {
+            return null;
+        }
+        String dataDirectory = config.getDocument().getDocument(FieldName.STORAGE).getDocument(FieldName.BINARY_STORAGE).getString(FieldName.DIRECTORY);
+        return this.environment.getProperty("modeshape.index.dir", Paths.get(dataDirectory, "indexes").toString());
+    }
+
     @Bean
     public ModeShapeEngine modeShapeEngine() {
         ModeShapeEngine engine = new ModeShapeEngine();
@@ -53,11 +53,13 @@ import com.thinkbiganalytics.metadata.modeshape.category.JcrCategory;
 import com.thinkbiganalytics.metadata.modeshape.common.EntityUtil;
 import com.thinkbiganalytics.metadata.modeshape.common.JcrEntity;
 import com.thinkbiganalytics.metadata.modeshape.common.JcrObject;
+import com.thinkbiganalytics.metadata.modeshape.common.JcrPropertyConstants;
 import com.thinkbiganalytics.metadata.modeshape.datasource.JcrDatasource;
 import com.thinkbiganalytics.metadata.modeshape.extension.ExtensionsConstants;
 import com.thinkbiganalytics.metadata.modeshape.sla.JcrServiceLevelAgreement;
 import com.thinkbiganalytics.metadata.modeshape.sla.JcrServiceLevelAgreementProvider;
 import com.thinkbiganalytics.metadata.modeshape.support.JcrPropertyUtil;
+import com.thinkbiganalytics.metadata.modeshape.support.JcrQueryUtil;
 import com.thinkbiganalytics.metadata.modeshape.support.JcrUtil;
 import com.thinkbiganalytics.metadata.modeshape.support.JcrVersionUtil;
 import com.thinkbiganalytics.metadata.sla.api.Metric;
@@ -88,7 +90,6 @@ import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import javax.jcr.Node;
-import javax.jcr.NodeIterator;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
@@ -97,6 +98,15 @@ import javax.jcr.Session;
  */
 public class JcrFeedProvider extends BaseJcrProvider<Feed, Feed.ID> implements FeedProvider {
 
+    /**
+     * The columns of the rows returned by {@link #findFeedSummaryRows(FeedCriteria)}
+     */
+    public static final String ID_COLUMN = "id";
+    public static final String SYSTEM_NAME_COLUMN = "systemName";
+    public static final String CATEGORY_COLUMN = "category";
+    public static final String STATE_COLUMN = "state";
+    public static final String MODIFIED_TIME_COLUMN = "modifiedTime";
+
     @Inject
     private CategoryProvider<Category> categoryProvider;
 
@@ -469,6 +479,17 @@ public class JcrFeedProvider extends BaseJcrProvider<Feed, Feed.ID> implements F
         return null;
     }
 
+    /**
+     * Finds the id, system name, category system name, state and modified time of the feeds matching the criteria, without loading the feeds.
+     * The name and category conditions are answered by the system name indexes when the local indexes are enabled.
+     *
+     * @param criteria the criteria
+     * @return a map of column to value for each feed, ordered by category and feed system name
+     */
+    public List<Map<String, Object>> findFeedSummaryRows(FeedCriteria criteria) {
+        return ((Criteria) criteria).selectRows(getSession());
+    }
+
     @Override
     public Feed findBySystemName(String systemName) {
         String categorySystemName = FeedNameUtil.category(systemName);
@@ -663,39 +684,36 @@ public class JcrFeedProvider extends BaseJcrProvider<Feed, Feed.ID> implements F
         private String category;
 
         /**
-         * Selects by navigation rather than SQL
+         * Looks a feed up by its path when both the category and name are set, otherwise selects the ids of the matching feeds
+         * with a projection query and only loads those feeds.  The query matches the system name properties of the feed and category
+         * rather than their node names, which are the same as the nodes are created, and moved on a rename, using the system names.
          */
         @Override
         public <E, J extends JcrObject> List<E> select(Session session, String typeName, Class<E> type, Class<J> jcrClass) {
             try {
-                // Datasources are not currently used so only name comparison is necessary
-                Node feedsNode = session.getRootNode().getNode("metadata/feeds");
-                NodeIterator catItr = null;
-
-                if (this.category != null) {
-                    catItr = feedsNode.getNodes(this.category);
-                } else {
-                    catItr = feedsNode.getNodes();
-                }
-
                 List<Feed<?>> list = new ArrayList<Feed<?>>();
 
-                while (catItr.hasNext()) {
-                    Node catNode = (Node) catItr.next();
-                    NodeIterator feedItr = null;
-
-                    if (this.name != null) {
-                        feedItr = catNode.getNodes(this.name);
-                    } else {
-                        feedItr = catNode.getNodes();
+                if (this.category != null && this.name != null) {
+                    String path = EntityUtil.pathForFeed(this.category, this.name);
+                    if (session.nodeExists(path)) {
+                        Node feedNode = session.getNode(path);
+                        if (feedNode.isNodeType(JcrFeed.NODE_TYPE)) {
+                            JcrFeed<?> feed = JcrUtil.createJcrObject(feedNode, JcrFeed.class);
+                            if (apply(feed)) {
+                                list.add(feed);
+                            }
+                        }
                     }
+                    return (List<E>) list;
+                }
 
-                    while (feedItr.hasNext()) {
-                        Node feedNode = (Node) feedItr.next();
+                for (Map<String, Object> row : selectRows(session)) {
+                    Node feedNode = session.getNodeByIdentifier((String) row.get(ID_COLUMN));
+                    JcrFeed<?> feed = JcrUtil.createJcrObject(feedNode, JcrFeed.class);
 
-                        if (feedNode.getPrimaryNodeType().getName().equals("tba:feed")) {
-                            list.add(JcrUtil.createJcrObject(feedNode, JcrFeed.class));
-                        }
+                    // The datasources can only be compared on the loaded feeds
+                    if (apply(feed)) {
+                        list.add(feed);
                     }
                 }
 
@@ -705,6 +723,36 @@ public class JcrFeedProvider extends BaseJcrProvider<Feed, Feed.ID> implements F
             }
         }
 
+        /**
+         * Selects the summary columns of the feeds matching the name and category
+         */
+        List<Map<String, Object>> selectRows(Session session) {
+            StringBuilder query = new StringBuilder("SELECT f.[mode:id] AS ").append(ID_COLUMN)
+                .append(", f.").append(EntityUtil.asQueryProperty(JcrFeed.SYSTEM_NAME)).append(" AS ").append(SYSTEM_NAME_COLUMN)
+                .append(", c.").append(EntityUtil.asQueryProperty(JcrCategory.SYSTEM_NAME)).append(" AS ").append(CATEGORY_COLUMN)
+                .append(", f.").append(EntityUtil.asQueryProperty(JcrFeed.STATE)).append(" AS ").append(STATE_COLUMN)
+                .append(", f.").append(EntityUtil.asQueryProperty(JcrPropertyConstants.MODIFIED_TIME)).append(" AS ").append(MODIFIED_TIME_COLUMN)
+                .append(" FROM ").append(EntityUtil.asQueryProperty(JcrFeed.NODE_TYPE)).append(" AS f")
+                .append(" JOIN ").append(EntityUtil.asQueryProperty(JcrCategory.NODE_TYPE)).append(" AS c ON ISCHILDNODE(f, c)");
+
+            Map<String, String> params = new HashMap<>();
+            List<String> conditions = new ArrayList<>();
+            if (this.name != null) {
+                conditions.add("f." + EntityUtil.asQueryProperty(JcrFeed.SYSTEM_NAME) + " = $name");
+                params.put("name", this.name);
+            }
+            if (this.category != null) {
+                conditions.add("c." + EntityUtil.asQueryProperty(JcrCategory.SYSTEM_NAME) + " = $category");
+                params.put("category", this.category);
+            }
+            if (!conditions.isEmpty()) {
+                query.append(" WHERE ").append(String.join(" AND ", conditions));
+            }
+            query.append(" ORDER BY c.").append(EntityUtil.asQueryProperty(JcrCategory.SYSTEM_NAME)).append(", f.").append(EntityUtil.asQueryProperty(JcrFeed.SYSTEM_NAME));
+
+            return JcrQueryUtil.queryRows(session, query.toString(), params);
+        }
+
         @Override
         @Deprecated
         protected void applyFilter(StringBuilder queryStr, HashMap<String, Object> params) {
@@ -26,11 +26,13 @@ import org.modeshape.jcr.api.JcrTools;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
+import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Value;
@@ -118,6 +120,46 @@ public class JcrQueryUtil {
     }
 
 
+    /**
+     * Executes a query and returns the selected columns of each row, read straight from the rows without loading or wrapping their nodes.
+     * Reference values are returned as the identifier of the referenced node rather than the node itself.
+     *
+     * @param session    the session
+     * @param query      the JCR-SQL2 query selecting the columns
+     * @param bindParams the values of the query variables, or {@code null}
+     * @return a map of column name to value for each row, in the order of the columns in the query
+     */
+    public static List<Map<String, Object>> queryRows(Session session, String query, Map<String, String> bindParams) {
+        try {
+            QueryResult result = query(session, query, bindParams);
+            String[] columns = result.getColumnNames();
+            List<Map<String, Object>> rows = new ArrayList<>();
+            RowIterator rowIterator = result.getRows();
+            while (rowIterator.hasNext()) {
+                Row row = rowIterator.nextRow();
+                Map<String, Object> values = new LinkedHashMap<>(columns.length * 2);
+                for (String column : columns) {
+                    Value value = row.getValue(column);
+                    values.put(column, value == null ? null : rowValue(value, session));
+                }
+                rows.add(values);
+            }
+            return rows;
+        } catch (RepositoryException e) {
+            throw new MetadataRepositoryException("Unable to query rows for query : " + query, e);
+        }
+    }
+
+    private static Object rowValue(Value value, Session session) throws RepositoryException {
+        switch (value.getType()) {
+            case PropertyType.REFERENCE:
+            case PropertyType.WEAKREFERENCE:
+                return value.getString();
+            default:
+                return JcrPropertyUtil.asValue(value, session);
+        }
+    }
+
     public static <T extends Object> T findFirst(Session session, String query, Class<T> type) {
         return findFirst(session, query, null, type);
     }
@@ -0,0 +1,146 @@
+package com.thinkbiganalytics.metadata.modeshape;
+
+/*-
+ * #%L
+ * thinkbig-metadata-modeshape
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.category.Category;
+import com.thinkbiganalytics.metadata.api.category.CategoryProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.testng.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.jcr.Repository;
+import javax.jcr.Session;
+
+/**
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {ModeShapeEngineConfig.class, JcrTestConfig.class})
+public class JcrReadSessionPoolTest {
+
+    private static final int THREADS = 4;
+
+    @Inject
+    private JcrMetadataAccess metadata;
+
+    @Inject
+    private CategoryProvider categoryProvider;
+
+    @Inject
+    @Named("metadataJcrRepository")
+    private Repository repository;
+
+    @Test
+    public void testReuseSession() {
+        Session first = metadata.read(JcrMetadataAccess::getActiveSession, MetadataAccess.SERVICE);
+        Session second = metadata.read(JcrMetadataAccess::getActiveSession, MetadataAccess.SERVICE);
+        Session other = metadata.read(JcrMetadataAccess::getActiveSession, MetadataAccess.ADMIN);
+
+        Assert.assertSame(second, first);
+        Assert.assertNotSame(other, first);
+        Assert.assertTrue(first.isLive());
+        Assert.assertTrue(metadata.getReadSessionPool().getIdleCount() >= 2);
+    }
+
+    @Test
+    public void testReadCommittedChanges() {
+        int before = metadata.read(() -> categoryProvider.findAll().size(), MetadataAccess.SERVICE);
+
+        metadata.commit(() -> categoryProvider.ensureCategory("readSessionPoolCategory"), MetadataAccess.SERVICE);
+
+        int after = metadata.read(() -> categoryProvider.findAll().size(), MetadataAccess.SERVICE);
+        Assert.assertEquals(after, before + 1);
+    }
+
+    @Test
+    public void testDiscardReadChanges() {
+        metadata.read(() -> JcrMetadataAccess.getActiveSession().getRootNode().addNode("readSessionPoolNode"), MetadataAccess.SERVICE);
+
+        boolean exists = metadata.read(() -> JcrMetadataAccess.getActiveSession().getRootNode().hasNode("readSessionPoolNode"), MetadataAccess.SERVICE);
+        Assert.assertFalse(exists);
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        ensureReadCategories();
+
+        JcrReadSessionPool pool = metadata.getReadSessionPool();
+        try {
+            JcrReadSessionPool concurrentPool = new JcrReadSessionPool(repository, THREADS, 60000L);
+            metadata.setReadSessionPool(concurrentPool);
+            readConcurrently(50);
+
+            Assert.assertTrue(concurrentPool.getIdleCount() > 0);
+            Assert.assertTrue(concurrentPool.getIdleCount() <= THREADS);
+        } finally {
+            metadata.setReadSessionPool(pool);
+        }
+    }
+
+    private void ensureReadCategories() {
+        metadata.commit(() -> {
+            for (int i = 0; i < 20; i++) {
+                Category category = categoryProvider.ensureCategory("concurrentReadCategory" + i);
+                category.setDescription("category " + i);
+            }
+            return null;
+        }, MetadataAccess.SERVICE);
+    }
+
+    /**
+     * Reads the categories on each thread, asserting every read finds its category
+     */
+    private void readConcurrently(int readsPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    int found = 0;
+                    for (int i = 0; i < readsPerThread; i++) {
+                        String systemName = "concurrentReadCategory" + (i % 20);
+                        found += metadata.read(() -> categoryProvider.findBySystemName(systemName) != null ? 1 : 0,
+                                               MetadataAccess.SERVICE);
+                    }
+                    return found;
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                Assert.assertEquals(future.get().intValue(), readsPerThread);
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+}
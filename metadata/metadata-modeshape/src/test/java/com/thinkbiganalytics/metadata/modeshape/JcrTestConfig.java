@@ -36,8 +36,14 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.FileSystemUtils;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.annotation.PreDestroy;
 
 /**
  *
@@ -45,10 +51,21 @@ import java.io.IOException;
 @Configuration
 public class JcrTestConfig {
 
+    private Path indexDirectory;
+
     @Bean
     public RepositoryConfiguration metadataRepoConfig() throws IOException {
+        // The test repository is in memory, so its indexes must not be left over from a previous run
+        indexDirectory = Files.createTempDirectory(Paths.get("target"), "modeshape-indexes");
         ClassPathResource res = new ClassPathResource("/test-metadata-repository.json");
-        return RepositoryConfiguration.read(res.getURL());
+        return ModeShapeEngineConfig.withIndexes(RepositoryConfiguration.read(res.getURL()), indexDirectory.toString());
+    }
+
+    @PreDestroy
+    public void deleteIndexDirectory() {
+        if (indexDirectory != null) {
+            FileSystemUtils.deleteRecursively(indexDirectory.toFile());
+        }
     }
 
     @Bean
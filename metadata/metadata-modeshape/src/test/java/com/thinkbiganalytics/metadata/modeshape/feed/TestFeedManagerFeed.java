@@ -41,6 +41,7 @@ import com.thinkbiganalytics.metadata.modeshape.ModeShapeEngineConfig;
 import com.thinkbiganalytics.metadata.modeshape.security.AdminCredentials;
 import com.thinkbiganalytics.support.FeedNameUtil;
 
+import org.joda.time.DateTime;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.context.annotation.ComponentScan;
@@ -48,11 +49,14 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.testng.Assert;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Inject;
+import javax.jcr.RepositoryException;
 
 /**
  */
@@ -206,5 +210,47 @@ public class TestFeedManagerFeed {
 
     }
 
+    @Test
+    public void testFeedCriteriaProjection() {
+        setupFeedAndTemplate("projection_category_a", "projection_feed_1", "projection_template");
+        setupFeedAndTemplate("projection_category_a", "projection_feed_2", "projection_template");
+        setupFeedAndTemplate("projection_category_b", "projection_feed_1", "projection_template");
+
+        metadata.read(() -> {
+            JcrFeedProvider jcrFeedProvider = (JcrFeedProvider) feedProvider;
+
+            //the rows hold only the projected columns
+            List<Map<String, Object>> rows = jcrFeedProvider.findFeedSummaryRows(feedProvider.feedCriteria().category("projection_category_a"));
+            Assert.assertEquals(rows.size(), 2);
+            Assert.assertEquals(rows.get(0).keySet(), new HashSet<>(Arrays.asList(JcrFeedProvider.ID_COLUMN, JcrFeedProvider.SYSTEM_NAME_COLUMN, JcrFeedProvider.CATEGORY_COLUMN,
+                                                                                 JcrFeedProvider.STATE_COLUMN, JcrFeedProvider.MODIFIED_TIME_COLUMN)));
+            Assert.assertEquals(rows.get(0).get(JcrFeedProvider.SYSTEM_NAME_COLUMN), "projection_feed_1");
+            Assert.assertEquals(rows.get(1).get(JcrFeedProvider.SYSTEM_NAME_COLUMN), "projection_feed_2");
+            Assert.assertEquals(rows.get(0).get(JcrFeedProvider.CATEGORY_COLUMN), "projection_category_a");
+            Assert.assertTrue(rows.get(0).get(JcrFeedProvider.MODIFIED_TIME_COLUMN) instanceof DateTime);
+
+            //the ids of the rows are the ids of the feeds
+            Feed feed = feedProvider.findBySystemName("projection_category_a", "projection_feed_1");
+            Assert.assertEquals(rows.get(0).get(JcrFeedProvider.ID_COLUMN), feed.getId().toString());
+
+            //the criteria select path uses the same query
+            Assert.assertEquals(feedProvider.getFeeds(feedProvider.feedCriteria().name("projection_feed_1")).size(), 2);
+            List<Feed> byCategoryAndName = feedProvider.getFeeds(feedProvider.feedCriteria().category("projection_category_b").name("projection_feed_1"));
+            Assert.assertEquals(byCategoryAndName.size(), 1);
+            Assert.assertEquals(byCategoryAndName.get(0).getCategory().getName(), "projection_category_b");
+            Assert.assertNull(feedProvider.findBySystemName("projection_category_b", "projection_feed_2"));
+
+            //the system name condition is answered by its index
+            try {
+                org.modeshape.jcr.api.query.Query query = (org.modeshape.jcr.api.query.Query) JcrMetadataAccess.getActiveSession().getWorkspace().getQueryManager()
+                    .createQuery("SELECT f.[mode:id] FROM [tba:feed] AS f WHERE f.[tba:systemName] = 'projection_feed_1'", "JCR-SQL2");
+                Assert.assertTrue(query.explain().getPlan().contains("feedSystemName"), "The query plan does not use the feed system name index");
+            } catch (RepositoryException e) {
+                throw new IllegalStateException(e);
+            }
+            return null;
+        }, MetadataAccess.SERVICE);
+    }
+
 
 }
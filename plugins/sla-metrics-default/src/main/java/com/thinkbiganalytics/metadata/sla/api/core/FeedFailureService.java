@@ -20,28 +20,36 @@ package com.thinkbiganalytics.metadata.sla.api.core;
  * #L%
  */
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.thinkbiganalytics.metadata.api.event.MetadataEventListener;
 import com.thinkbiganalytics.metadata.api.event.MetadataEventService;
 import com.thinkbiganalytics.metadata.api.event.feed.FeedOperationStatusEvent;
 import com.thinkbiganalytics.metadata.api.op.FeedOperation;
+import com.thinkbiganalytics.metadata.sla.spi.ServiceLevelAgreementScheduler;
 
 import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import javax.annotation.Nonnull;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 /**
- * Service to listen for feed failure events and notify listeners when a feed fails
+ * Service to listen for feed failure events and notify listeners when a feed fails.
+ * Failures are recorded by the event listener thread and read by the SLA assessment threads, so the state of each feed is
+ * kept in a bounded concurrent cache and updated atomically.
+ * Once a failure or success is recorded the SLAs on the feed are re-assessed, so the assessment always sees the failure that triggered it.
  */
 @Component
 public class FeedFailureService {
 
+    /**
+     * The most feeds to track failures for.  The least recently used feeds are forgotten beyond this
+     */
+    static final int MAX_FEEDS = 10000;
 
     /**
      * Event listener for failure events
@@ -50,14 +58,14 @@ public class FeedFailureService {
     @Inject
     private MetadataEventService eventService;
     /**
-     * Map with the Latest recorded Feed Failure
+     * Re-assesses the SLAs of a feed after its failure is recorded, if SLAs are scheduled in this application
      */
-    private Map<String, LastFeedFailure> lastFeedFailureMap = new HashMap<>();
-
+    @Autowired(required = false)
+    private ServiceLevelAgreementScheduler slaScheduler;
     /**
-     * Map with the Latest recorded failure that has been assessed by the FeedFailureMetricAssessor
+     * The latest recorded failure and the latest failure assessed by the FeedFailureMetricAssessor, by feed name
      */
-    private Map<String, LastFeedFailure> lastAssessedFeedFailureMap = new HashMap<>();
+    private final Cache<String, FeedFailures> feedFailures = CacheBuilder.newBuilder().maximumSize(MAX_FEEDS).build();
 
     /**
      * Adds listeners for transferring events.
@@ -79,17 +87,43 @@ public class FeedFailureService {
      * Should we assess the failure.  If so mark the latest as being assesed as a failure
      */
     public boolean hasFailure(String feedName) {
-        LastFeedFailure lastFeedFailure = lastFeedFailureMap.get(feedName);
-        LastFeedFailure lastAssessedFailure = lastAssessedFeedFailureMap.get(feedName);
-
-        if (lastFeedFailure != null) {
-            if (lastAssessedFailure == null || (lastAssessedFailure != null && lastFeedFailure.isAfter(lastAssessedFailure.getDateTime()))) {
-                //reassign it as the lastAssessedFailure
-                lastAssessedFeedFailureMap.put(feedName, lastFeedFailure);
-                return true;
+        FeedFailures failures = feedFailures.getIfPresent(feedName);
+        return failures != null && failures.assess();
+    }
+
+    /**
+     * Records a failure of the feed happening now
+     */
+    private void failed(String feedName) {
+        LastFeedFailure failure = new LastFeedFailure(feedName);
+        feedFailures.asMap().computeIfAbsent(feedName, name -> new FeedFailures()).record(failure);
+    }
+
+    /**
+     * the failures of a single feed
+     */
+    private static class FeedFailures {
+
+        private LastFeedFailure lastFeedFailure;
+        private LastFeedFailure lastAssessedFailure;
+
+        synchronized void record(LastFeedFailure failure) {
+            this.lastFeedFailure = failure;
+        }
+
+        /**
+         * Should we assess the failure.  If so mark the latest as being assesed as a failure
+         */
+        synchronized boolean assess() {
+            if (lastFeedFailure != null) {
+                if (lastAssessedFailure == null || lastFeedFailure.isAfter(lastAssessedFailure.getDateTime())) {
+                    //reassign it as the lastAssessedFailure
+                    lastAssessedFailure = lastFeedFailure;
+                    return true;
+                }
             }
+            return false;
         }
-        return false;
     }
 
     public static class LastFeedFailure {
@@ -134,9 +168,12 @@ public class FeedFailureService {
 
         @Override
         public void notify(@Nonnull final FeedOperationStatusEvent event) {
-            if (FeedOperation.State.FAILURE.equals(event.getData().getState())) {
-                event.getData().getFeedName();
-                lastFeedFailureMap.put(event.getData().getFeedName(), new LastFeedFailure(event.getData().getFeedName()));
+            FeedOperation.State state = event.getData().getState();
+            if (FeedOperation.State.FAILURE.equals(state)) {
+                failed(event.getData().getFeedName());
+            }
+            if (slaScheduler != null && (FeedOperation.State.FAILURE.equals(state) || FeedOperation.State.SUCCESS.equals(state))) {
+                slaScheduler.reassessFeedAgreements(event.getData().getFeedName());
             }
         }
     }
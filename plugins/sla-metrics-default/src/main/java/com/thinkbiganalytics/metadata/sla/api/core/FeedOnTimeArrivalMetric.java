@@ -31,7 +31,7 @@ import com.cronutils.model.definition.CronDefinitionBuilder;
 import com.cronutils.parser.CronParser;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.base.MoreObjects;
-import com.thinkbiganalytics.metadata.sla.api.Metric;
+import com.thinkbiganalytics.metadata.api.sla.FeedOperationMetric;
 import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAgreementMetric;
 import com.thinkbiganalytics.policy.PolicyProperty;
 import com.thinkbiganalytics.policy.PolicyPropertyRef;
@@ -51,7 +51,7 @@ import java.util.Locale;
  */
 @ServiceLevelAgreementMetric(name = "Feed Processing deadline",
                              description = "Ensure a Feed processes data by a specified time")
-public class FeedOnTimeArrivalMetric implements Metric {
+public class FeedOnTimeArrivalMetric implements FeedOperationMetric {
 
     @PolicyProperty(name = "FeedName",
                     type = PolicyPropertyTypes.PROPERTY_TYPE.feedSelect,
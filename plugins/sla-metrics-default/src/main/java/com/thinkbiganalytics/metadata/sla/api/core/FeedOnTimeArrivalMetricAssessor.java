@@ -29,8 +29,8 @@ import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecutionProvider;
 import com.thinkbiganalytics.metadata.sla.api.AssessmentResult;
 import com.thinkbiganalytics.metadata.sla.api.Metric;
+import com.thinkbiganalytics.metadata.sla.spi.BatchMetricAssessor;
 import com.thinkbiganalytics.metadata.sla.spi.MetricAssessmentBuilder;
-import com.thinkbiganalytics.metadata.sla.spi.MetricAssessor;
 import com.thinkbiganalytics.scheduler.util.CronExpressionUtil;
 
 import org.joda.time.DateTime;
@@ -38,14 +38,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
 /**
- * Metric assessor to assess the {@link FeedOnTimeArrivalMetric}
+ * Metric assessor to assess the {@link FeedOnTimeArrivalMetric}.
+ * When SLAs are assessed together the latest completed job of every referenced feed is prefetched in one query.
  */
-public class FeedOnTimeArrivalMetricAssessor implements MetricAssessor<FeedOnTimeArrivalMetric, Serializable> {
+public class FeedOnTimeArrivalMetricAssessor implements BatchMetricAssessor<FeedOnTimeArrivalMetric, Serializable> {
 
     private static final Logger LOG = LoggerFactory.getLogger(FeedOnTimeArrivalMetricAssessor.class);
 
@@ -58,6 +64,11 @@ public class FeedOnTimeArrivalMetricAssessor implements MetricAssessor<FeedOnTim
     @Inject
     private MetadataAccess metadataAccess;
 
+    /**
+     * End time of the latest completed job keyed by feed name, loaded by {@link #prefetch(Collection)}.  Feeds without a completed job map to null.
+     */
+    private volatile Map<String, DateTime> prefetchedEndTimes;
+
 
     /* (non-Javadoc)
      * @see com.thinkbiganalytics.metadata.sla.spi.MetricAssessor#accepts(com.thinkbiganalytics.metadata.sla.api.Metric)
@@ -78,13 +89,18 @@ public class FeedOnTimeArrivalMetricAssessor implements MetricAssessor<FeedOnTim
         builder.metric(metric);
 
         String feedName = metric.getFeedName();
-        BatchJobExecution jobExecution = metadataAccess.read(() -> {
-            return batchJobExecutionProvider.findLatestCompletedJobForFeed(feedName);
-        });
-
         DateTime lastFeedTime = null;
-        if (jobExecution != null) {
-            lastFeedTime = jobExecution.getEndTime();
+        Map<String, DateTime> prefetched = this.prefetchedEndTimes;
+        if (prefetched != null && prefetched.containsKey(feedName)) {
+            lastFeedTime = prefetched.get(feedName);
+        } else {
+            BatchJobExecution jobExecution = metadataAccess.read(() -> {
+                return batchJobExecutionProvider.findLatestCompletedJobForFeed(feedName);
+            });
+
+            if (jobExecution != null) {
+                lastFeedTime = jobExecution.getEndTime();
+            }
         }
         Date expectedDate = CronExpressionUtil.getPreviousFireTime(metric.getExpectedExpression());
         DateTime expectedTime = new DateTime(expectedDate);
@@ -112,6 +128,33 @@ public class FeedOnTimeArrivalMetricAssessor implements MetricAssessor<FeedOnTim
     }
 
 
+    /* (non-Javadoc)
+     * @see com.thinkbiganalytics.metadata.sla.spi.BatchMetricAssessor#prefetch(java.util.Collection)
+     */
+    @Override
+    public void prefetch(Collection<FeedOnTimeArrivalMetric> metrics) {
+        Set<String> feedNames = metrics.stream().map(FeedOnTimeArrivalMetric::getFeedName).filter(name -> name != null).collect(Collectors.toSet());
+        Map<String, BatchJobExecution> latestJobs = metadataAccess.read(() -> {
+            return batchJobExecutionProvider.findLatestCompletedJobForFeeds(feedNames);
+        });
+
+        Map<String, DateTime> endTimes = new HashMap<>();
+        for (String feedName : feedNames) {
+            BatchJobExecution jobExecution = latestJobs.get(feedName);
+            endTimes.put(feedName, jobExecution != null ? jobExecution.getEndTime() : null);
+        }
+        LOG.debug("Prefetched the latest completed jobs of {} feeds", endTimes.size());
+        this.prefetchedEndTimes = endTimes;
+    }
+
+    /* (non-Javadoc)
+     * @see com.thinkbiganalytics.metadata.sla.spi.BatchMetricAssessor#clearPrefetched()
+     */
+    @Override
+    public void clearPrefetched() {
+        this.prefetchedEndTimes = null;
+    }
+
     public MetadataAccess getMetadataAccess() {
         return metadataAccess;
     }
@@ -0,0 +1,144 @@
+package com.thinkbiganalytics.metadata.sla.spi.core;
+
+/*-
+ * #%L
+ * thinkbig-sla-metrics-default
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.event.MetadataEventListener;
+import com.thinkbiganalytics.metadata.api.event.MetadataEventService;
+import com.thinkbiganalytics.metadata.api.event.feed.FeedOperationStatusEvent;
+import com.thinkbiganalytics.metadata.api.event.feed.OperationStatus;
+import com.thinkbiganalytics.metadata.api.op.FeedOperation;
+import com.thinkbiganalytics.metadata.sla.api.core.FeedFailureService;
+import com.thinkbiganalytics.metadata.sla.spi.ServiceLevelAgreementScheduler;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+/**
+ * Checks the failures recorded by the {@link FeedFailureService} are each assessed once, even when assessed from several threads
+ */
+public class FeedFailureServiceTest {
+
+    @Mock
+    private MetadataEventService eventService;
+
+    @Mock
+    private ServiceLevelAgreementScheduler slaScheduler;
+
+    @InjectMocks
+    private FeedFailureService feedFailureService = new FeedFailureService();
+
+    private MetadataEventListener<FeedOperationStatusEvent> listener;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        initMocks(this);
+        feedFailureService.addEventListener();
+        ArgumentCaptor<MetadataEventListener> listenerCaptor = ArgumentCaptor.forClass(MetadataEventListener.class);
+        verify(eventService).addListener(listenerCaptor.capture());
+        listener = listenerCaptor.getValue();
+    }
+
+    @Test
+    public void testFailureAssessedOnce() throws Exception {
+        Assert.assertFalse(feedFailureService.hasFailure("feed"));
+
+        listener.notify(feedEvent("feed", FeedOperation.State.FAILURE));
+        listener.notify(feedEvent("other", FeedOperation.State.SUCCESS));
+
+        Assert.assertTrue(feedFailureService.hasFailure("feed"));
+        Assert.assertFalse(feedFailureService.hasFailure("feed"));
+        Assert.assertFalse(feedFailureService.hasFailure("other"));
+
+        //a later failure is assessed again
+        Thread.sleep(5);
+        listener.notify(feedEvent("feed", FeedOperation.State.FAILURE));
+        Assert.assertTrue(feedFailureService.hasFailure("feed"));
+    }
+
+    @Test
+    public void testAgreementsReassessedOnceFailureRecorded() {
+        AtomicBoolean failureSeen = new AtomicBoolean();
+        doAnswer(invocation -> {
+            failureSeen.set(feedFailureService.hasFailure("feed"));
+            return null;
+        }).when(slaScheduler).reassessFeedAgreements("feed");
+
+        listener.notify(feedEvent("feed", FeedOperation.State.FAILURE));
+        Assert.assertTrue("the failure should be recorded before the SLAs are re-assessed", failureSeen.get());
+
+        listener.notify(feedEvent("feed", FeedOperation.State.SUCCESS));
+        listener.notify(feedEvent("feed", FeedOperation.State.STARTED));
+        verify(slaScheduler, times(2)).reassessFeedAgreements("feed");
+    }
+
+    @Test
+    public void testConcurrentAssessments() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 50; round++) {
+                String feedName = "feed-" + round;
+                listener.notify(feedEvent(feedName, FeedOperation.State.FAILURE));
+
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    results.add(executor.submit((Callable<Boolean>) () -> {
+                        start.await();
+                        return feedFailureService.hasFailure(feedName);
+                    }));
+                }
+                start.countDown();
+
+                int failures = 0;
+                for (Future<Boolean> result : results) {
+                    failures += result.get() ? 1 : 0;
+                }
+                Assert.assertEquals("the failure of " + feedName + " should be assessed once", 1, failures);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private FeedOperationStatusEvent feedEvent(String feedName, FeedOperation.State state) {
+        return new FeedOperationStatusEvent(new OperationStatus(feedName, null, state, "test"));
+    }
+}
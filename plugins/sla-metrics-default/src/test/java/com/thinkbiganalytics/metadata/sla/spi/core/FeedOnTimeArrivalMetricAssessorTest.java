@@ -50,9 +50,11 @@ import org.testng.Assert;
 
 import java.security.Principal;
 import java.text.ParseException;
+import java.util.Collections;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -227,6 +229,43 @@ public class FeedOnTimeArrivalMetricAssessorTest {
         verify(this.builder).result(AssessmentResult.WARNING);
     }
 
+    @Test
+    public void testPrefetchedMinuteBeforeLate() throws ParseException {
+        BatchJobExecution feed = createFeedJobExecution(this.lateTime.minusMinutes(1));
+        when(this.jobExecutionProvider.findLatestCompletedJobForFeeds(Collections.singleton("feed"))).thenReturn(Collections.singletonMap("feed", feed));
+
+        this.assessor.prefetch(Collections.singletonList(metric));
+        this.assessor.assess(metric, this.builder);
+
+        verify(this.builder).result(AssessmentResult.SUCCESS);
+        verify(this.jobExecutionProvider, never()).findLatestCompletedJobForFeed("feed");
+    }
+
+    @Test
+    public void testPrefetchedFeedNotFound() throws ParseException {
+        when(this.jobExecutionProvider.findLatestCompletedJobForFeeds(Collections.singleton("feed"))).thenReturn(Collections.emptyMap());
+
+        this.assessor.prefetch(Collections.singletonList(metric));
+        this.assessor.assess(metric, this.builder);
+
+        verify(this.builder).result(AssessmentResult.WARNING);
+        verify(this.jobExecutionProvider, never()).findLatestCompletedJobForFeed("feed");
+    }
+
+    @Test
+    public void testClearPrefetched() throws ParseException {
+        when(this.jobExecutionProvider.findLatestCompletedJobForFeeds(Collections.singleton("feed"))).thenReturn(Collections.emptyMap());
+        BatchJobExecution feed = createFeedJobExecution(this.lateTime.minusMinutes(1));
+        when(this.jobExecutionProvider.findLatestCompletedJobForFeed("feed")).thenReturn(feed);
+
+        this.assessor.prefetch(Collections.singletonList(metric));
+        this.assessor.clearPrefetched();
+        this.assessor.assess(metric, this.builder);
+
+        verify(this.builder).result(AssessmentResult.SUCCESS);
+        verify(this.jobExecutionProvider).findLatestCompletedJobForFeed("feed");
+    }
+
 
     private BatchJobExecution createFeedJobExecution(DateTime endTime) {
         BatchJobExecution feed = mock(BatchJobExecution.class);
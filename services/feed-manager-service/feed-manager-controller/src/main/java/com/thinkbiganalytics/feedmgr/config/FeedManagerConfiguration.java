@@ -39,6 +39,7 @@ import com.thinkbiganalytics.feedmgr.service.feed.DefaultFeedManagerFeedService;
 import com.thinkbiganalytics.feedmgr.service.feed.ExportImportFeedService;
 import com.thinkbiganalytics.feedmgr.service.feed.FeedManagerFeedService;
 import com.thinkbiganalytics.feedmgr.service.feed.FeedManagerPreconditionService;
+import com.thinkbiganalytics.feedmgr.service.feed.FeedModelCache;
 import com.thinkbiganalytics.feedmgr.service.feed.FeedModelTransform;
 import com.thinkbiganalytics.feedmgr.service.feed.datasource.DerivedDatasourceFactory;
 import com.thinkbiganalytics.feedmgr.service.template.DefaultFeedManagerTemplateService;
@@ -92,6 +93,11 @@ public class FeedManagerConfiguration {
         return new FeedModelTransform();
     }
 
+    @Bean
+    public FeedModelCache feedModelCache() {
+        return new FeedModelCache();
+    }
+
 
     @Bean
     public TemplateModelTransform templateModelTransform() {
@@ -0,0 +1,290 @@
+package com.thinkbiganalytics.feedmgr.nifi;
+
+/*-
+ * #%L
+ * thinkbig-feed-manager-controller
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.thinkbiganalytics.nifi.feedmgr.TemplateCreationHelper;
+import com.thinkbiganalytics.nifi.rest.client.LegacyNifiRestClient;
+import com.thinkbiganalytics.nifi.rest.model.flow.NifiFlowProcessGroup;
+import com.thinkbiganalytics.nifi.rest.support.NifiProcessUtil;
+import com.thinkbiganalytics.nifi.rest.visitor.NifiConnectionOrderVisitorCache;
+import com.thinkbiganalytics.support.FeedNameUtil;
+
+import org.apache.nifi.web.api.dto.ConnectionDTO;
+import org.apache.nifi.web.api.dto.FlowSnippetDTO;
+import org.apache.nifi.web.api.dto.PortDTO;
+import org.apache.nifi.web.api.dto.ProcessGroupDTO;
+import org.apache.nifi.web.api.dto.ProcessorDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the flows of every feed process group in NiFi for the {@link NifiFlowCache}.
+ *
+ * The NiFi canvas is fetched once.  Each feed process group is fingerprinted from its contents and only the groups whose fingerprint changed since the last
+ * collection are walked again, on a bounded number of threads.  The walked flows of the unchanged groups are reused.  If the reusable templates change every
+ * feed is walked again, as a feed flow can continue into the reusable templates.
+ */
+class NifiFeedFlowCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(NifiFeedFlowCollector.class);
+
+    /**
+     * Walk the reusable templates first, as the cache has always been populated in that order
+     */
+    private static final Comparator<ProcessGroupDTO> REUSABLE_TEMPLATES_FIRST = Comparator.comparing((ProcessGroupDTO group) -> !isReusableTemplates(group))
+        .thenComparing(ProcessGroupDTO::getName, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final LegacyNifiRestClient nifiRestClient;
+
+    private final int threads;
+
+    /**
+     * The flows walked by the last collection, by feed process group id
+     */
+    private Map<String, CollectedFlow> collectedFlows = new HashMap<>();
+
+    /**
+     * The fingerprint of the reusable templates at the last collection
+     */
+    private String reusableTemplatesFingerprint;
+
+    /**
+     * @param nifiRestClient the NiFi REST client
+     * @param threads        the number of feed process groups to walk at the same time
+     */
+    NifiFeedFlowCollector(LegacyNifiRestClient nifiRestClient, int threads) {
+        this.nifiRestClient = nifiRestClient;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Collect the flows of all the feeds, walking only the process groups that changed since the last collection
+     *
+     * @return the flows of all the feeds, the reusable templates first
+     */
+    synchronized Result collect() {
+        long start = System.currentTimeMillis();
+        ProcessGroupDTO root = nifiRestClient.getNiFiRestClient().processGroups().findRoot();
+
+        //share the groups already fetched with the root so walking a feed does not fetch its parent groups again
+        NifiConnectionOrderVisitorCache visitorCache = new NifiConnectionOrderVisitorCache();
+        NifiProcessUtil.getProcessGroups(root).forEach(visitorCache::add);
+
+        List<ProcessGroupDTO> categories = root.getContents() != null && root.getContents().getProcessGroups() != null
+                                           ? root.getContents().getProcessGroups().stream().sorted(REUSABLE_TEMPLATES_FIRST).collect(Collectors.toList())
+                                           : Collections.emptyList();
+
+        String reusableFingerprint = categories.stream().filter(NifiFeedFlowCollector::isReusableTemplates).map(NifiFeedFlowCollector::fingerprint).findFirst().orElse(null);
+        boolean reusableChanged = !Objects.equals(reusableFingerprint, reusableTemplatesFingerprint);
+
+        Map<String, CollectedFlow> collected = new HashMap<>();
+        List<Future<CollectedFlow>> flows = new ArrayList<>();
+        int walked = 0;
+        int skipped = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (ProcessGroupDTO category : categories) {
+                if (category.getContents() == null || category.getContents().getProcessGroups() == null) {
+                    continue;
+                }
+                for (ProcessGroupDTO feedProcessGroup : category.getContents().getProcessGroups()) {
+                    //if it is a versioned feed then strip the version to get the correct feed name
+                    String feedName = TemplateCreationHelper.parseVersionedProcessGroupName(FeedNameUtil.fullName(category.getName(), feedProcessGroup.getName()));
+                    String fingerprint = fingerprint(feedProcessGroup);
+                    CollectedFlow previous = collectedFlows.get(feedProcessGroup.getId());
+                    if (!reusableChanged && previous != null && previous.fingerprint.equals(fingerprint) && previous.flow.getFeedName().equals(feedName)) {
+                        flows.add(CompletableFuture.completedFuture(previous));
+                        skipped++;
+                    } else {
+                        flows.add(executor.submit(() -> {
+                            NifiFlowProcessGroup flow = nifiRestClient.getFeedFlow(feedProcessGroup, visitorCache);
+                            flow.setFeedName(feedName);
+                            return new CollectedFlow(feedProcessGroup.getId(), fingerprint, flow);
+                        }));
+                        walked++;
+                    }
+                }
+            }
+
+            List<NifiFlowProcessGroup> feedFlows = new ArrayList<>(flows.size());
+            for (Future<CollectedFlow> future : flows) {
+                CollectedFlow flow = getFlow(future);
+                collected.put(flow.processGroupId, flow);
+                feedFlows.add(flow.flow);
+            }
+            collectedFlows = collected;
+            reusableTemplatesFingerprint = reusableFingerprint;
+
+            Result result = new Result(feedFlows, walked, skipped, System.currentTimeMillis() - start);
+            log.info("Collected {} NiFi feed flows in {} ms. Walked {} changed process groups and skipped {} unchanged process groups", feedFlows.size(), result.getTime(), walked, skipped);
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Forget the flows collected so the next collection walks every process group
+     */
+    synchronized void reset() {
+        collectedFlows = new HashMap<>();
+        reusableTemplatesFingerprint = null;
+    }
+
+    private static CollectedFlow getFlow(Future<CollectedFlow> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while walking the NiFi feed flows", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to walk the NiFi feed flow", e.getCause());
+        }
+    }
+
+    private static boolean isReusableTemplates(ProcessGroupDTO category) {
+        return TemplateCreationHelper.REUSABLE_TEMPLATES_PROCESS_GROUP_NAME.equalsIgnoreCase(category.getName());
+    }
+
+    /**
+     * Fingerprint the parts of a process group that make up its flow: the processors, ports and connections of the group and all of its children.
+     * The group revision is not used as it does not change when the contents of the group change.
+     *
+     * @param processGroup a process group fetched with its contents
+     * @return the fingerprint of the process group
+     */
+    static String fingerprint(ProcessGroupDTO processGroup) {
+        List<String> components = new ArrayList<>();
+        addComponents(processGroup, components);
+        Collections.sort(components);
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        components.forEach(component -> hasher.putString(component, StandardCharsets.UTF_8).putByte((byte) 0));
+        return hasher.hash().toString();
+    }
+
+    private static void addComponents(ProcessGroupDTO processGroup, List<String> components) {
+        components.add(String.join("|", "group", processGroup.getId(), processGroup.getName(), processGroup.getParentGroupId()));
+        FlowSnippetDTO contents = processGroup.getContents();
+        if (contents == null) {
+            return;
+        }
+        if (contents.getProcessors() != null) {
+            for (ProcessorDTO processor : contents.getProcessors()) {
+                components.add(String.join("|", "processor", processor.getId(), processor.getName(), processor.getType(), processor.getParentGroupId()));
+            }
+        }
+        addPorts("input", contents.getInputPorts(), components);
+        addPorts("output", contents.getOutputPorts(), components);
+        if (contents.getConnections() != null) {
+            for (ConnectionDTO connection : contents.getConnections()) {
+                components.add(String.join("|", "connection", connection.getId(), connection.getName(),
+                                           connection.getSource() != null ? connection.getSource().getId() : null,
+                                           connection.getDestination() != null ? connection.getDestination().getId() : null,
+                                           connection.getSelectedRelationships() != null ? String.join(",", new TreeSet<>(connection.getSelectedRelationships())) : null));
+            }
+        }
+        if (contents.getProcessGroups() != null) {
+            for (ProcessGroupDTO child : contents.getProcessGroups()) {
+                addComponents(child, components);
+            }
+        }
+    }
+
+    private static void addPorts(String type, Collection<PortDTO> ports, List<String> components) {
+        if (ports != null) {
+            for (PortDTO port : ports) {
+                components.add(String.join("|", type, port.getId(), port.getName()));
+            }
+        }
+    }
+
+    /**
+     * A walked flow and the fingerprint of the process group when it was walked
+     */
+    private static class CollectedFlow {
+
+        private final String processGroupId;
+        private final String fingerprint;
+        private final NifiFlowProcessGroup flow;
+
+        private CollectedFlow(String processGroupId, String fingerprint, NifiFlowProcessGroup flow) {
+            this.processGroupId = processGroupId;
+            this.fingerprint = fingerprint;
+            this.flow = flow;
+        }
+    }
+
+    /**
+     * The flows collected and the number of process groups walked and skipped
+     */
+    static class Result {
+
+        private final List<NifiFlowProcessGroup> flows;
+        private final int walked;
+        private final int skipped;
+        private final long time;
+
+        Result(List<NifiFlowProcessGroup> flows, int walked, int skipped, long time) {
+            this.flows = flows;
+            this.walked = walked;
+            this.skipped = skipped;
+            this.time = time;
+        }
+
+        List<NifiFlowProcessGroup> getFlows() {
+            return flows;
+        }
+
+        int getWalked() {
+            return walked;
+        }
+
+        int getSkipped() {
+            return skipped;
+        }
+
+        long getTime() {
+            return time;
+        }
+    }
+}
@@ -51,7 +51,9 @@ import org.apache.nifi.web.api.dto.ReportingTaskDTO;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -64,6 +66,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -76,12 +79,17 @@ import javax.inject.Inject;
  * Each Processor has an internal {@code flowId} generated why Kylo walks the flow This internal id is used to associate the Feed flow as a template with the Feed flow created when the feed is
  * saved/updated
  *
+ * Each change to the cache is recorded in a versioned {@link NifiFlowCacheChangeLog}.  A sync is only sent the entries changed since the version it last received,
+ * or a full snapshot if it is further behind than the log.
+ *
  * @see com.thinkbiganalytics.nifi.rest.visitor.NifiConnectionOrderVisitor
  */
 public class NifiFlowCache implements NifiConnectionListener, ModeShapeAvailabilityListener, NiFiProvenanceConstants {
 
     private static final Logger log = LoggerFactory.getLogger(NifiFlowCache.class);
 
+    private static final int DEFAULT_CHANGE_LOG_SIZE = 1000;
+
 
     @Inject
     ModeShapeAvailability modeShapeAvailability;
@@ -98,13 +106,21 @@ public class NifiFlowCache implements NifiConnectionListener, ModeShapeAvailabil
     PropertyExpressionResolver propertyExpressionResolver;
     @Inject
     private NifiConnectionService nifiConnectionService;
-    private Map<String, String> feedNameToTemplateNameMap = new ConcurrentHashMap<>();
 
-    private Map<String, Map<String, List<NifiFlowProcessor>>> feedFlowIdProcessorMap = new ConcurrentHashMap<>();
+    /**
+     * The processors, connections and feeds in the cache
+     */
+    private volatile CacheState state = new CacheState();
 
-    private Map<String, Map<String, List<NifiFlowProcessor>>> feedProcessorIdProcessorMap = new ConcurrentHashMap<>();
+    /**
+     * Guards swapping the {@link #state} and the updates applied while a rebuild is running
+     */
+    private final Object stateLock = new Object();
 
-    private Map<String, NifiFlowProcessor> processorIdMap = new ConcurrentHashMap<>();
+    /**
+     * The updates applied to the cache while a rebuild is running, replayed onto the rebuilt cache before it is swapped in.  Null if no rebuild is running.
+     */
+    private List<Consumer<CacheState>> rebuildUpdates;
 
     /**
      * Flag to mark if the cache is loaded or not This is used to determine if the cache is ready to be used
@@ -121,42 +137,46 @@ public class NifiFlowCache implements NifiConnectionListener, ModeShapeAvailabil
      */
     private boolean modeShapeAvailable = false;
 
-    private Map<String, String> processorIdToFeedProcessGroupId = new ConcurrentHashMap<>();
+    /**
+     * Map of the sync id to cache
+     * This is the cache of the items out there that others have built and will check/update themseleves based upon the base maps in the object
+     */
+    private Map<String, NiFiFlowCacheSync> syncMap = new ConcurrentHashMap<>();
 
-    private Map<String, String> processorIdToFeedNameMap = new ConcurrentHashMap<>();
-    private Map<String, String> processorIdToProcessorName = new ConcurrentHashMap<>();
-    private Map<String, NiFiFlowCacheConnectionData> connectionIdToConnectionMap = new ConcurrentHashMap<>();
-    private Map<String, String> connectionIdCacheNameMap = new ConcurrentHashMap<>();
 
     /**
-     * Set of the category.feed names for those that are just streaming feeds
+     * Map with the sync Id and the last time that item was sync'd with the system
+     * This is used to expire the stale non used caches
      */
-    private Set<String> streamingFeeds = new HashSet();
+    private Map<String, DateTime> lastSyncTimeMap = new ConcurrentHashMap<>();
+
+    private DateTime lastUpdated = null;
 
     /**
-     * Set of the category.feed names
+     * The number of changes kept for the syncs before a sync that is further behind is sent a full snapshot
      */
-    private Set<String> allFeeds = new HashSet<>();
+    @Value("${kylo.nifi.flow.cache.change.log.size:1000}")
+    private int changeLogSize = DEFAULT_CHANGE_LOG_SIZE;
 
-    private Map<String, Long> feedLastUpated = new ConcurrentHashMap<>();
+    private NifiFlowCacheChangeLog changeLog = new NifiFlowCacheChangeLog(DEFAULT_CHANGE_LOG_SIZE);
 
     /**
-     * Map of the sync id to cache
-     * This is the cache of the items out there that others have built and will check/update themseleves based upon the base maps in the object
+     * The last full snapshot built, shared by the syncs that need a full snapshot of the same version
      */
-    private Map<String, NiFiFlowCacheSync> syncMap = new ConcurrentHashMap<>();
-
+    private volatile VersionedSnapshot fullSnapshot;
 
     /**
-     * Map with the sync Id and the last time that item was sync'd with the system
-     * This is used to expire the stale non used caches
+     * The number of feed process groups walked at the same time when rebuilding the cache
      */
-    private Map<String, DateTime> lastSyncTimeMap = new ConcurrentHashMap<>();
+    @Value("${kylo.nifi.flow.cache.rebuild.threads:4}")
+    private int rebuildThreads = 4;
 
-    private DateTime lastUpdated = null;
+    private NifiFeedFlowCollector feedFlowCollector;
 
     @PostConstruct
     private void init() {
+        changeLog = new NifiFlowCacheChangeLog(changeLogSize);
+        feedFlowCollector = new NifiFeedFlowCollector(nifiRestClient, rebuildThreads);
         nifiConnectionService.subscribeConnectionListener(this);
         modeShapeAvailability.subscribe(this);
         initExpireTimerThread();
@@ -245,6 +265,11 @@ public class NifiFlowCache implements NifiConnectionListener, ModeShapeAvailabil
      */
     public NiFiFlowCacheSync getCache(String syncId) {
         NiFiFlowCacheSync sync = getSync(syncId);
+        if (!sync.isUnavailable()) {
+            NiFiFlowCacheSync cache = new NiFiFlowCacheSync(sync.getSyncId(), getFullSnapshot().snapshot);
+            cache.setLastSync(sync.getLastSync());
+            return cache;
+        }
         return sync;
     }
 
@@ -265,40 +290,71 @@ public class NifiFlowCache implements NifiConnectionListener, ModeShapeAvailabil
 
     /**
      * Rebuild the base cache that others will update from.
+     * The rebuilt cache is swapped in once it is complete, so the current cache stays available while it is rebuilt.
+     * Only the feed process groups that changed since the last rebuild are walked again.
      */
     public synchronized void rebuildAll() {
-        loaded = false;
-
         try {
             ensureNiFiKyloReportingTask();
         } catch (Exception e) {
             log.error("Exception while trying to ensure KyloReportingTask {}", e.getMessage(), e);
         }
-        List<NifiFlowProcessGroup> allFlows = nifiRestClient.getFeedFlows();
+        synchronized (stateLock) {
+            rebuildUpdates = new ArrayList<>();
+        }
+        try {
+            NifiFeedFlowCollector.Result allFlows = feedFlowCollector.collect();
 
-        List<RegisteredTemplate> templates = null;
-        clearAll();
+            List<RegisteredTemplate> templates = metadataAccess.read(() -> metadataService.getRegisteredTemplates(), MetadataAccess.SERVICE);
+            CacheState rebuilt = new CacheState();
+            Map<String, RegisteredTemplate> feedTemplatesMap = new HashMap<>();
 
-        templates = metadataAccess.read(() -> metadataService.getRegisteredTemplates(), MetadataAccess.SERVICE);
-        Map<String, RegisteredTemplate> feedTemplatesMap = new HashMap<>();
+            //populate the template mappings and feeds to determine if the feed uses a streaming or batch template
+            templates.stream().forEach(template -> populateTemplateMappingCache(rebuilt, template, feedTemplatesMap));
 
-        //populate the template mappings and feeds to determine if the feed uses a streaming or batch template
-        templates.stream().forEach(template -> populateTemplateMappingCache(template, feedTemplatesMap));
+            allFlows.getFlows().stream().forEach(nifiFlowProcessGroup -> {
+                RegisteredTemplate template = feedTemplatesMap.get(nifiFlowProcessGroup.getFeedName());
+                if (template != null) {
+                    updateFlow(rebuilt, nifiFlowProcessGroup.getFeedName(), template.isStream(), nifiFlowProcessGroup.getId(), nifiFlowProcessGroup.getProcessorMap().values(),
+                               nifiFlowProcessGroup.getConnectionIdMap().values());
+                } else {
+                    //this is possibly a reusable template.
+                    //update the processorid and connection name maps
+                    updateProcessorIdMaps(rebuilt, nifiFlowProcessGroup.getFeedName(), nifiFlowProcessGroup.getProcessorMap().values());
+                    rebuilt.connectionIdToConnectionMap.putAll(toConnectionIdMap(nifiFlowProcessGroup.getConnectionIdMap().values()));
+                }
+            });
 
-        allFlows.stream().forEach(nifiFlowProcessGroup -> {
-            RegisteredTemplate template = feedTemplatesMap.get(nifiFlowProcessGroup.getFeedName());
-            if (template != null) {
-                updateFlow(nifiFlowProcessGroup.getFeedName(), template.isStream(), nifiFlowProcessGroup);
-            } else {
-                //this is possibly a reusable template.
-                //update the processorid and connection name maps
-                updateProcessorIdMaps(nifiFlowProcessGroup.getFeedName(), nifiFlowProcessGroup.getProcessorMap().values());
-                this.connectionIdToConnectionMap.putAll(toConnectionIdMap(nifiFlowProcessGroup.getConnectionIdMap().values()));
+            synchronized (stateLock) {
+                //apply the updates made while rebuilding so they are not lost when the rebuilt cache is swapped in
+                rebuildUpdates.forEach(update -> update.accept(rebuilt));
+                state = rebuilt;
+                lastUpdated = DateTimeUtil.getNowUTCTime();
+                //every sync gets a full snapshot of the rebuilt cache
+                changeLog.reset();
             }
-        });
+            log.info("Rebuilt the NiFiFlowCache in {} ms. Walked {} process groups and skipped {} unchanged process groups", allFlows.getTime(), allFlows.getWalked(),
+                     allFlows.getSkipped());
+        } finally {
+            synchronized (stateLock) {
+                rebuildUpdates = null;
+            }
+        }
         loaded = true;
+    }
 
-
+    /**
+     * Apply an update to the cache, and to the cache being rebuilt if a rebuild is running
+     *
+     * @param update the update to apply
+     */
+    private void update(Consumer<CacheState> update) {
+        synchronized (stateLock) {
+            update.accept(state);
+            if (rebuildUpdates != null) {
+                rebuildUpdates.add(update);
+            }
+        }
     }
 
     /**
@@ -369,85 +425,106 @@ public class NifiFlowCache implements NifiConnectionListener, ModeShapeAvailabil
         if (!preview) {
             lastSyncTimeMap.put(sync.getSyncId(), DateTime.now());
         }
-        if (sync.needsUpdate(lastUpdated)) {
-            Map<String, String> processorIdToFeedNameMapCopy = ImmutableMap.copyOf(processorIdToFeedNameMap);
-            Map<String, String> processorIdToFeedProcessGroupIdCopy = ImmutableMap.copyOf(processorIdToFeedProcessGroupId);
-            Map<String, String> processorIdToProcessorNameCopy = ImmutableMap.copyOf(processorIdToProcessorName);
-            Set<String> streamingFeedsCopy = ImmutableSet.copyOf(streamingFeeds);
-            Set<String> allFeedsCopy = ImmutableSet.copyOf(allFeeds);
-            Map<String, NiFiFlowCacheConnectionData> connectionDataMapCopy = ImmutableMap.copyOf(connectionIdToConnectionMap);
-
-            //get feeds updated since last sync
-            NifiFlowCacheSnapshot latest = new NifiFlowCacheSnapshot.Builder()
-                .withProcessorIdToFeedNameMap(processorIdToFeedNameMapCopy)
-                .withProcessorIdToFeedProcessGroupId(processorIdToFeedProcessGroupIdCopy)
-                .withProcessorIdToProcessorName(processorIdToProcessorNameCopy)
-                .withStreamingFeeds(streamingFeedsCopy)
-                .withFeeds(allFeedsCopy)
-                .withConnections(connectionDataMapCopy)
-                .withSnapshotDate(lastUpdated).build();
-            return syncAndReturnUpdates(sync, latest, preview);
-        } else {
+        NifiFlowCacheChangeLog.Changes changes = changeLog.changesSince(sync.getVersion());
+        if (changes != null && changes.getVersion() == sync.getVersion()) {
             return NiFiFlowCacheSync.EMPTY(sync.getSyncId());
         }
-    }
-
-
-    private NiFiFlowCacheSync syncAndReturnUpdates(NiFiFlowCacheSync sync, NifiFlowCacheSnapshot latest, boolean preview) {
-        if (latest != null && sync.needsUpdate(latest.getSnapshotDate())) {
-
-            NifiFlowCacheSnapshot updated = new NifiFlowCacheSnapshot.Builder()
-                .withProcessorIdToFeedNameMap(sync.getProcessorIdToFeedNameMapUpdatedSinceLastSync(latest.getProcessorIdToFeedNameMap()))
-                .withProcessorIdToFeedProcessGroupId(sync.getProcessorIdToProcessGroupIdUpdatedSinceLastSync(latest.getProcessorIdToFeedProcessGroupId()))
-                .withProcessorIdToProcessorName(sync.getProcessorIdToProcessorNameUpdatedSinceLastSync(latest.getProcessorIdToProcessorName()))
-                .withStreamingFeeds(latest.getAllStreamingFeeds())
-                .withConnections(sync.getConnectionIdToConnectionUpdatedSinceLastSync(latest.getConnectionIdToConnectionName(), latest.getConnectionIdToConnection()))
-                .withFeeds(sync.getFeedsUpdatedSinceLastSync(latest.getAllFeeds()))
-                .build();
-            //reset the pointers on this sync to be the latest
-            if (!preview) {
-                sync.setSnapshot(latest);
-                sync.setLastSync(latest.getSnapshotDate());
-
-            }
-            NiFiFlowCacheSync updatedSync = new NiFiFlowCacheSync(sync.getSyncId(), updated);
-            updatedSync.setUpdated(true);
-            if (!preview) {
-                updatedSync.setLastSync(latest.getSnapshotDate());
-            }
-            return updatedSync;
-
+        long version;
+        NifiFlowCacheSnapshot updated;
+        if (changes == null) {
+            VersionedSnapshot snapshot = getFullSnapshot();
+            version = snapshot.version;
+            updated = snapshot.snapshot;
+        } else {
+            version = changes.getVersion();
+            updated = getChangedSnapshot(changes);
         }
 
-        return NiFiFlowCacheSync.EMPTY(sync.getSyncId());
+        //reset the pointers on this sync to be the latest
+        if (!preview) {
+            sync.setVersion(version);
+            sync.setLastSync(updated.getSnapshotDate());
+        }
+        NiFiFlowCacheSync updatedSync = new NiFiFlowCacheSync(sync.getSyncId(), updated);
+        updatedSync.setUpdated(true);
+        if (!preview) {
+            updatedSync.setLastSync(updated.getSnapshotDate());
+        }
+        return updatedSync;
     }
 
+    /**
+     * Build a snapshot of the whole cache, or reuse the last one built if nothing has changed since
+     */
+    private VersionedSnapshot getFullSnapshot() {
+        VersionedSnapshot snapshot = fullSnapshot;
+        long version = changeLog.getVersion();
+        if (snapshot == null || snapshot.version != version) {
+            CacheState state = this.state;
+            NifiFlowCacheSnapshot latest = new NifiFlowCacheSnapshot.Builder()
+                .withProcessorIdToFeedNameMap(ImmutableMap.copyOf(state.processorIdToFeedNameMap))
+                .withProcessorIdToFeedProcessGroupId(ImmutableMap.copyOf(state.processorIdToFeedProcessGroupId))
+                .withProcessorIdToProcessorName(ImmutableMap.copyOf(state.processorIdToProcessorName))
+                .withStreamingFeeds(ImmutableSet.copyOf(state.streamingFeeds))
+                .withFeeds(ImmutableSet.copyOf(state.allFeeds))
+                .withConnections(ImmutableMap.copyOf(state.connectionIdToConnectionMap))
+                .withSnapshotDate(lastUpdated).build();
+            snapshot = new VersionedSnapshot(version, latest);
+            fullSnapshot = snapshot;
+        }
+        return snapshot;
+    }
 
     /**
-     * clears the current cache
-     ***/
-    private void clearAll() {
-        processorIdToFeedProcessGroupId.clear();
-        processorIdToFeedProcessGroupId.clear();
-        processorIdToProcessorName.clear();
-        connectionIdToConnectionMap.clear();
-        connectionIdCacheNameMap.clear();
-        streamingFeeds.clear();
-        allFeeds.clear();
-        feedNameToTemplateNameMap.clear();
+     * Build a snapshot of only the entries that have changed
+     */
+    private NifiFlowCacheSnapshot getChangedSnapshot(NifiFlowCacheChangeLog.Changes changes) {
+        CacheState state = this.state;
+        Map<String, String> processorIdToFeedName = new HashMap<>();
+        Map<String, String> processorIdToProcessGroupId = new HashMap<>();
+        Map<String, String> processorIdToName = new HashMap<>();
+        for (String processorId : changes.getProcessorIds()) {
+            putIfPresent(processorIdToFeedName, processorId, state.processorIdToFeedNameMap.get(processorId));
+            putIfPresent(processorIdToProcessGroupId, processorId, state.processorIdToFeedProcessGroupId.get(processorId));
+            putIfPresent(processorIdToName, processorId, state.processorIdToProcessorName.get(processorId));
+        }
+        Map<String, NiFiFlowCacheConnectionData> connections = new HashMap<>();
+        for (String connectionId : changes.getConnectionIds()) {
+            putIfPresent(connections, connectionId, state.connectionIdToConnectionMap.get(connectionId));
+        }
+        Set<String> feeds = new HashSet<>(changes.getFeeds());
+        feeds.retainAll(state.allFeeds);
+
+        //the streaming feeds are always sent in full as the client replaces its set
+        return new NifiFlowCacheSnapshot.Builder()
+            .withProcessorIdToFeedNameMap(processorIdToFeedName)
+            .withProcessorIdToFeedProcessGroupId(processorIdToProcessGroupId)
+            .withProcessorIdToProcessorName(processorIdToName)
+            .withStreamingFeeds(ImmutableSet.copyOf(state.streamingFeeds))
+            .withConnections(connections)
+            .withFeeds(feeds)
+            .withSnapshotDate(lastUpdated)
+            .build();
+    }
+
+    private static <V> void putIfPresent(Map<String, V> map, String key, V value) {
+        if (value != null) {
+            map.put(key, value);
+        }
     }
 
-    private void populateTemplateMappingCache(RegisteredTemplate template, Map<String, RegisteredTemplate> feedTemplatesMap) {
+
+    private void populateTemplateMappingCache(CacheState state, RegisteredTemplate template, Map<String, RegisteredTemplate> feedTemplatesMap) {
 
         template.getFeedNames().stream().forEach(feedName -> {
             if (feedTemplatesMap != null) {
                 feedTemplatesMap.put(feedName, template);
             }
-            feedNameToTemplateNameMap.put(feedName, template.getTemplateName());
+            state.feedNameToTemplateNameMap.put(feedName, template.getTemplateName());
             if (template.isStream()) {
-                streamingFeeds.add(feedName);
+                state.streamingFeeds.add(feedName);
             } else {
-                streamingFeeds.remove(feedName);
+                state.streamingFeeds.remove(feedName);
             }
         });
     }
@@ -530,22 +607,26 @@ public class NifiFlowCache implements NifiConnectionListener, ModeShapeAvailabil
      * Called after someone updates/Registers a template in the UI using the template stepper
      * This is used to update the feed marker for streaming/batch feeds
      */
-    public synchronized void updateRegisteredTemplate(RegisteredTemplate template) {
+    public void updateRegisteredTemplate(RegisteredTemplate template) {
+        update(state -> {
+            populateTemplateMappingCache(state, template, null);
 
-        populateTemplateMappingCache(template, null);
+            //update the processortype cachefeedNameToTemplateNameMap
+            List<String>
+                feedNames =
+                state.feedNameToTemplateNameMap.entrySet().stream().filter(entry -> entry.getValue().equalsIgnoreCase(template.getTemplateName())).map(entry -> entry.getKey())
+                    .collect(Collectors.toList());
 
-        //update the processortype cachefeedNameToTemplateNameMap
-        List<String>
-            feedNames =
-            feedNameToTemplateNameMap.entrySet().stream().filter(entry -> entry.getValue().equalsIgnoreCase(template.getTemplateName())).map(entry -> entry.getKey()).collect(Collectors.toList());
-
-        log.info("Updated Template: {}, found {} associated feeds ", template.getTemplateName(), feedNames.size());
-        if (template.isStream()) {
-            streamingFeeds.addAll(feedNames);
-        } else {
-            streamingFeeds.removeAll(feedNames);
-        }
+            log.info("Updated Template: {}, found {} associated feeds ", template.getTemplateName(), feedNames.size());
+            if (template.isStream()) {
+                state.streamingFeeds.addAll(feedNames);
+            } else {
+                state.streamingFeeds.removeAll(feedNames);
+            }
+        });
         lastUpdated = DateTimeUtil.getNowUTCTime();
+        //the streaming feeds are sent with every change
+        changeLog.record(Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
 
     }
 
@@ -563,7 +644,9 @@ public class NifiFlowCache implements NifiConnectionListener, ModeShapeAvailabil
             processorIdToProcessorName.put(flowProcessor.getId(), flowProcessor.getName());
         });
 
-        this.processorIdToProcessorName.putAll(processorIdToProcessorName);
+        update(state -> state.processorIdToProcessorName.putAll(processorIdToProcessorName));
+        lastUpdated = DateTimeUtil.getNowUTCTime();
+        changeLog.record(processorIdToProcessorName.keySet(), Collections.emptySet(), Collections.emptySet());
     }
 
     /**
@@ -583,7 +666,10 @@ public class NifiFlowCache implements NifiConnectionListener, ModeShapeAvailabil
 
             });
         }
-        this.connectionIdToConnectionMap.putAll(toConnectionIdMap(connectionIdToConnectionMap.values()));
+        Map<String, NiFiFlowCacheConnectionData> connectionData = toConnectionIdMap(connectionIdToConnectionMap.values());
+        update(state -> state.connectionIdToConnectionMap.putAll(connectionData));
+        lastUpdated = DateTimeUtil.getNowUTCTime();
+        changeLog.record(Collections.emptySet(), connectionIdToConnectionMap.keySet(), Collections.emptySet());
     }
 
 
@@ -614,47 +700,45 @@ public class NifiFlowCache implements NifiConnectionListener, ModeShapeAvailabil
 
 
     private void updateFlow(String feedName, boolean isStream, String feedProcessGroupId, Collection<NifiFlowProcessor> processors, Collection<NifiFlowConnection> connections) {
-        feedFlowIdProcessorMap.put(feedName, toFlowIdProcessorMap(processors));
-        feedProcessorIdProcessorMap.put(feedName, toProcessorIdProcessorMap(processors));
+        update(state -> updateFlow(state, feedName, isStream, feedProcessGroupId, processors, connections));
+        changeLog.record(processors.stream().map(NifiFlowProcessor::getId).collect(Collectors.toSet()),
+                         connections.stream().map(NifiFlowConnection::getConnectionIdentifier).collect(Collectors.toSet()), Collections.singleton(feedName));
+    }
 
-        updateProcessorIdMaps(feedProcessGroupId, processors);
-        Map<String, String> processorIdToProcessGroupId = new HashMap<>();
-        Map<String, String> processorIdToProcessorName = new HashMap<>();
-        processors.stream().forEach(flowProcessor -> {
-            processorIdToProcessGroupId.put(flowProcessor.getId(), feedProcessGroupId);
-            processorIdToProcessorName.put(flowProcessor.getId(), flowProcessor.getName());
-        });
-        this.processorIdToFeedProcessGroupId.putAll(processorIdToProcessGroupId);
-        this.processorIdToProcessorName.putAll(processorIdToProcessorName);
+    private void updateFlow(CacheState state, String feedName, boolean isStream, String feedProcessGroupId, Collection<NifiFlowProcessor> processors,
+                            Collection<NifiFlowConnection> connections) {
+        state.feedFlowIdProcessorMap.put(feedName, toFlowIdProcessorMap(processors));
+        state.feedProcessorIdProcessorMap.put(feedName, toProcessorIdProcessorMap(processors));
+
+        updateProcessorIdMaps(state, feedProcessGroupId, processors);
 
-        connectionIdToConnectionMap.putAll(toConnectionIdMap(connections));
+        state.connectionIdToConnectionMap.putAll(toConnectionIdMap(connections));
 
         if (connections != null) {
             Map<String, String> connectionIdToNameMap = connections.stream().collect(Collectors.toMap(conn -> conn.getConnectionIdentifier(), conn -> conn.getName()));
-            connectionIdCacheNameMap.putAll(connectionIdToNameMap);
+            state.connectionIdCacheNameMap.putAll(connectionIdToNameMap);
         }
 
-        processorIdMap.putAll(toProcessorIdMap(processors));
-        processorIdToFeedNameMap.putAll(toProcessorIdFeedNameMap(processors, feedName));
+        state.processorIdMap.putAll(toProcessorIdMap(processors));
+        state.processorIdToFeedNameMap.putAll(toProcessorIdFeedNameMap(processors, feedName));
         lastUpdated = DateTimeUtil.getNowUTCTime();
 
         if (isStream) {
-            streamingFeeds.add(feedName);
+            state.streamingFeeds.add(feedName);
         }
-        allFeeds.add(feedName);
-        feedLastUpated.put(feedName, lastUpdated.getMillis());
-
+        state.allFeeds.add(feedName);
+        state.feedLastUpated.put(feedName, lastUpdated.getMillis());
     }
 
-    private void updateProcessorIdMaps(String processGroupId, Collection<NifiFlowProcessor> processors) {
+    private void updateProcessorIdMaps(CacheState state, String processGroupId, Collection<NifiFlowProcessor> processors) {
         Map<String, String> processorIdToProcessGroupId = new HashMap<>();
         Map<String, String> processorIdToProcessorName = new HashMap<>();
         processors.stream().forEach(flowProcessor -> {
             processorIdToProcessGroupId.put(flowProcessor.getId(), processGroupId);
             processorIdToProcessorName.put(flowProcessor.getId(), flowProcessor.getName());
         });
-        this.processorIdToFeedProcessGroupId.putAll(processorIdToProcessGroupId);
-        this.processorIdToProcessorName.putAll(processorIdToProcessorName);
+        state.processorIdToFeedProcessGroupId.putAll(processorIdToProcessGroupId);
+        state.processorIdToProcessorName.putAll(processorIdToProcessorName);
 
     }
 
@@ -692,7 +776,7 @@ public class NifiFlowCache implements NifiConnectionListener, ModeShapeAvailabil
     }
 
     public CacheSummary cacheSummary() {
-        return CacheSummary.build(syncMap);
+        return CacheSummary.build(syncMap, changeLog.getVersion());
     }
 
     private void initExpireTimerThread() {
@@ -728,6 +812,54 @@ public class NifiFlowCache implements NifiConnectionListener, ModeShapeAvailabil
         }
     }
 
+    /**
+     * The processors, connections and feeds in the cache.
+     * A rebuild populates a new state and swaps it in whole, so readers see either the cache before or after the rebuild.
+     */
+    private static class CacheState {
+
+        private final Map<String, String> feedNameToTemplateNameMap = new ConcurrentHashMap<>();
+
+        private final Map<String, Map<String, List<NifiFlowProcessor>>> feedFlowIdProcessorMap = new ConcurrentHashMap<>();
+
+        private final Map<String, Map<String, List<NifiFlowProcessor>>> feedProcessorIdProcessorMap = new ConcurrentHashMap<>();
+
+        private final Map<String, NifiFlowProcessor> processorIdMap = new ConcurrentHashMap<>();
+
+        private final Map<String, String> processorIdToFeedProcessGroupId = new ConcurrentHashMap<>();
+
+        private final Map<String, String> processorIdToFeedNameMap = new ConcurrentHashMap<>();
+        private final Map<String, String> processorIdToProcessorName = new ConcurrentHashMap<>();
+        private final Map<String, NiFiFlowCacheConnectionData> connectionIdToConnectionMap = new ConcurrentHashMap<>();
+        private final Map<String, String> connectionIdCacheNameMap = new ConcurrentHashMap<>();
+
+        /**
+         * Set of the category.feed names for those that are just streaming feeds
+         */
+        private final Set<String> streamingFeeds = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Set of the category.feed names
+         */
+        private final Set<String> allFeeds = ConcurrentHashMap.newKeySet();
+
+        private final Map<String, Long> feedLastUpated = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * A full snapshot of the cache and the version it was built from
+     */
+    private static class VersionedSnapshot {
+
+        private final long version;
+        private final NifiFlowCacheSnapshot snapshot;
+
+        private VersionedSnapshot(long version, NifiFlowCacheSnapshot snapshot) {
+            this.version = version;
+            this.snapshot = snapshot;
+        }
+    }
+
     public static class CacheSummary {
 
         private Map<String, Integer> summary = new HashMap<>();
@@ -742,11 +874,14 @@ public class NifiFlowCache implements NifiConnectionListener, ModeShapeAvailabil
             this.cachedSyncIds = cacheIds.keySet().size();
         }
 
-        public static CacheSummary build(Map<String, NiFiFlowCacheSync> syncMap) {
+        /**
+         * Summarize the syncs with the number of versions each sync is behind the cache.  A sync that has not received anything is the version of the cache behind.
+         */
+        public static CacheSummary build(Map<String, NiFiFlowCacheSync> syncMap, long version) {
             Map<String, Integer>
                 cacheIds =
                 syncMap.entrySet().stream().collect(Collectors.toMap(stringNiFiFlowCacheSyncEntry -> stringNiFiFlowCacheSyncEntry.getKey(),
-                                                                     stringNiFiFlowCacheSyncEntry1 -> stringNiFiFlowCacheSyncEntry1.getValue().getSnapshot().getProcessorIdToFeedNameMap().size()));
+                                                                     stringNiFiFlowCacheSyncEntry1 -> (int) (version - Math.max(0L, stringNiFiFlowCacheSyncEntry1.getValue().getVersion()))));
             return new CacheSummary(cacheIds);
         }
 
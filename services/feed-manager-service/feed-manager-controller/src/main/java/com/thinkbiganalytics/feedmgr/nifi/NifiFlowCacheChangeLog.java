@@ -0,0 +1,148 @@
+package com.thinkbiganalytics.feedmgr.nifi;
+
+/*-
+ * #%L
+ * thinkbig-feed-manager-controller
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A bounded log of the processors, connections and feeds changed in the {@link NifiFlowCache}, by version.
+ *
+ * Each change to the cache increments the version.  A sync that last received version {@code n} is sent only the entries changed after {@code n}.
+ * Once the log is full the oldest changes are dropped, and a sync that is further behind than the oldest change is sent a full snapshot instead.
+ */
+class NifiFlowCacheChangeLog {
+
+    private final int maxChanges;
+
+    /**
+     * The current version of the cache
+     */
+    private long version = 0L;
+
+    /**
+     * The log contains every change made after this version
+     */
+    private long baseVersion = 0L;
+
+    private final NavigableMap<Long, Changes> changes = new TreeMap<>();
+
+    /**
+     * @param maxChanges the number of changes to keep before the oldest are dropped
+     */
+    NifiFlowCacheChangeLog(int maxChanges) {
+        this.maxChanges = Math.max(1, maxChanges);
+    }
+
+    /**
+     * Record a change to the cache
+     *
+     * @param processorIds  the processors that were added or updated
+     * @param connectionIds the connections that were added or updated
+     * @param feeds         the feeds that were added or updated
+     * @return the new version of the cache
+     */
+    synchronized long record(Collection<String> processorIds, Collection<String> connectionIds, Collection<String> feeds) {
+        version++;
+        changes.put(version, new Changes(version, processorIds, connectionIds, feeds));
+        while (changes.size() > maxChanges) {
+            baseVersion = changes.pollFirstEntry().getKey();
+        }
+        return version;
+    }
+
+    /**
+     * Drop all of the changes so every sync is sent a full snapshot, used when the whole cache is rebuilt
+     *
+     * @return the new version of the cache
+     */
+    synchronized long reset() {
+        version++;
+        baseVersion = version;
+        changes.clear();
+        return version;
+    }
+
+    synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Collect the changes made after the given version
+     *
+     * @param sinceVersion the version the sync last received, or a negative number if it has not received anything
+     * @return the changes up to the current version, or null if the changes are no longer in the log and a full snapshot is needed
+     */
+    synchronized Changes changesSince(long sinceVersion) {
+        if (sinceVersion < baseVersion || sinceVersion > version) {
+            return null;
+        }
+        Changes since = new Changes(version, Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+        for (Changes change : changes.tailMap(sinceVersion, false).values()) {
+            since.processorIds.addAll(change.processorIds);
+            since.connectionIds.addAll(change.connectionIds);
+            since.feeds.addAll(change.feeds);
+        }
+        return since;
+    }
+
+    synchronized int size() {
+        return changes.size();
+    }
+
+    /**
+     * The entries changed up to a version of the cache
+     */
+    static class Changes {
+
+        private final long version;
+        private final Set<String> processorIds;
+        private final Set<String> connectionIds;
+        private final Set<String> feeds;
+
+        private Changes(long version, Collection<String> processorIds, Collection<String> connectionIds, Collection<String> feeds) {
+            this.version = version;
+            this.processorIds = new HashSet<>(processorIds);
+            this.connectionIds = new HashSet<>(connectionIds);
+            this.feeds = new HashSet<>(feeds);
+        }
+
+        long getVersion() {
+            return version;
+        }
+
+        Set<String> getProcessorIds() {
+            return processorIds;
+        }
+
+        Set<String> getConnectionIds() {
+            return connectionIds;
+        }
+
+        Set<String> getFeeds() {
+            return feeds;
+        }
+    }
+}
@@ -949,7 +949,7 @@ public class FeedsController {
     public Feed setPrecondition(@PathParam("feedId") final String feedId, final FeedPrecondition precond) {
         LOG.debug("Add feed precondition, feed ID: {}, precondition: {}", feedId, precond);
 
-        return this.metadata.commit(() -> {
+        Feed feed = this.metadata.commit(() -> {
             this.accessController.checkPermission(AccessController.SERVICES, FeedsAccessControl.EDIT_FEEDS);
 
             com.thinkbiganalytics.metadata.api.feed.Feed.ID domainFeedId = feedProvider.resolveFeed(feedId);
@@ -964,6 +964,9 @@ public class FeedsController {
 
             return Model.DOMAIN_TO_FEED.apply(domainFeed);
         });
+
+        this.preconditionService.refreshPreconditionIndex(this.metadata.read(() -> feedProvider.resolveFeed(feedId)));
+        return feed;
     }
 
 
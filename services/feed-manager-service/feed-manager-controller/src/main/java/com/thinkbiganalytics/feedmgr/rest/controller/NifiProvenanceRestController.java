@@ -23,6 +23,8 @@ package com.thinkbiganalytics.feedmgr.rest.controller;
 import com.thinkbiganalytics.feedmgr.nifi.NifiFlowCache;
 import com.thinkbiganalytics.metadata.api.MetadataAccess;
 import com.thinkbiganalytics.metadata.api.jobrepo.nifi.NifiFeedProcessorStatisticsProvider;
+import com.thinkbiganalytics.metadata.jobrepo.nifi.provenance.ProvenanceEventLanes;
+import com.thinkbiganalytics.metadata.jobrepo.nifi.provenance.ProvenanceEventReceiver;
 import com.thinkbiganalytics.metadata.rest.model.nifi.NiFiFlowCacheSync;
 import com.thinkbiganalytics.security.AccessController;
 
@@ -32,6 +34,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 import javax.inject.Inject;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -65,6 +69,8 @@ public class NifiProvenanceRestController {
     private AccessController accessController;
     @Autowired
     private NifiFeedProcessorStatisticsProvider statsProvider;
+    @Inject
+    private ProvenanceEventReceiver provenanceEventReceiver;
 
     @GET
     @Path("/nifi-flow-cache/get-flow-updates")
@@ -172,4 +178,16 @@ public class NifiProvenanceRestController {
             return Response.ok(maxId).build();
         }, MetadataAccess.SERVICE);
     }
+
+    @GET
+    @Path("/event-lanes")
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation("Gets the queue depth, apply latency and retries for each lane applying provenance events.")
+    @ApiResponses(
+        @ApiResponse(code = 200, message = "Returns the lane metrics.", response = ProvenanceEventLanes.LaneStats.class, responseContainer = "List")
+    )
+    public Response getEventLanes() {
+        List<ProvenanceEventLanes.LaneStats> stats = provenanceEventReceiver.getLaneStats();
+        return Response.ok(stats).build();
+    }
 }
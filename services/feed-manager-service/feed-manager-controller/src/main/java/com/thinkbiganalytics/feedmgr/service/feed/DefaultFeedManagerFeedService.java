@@ -114,6 +114,8 @@ public class DefaultFeedManagerFeedService extends AbstractFeedManagerFeedServic
     @Inject
     FeedModelTransform feedModelTransform;
     @Inject
+    FeedModelCache feedModelCache;
+    @Inject
     ServiceLevelAgreementProvider slaProvider;
     @Inject
     ServiceLevelAgreementService serviceLevelAgreementService;
@@ -214,7 +216,7 @@ public class DefaultFeedManagerFeedService extends AbstractFeedManagerFeedServic
             Collection<FeedMetadata> feeds = null;
             List<FeedManagerFeed> domainFeeds = feedManagerFeedProvider.findAll();
             if (domainFeeds != null) {
-                feeds = feedModelTransform.domainToFeedMetadata(domainFeeds);
+                feeds = feedModelCache.getFeedMetadata(domainFeeds);
             }
             return feeds;
         });
@@ -238,9 +240,9 @@ public class DefaultFeedManagerFeedService extends AbstractFeedManagerFeedServic
             this.accessController.checkPermission(AccessController.SERVICES, FeedsAccessControl.ACCESS_FEEDS);
 
             List<FeedSummary> feeds = null;
-            Collection<? extends Feed> domainFeeds = feedManagerFeedProvider.findAll();
+            List<FeedManagerFeed> domainFeeds = feedManagerFeedProvider.findAll();
             if (domainFeeds != null) {
-                feeds = feedModelTransform.domainToFeedSummary(domainFeeds);
+                feeds = feedModelCache.getFeedSummaries(domainFeeds);
             }
             return feeds;
         });
@@ -631,6 +633,7 @@ public class DefaultFeedManagerFeedService extends AbstractFeedManagerFeedServic
         this.accessController.checkPermission(AccessController.SERVICES, FeedsAccessControl.ADMIN_FEEDS);
 
         feedProvider.setUserFields(UserPropertyTransform.toUserFieldDescriptors(userFields));
+        feedModelCache.invalidateAll();
     }
 
     @Nonnull
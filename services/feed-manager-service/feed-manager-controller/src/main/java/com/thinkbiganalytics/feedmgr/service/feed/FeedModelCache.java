@@ -0,0 +1,206 @@
+package com.thinkbiganalytics.feedmgr.service.feed;
+
+/*-
+ * #%L
+ * thinkbig-feed-manager-controller
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.feedmgr.rest.model.FeedMetadata;
+import com.thinkbiganalytics.feedmgr.rest.model.FeedSummary;
+import com.thinkbiganalytics.metadata.api.event.MetadataEventListener;
+import com.thinkbiganalytics.metadata.api.event.MetadataEventService;
+import com.thinkbiganalytics.metadata.api.event.feed.FeedChangeEvent;
+import com.thinkbiganalytics.metadata.api.feed.Feed;
+import com.thinkbiganalytics.metadata.api.feedmgr.feed.FeedManagerFeed;
+
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+/**
+ * Caches the Feed Manager models of the feeds shown in the feed listings, so a listing only transforms the feeds that changed since the previous one.
+ *
+ * Each entry is stamped with the last modified time of the feed node and of its category and template nodes, and the feed is transformed again when any of them has changed.
+ * Entries are also evicted when a {@link FeedChangeEvent} is received for the feed, or for a feed listed in its used by feeds.
+ *
+ * The cached models are shared by every caller and must not be modified.
+ */
+public class FeedModelCache {
+
+    @Inject
+    private FeedModelTransform feedModelTransform;
+
+    @Inject
+    private MetadataEventService metadataEventService;
+
+    private final MetadataEventListener<FeedChangeEvent> feedChangeListener = new FeedChangeListener();
+
+    /**
+     * feed id to the cached feed metadata
+     */
+    private final Map<String, Entry<FeedMetadata>> feedMetadata = new ConcurrentHashMap<>();
+
+    /**
+     * feed id to the cached feed summary
+     */
+    private final Map<String, Entry<FeedSummary>> feedSummaries = new ConcurrentHashMap<>();
+
+    /**
+     * Adds listeners for evicting changed feeds.
+     */
+    @PostConstruct
+    public void addEventListener() {
+        metadataEventService.addListener(feedChangeListener);
+    }
+
+    /**
+     * Removes listeners and stops evicting changed feeds.
+     */
+    @PreDestroy
+    public void removeEventListener() {
+        metadataEventService.removeListener(feedChangeListener);
+    }
+
+    /**
+     * Gets the Feed Manager feeds for the specified Metadata feeds, transforming only the feeds that are not cached or have changed.
+     *
+     * @param domain the Metadata feeds
+     * @return the Feed Manager feeds, in the same order
+     */
+    @Nonnull
+    public List<FeedMetadata> getFeedMetadata(@Nonnull final Collection<? extends FeedManagerFeed> domain) {
+        return getModels(domain, feedMetadata, feedModelTransform::domainToFeedMetadata);
+    }
+
+    /**
+     * Gets the Feed Manager feed summaries for the specified Metadata feeds, transforming only the feeds that are not cached or have changed.
+     *
+     * @param domain the Metadata feeds
+     * @return the Feed Manager feed summaries, in the same order
+     */
+    @Nonnull
+    public List<FeedSummary> getFeedSummaries(@Nonnull final Collection<? extends FeedManagerFeed> domain) {
+        return getModels(domain, feedSummaries, feedModelTransform::domainToFeedSummary);
+    }
+
+    /**
+     * Evicts a feed, and any feed that lists it in its used by feeds.
+     *
+     * @param feedId the feed id
+     */
+    public void invalidate(@Nonnull final String feedId) {
+        feedSummaries.remove(feedId);
+        feedMetadata.remove(feedId);
+        feedMetadata.values().removeIf(entry -> entry.model.getUsedByFeeds() != null
+                                                && entry.model.getUsedByFeeds().stream().anyMatch(usedBy -> feedId.equals(usedBy.getFeedId())));
+    }
+
+    /**
+     * Evicts every feed. This is needed when something shared by all the feeds changes, like the user-defined fields.
+     */
+    public void invalidateAll() {
+        feedSummaries.clear();
+        feedMetadata.clear();
+    }
+
+    private <T> List<T> getModels(Collection<? extends FeedManagerFeed> domain, Map<String, Entry<T>> cache, Function<List<FeedManagerFeed>, List<T>> transform) {
+        final List<T> models = new ArrayList<>(domain.size());
+        final List<FeedManagerFeed> changed = new ArrayList<>();
+        final List<Integer> changedIndexes = new ArrayList<>();
+
+        for (FeedManagerFeed feed : domain) {
+            final Entry<T> entry = cache.get(feed.getId().toString());
+            if (entry != null && entry.isCurrent(feed)) {
+                models.add(entry.model);
+            } else {
+                changedIndexes.add(models.size());
+                changed.add(feed);
+                models.add(null);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            final List<T> transformed = transform.apply(changed);
+            for (int i = 0; i < changed.size(); i++) {
+                final FeedManagerFeed feed = changed.get(i);
+                final T model = transformed.get(i);
+                cache.put(feed.getId().toString(), new Entry<>(feed, model));
+                models.set(changedIndexes.get(i), model);
+            }
+        }
+        return models;
+    }
+
+    private static long time(DateTime time) {
+        return time != null ? time.getMillis() : -1L;
+    }
+
+    private static long categoryTime(FeedManagerFeed<?> feed) {
+        return feed.getCategory() != null ? time(feed.getCategory().getModifiedTime()) : -1L;
+    }
+
+    private static long templateTime(FeedManagerFeed<?> feed) {
+        return feed.getTemplate() != null ? time(feed.getTemplate().getModifiedTime()) : -1L;
+    }
+
+    /**
+     * A cached model and the last modified times of the nodes it was transformed from
+     */
+    private static class Entry<T> {
+
+        private final long feedModified;
+        private final long categoryModified;
+        private final long templateModified;
+        private final T model;
+
+        Entry(FeedManagerFeed<?> feed, T model) {
+            this.feedModified = time(feed.getModifiedTime());
+            this.categoryModified = categoryTime(feed);
+            this.templateModified = templateTime(feed);
+            this.model = model;
+        }
+
+        boolean isCurrent(FeedManagerFeed<?> feed) {
+            return feedModified == time(feed.getModifiedTime()) && categoryModified == categoryTime(feed) && templateModified == templateTime(feed);
+        }
+    }
+
+    /**
+     * Evicts feeds that have been created, updated or deleted.
+     */
+    private class FeedChangeListener implements MetadataEventListener<FeedChangeEvent> {
+
+        @Override
+        public void notify(@Nonnull final FeedChangeEvent event) {
+            final Feed.ID feedId = event.getData().getFeedId();
+            if (feedId != null) {
+                invalidate(feedId.toString());
+            }
+        }
+    }
+}
@@ -168,6 +168,11 @@ public class TestSpringConfiguration {
             public boolean unscheduleServiceLevelAgreement(ServiceLevelAgreement sla) {
                 return false;
             }
+
+            @Override
+            public void reassessFeedAgreements(String feedName) {
+
+            }
         };
     }
 
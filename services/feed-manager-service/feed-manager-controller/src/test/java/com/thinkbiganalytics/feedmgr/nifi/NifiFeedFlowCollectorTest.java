@@ -0,0 +1,171 @@
+package com.thinkbiganalytics.feedmgr.nifi;
+
+/*-
+ * #%L
+ * thinkbig-feed-manager-controller
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.nifi.rest.client.LegacyNifiRestClient;
+import com.thinkbiganalytics.nifi.rest.client.NiFiProcessGroupsRestClient;
+import com.thinkbiganalytics.nifi.rest.client.NiFiRestClient;
+import com.thinkbiganalytics.nifi.rest.model.flow.NifiFlowProcessGroup;
+import com.thinkbiganalytics.nifi.rest.visitor.NifiConnectionOrderVisitorCache;
+
+import org.apache.nifi.web.api.dto.FlowSnippetDTO;
+import org.apache.nifi.web.api.dto.ProcessGroupDTO;
+import org.apache.nifi.web.api.dto.ProcessorDTO;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Test the {@link NifiFeedFlowCollector} only walks the feed process groups that changed
+ */
+public class NifiFeedFlowCollectorTest {
+
+    private LegacyNifiRestClient nifiRestClient;
+
+    private ProcessGroupDTO root;
+
+    @Before
+    public void setup() {
+        root = processGroup("root", "NiFi Flow", null);
+        ProcessGroupDTO reusable = processGroup("reusable", "reusable_templates", "root");
+        reusable.getContents().getProcessGroups().add(feedProcessGroup("reusable-flow", "standard-ingest", "reusable"));
+        ProcessGroupDTO category = processGroup("category", "category", "root");
+        for (int i = 0; i < 3; i++) {
+            category.getContents().getProcessGroups().add(feedProcessGroup("feed-" + i, "feed_" + i, "category"));
+        }
+        root.getContents().getProcessGroups().add(category);
+        root.getContents().getProcessGroups().add(reusable);
+
+        NiFiProcessGroupsRestClient processGroups = Mockito.mock(NiFiProcessGroupsRestClient.class);
+        Mockito.when(processGroups.findRoot()).thenReturn(root);
+        NiFiRestClient restClient = Mockito.mock(NiFiRestClient.class);
+        Mockito.when(restClient.processGroups()).thenReturn(processGroups);
+        nifiRestClient = Mockito.mock(LegacyNifiRestClient.class);
+        Mockito.when(nifiRestClient.getNiFiRestClient()).thenReturn(restClient);
+        Mockito.when(nifiRestClient.getFeedFlow(Mockito.any(ProcessGroupDTO.class), Mockito.any(NifiConnectionOrderVisitorCache.class)))
+            .thenAnswer(invocation -> {
+                ProcessGroupDTO group = (ProcessGroupDTO) invocation.getArguments()[0];
+                return new NifiFlowProcessGroup(group.getId(), group.getName());
+            });
+    }
+
+    @Test
+    public void testOnlyChangedGroupsAreWalked() {
+        NifiFeedFlowCollector collector = new NifiFeedFlowCollector(nifiRestClient, 2);
+
+        NifiFeedFlowCollector.Result first = collector.collect();
+        Assert.assertEquals(4, first.getWalked());
+        Assert.assertEquals(0, first.getSkipped());
+        Assert.assertEquals("reusable_templates.standard-ingest", first.getFlows().get(0).getFeedName());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("reusable_templates.standard-ingest", "category.feed_0", "category.feed_1", "category.feed_2")),
+                            first.getFlows().stream().map(NifiFlowProcessGroup::getFeedName).collect(Collectors.toSet()));
+
+        NifiFeedFlowCollector.Result unchanged = collector.collect();
+        Assert.assertEquals(0, unchanged.getWalked());
+        Assert.assertEquals(4, unchanged.getSkipped());
+        Assert.assertEquals(4, unchanged.getFlows().size());
+
+        //rename a processor in a single feed
+        feed(1).getContents().getProcessors().iterator().next().setName("renamed");
+        NifiFeedFlowCollector.Result changed = collector.collect();
+        Assert.assertEquals(1, changed.getWalked());
+        Assert.assertEquals(3, changed.getSkipped());
+        Mockito.verify(nifiRestClient, Mockito.times(2)).getFeedFlow(Mockito.eq(feed(1)), Mockito.any(NifiConnectionOrderVisitorCache.class));
+    }
+
+    @Test
+    public void testReusableTemplateChangeWalksAll() {
+        NifiFeedFlowCollector collector = new NifiFeedFlowCollector(nifiRestClient, 2);
+        collector.collect();
+
+        ProcessGroupDTO reusable = root.getContents().getProcessGroups().stream().filter(group -> group.getName().equals("reusable_templates")).findFirst().get();
+        reusable.getContents().getProcessGroups().iterator().next().getContents().getProcessors().add(processor("new-processor", "new", "reusable-flow"));
+        NifiFeedFlowCollector.Result result = collector.collect();
+        Assert.assertEquals(4, result.getWalked());
+        Assert.assertEquals(0, result.getSkipped());
+
+        collector.reset();
+        Assert.assertEquals(4, collector.collect().getWalked());
+    }
+
+    @Test
+    public void testFingerprintIgnoresOrder() {
+        ProcessGroupDTO group = feedProcessGroup("feed", "feed", "category");
+        String fingerprint = NifiFeedFlowCollector.fingerprint(group);
+        ProcessGroupDTO reordered = feedProcessGroup("feed", "feed", "category");
+        List<ProcessorDTO> processors = new ArrayList<>(reordered.getContents().getProcessors());
+        Collections.reverse(processors);
+        reordered.getContents().setProcessors(new LinkedHashSet<>(processors));
+        Assert.assertEquals(fingerprint, NifiFeedFlowCollector.fingerprint(reordered));
+    }
+
+    private ProcessGroupDTO feed(int feed) {
+        return root.getContents().getProcessGroups().stream().filter(group -> group.getName().equals("category")).findFirst().get()
+            .getContents().getProcessGroups().stream().filter(group -> group.getName().equals("feed_" + feed)).findFirst().get();
+    }
+
+    private ProcessGroupDTO feedProcessGroup(String id, String name, String parentGroupId) {
+        ProcessGroupDTO group = processGroup(id, name, parentGroupId);
+        for (int i = 0; i < 3; i++) {
+            group.getContents().getProcessors().add(processor(id + "-processor-" + i, "processor " + i, id));
+        }
+        return group;
+    }
+
+    private ProcessGroupDTO processGroup(String id, String name, String parentGroupId) {
+        ProcessGroupDTO group = new ProcessGroupDTO();
+        group.setId(uuid(id));
+        group.setName(name);
+        group.setParentGroupId(parentGroupId != null ? uuid(parentGroupId) : null);
+        FlowSnippetDTO contents = new FlowSnippetDTO();
+        contents.setProcessGroups(new LinkedHashSet<>());
+        contents.setProcessors(new LinkedHashSet<>());
+        group.setContents(contents);
+        return group;
+    }
+
+    /**
+     * NiFi hashes the components by their UUID
+     */
+    private String uuid(String id) {
+        return UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private ProcessorDTO processor(String id, String name, String parentGroupId) {
+        ProcessorDTO processor = new ProcessorDTO();
+        processor.setId(uuid(id));
+        processor.setName(name);
+        processor.setType("org.apache.nifi.processors.standard.UpdateAttribute");
+        processor.setParentGroupId(uuid(parentGroupId));
+        return processor;
+    }
+}
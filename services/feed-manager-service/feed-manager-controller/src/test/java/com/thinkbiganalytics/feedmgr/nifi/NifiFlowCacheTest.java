@@ -0,0 +1,134 @@
+package com.thinkbiganalytics.feedmgr.nifi;
+
+/*-
+ * #%L
+ * thinkbig-feed-manager-controller
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.rest.model.nifi.NiFiFlowCacheSync;
+import com.thinkbiganalytics.nifi.rest.model.flow.NifiFlowConnection;
+import com.thinkbiganalytics.nifi.rest.model.flow.NifiFlowProcessGroup;
+import com.thinkbiganalytics.nifi.rest.model.flow.NifiFlowProcessor;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Test the versioned sync of the {@link NifiFlowCache}
+ */
+public class NifiFlowCacheTest {
+
+    private static final int PROCESSORS_PER_FEED = 20;
+
+    /**
+     * A new sync gets everything, and a sync that is up to date gets nothing
+     */
+    @Test
+    public void testFirstSyncIsFull() {
+        NifiFlowCache cache = newCache(10, 100);
+        NiFiFlowCacheSync first = cache.syncAndReturnUpdates("sync");
+        Assert.assertTrue(first.isUpdated());
+        Assert.assertEquals(10 * PROCESSORS_PER_FEED, first.getSnapshot().getProcessorIdToFeedNameMap().size());
+        Assert.assertEquals(10 * PROCESSORS_PER_FEED, first.getSnapshot().getConnectionIdToConnection().size());
+        Assert.assertEquals(10, first.getSnapshot().getAllFeeds().size());
+
+        NiFiFlowCacheSync second = cache.syncAndReturnUpdates("sync");
+        Assert.assertFalse(second.isUpdated());
+        Assert.assertTrue(second.getSnapshot().getProcessorIdToFeedNameMap().isEmpty());
+    }
+
+    /**
+     * A sync only gets the entries changed since it last synced
+     */
+    @Test
+    public void testSyncReturnsOnlyChanges() {
+        NifiFlowCache cache = newCache(10, 100);
+        cache.syncAndReturnUpdates("sync");
+
+        cache.updateFlow("category.feed_3", true, feedProcessGroup("category.feed_3", 3));
+        NiFiFlowCacheSync delta = cache.syncAndReturnUpdates("sync");
+        Assert.assertTrue(delta.isUpdated());
+        Assert.assertEquals(PROCESSORS_PER_FEED, delta.getSnapshot().getProcessorIdToFeedNameMap().size());
+        Assert.assertTrue(delta.getSnapshot().getProcessorIdToFeedNameMap().values().stream().allMatch("category.feed_3"::equals));
+        Assert.assertEquals(PROCESSORS_PER_FEED, delta.getSnapshot().getConnectionIdToConnection().size());
+        Assert.assertEquals(1, delta.getSnapshot().getAllFeeds().size());
+        Assert.assertTrue(delta.getSnapshot().getAllStreamingFeeds().contains("category.feed_3"));
+
+        //a preview does not move the sync forward
+        cache.updateFlow("category.feed_4", false, feedProcessGroup("category.feed_4", 4));
+        Assert.assertEquals(1, cache.previewUpdates("sync").getSnapshot().getAllFeeds().size());
+        Assert.assertEquals(1, cache.syncAndReturnUpdates("sync").getSnapshot().getAllFeeds().size());
+        Assert.assertEquals(0, cache.cacheSummary().getSummary().get("sync").intValue());
+    }
+
+    /**
+     * A sync that falls further behind than the change log gets a full snapshot
+     */
+    @Test
+    public void testSyncBehindChangeLogIsFull() {
+        NifiFlowCache cache = newCache(10, 3);
+        cache.syncAndReturnUpdates("sync");
+        for (int i = 0; i < 5; i++) {
+            cache.updateFlow("category.feed_" + i, false, feedProcessGroup("category.feed_" + i, i));
+        }
+        Assert.assertEquals(5, cache.cacheSummary().getSummary().get("sync").intValue());
+        NiFiFlowCacheSync full = cache.syncAndReturnUpdates("sync");
+        Assert.assertEquals(10, full.getSnapshot().getAllFeeds().size());
+        Assert.assertEquals(10 * PROCESSORS_PER_FEED, full.getSnapshot().getProcessorIdToFeedNameMap().size());
+    }
+
+    /**
+     * The delta for a single changed feed does not grow with the number of feeds
+     */
+    @Test
+    public void testDeltaIndependentOfFeedCount() {
+        for (int feeds : new int[]{10, 100, 1000}) {
+            NifiFlowCache cache = newCache(feeds, 100);
+            cache.syncAndReturnUpdates("sync");
+            for (int feed = 0; feed < feeds; feed += feeds / 10) {
+                cache.updateFlow("category.feed_" + feed, false, feedProcessGroup("category.feed_" + feed, feed));
+                NiFiFlowCacheSync delta = cache.syncAndReturnUpdates("sync");
+                Assert.assertEquals(PROCESSORS_PER_FEED, delta.getSnapshot().getProcessorIdToFeedNameMap().size());
+                Assert.assertEquals(PROCESSORS_PER_FEED, delta.getSnapshot().getConnectionIdToConnection().size());
+                Assert.assertEquals(1, delta.getSnapshot().getAllFeeds().size());
+            }
+        }
+    }
+
+    private NifiFlowCache newCache(int feeds, int changeLogSize) {
+        NifiFlowCache cache = new NifiFlowCache();
+        ReflectionTestUtils.setField(cache, "changeLog", new NifiFlowCacheChangeLog(changeLogSize));
+        for (int i = 0; i < feeds; i++) {
+            cache.updateFlow("category.feed_" + i, false, feedProcessGroup("category.feed_" + i, i));
+        }
+        ReflectionTestUtils.setField(cache, "loaded", true);
+        return cache;
+    }
+
+    private NifiFlowProcessGroup feedProcessGroup(String feedName, int feed) {
+        NifiFlowProcessGroup processGroup = new NifiFlowProcessGroup("pg-" + feed, feedName);
+        for (int i = 0; i < PROCESSORS_PER_FEED; i++) {
+            String processorId = "processor-" + feed + "-" + i;
+            processGroup.getProcessorMap().put(processorId, new NifiFlowProcessor(processorId, "processor " + i));
+            String connectionId = "connection-" + feed + "-" + i;
+            processGroup.getConnectionIdMap().put(connectionId, new NifiFlowConnection(connectionId, "success", processorId, "processor-" + feed + "-" + (i + 1)));
+        }
+        return processGroup;
+    }
+}
@@ -0,0 +1,337 @@
+package com.thinkbiganalytics.feedmgr.service.feed;
+
+/*-
+ * #%L
+ * thinkbig-feed-manager-controller
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.collect.ImmutableMap;
+import com.thinkbiganalytics.discovery.model.DefaultField;
+import com.thinkbiganalytics.discovery.model.DefaultTableSchema;
+import com.thinkbiganalytics.discovery.schema.Field;
+import com.thinkbiganalytics.feedmgr.rest.model.FeedCategory;
+import com.thinkbiganalytics.feedmgr.rest.model.FeedMetadata;
+import com.thinkbiganalytics.feedmgr.rest.model.FeedSummary;
+import com.thinkbiganalytics.feedmgr.rest.model.schema.TableSetup;
+import com.thinkbiganalytics.json.ObjectMapperSerializer;
+import com.thinkbiganalytics.metadata.api.event.MetadataChange;
+import com.thinkbiganalytics.metadata.api.event.MetadataEventListener;
+import com.thinkbiganalytics.metadata.api.event.MetadataEventService;
+import com.thinkbiganalytics.metadata.api.event.feed.FeedChange;
+import com.thinkbiganalytics.metadata.api.event.feed.FeedChangeEvent;
+import com.thinkbiganalytics.metadata.api.feed.Feed;
+import com.thinkbiganalytics.metadata.api.feedmgr.category.FeedManagerCategory;
+import com.thinkbiganalytics.metadata.api.feedmgr.feed.FeedManagerFeed;
+import com.thinkbiganalytics.metadata.api.feedmgr.template.FeedManagerTemplate;
+import com.thinkbiganalytics.nifi.rest.model.NifiProperty;
+
+import org.joda.time.DateTime;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Test the versioned feed listing cache of {@link FeedModelCache}
+ */
+public class FeedModelCacheTest {
+
+    private static final int FIELDS_PER_FEED = 20;
+
+    private static final int PROPERTIES_PER_FEED = 20;
+
+    private final AtomicInteger transformed = new AtomicInteger();
+
+    private MetadataEventService metadataEventService;
+
+    private TestDomainObject category;
+
+    private TestDomainObject template;
+
+    @Before
+    public void setUp() {
+        metadataEventService = Mockito.mock(MetadataEventService.class);
+        category = new TestDomainObject(null, null, null);
+        template = new TestDomainObject(null, null, null);
+    }
+
+    /**
+     * A second listing returns the cached models without transforming the feeds again
+     */
+    @Test
+    public void testUnchangedFeedsAreNotTransformed() {
+        FeedModelCache cache = newCache();
+        List<FeedManagerFeed> feeds = feeds(10);
+
+        List<FeedMetadata> first = cache.getFeedMetadata(feeds);
+        Assert.assertEquals(10, transformed.getAndSet(0));
+        Assert.assertEquals(feedIds(feeds), first.stream().map(FeedMetadata::getId).collect(Collectors.toList()));
+
+        List<FeedMetadata> second = cache.getFeedMetadata(feeds);
+        Assert.assertEquals(0, transformed.get());
+        for (int i = 0; i < first.size(); i++) {
+            Assert.assertSame(first.get(i), second.get(i));
+        }
+
+        List<FeedSummary> summaries = cache.getFeedSummaries(feeds);
+        Assert.assertEquals(10, transformed.getAndSet(0));
+        Assert.assertEquals(feedIds(feeds), summaries.stream().map(FeedSummary::getFeedId).collect(Collectors.toList()));
+        cache.getFeedSummaries(feeds);
+        Assert.assertEquals(0, transformed.get());
+    }
+
+    /**
+     * Only the feeds whose node, category or template has been modified are transformed again
+     */
+    @Test
+    public void testModifiedFeedsAreTransformed() {
+        FeedModelCache cache = newCache();
+        List<FeedManagerFeed> feeds = feeds(10);
+        cache.getFeedMetadata(feeds);
+        transformed.set(0);
+
+        domainObject(feeds.get(3)).modifiedTime = new DateTime(2000L);
+        List<FeedMetadata> listed = cache.getFeedMetadata(feeds);
+        Assert.assertEquals(1, transformed.getAndSet(0));
+        Assert.assertEquals(feedIds(feeds), listed.stream().map(FeedMetadata::getId).collect(Collectors.toList()));
+
+        category.modifiedTime = new DateTime(2000L);
+        cache.getFeedMetadata(feeds);
+        Assert.assertEquals(10, transformed.getAndSet(0));
+
+        template.modifiedTime = new DateTime(2000L);
+        cache.getFeedMetadata(feeds);
+        Assert.assertEquals(10, transformed.getAndSet(0));
+
+        cache.getFeedMetadata(feeds);
+        Assert.assertEquals(0, transformed.get());
+    }
+
+    /**
+     * A feed change event evicts the feed and the feeds that list it in their used by feeds
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFeedChangeEventEvicts() {
+        FeedModelCache cache = newCache();
+        ArgumentCaptor<MetadataEventListener> listener = ArgumentCaptor.forClass(MetadataEventListener.class);
+        Mockito.verify(metadataEventService).addListener(listener.capture());
+
+        List<FeedManagerFeed> feeds = feeds(10);
+        List<FeedMetadata> listed = cache.getFeedMetadata(feeds);
+        FeedSummary usedBy = new FeedSummary();
+        usedBy.setFeedId(feeds.get(2).getId().toString());
+        listed.get(5).setUsedByFeeds(Collections.singletonList(usedBy));
+        transformed.set(0);
+
+        FeedChange change = new FeedChange(MetadataChange.ChangeType.UPDATE, feeds.get(2).getId(), Feed.State.ENABLED);
+        listener.getValue().notify(new FeedChangeEvent(change));
+
+        cache.getFeedMetadata(feeds);
+        Assert.assertEquals(2, transformed.getAndSet(0));
+
+        cache.invalidateAll();
+        cache.getFeedMetadata(feeds);
+        Assert.assertEquals(10, transformed.get());
+    }
+
+    /**
+     * A warm listing of a reordered subset of the feeds returns the same models, in the order requested, as a cold listing
+     */
+    @Test
+    public void testWarmListingMatchesColdListing() {
+        FeedModelCache cache = newCache();
+        List<FeedManagerFeed> feeds = feeds(50);
+        cache.getFeedMetadata(feeds);
+        transformed.set(0);
+
+        List<FeedManagerFeed> subset = new ArrayList<>(feeds.subList(10, 30));
+        Collections.reverse(subset);
+        List<FeedMetadata> warm = cache.getFeedMetadata(subset);
+        Assert.assertEquals(0, transformed.getAndSet(0));
+
+        List<FeedMetadata> cold = newCache().getFeedMetadata(subset);
+        Assert.assertEquals(20, transformed.get());
+        Assert.assertEquals(feedIds(subset), warm.stream().map(FeedMetadata::getId).collect(Collectors.toList()));
+        for (int i = 0; i < cold.size(); i++) {
+            Assert.assertEquals(cold.get(i).getSystemFeedName(), warm.get(i).getSystemFeedName());
+            Assert.assertEquals(FIELDS_PER_FEED, warm.get(i).getTable().getTableSchema().getFields().size());
+            Assert.assertEquals(PROPERTIES_PER_FEED, warm.get(i).getProperties().size());
+        }
+    }
+
+    private FeedModelCache newCache() {
+        FeedModelCache cache = new FeedModelCache();
+        ReflectionTestUtils.setField(cache, "feedModelTransform", new JsonFeedModelTransform());
+        ReflectionTestUtils.setField(cache, "metadataEventService", metadataEventService);
+        cache.addEventListener();
+        return cache;
+    }
+
+    private List<FeedManagerFeed> feeds(int count) {
+        List<FeedManagerFeed> feeds = new ArrayList<>(count);
+        FeedManagerCategory categoryProxy = category.proxy(FeedManagerCategory.class);
+        FeedManagerTemplate templateProxy = template.proxy(FeedManagerTemplate.class);
+        for (int i = 0; i < count; i++) {
+            TestDomainObject feed = new TestDomainObject(new TestFeedId("feed-" + i), feedJson(i), ImmutableMap.of("getCategory", categoryProxy, "getTemplate", templateProxy));
+            feeds.add(feed.proxy(FeedManagerFeed.class));
+        }
+        return feeds;
+    }
+
+    private TestDomainObject domainObject(Object proxy) {
+        return (TestDomainObject) Proxy.getInvocationHandler(proxy);
+    }
+
+    private String feedJson(int feed) {
+        FeedMetadata feedMetadata = new FeedMetadata();
+        feedMetadata.setFeedName("Feed " + feed);
+        feedMetadata.setSystemFeedName("feed_" + feed);
+        feedMetadata.setDescription("Feed number " + feed);
+        FeedCategory feedCategory = new FeedCategory();
+        feedCategory.setId("category");
+        feedCategory.setName("Category");
+        feedCategory.setSystemName("category");
+        feedMetadata.setCategory(feedCategory);
+
+        List<Field> fields = new ArrayList<>();
+        for (int i = 0; i < FIELDS_PER_FEED; i++) {
+            DefaultField field = new DefaultField();
+            field.setName("field_" + i);
+            field.setDescription("Field " + i + " of feed " + feed);
+            field.setDerivedDataType("string");
+            fields.add(field);
+        }
+        DefaultTableSchema schema = new DefaultTableSchema();
+        schema.setName("feed_" + feed);
+        schema.setFields(fields);
+        TableSetup table = new TableSetup();
+        table.setTableSchema(schema);
+        feedMetadata.setTable(table);
+
+        List<NifiProperty> properties = new ArrayList<>();
+        for (int i = 0; i < PROPERTIES_PER_FEED; i++) {
+            properties.add(new NifiProperty("pg-" + feed, "processor-" + (i % 8), "property " + i, "value " + i + " of feed " + feed));
+        }
+        feedMetadata.setProperties(properties);
+        return ObjectMapperSerializer.serialize(feedMetadata);
+    }
+
+    private List<String> feedIds(List<FeedManagerFeed> feeds) {
+        return feeds.stream().map(feed -> feed.getId().toString()).collect(Collectors.toList());
+    }
+
+    /**
+     * Transforms feeds by deserializing their json, and counts the feeds it transforms
+     */
+    private class JsonFeedModelTransform extends FeedModelTransform {
+
+        @Nonnull
+        @Override
+        public List<FeedMetadata> domainToFeedMetadata(@Nonnull Collection<? extends FeedManagerFeed> domain) {
+            return domain.stream().map(feed -> {
+                transformed.incrementAndGet();
+                FeedMetadata feedMetadata = deserializeFeedMetadata(feed);
+                feedMetadata.setId(feed.getId().toString());
+                feedMetadata.setFeedId(feed.getId().toString());
+                return feedMetadata;
+            }).collect(Collectors.toList());
+        }
+
+        @Nonnull
+        @Override
+        public List<FeedSummary> domainToFeedSummary(@Nonnull Collection<? extends Feed> domain) {
+            return domain.stream().map(feed -> {
+                transformed.incrementAndGet();
+                FeedSummary feedSummary = new FeedSummary();
+                feedSummary.setId(feed.getId().toString());
+                feedSummary.setFeedId(feed.getId().toString());
+                return feedSummary;
+            }).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * A domain feed, category or template with a modified time that can be changed.
+     */
+    private static class TestDomainObject implements InvocationHandler {
+
+        private final Feed.ID id;
+        private final String json;
+        private final Map<String, Object> related;
+        private DateTime modifiedTime = new DateTime(1000L);
+
+        TestDomainObject(Feed.ID id, String json, Map<String, Object> related) {
+            this.id = id;
+            this.json = json;
+            this.related = related != null ? related : Collections.emptyMap();
+        }
+
+        <T> T proxy(Class<T> type) {
+            return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, this));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getJson":
+                    return json;
+                case "getModifiedTime":
+                    return modifiedTime;
+                default:
+                    if (related.containsKey(method.getName())) {
+                        return related.get(method.getName());
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+
+    private static class TestFeedId implements Feed.ID {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String id;
+
+        TestFeedId(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+}
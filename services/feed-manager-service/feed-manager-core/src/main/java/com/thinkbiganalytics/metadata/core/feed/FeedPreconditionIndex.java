@@ -0,0 +1,136 @@
+package com.thinkbiganalytics.metadata.core.feed;
+
+/*-
+ * #%L
+ * thinkbig-feed-manager-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.feed.Feed;
+import com.thinkbiganalytics.metadata.api.feed.FeedPrecondition;
+import com.thinkbiganalytics.metadata.api.sla.FeedExecutedSinceFeed;
+import com.thinkbiganalytics.metadata.sla.api.Metric;
+import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAgreement;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Reverse index from a feed to the feeds whose preconditions depend on it.
+ * <p>
+ * Feeds with a {@link FeedExecutedSinceFeed} metric are indexed under the feed named by the metric.  Feeds with any other kind of
+ * precondition metric can't be tied to a feed so they are returned for every feed.  Feeds are identified by the string form of their id
+ * as the different {@link Feed.ID} implementations for the same feed are not equal to each other.
+ */
+class FeedPreconditionIndex {
+
+    /**
+     * lower case category.feed name to the ids of the feeds with a precondition on it
+     */
+    private final Map<String, Set<String>> dependentFeeds = new HashMap<>();
+
+    /**
+     * feed id to the lower case names it is indexed under
+     */
+    private final Map<String, Set<String>> feedDependencies = new HashMap<>();
+
+    /**
+     * feeds with precondition metrics that are not tied to a feed
+     */
+    private final Set<String> unboundFeeds = new HashSet<>();
+
+    /**
+     * Extract the precondition metrics of the feed
+     *
+     * @return the metrics, empty if the feed has no precondition
+     */
+    static List<Metric> getPreconditionMetrics(Feed<?> feed) {
+        FeedPrecondition precondition = feed.getPrecondition();
+        ServiceLevelAgreement sla = precondition != null ? precondition.getAgreement() : null;
+        if (sla == null) {
+            return Collections.emptyList();
+        }
+        return sla.getObligationGroups().stream()
+            .flatMap(obligationGroup -> obligationGroup.getObligations().stream())
+            .flatMap(obligation -> obligation.getMetrics().stream())
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Replace the entries for the feed with the given precondition metrics
+     */
+    synchronized void index(String feedId, List<Metric> metrics) {
+        remove(feedId);
+        Set<String> feedNames = new HashSet<>();
+        for (Metric metric : metrics) {
+            if (metric instanceof FeedExecutedSinceFeed && ((FeedExecutedSinceFeed) metric).getCategoryAndFeed() != null) {
+                feedNames.add(((FeedExecutedSinceFeed) metric).getCategoryAndFeed().toLowerCase());
+            } else {
+                unboundFeeds.add(feedId);
+            }
+        }
+        if (!feedNames.isEmpty()) {
+            feedDependencies.put(feedId, feedNames);
+            feedNames.forEach(name -> dependentFeeds.computeIfAbsent(name, n -> new HashSet<>()).add(feedId));
+        }
+    }
+
+    synchronized void remove(String feedId) {
+        unboundFeeds.remove(feedId);
+        Set<String> feedNames = feedDependencies.remove(feedId);
+        if (feedNames != null) {
+            for (String name : feedNames) {
+                Set<String> dependents = dependentFeeds.get(name);
+                if (dependents != null) {
+                    dependents.remove(feedId);
+                    if (dependents.isEmpty()) {
+                        dependentFeeds.remove(name);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the feeds whose preconditions need to be assessed when the given feed completes
+     *
+     * @param feedName the category.feed name of the completed feed
+     * @return the ids of the feeds to assess
+     */
+    synchronized Set<String> findDependentFeeds(String feedName) {
+        Set<String> feedIds = new HashSet<>(unboundFeeds);
+        Set<String> dependents = feedName != null ? dependentFeeds.get(feedName.toLowerCase()) : null;
+        if (dependents != null) {
+            feedIds.addAll(dependents);
+        }
+        return feedIds;
+    }
+
+    /**
+     * @return the number of feeds with a precondition in the index
+     */
+    synchronized int size() {
+        Set<String> feedIds = new HashSet<>(unboundFeeds);
+        feedIds.addAll(feedDependencies.keySet());
+        return feedIds.size();
+    }
+}
@@ -25,7 +25,9 @@ package com.thinkbiganalytics.metadata.core.feed;
 
 import com.thinkbiganalytics.metadata.api.MetadataAccess;
 import com.thinkbiganalytics.metadata.api.event.MetadataEventListener;
+import com.thinkbiganalytics.metadata.api.event.MetadataChange.ChangeType;
 import com.thinkbiganalytics.metadata.api.event.MetadataEventService;
+import com.thinkbiganalytics.metadata.api.event.feed.FeedChangeEvent;
 import com.thinkbiganalytics.metadata.api.event.feed.FeedOperationStatusEvent;
 import com.thinkbiganalytics.metadata.api.event.feed.OperationStatus;
 import com.thinkbiganalytics.metadata.api.event.feed.PreconditionTriggerEvent;
@@ -43,12 +45,17 @@ import com.thinkbiganalytics.metadata.sla.spi.ServiceLevelAssessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Set;
+
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 /**
  * Service for assessing {@link FeedPrecondition}
+ * <p>
+ * When a feed completes only the preconditions of the feeds that depend on it are assessed. The dependencies are kept in a
+ * {@link FeedPreconditionIndex} that is built from all the feeds on the first completion and then kept current from feed change events.
  */
 public class FeedPreconditionService {
 
@@ -68,14 +75,71 @@ public class FeedPreconditionService {
 
     private FeedOperationListener listener = new FeedOperationListener();
 
+    private FeedChangeListener feedChangeListener = new FeedChangeListener();
+
+    private final FeedPreconditionIndex index = new FeedPreconditionIndex();
+
+    /**
+     * Guards the initial build of the index. Feed changes wait for a build in progress so they are applied on top of it.
+     */
+    private final Object indexLock = new Object();
+
+    private volatile boolean indexed = false;
+
     @PostConstruct
     public void addEventListener() {
         this.eventService.addListener(this.listener);
+        this.eventService.addListener(this.feedChangeListener);
     }
 
     @PreDestroy
     public void removeEventListener() {
         this.eventService.removeListener(this.listener);
+        this.eventService.removeListener(this.feedChangeListener);
+    }
+
+    /**
+     * Re-read the precondition of the feed into the dependency index.
+     * Call this after committing a precondition change that is not followed by a feed change event.
+     *
+     * @param feedId the id of the feed that changed
+     */
+    public void refreshPreconditionIndex(Feed.ID feedId) {
+        synchronized (indexLock) {
+            if (!indexed) {
+                // the feed will be read when the index is built
+                return;
+            }
+            String id = feedId.toString();
+            metadata.read(() -> {
+                Feed<?> feed = feedProvider.getFeed(feedProvider.resolveFeed(id));
+                if (feed != null) {
+                    index.index(id, FeedPreconditionIndex.getPreconditionMetrics(feed));
+                } else {
+                    index.remove(id);
+                }
+                return null;
+            }, MetadataAccess.SERVICE);
+        }
+    }
+
+    private void ensureIndexed() {
+        if (indexed) {
+            return;
+        }
+        synchronized (indexLock) {
+            if (!indexed) {
+                long start = System.currentTimeMillis();
+                metadata.read(() -> {
+                    for (Feed<?> feed : feedProvider.getFeeds()) {
+                        index.index(feed.getId().toString(), FeedPreconditionIndex.getPreconditionMetrics(feed));
+                    }
+                    return null;
+                }, MetadataAccess.SERVICE);
+                indexed = true;
+                log.info("Indexed the preconditions of {} feeds in {} ms", index.size(), System.currentTimeMillis() - start);
+            }
+        }
     }
 
 
@@ -122,15 +186,19 @@ public class FeedPreconditionService {
         public void notify(FeedOperationStatusEvent event) {
             FeedOperation.State state = event.getData().getState();
 
-            // TODO as precondition check criteria are not implemented yet, 
-            // check all preconditions of feeds that have them.
             if (state == FeedOperation.State.SUCCESS) {
+                ensureIndexed();
+                Set<String> feedIds = index.findDependentFeeds(event.getData().getFeedName());
+                if (feedIds.isEmpty()) {
+                    return;
+                }
                 metadata.read(() -> {
-                    for (Feed<?> feed : feedProvider.getFeeds()) {
+                    for (String feedId : feedIds) {
+                        Feed<?> feed = feedProvider.getFeed(feedProvider.resolveFeed(feedId));
                         // Don't check the precondition of the feed that that generated this change event.
                         // TODO: this might not be the correct behavior but none of our current metrics
                         // need to be assessed when the feed itself containing the precondition has changed state.
-                        if (!feed.getQualifiedName().equals(event.getData().getFeedName())) {
+                        if (feed != null && !feed.getQualifiedName().equals(event.getData().getFeedName())) {
                             checkPrecondition(feed, event.getData());
                         }
                     }
@@ -139,4 +207,23 @@ public class FeedPreconditionService {
             }
         }
     }
+
+    /**
+     * Keeps the precondition index current as feeds are created, updated and deleted
+     */
+    private class FeedChangeListener implements MetadataEventListener<FeedChangeEvent> {
+
+        @Override
+        public void notify(FeedChangeEvent event) {
+            Feed.ID feedId = event.getData().getFeedId();
+            if (feedId == null) {
+                return;
+            }
+            if (event.getData().getChange() == ChangeType.DELETE) {
+                index.remove(feedId.toString());
+            } else {
+                refreshPreconditionIndex(feedId);
+            }
+        }
+    }
 }
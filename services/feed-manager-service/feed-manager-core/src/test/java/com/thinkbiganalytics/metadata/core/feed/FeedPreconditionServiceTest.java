@@ -0,0 +1,286 @@
+package com.thinkbiganalytics.metadata.core.feed;
+
+/*-
+ * #%L
+ * thinkbig-feed-manager-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.MetadataCommand;
+import com.thinkbiganalytics.metadata.api.event.MetadataChange.ChangeType;
+import com.thinkbiganalytics.metadata.api.event.MetadataEvent;
+import com.thinkbiganalytics.metadata.api.event.MetadataEventListener;
+import com.thinkbiganalytics.metadata.api.event.MetadataEventService;
+import com.thinkbiganalytics.metadata.api.event.feed.FeedChange;
+import com.thinkbiganalytics.metadata.api.event.feed.FeedChangeEvent;
+import com.thinkbiganalytics.metadata.api.event.feed.FeedOperationStatusEvent;
+import com.thinkbiganalytics.metadata.api.event.feed.OperationStatus;
+import com.thinkbiganalytics.metadata.api.event.feed.PreconditionTriggerEvent;
+import com.thinkbiganalytics.metadata.api.feed.Feed;
+import com.thinkbiganalytics.metadata.api.feed.FeedPrecondition;
+import com.thinkbiganalytics.metadata.api.feed.FeedProvider;
+import com.thinkbiganalytics.metadata.api.op.FeedOperation;
+import com.thinkbiganalytics.metadata.api.sla.FeedExecutedSinceFeed;
+import com.thinkbiganalytics.metadata.sla.api.AssessmentResult;
+import com.thinkbiganalytics.metadata.sla.api.Metric;
+import com.thinkbiganalytics.metadata.sla.api.Obligation;
+import com.thinkbiganalytics.metadata.sla.api.ObligationGroup;
+import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAgreement;
+import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAssessment;
+import com.thinkbiganalytics.metadata.sla.spi.ServiceLevelAssessor;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.Serializable;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that a feed completion only assesses the preconditions of the feeds that depend on it, and measures the trigger latency as the number of feeds grows
+ */
+public class FeedPreconditionServiceTest {
+
+    @Mock
+    private ServiceLevelAssessor assessor;
+
+    @Mock
+    private FeedProvider feedProvider;
+
+    @Mock
+    private MetadataAccess metadata;
+
+    @Mock
+    private MetadataEventService eventService;
+
+    @InjectMocks
+    private FeedPreconditionService preconditionService;
+
+    private Map<String, Feed> feeds;
+
+    /**
+     * the precondition metrics of each feed, by feed id
+     */
+    private Map<String, Set<Metric>> preconditions;
+
+    private AtomicInteger feedLoads;
+
+    private MetadataEventListener<FeedOperationStatusEvent> operationListener;
+
+    private MetadataEventListener<FeedChangeEvent> feedChangeListener;
+
+    /**
+     * ids of the feeds a precondition trigger event was fired for
+     */
+    private List<String> triggered = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        setUp(100);
+    }
+
+    /**
+     * Create the feeds cat.feed_0 to cat.feed_n.  Every 10th feed depends on the feed before it and cat.feed_1 has a precondition that is not tied to a feed.
+     */
+    @SuppressWarnings("unchecked")
+    private void setUp(int feedCount) throws Exception {
+        preconditionService = null;
+        MockitoAnnotations.initMocks(this);
+        feeds = new HashMap<>();
+        preconditions = new HashMap<>();
+        feedLoads = new AtomicInteger();
+        for (int i = 0; i < feedCount; i++) {
+            Set<Metric> metrics = new HashSet<>();
+            if (i > 0 && i % 10 == 0) {
+                metrics.add(new FeedExecutedSinceFeed("cat.feed_" + i, "cat.feed_" + (i - 1)));
+            } else if (i == 1) {
+                metrics.add(mock(Metric.class));
+            }
+            newFeed("cat.feed_" + i, metrics);
+        }
+
+        when(metadata.read(any(MetadataCommand.class), Matchers.<Principal>anyVararg())).thenAnswer(invocation -> ((MetadataCommand<?>) invocation.getArguments()[0]).execute());
+        when(feedProvider.getFeeds()).thenAnswer(invocation -> {
+            feedLoads.addAndGet(feeds.size());
+            return new ArrayList<>(feeds.values());
+        });
+        when(feedProvider.resolveFeed(any(Serializable.class))).thenAnswer(invocation -> new TestFeedId(invocation.getArguments()[0].toString()));
+        when(feedProvider.getFeed(any(Feed.ID.class))).thenAnswer(invocation -> {
+            feedLoads.incrementAndGet();
+            return feeds.get(invocation.getArguments()[0].toString());
+        });
+
+        ServiceLevelAssessment assessment = mock(ServiceLevelAssessment.class);
+        when(assessment.getResult()).thenReturn(AssessmentResult.SUCCESS);
+        when(assessor.assess(any(ServiceLevelAgreement.class))).thenReturn(assessment);
+        doAnswer(invocation -> {
+            Object event = invocation.getArguments()[0];
+            if (event instanceof PreconditionTriggerEvent) {
+                triggered.add(((PreconditionTriggerEvent) event).getData().toString());
+            }
+            return null;
+        }).when(eventService).notify(any(MetadataEvent.class));
+
+        preconditionService.addEventListener();
+        ArgumentCaptor<MetadataEventListener> listeners = ArgumentCaptor.forClass(MetadataEventListener.class);
+        verify(eventService, times(2)).addListener(listeners.capture());
+        operationListener = listeners.getAllValues().get(0);
+        feedChangeListener = listeners.getAllValues().get(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Feed newFeed(String name, Set<Metric> metrics) {
+        String id = "id-" + name;
+        Feed feed = mock(Feed.class);
+        when(feed.getId()).thenReturn(new TestFeedId(id));
+        when(feed.getQualifiedName()).thenReturn(name);
+        when(feed.getName()).thenReturn(name);
+        preconditions.put(id, metrics);
+
+        Obligation obligation = mock(Obligation.class);
+        when(obligation.getMetrics()).thenAnswer(invocation -> preconditions.get(id));
+        ObligationGroup group = mock(ObligationGroup.class);
+        when(group.getObligations()).thenReturn(Collections.singletonList(obligation));
+        ServiceLevelAgreement sla = mock(ServiceLevelAgreement.class);
+        when(sla.getObligationGroups()).thenReturn(Collections.singletonList(group));
+        FeedPrecondition precondition = mock(FeedPrecondition.class);
+        when(precondition.getAgreement()).thenReturn(sla);
+        when(feed.getPrecondition()).thenAnswer(invocation -> preconditions.get(id).isEmpty() ? null : precondition);
+
+        feeds.put(id, feed);
+        return feed;
+    }
+
+    private List<String> complete(String feedName) {
+        triggered.clear();
+        operationListener.notify(new FeedOperationStatusEvent(new OperationStatus(feedName, null, FeedOperation.State.SUCCESS, "done")));
+        return new ArrayList<>(triggered);
+    }
+
+    private void changed(ChangeType changeType, String feedId) {
+        feedChangeListener.notify(new FeedChangeEvent(new FeedChange(changeType, new TestFeedId(feedId), Feed.State.ENABLED)));
+    }
+
+    @Test
+    public void testOnlyDependentFeedsAssessed() {
+        List<String> triggeredFeeds = complete("cat.feed_9");
+        Assert.assertEquals(2, triggeredFeeds.size());
+        Assert.assertTrue(triggeredFeeds.contains("id-cat.feed_10"));
+        Assert.assertTrue(triggeredFeeds.contains("id-cat.feed_1"));
+
+        // the index is built once, afterwards only the dependent feeds are loaded
+        feedLoads.set(0);
+        Assert.assertTrue(complete("cat.feed_19").contains("id-cat.feed_20"));
+        Assert.assertEquals(2, feedLoads.get());
+        verify(feedProvider, times(1)).getFeeds();
+
+        // a feed does not trigger itself
+        preconditions.put("id-cat.feed_30", Collections.singleton(new FeedExecutedSinceFeed("cat.feed_30", "cat.feed_30")));
+        changed(ChangeType.UPDATE, "id-cat.feed_30");
+        Assert.assertFalse(complete("cat.feed_30").contains("id-cat.feed_30"));
+    }
+
+    @Test
+    public void testIndexFollowsFeedChanges() {
+        Assert.assertTrue(complete("cat.feed_9").contains("id-cat.feed_10"));
+
+        // feed_10 now depends on feed_5 instead of feed_9
+        preconditions.put("id-cat.feed_10", Collections.singleton(new FeedExecutedSinceFeed("cat.feed_10", "cat.feed_5")));
+        changed(ChangeType.UPDATE, "id-cat.feed_10");
+        Assert.assertFalse(complete("cat.feed_9").contains("id-cat.feed_10"));
+        Assert.assertTrue(complete("cat.feed_5").contains("id-cat.feed_10"));
+
+        // a new feed that depends on feed_5
+        newFeed("cat.new_feed", Collections.singleton(new FeedExecutedSinceFeed("cat.new_feed", "CAT.FEED_5")));
+        changed(ChangeType.CREATE, "id-cat.new_feed");
+        Assert.assertTrue(complete("cat.feed_5").contains("id-cat.new_feed"));
+
+        // deleted feeds are no longer assessed
+        feeds.remove("id-cat.feed_10");
+        changed(ChangeType.DELETE, "id-cat.feed_10");
+        feedLoads.set(0);
+        List<String> triggeredFeeds = complete("cat.feed_5");
+        Assert.assertFalse(triggeredFeeds.contains("id-cat.feed_10"));
+        Assert.assertEquals(2, triggeredFeeds.size());
+        Assert.assertEquals(2, feedLoads.get());
+    }
+
+    /**
+     * Each trigger loads the same number of feeds however many feeds there are
+     */
+    @Test
+    public void testFeedLoadsIndependentOfFeedCount() throws Exception {
+        int triggers = 20;
+        for (int feedCount : new int[]{100, 1000}) {
+            setUp(feedCount);
+            complete("cat.feed_9");
+
+            feedLoads.set(0);
+            for (int i = 0; i < triggers; i++) {
+                complete("cat.feed_" + ((i * 10 + 9) % (feedCount - 10)));
+            }
+            Assert.assertEquals(2 * triggers, feedLoads.get());
+        }
+    }
+
+    private static class TestFeedId implements Feed.ID {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String id;
+
+        TestFeedId(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof TestFeedId && id.equals(((TestFeedId) obj).id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+}
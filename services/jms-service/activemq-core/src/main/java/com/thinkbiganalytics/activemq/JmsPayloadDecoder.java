@@ -0,0 +1,47 @@
+package com.thinkbiganalytics.activemq;
+
+/*-
+ * #%L
+ * thinkbig-activemq-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+
+/**
+ * Decodes the body of a JMS BytesMessage written in a binary format.
+ *
+ * The sender sets the {@link com.thinkbiganalytics.activemq.config.ActiveMqConstants#PAYLOAD_FORMAT_PROPERTY} on the message
+ * and listeners receive the decoded object in place of the raw bytes.
+ * Any Spring bean implementing this interface is registered with the JMS listener container factory.
+ */
+public interface JmsPayloadDecoder {
+
+    /**
+     * @return the value of the payload format property handled by this decoder
+     */
+    String getPayloadFormat();
+
+    /**
+     * Decode the message body
+     *
+     * @param payload the bytes of the message
+     * @return the decoded object passed to the JMS listener
+     */
+    Object decode(byte[] payload) throws IOException;
+}
@@ -20,6 +20,8 @@ package com.thinkbiganalytics.activemq;
  * #L%
  */
 
+import com.thinkbiganalytics.activemq.config.ActiveMqConstants;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,6 +34,7 @@ import org.springframework.stereotype.Component;
 
 import java.io.Serializable;
 
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.Session;
 import javax.jms.TextMessage;
@@ -65,6 +68,25 @@ public class SendJmsMessage {
     }
 
 
+    /**
+     * Send an already encoded payload as a BytesMessage tagged with its payload format.
+     * Listeners receive the object decoded by the {@link JmsPayloadDecoder} registered for the format.
+     *
+     * @param queueName     the queue to send to
+     * @param payload       the encoded bytes
+     * @param payloadFormat the format of the bytes, set as the {@link ActiveMqConstants#PAYLOAD_FORMAT_PROPERTY}
+     */
+    public void sendBytesToQueue(String queueName, final byte[] payload, final String payloadFormat) throws JmsException {
+        log.info("Sending ActiveMQ message of {} bytes in the {} format to queue [{}]", payload.length, payloadFormat, queueName);
+        MessageCreator creator = session -> {
+            BytesMessage message = session.createBytesMessage();
+            message.setStringProperty(ActiveMqConstants.PAYLOAD_FORMAT_PROPERTY, payloadFormat);
+            message.writeBytes(payload);
+            return message;
+        };
+        this.jmsMessagingTemplate.getJmsTemplate().send(queueName, creator);
+    }
+
     public void sendObjectToQueue(String queueName, final Object obj, final String objectClassType) throws JmsException {
         log.info("Sending ActiveMQ message [" + obj + "] to queue [" + queueName + "]");
         MessageCreator creator = new MessageCreator() {
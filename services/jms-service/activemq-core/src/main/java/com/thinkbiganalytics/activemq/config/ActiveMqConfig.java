@@ -20,6 +20,7 @@ package com.thinkbiganalytics.activemq.config;
  * #L%
  */
 
+import com.thinkbiganalytics.activemq.JmsPayloadDecoder;
 import com.thinkbiganalytics.activemq.ObjectMapperSerializer;
 
 import org.apache.activemq.ActiveMQConnectionFactory;
@@ -38,7 +39,8 @@ import org.springframework.jms.annotation.EnableJms;
 import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
 import org.springframework.jms.config.JmsListenerContainerFactory;
 import org.springframework.jms.core.JmsMessagingTemplate;
-import org.springframework.jms.support.converter.SimpleMessageConverter;
+
+import java.util.List;
 
 import javax.jms.ConnectionFactory;
 
@@ -59,6 +61,12 @@ public class ActiveMqConfig {
     @Autowired
     private Environment env;
 
+    /**
+     * Decoders for binary message formats provided by other modules
+     */
+    @Autowired(required = false)
+    private List<JmsPayloadDecoder> payloadDecoders;
+
     @Bean
     public ConnectionFactory connectionFactory() {
         PooledConnectionFactory pool = new PooledConnectionFactory();
@@ -72,6 +80,21 @@ public class ActiveMqConfig {
 
     @Bean
     public JmsListenerContainerFactory<?> jmsContainerFactory(ConnectionFactory connectionFactory) {
+        return createContainerFactory(connectionFactory);
+    }
+
+    /**
+     * A listener container factory whose messages are acknowledged only once the listener returns, so a message whose listener throws an exception
+     * is redelivered by the broker and sent to its dead letter queue once the redelivery policy runs out.
+     */
+    @Bean
+    public JmsListenerContainerFactory<?> transactedJmsContainerFactory(ConnectionFactory connectionFactory) {
+        DefaultJmsListenerContainerFactory factory = createContainerFactory(connectionFactory);
+        factory.setSessionTransacted(env.getProperty("jms.listener.session.transacted", Boolean.class, true));
+        return factory;
+    }
+
+    private DefaultJmsListenerContainerFactory createContainerFactory(ConnectionFactory connectionFactory) {
         DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
         factory.setPubSubDomain(false);
         factory.setConnectionFactory(connectionFactory);
@@ -79,7 +102,7 @@ public class ActiveMqConfig {
         factory.setClientId(env.getProperty("jms.client.id:thinkbig.feedmgr"));
         factory.setConcurrency("1-1");
         factory.setConnectionFactory(connectionFactory);
-        factory.setMessageConverter(new SimpleMessageConverter());
+        factory.setMessageConverter(new PayloadFormatMessageConverter(payloadDecoders));
         return factory;
     }
 
@@ -26,4 +26,15 @@ public interface ActiveMqConstants {
 
     String JMS_CONTAINER_FACTORY = "jmsContainerFactory";
 
+    /**
+     * Listener container factory with transacted sessions, for listeners whose failed messages should be redelivered
+     */
+    String TRANSACTED_JMS_CONTAINER_FACTORY = "transactedJmsContainerFactory";
+
+    /**
+     * JMS message property naming the format of a binary message body.
+     * Messages with this property are decoded by the matching {@link com.thinkbiganalytics.activemq.JmsPayloadDecoder}.
+     */
+    String PAYLOAD_FORMAT_PROPERTY = "kylo_payload_format";
+
 }
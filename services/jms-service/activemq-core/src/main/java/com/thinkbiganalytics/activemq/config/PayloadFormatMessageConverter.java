@@ -0,0 +1,68 @@
+package com.thinkbiganalytics.activemq.config;
+
+/*-
+ * #%L
+ * thinkbig-activemq-core
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.thinkbiganalytics.activemq.JmsPayloadDecoder;
+
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Converts messages tagged with the {@link ActiveMqConstants#PAYLOAD_FORMAT_PROPERTY} using the registered {@link JmsPayloadDecoder} for that format.
+ * All other messages are converted by the {@link SimpleMessageConverter}, so senders can switch formats without changing the listeners.
+ */
+public class PayloadFormatMessageConverter extends SimpleMessageConverter {
+
+    private final Map<String, JmsPayloadDecoder> decoders = new HashMap<>();
+
+    public PayloadFormatMessageConverter(List<JmsPayloadDecoder> decoders) {
+        if (decoders != null) {
+            decoders.forEach(decoder -> this.decoders.put(decoder.getPayloadFormat(), decoder));
+        }
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws JMSException, MessageConversionException {
+        String payloadFormat = message.getStringProperty(ActiveMqConstants.PAYLOAD_FORMAT_PROPERTY);
+        if (payloadFormat == null || !(message instanceof BytesMessage)) {
+            return super.fromMessage(message);
+        }
+        JmsPayloadDecoder decoder = decoders.get(payloadFormat);
+        if (decoder == null) {
+            throw new MessageConversionException("Unable to convert JMS message " + message.getJMSMessageID() + ". No decoder is registered for the payload format " + payloadFormat);
+        }
+        try {
+            return decoder.decode(extractByteArrayFromMessage((BytesMessage) message));
+        } catch (IOException e) {
+            throw new MessageConversionException("Unable to decode JMS message " + message.getJMSMessageID() + " with the payload format " + payloadFormat, e);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import com.google.common.collect.Lists;
 import com.thinkbiganalytics.DateTimeUtil;
 import com.thinkbiganalytics.jobrepo.query.model.ExecutedFeed;
 import com.thinkbiganalytics.jobrepo.query.model.FeedHealth;
+import com.thinkbiganalytics.jobrepo.query.model.FeedHealthChanges;
 import com.thinkbiganalytics.jobrepo.query.model.FeedStatus;
 import com.thinkbiganalytics.jobrepo.query.model.JobStatusCount;
 import com.thinkbiganalytics.jobrepo.query.model.transform.FeedModelTransform;
@@ -44,6 +45,7 @@ import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -123,6 +125,21 @@ public class FeedsRestController {
         });
     }
 
+    @GET
+    @Path("/health-changes")
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation("Gets the health summary of the feeds that changed since the given version.")
+    @ApiResponses(
+        @ApiResponse(code = 200, message = "Returns the changed feeds and the version to request next.", response = FeedHealthChanges.class)
+    )
+    public FeedHealthChanges getFeedHealthChanges(@Context HttpServletRequest request, @QueryParam("since") @DefaultValue("0") long since) {
+        this.accessController.checkPermission(AccessController.SERVICES, OperationsAccessControl.ACCESS_OPS);
+        return metadataAccess.read(() -> {
+            com.thinkbiganalytics.metadata.api.feed.FeedHealthChanges changes = opsFeedManagerFeedProvider.getFeedHealthChanges(since);
+            return FeedModelTransform.feedHealthChanges(changes);
+        });
+    }
+
     @GET
     @Path("/health-count/{feedName}")
     @Produces(MediaType.APPLICATION_JSON)
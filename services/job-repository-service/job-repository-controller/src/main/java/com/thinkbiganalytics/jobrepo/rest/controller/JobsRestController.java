@@ -24,6 +24,7 @@ import com.thinkbiganalytics.DateTimeUtil;
 import com.thinkbiganalytics.jobrepo.query.model.ExecutedJob;
 import com.thinkbiganalytics.jobrepo.query.model.ExecutedStep;
 import com.thinkbiganalytics.jobrepo.query.model.FeedHealth;
+import com.thinkbiganalytics.jobrepo.query.model.JobArchiveStatus;
 import com.thinkbiganalytics.jobrepo.query.model.JobStatusCount;
 import com.thinkbiganalytics.jobrepo.query.model.SearchResult;
 import com.thinkbiganalytics.jobrepo.query.model.transform.JobModelTransform;
@@ -35,6 +36,9 @@ import com.thinkbiganalytics.jobrepo.service.JobExecutionException;
 import com.thinkbiganalytics.jobrepo.service.JobService;
 import com.thinkbiganalytics.metadata.api.MetadataAccess;
 import com.thinkbiganalytics.metadata.api.feed.OpsManagerFeedProvider;
+import com.thinkbiganalytics.metadata.api.jobrepo.ContinuationPage;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.ArchivedBatchJobExecution;
+import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobArchiveProvider;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecution;
 import com.thinkbiganalytics.metadata.api.jobrepo.job.BatchJobExecutionProvider;
 import com.thinkbiganalytics.metadata.api.jobrepo.step.BatchStepExecution;
@@ -54,6 +58,7 @@ import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -86,6 +91,9 @@ public class JobsRestController {
     @Inject
     BatchStepExecutionProvider stepExecutionProvider;
 
+    @Inject
+    BatchJobArchiveProvider jobArchiveProvider;
+
     @Inject
     private MetadataAccess metadataAccess;
 
@@ -116,6 +124,11 @@ public class JobsRestController {
                 } else {
                     executedJob = JobModelTransform.executedJobSimple(jobExecution);
                 }
+            } else {
+                ArchivedBatchJobExecution archivedJob = jobArchiveProvider.findArchivedJob(Long.parseLong(executionId));
+                if (archivedJob != null) {
+                    executedJob = JobModelTransform.executedJob(archivedJob, includeSteps);
+                }
             }
             return executedJob;
         });
@@ -139,10 +152,49 @@ public class JobsRestController {
         this.accessController.checkPermission(AccessController.SERVICES, OperationsAccessControl.ACCESS_OPS);
         return metadataAccess.read(() -> {
             List<? extends BatchStepExecution> steps = stepExecutionProvider.getSteps(Long.parseLong(executionId));
+            if (steps == null || steps.isEmpty()) {
+                ArchivedBatchJobExecution archivedJob = jobArchiveProvider.findArchivedJob(Long.parseLong(executionId));
+                if (archivedJob != null) {
+                    return JobModelTransform.executedArchivedSteps(archivedJob.getStepExecutions());
+                }
+            }
             return JobModelTransform.executedSteps(steps);
         });
     }
 
+    /**
+     * List the jobs that were moved out of the live job tables, newest first
+     *
+     * @return the archived jobs, without their steps
+     */
+    @GET
+    @Path("/archived")
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation("Lists the archived jobs.")
+    @ApiResponses(
+        @ApiResponse(code = 200, message = "Returns the archived jobs.", response = ExecutedJob.class, responseContainer = "List")
+    )
+    public List<ExecutedJob> findArchivedJobs(@QueryParam("feed") String feedName,
+                                              @QueryParam("before") Long before,
+                                              @QueryParam("limit") @DefaultValue("50") Integer limit) {
+        this.accessController.checkPermission(AccessController.SERVICES, OperationsAccessControl.ACCESS_OPS);
+        return metadataAccess.read(() -> jobArchiveProvider.findArchivedJobs(StringUtils.trimToNull(feedName), before, limit).stream()
+            .map(job -> JobModelTransform.executedJob(job, false))
+            .collect(Collectors.toList()));
+    }
+
+    @GET
+    @Path("/archive/status")
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation("Gets the size of the job tables and the outcome of the last job archive run.")
+    @ApiResponses(
+        @ApiResponse(code = 200, message = "Returns the archive status.", response = JobArchiveStatus.class)
+    )
+    public JobArchiveStatus getArchiveStatus() {
+        this.accessController.checkPermission(AccessController.SERVICES, OperationsAccessControl.ACCESS_OPS);
+        return metadataAccess.read(() -> JobModelTransform.jobArchiveStatus(jobArchiveProvider.getArchiveStatus()));
+    }
+
     /**
      * Restart the job associated with the given instance id
      *
@@ -293,11 +345,9 @@ public class JobsRestController {
                                  @QueryParam("limit") @DefaultValue("10") Integer limit,
                                  @QueryParam("start") @DefaultValue("1") Integer start,
                                  @QueryParam("filter") String filter,
+                                 @QueryParam("after") String after,
                                  @Context HttpServletRequest request) {
-        return metadataAccess.read(() -> {
-            Page<ExecutedJob> page = jobExecutionProvider.findAll(filter, pageRequest(start, limit, sort)).map(jobExecution -> JobModelTransform.executedJobSimple(jobExecution));
-            return ModelUtils.toSearchResult(page);
-        });
+        return metadataAccess.read(() -> searchJobs(filter, sort, limit, start, after));
 
 
     }
@@ -339,14 +389,14 @@ public class JobsRestController {
                                         @QueryParam("limit") @DefaultValue("10") Integer limit,
                                         @QueryParam("start") @DefaultValue("1") Integer start,
                                         @QueryParam("filter") String filter,
+                                        @QueryParam("after") String after,
                                         @Context HttpServletRequest request) {
 
         this.accessController.checkPermission(AccessController.SERVICES, OperationsAccessControl.ACCESS_OPS);
 
         return metadataAccess.read(() -> {
             String defaultFilter = ensureDefaultFilter(filter, jobExecutionProvider.RUNNING_FILTER);
-            Page<ExecutedJob> page = jobExecutionProvider.findAll(defaultFilter, pageRequest(start, limit, sort)).map(jobExecution -> JobModelTransform.executedJobSimple(jobExecution));
-            return ModelUtils.toSearchResult(page);
+            return searchJobs(defaultFilter, sort, limit, start, after);
         });
 
     }
@@ -366,12 +416,12 @@ public class JobsRestController {
                                        @QueryParam("limit") @DefaultValue("10") Integer limit,
                                        @QueryParam("start") @DefaultValue("1") Integer start,
                                        @QueryParam("filter") String filter,
+                                       @QueryParam("after") String after,
                                        @Context HttpServletRequest request) {
 
         return metadataAccess.read(() -> {
             String defaultFilter = ensureDefaultFilter(filter, jobExecutionProvider.FAILED_FILTER);
-            Page<ExecutedJob> page = jobExecutionProvider.findAll(defaultFilter, pageRequest(start, limit, sort)).map(jobExecution -> JobModelTransform.executedJobSimple(jobExecution));
-            return ModelUtils.toSearchResult(page);
+            return searchJobs(defaultFilter, sort, limit, start, after);
         });
     }
 
@@ -416,14 +466,14 @@ public class JobsRestController {
                                           @QueryParam("limit") @DefaultValue("10") Integer limit,
                                           @QueryParam("start") @DefaultValue("1") Integer start,
                                           @QueryParam("filter") String filter,
+                                          @QueryParam("after") String after,
                                           @Context HttpServletRequest request) {
 
         this.accessController.checkPermission(AccessController.SERVICES, OperationsAccessControl.ACCESS_OPS);
 
         return metadataAccess.read(() -> {
             String defaultFilter = ensureDefaultFilter(filter, jobExecutionProvider.COMPLETED_FILTER);
-            Page<ExecutedJob> page = jobExecutionProvider.findAll(defaultFilter, pageRequest(start, limit, sort)).map(jobExecution -> JobModelTransform.executedJobSimple(jobExecution));
-            return ModelUtils.toSearchResult(page);
+            return searchJobs(defaultFilter, sort, limit, start, after);
         });
 
     }
@@ -518,6 +568,24 @@ public class JobsRestController {
         return filter;
     }
 
+    /**
+     * Search for jobs, paging by offset unless a continuation token is supplied.
+     * An empty token requests the first page of a continuation token search.
+     */
+    private SearchResult searchJobs(String filter, String sort, Integer limit, Integer start, String continuationToken) {
+        if (continuationToken == null) {
+            Page<ExecutedJob> page = jobExecutionProvider.findAll(filter, pageRequest(start, limit, sort)).map(jobExecution -> JobModelTransform.executedJobSimple(jobExecution));
+            return ModelUtils.toSearchResult(page);
+        }
+        try {
+            ContinuationPage<? extends BatchJobExecution> page = jobExecutionProvider.findAll(filter, pageRequest(start, limit, sort).getSort(), limit, continuationToken);
+            List<ExecutedJob> jobs = page.getContent().stream().map(jobExecution -> JobModelTransform.executedJobSimple(jobExecution)).collect(Collectors.toList());
+            return ModelUtils.toSearchResult(page, jobs);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
     private PageRequest pageRequest(Integer start, Integer limit, String sort) {
         if (StringUtils.isNotBlank(sort)) {
             Sort.Direction dir = Sort.Direction.ASC;
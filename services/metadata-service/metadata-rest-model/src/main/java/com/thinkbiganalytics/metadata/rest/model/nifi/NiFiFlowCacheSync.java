@@ -44,6 +44,10 @@ public class NiFiFlowCacheSync {
     private DateTime lastSync;
     private String message;
     private boolean updated = false;
+    /**
+     * the version of the cache change log this sync last received, or -1 if it has not received anything
+     */
+    private long version = -1L;
 
     public NiFiFlowCacheSync() {
         this((NifiFlowCacheSnapshot) null);
@@ -162,6 +166,17 @@ public class NiFiFlowCacheSync {
     public void reset() {
         this.snapshot = null;
         this.lastSync = null;
+        this.version = -1L;
+    }
+
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+
+    @JsonIgnore
+    public void setVersion(long version) {
+        this.version = version;
     }
 
     public String getSyncId() {
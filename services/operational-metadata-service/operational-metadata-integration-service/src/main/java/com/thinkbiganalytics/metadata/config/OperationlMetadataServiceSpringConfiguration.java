@@ -22,6 +22,7 @@ package com.thinkbiganalytics.metadata.config;
 
 import com.thinkbiganalytics.alerts.api.AlertProvider;
 import com.thinkbiganalytics.metadata.jobrepo.nifi.provenance.NifiStatsJmsReceiver;
+import com.thinkbiganalytics.metadata.jobrepo.nifi.provenance.ProvenanceBinaryPayloadDecoder;
 import com.thinkbiganalytics.metadata.sla.DefaultServiceLevelAgreementScheduler;
 import com.thinkbiganalytics.metadata.sla.JpaJcrServiceLevelAgreementChecker;
 import com.thinkbiganalytics.metadata.sla.ServiceLevelAgreementActionAlertResponderFactory;
@@ -43,6 +44,11 @@ public class OperationlMetadataServiceSpringConfiguration {
         return new NifiStatsJmsReceiver();
     }
 
+    @Bean
+    public ProvenanceBinaryPayloadDecoder provenanceBinaryPayloadDecoder() {
+        return new ProvenanceBinaryPayloadDecoder();
+    }
+
     @Bean
     public ServiceLevelAgreementScheduler serviceLevelAgreementScheduler() {
         return new DefaultServiceLevelAgreementScheduler();
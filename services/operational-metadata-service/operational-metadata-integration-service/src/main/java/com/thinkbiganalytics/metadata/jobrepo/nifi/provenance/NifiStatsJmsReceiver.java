@@ -29,18 +29,33 @@ import com.thinkbiganalytics.nifi.activemq.Queues;
 import com.thinkbiganalytics.nifi.provenance.model.stats.AggregatedFeedProcessorStatisticsHolder;
 import com.thinkbiganalytics.nifi.provenance.model.stats.GroupedStats;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.LockAcquisitionException;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jms.annotation.JmsListener;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import javax.persistence.PessimisticLockException;
 
 /**
-
+ * Receives the aggregated feed processor statistics from NiFi, stores them and adds them to the time bucketed rollups.
+ * Raw statistics older than the configured retention are periodically removed; the rollups are kept.
  */
 public class NifiStatsJmsReceiver {
 
+    private static final Logger log = LoggerFactory.getLogger(NifiStatsJmsReceiver.class);
 
     @Inject
     private NifiFeedProcessorStatisticsProvider nifiEventStatisticsProvider;
@@ -48,18 +63,84 @@ public class NifiStatsJmsReceiver {
     @Inject
     private MetadataAccess metadataAccess;
 
+    /**
+     * The number of days to keep the raw statistics. 0 or less keeps them forever
+     */
+    @Value("${kylo.ops.mgr.stats.raw.retention.days:7}")
+    private int rawRetentionDays = 7;
+
+    /**
+     * The number of times a stats message is stored again when it conflicts with another Kylo node updating the same rollup buckets
+     */
+    @Value("${kylo.ops.mgr.stats.rollup.retry.amount:4}")
+    private int rollupRetryAmount = 4;
+
+    private ScheduledExecutorService purgeExecutor;
+
+    @PostConstruct
+    private void init() {
+        if (rawRetentionDays > 0) {
+            purgeExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "nifi-stats-purge");
+                thread.setDaemon(true);
+                return thread;
+            });
+            purgeExecutor.scheduleWithFixedDelay(this::purgeRawStats, 5, 60, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (purgeExecutor != null) {
+            purgeExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Remove the raw stats that are older than the retention period
+     */
+    public void purgeRawStats() {
+        try {
+            DateTime cutoff = DateTime.now().minusDays(rawRetentionDays);
+            metadataAccess.commit(() -> nifiEventStatisticsProvider.deleteRawStatisticsOlderThan(cutoff), MetadataAccess.SERVICE);
+        } catch (Exception e) {
+            log.error("Unable to purge the raw feed processor statistics", e);
+        }
+    }
 
     @JmsListener(destination = Queues.PROVENANCE_EVENT_STATS_QUEUE, containerFactory = ActiveMqConstants.JMS_CONTAINER_FACTORY)
     public void receiveTopic(AggregatedFeedProcessorStatisticsHolder stats) {
-
-        metadataAccess.commit(() -> {
+        for (int retryAttempt = 0; ; retryAttempt++) {
+            // the stats are created again on each attempt so no entity from a rolled back transaction is saved
             List<NifiFeedProcessorStats> summaryStats = createSummaryStats(stats);
-            for (NifiFeedProcessorStats stat : summaryStats) {
-                nifiEventStatisticsProvider.create(stat);
+            if (summaryStats.isEmpty()) {
+                return;
             }
-            return summaryStats;
-        }, MetadataAccess.SERVICE);
+            try {
+                metadataAccess.commit(() -> nifiEventStatisticsProvider.create(summaryStats), MetadataAccess.SERVICE);
+                return;
+            } catch (RuntimeException e) {
+                if (!isRollupConflict(e) || retryAttempt >= rollupRetryAmount) {
+                    throw e;
+                }
+                log.warn("Conflict updating the feed processor statistics rollups.  Retry attempt # {} ", retryAttempt + 1, e);
+                try {
+                    Thread.sleep(100L * (retryAttempt + 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
 
+    /**
+     * Another node created one of the same new rollup buckets first, or the row locks on the buckets could not be taken
+     */
+    private boolean isRollupConflict(Throwable e) {
+        return ExceptionUtils.indexOfType(e, ConstraintViolationException.class) >= 0
+               || ExceptionUtils.indexOfType(e, LockAcquisitionException.class) >= 0
+               || ExceptionUtils.indexOfType(e, PessimisticLockException.class) >= 0;
     }
 
     private List<NifiFeedProcessorStats> createSummaryStats(AggregatedFeedProcessorStatisticsHolder holder) {
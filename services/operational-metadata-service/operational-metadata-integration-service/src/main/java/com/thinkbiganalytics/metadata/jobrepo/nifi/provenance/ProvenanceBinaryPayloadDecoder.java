@@ -0,0 +1,45 @@
+package com.thinkbiganalytics.metadata.jobrepo.nifi.provenance;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-integration-service
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.activemq.JmsPayloadDecoder;
+import com.thinkbiganalytics.nifi.provenance.model.codec.ProvenanceBinaryCodec;
+
+import java.io.IOException;
+
+/**
+ * Decodes the provenance event batches and statistics sent by the KyloReportingTask in the {@link ProvenanceBinaryCodec} format,
+ * so the {@link ProvenanceEventReceiver} and {@link NifiStatsJmsReceiver} receive the same objects regardless of the format NiFi sends.
+ */
+public class ProvenanceBinaryPayloadDecoder implements JmsPayloadDecoder {
+
+    private final ProvenanceBinaryCodec codec = new ProvenanceBinaryCodec();
+
+    @Override
+    public String getPayloadFormat() {
+        return ProvenanceBinaryCodec.PAYLOAD_FORMAT;
+    }
+
+    @Override
+    public Object decode(byte[] payload) throws IOException {
+        return codec.decode(payload);
+    }
+}
@@ -0,0 +1,303 @@
+package com.thinkbiganalytics.metadata.jobrepo.nifi.provenance;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-integration-service
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed set of single threaded lanes used to apply provenance events.
+ * Work is routed to a lane by the hash of its key (the job flow file id) so all the work for a job is applied in order by a single thread,
+ * while different jobs are applied concurrently without a global lock.
+ *
+ * Each lane has a bounded queue.  When a lane's queue is full the submitting thread blocks until there is room, pushing back on the JMS listener.
+ */
+public class ProvenanceEventLanes {
+
+    private static final Logger log = LoggerFactory.getLogger(ProvenanceEventLanes.class);
+
+    private final List<Lane> lanes;
+
+    /**
+     * @param laneCount     the number of lanes (threads)
+     * @param queueCapacity the max number of pending tasks for each lane
+     */
+    public ProvenanceEventLanes(int laneCount, int queueCapacity) {
+        if (laneCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("The lane count and queue capacity must be greater than 0");
+        }
+        lanes = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            lanes.add(new Lane(i, queueCapacity));
+        }
+    }
+
+    /**
+     * @return the lane index for the given key
+     */
+    public int laneFor(String key) {
+        int hash = key != null ? key.hashCode() : 0;
+        //spread the hash so keys differing only in the high bits do not end up on the same lane
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, lanes.size());
+    }
+
+    /**
+     * Submit a task to the lane for the given key, blocking if the lane's queue is full.
+     * The task is given the lane's metrics so it can record any retries it performs.
+     *
+     * @param key  the key used to pick the lane
+     * @param task the work to apply
+     * @return a future completing when the task has been applied
+     */
+    public CompletableFuture<Void> submit(String key, LaneTask task) {
+        Lane lane = lanes.get(laneFor(key));
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        lane.executor.execute(() -> lane.apply(task, future));
+        return future;
+    }
+
+    /**
+     * @return a snapshot of the metrics for each lane
+     */
+    public List<LaneStats> getLaneStats() {
+        List<LaneStats> stats = new ArrayList<>(lanes.size());
+        for (Lane lane : lanes) {
+            stats.add(lane.stats());
+        }
+        return stats;
+    }
+
+    public int getLaneCount() {
+        return lanes.size();
+    }
+
+    /**
+     * Stop accepting work and wait for the queued work to be applied
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        lanes.forEach(lane -> lane.executor.shutdown());
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Lane lane : lanes) {
+            try {
+                if (!lane.executor.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    log.warn("Provenance event lane {} did not finish {} queued tasks before shutting down", lane.index, lane.queue.size());
+                    lane.executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lane.executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Work applied on a lane
+     */
+    @FunctionalInterface
+    public interface LaneTask {
+
+        /**
+         * @param metrics the metrics of the lane running the task
+         */
+        void apply(LaneMetrics metrics) throws Exception;
+    }
+
+    /**
+     * Metrics a {@link LaneTask} may record while it is applied
+     */
+    public interface LaneMetrics {
+
+        void retried();
+    }
+
+    /**
+     * A single threaded lane with a bounded queue
+     */
+    private static class Lane implements LaneMetrics {
+
+        private final int index;
+
+        private final BlockingQueue<Runnable> queue;
+
+        private final ExecutorService executor;
+
+        private final AtomicLong applied = new AtomicLong();
+
+        private final AtomicLong failed = new AtomicLong();
+
+        private final AtomicLong retries = new AtomicLong();
+
+        private final AtomicLong totalApplyNanos = new AtomicLong();
+
+        private final AtomicLong maxApplyNanos = new AtomicLong();
+
+        private volatile long lastApplyNanos;
+
+        Lane(int index, int queueCapacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, queue,
+                                                   new ThreadFactoryBuilder().setNameFormat("provenance-event-lane-" + index).setDaemon(true).build(),
+                                                   (runnable, pool) -> {
+                                                       //block the caller until there is room in the lane
+                                                       if (pool.isShutdown()) {
+                                                           throw new RejectedExecutionException("Provenance event lane " + index + " is shut down");
+                                                       }
+                                                       try {
+                                                           queue.put(runnable);
+                                                       } catch (InterruptedException e) {
+                                                           Thread.currentThread().interrupt();
+                                                           throw new RejectedExecutionException("Interrupted waiting for provenance event lane " + index, e);
+                                                       }
+                                                   });
+        }
+
+        void apply(LaneTask task, CompletableFuture<Void> future) {
+            long start = System.nanoTime();
+            try {
+                task.apply(this);
+                applied.incrementAndGet();
+                future.complete(null);
+            } catch (Throwable e) {
+                failed.incrementAndGet();
+                future.completeExceptionally(e);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                lastApplyNanos = elapsed;
+                totalApplyNanos.addAndGet(elapsed);
+                maxApplyNanos.accumulateAndGet(elapsed, Math::max);
+            }
+        }
+
+        @Override
+        public void retried() {
+            retries.incrementAndGet();
+        }
+
+        LaneStats stats() {
+            return new LaneStats(index, queue.size(), queue.remainingCapacity(), applied.get(), failed.get(), retries.get(), totalApplyNanos.get(), maxApplyNanos.get(), lastApplyNanos);
+        }
+    }
+
+    /**
+     * A point in time snapshot of the metrics for a lane
+     */
+    public static class LaneStats {
+
+        private final int lane;
+        private final int queueDepth;
+        private final int queueRemainingCapacity;
+        private final long applied;
+        private final long failed;
+        private final long retries;
+        private final long totalApplyNanos;
+        private final long maxApplyNanos;
+        private final long lastApplyNanos;
+
+        public LaneStats(int lane, int queueDepth, int queueRemainingCapacity, long applied, long failed, long retries, long totalApplyNanos, long maxApplyNanos, long lastApplyNanos) {
+            this.lane = lane;
+            this.queueDepth = queueDepth;
+            this.queueRemainingCapacity = queueRemainingCapacity;
+            this.applied = applied;
+            this.failed = failed;
+            this.retries = retries;
+            this.totalApplyNanos = totalApplyNanos;
+            this.maxApplyNanos = maxApplyNanos;
+            this.lastApplyNanos = lastApplyNanos;
+        }
+
+        public int getLane() {
+            return lane;
+        }
+
+        /**
+         * @return the number of tasks waiting in the lane
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getQueueRemainingCapacity() {
+            return queueRemainingCapacity;
+        }
+
+        /**
+         * @return the number of tasks applied successfully
+         */
+        public long getApplied() {
+            return applied;
+        }
+
+        /**
+         * @return the number of tasks that failed
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return the number of times tasks were retried, i.e. after a database lock error
+         */
+        public long getRetries() {
+            return retries;
+        }
+
+        public double getAverageApplyMillis() {
+            long count = applied + failed;
+            return count == 0 ? 0d : (totalApplyNanos / (double) count) / 1000000d;
+        }
+
+        public double getMaxApplyMillis() {
+            return maxApplyNanos / 1000000d;
+        }
+
+        public double getLastApplyMillis() {
+            return lastApplyNanos / 1000000d;
+        }
+
+        @Override
+        public String toString() {
+            return "LaneStats{" +
+                   "lane=" + lane +
+                   ", queueDepth=" + queueDepth +
+                   ", applied=" + applied +
+                   ", failed=" + failed +
+                   ", retries=" + retries +
+                   ", averageApplyMillis=" + String.format("%.2f", getAverageApplyMillis()) +
+                   ", maxApplyMillis=" + String.format("%.2f", getMaxApplyMillis()) +
+                   '}';
+        }
+    }
+}
@@ -39,6 +39,7 @@ import com.thinkbiganalytics.metadata.api.jobrepo.step.BatchStepExecution;
 import com.thinkbiganalytics.metadata.api.jobrepo.step.BatchStepExecutionProvider;
 import com.thinkbiganalytics.metadata.api.jobrepo.step.FailedStepExecutionListener;
 import com.thinkbiganalytics.metadata.api.op.FeedOperation;
+import com.thinkbiganalytics.metadata.jpa.feed.FeedHealthStore;
 import com.thinkbiganalytics.metadata.jpa.jobrepo.nifi.NifiEventProvider;
 import com.thinkbiganalytics.nifi.activemq.Queues;
 import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTO;
@@ -46,6 +47,7 @@ import com.thinkbiganalytics.nifi.provenance.model.ProvenanceEventRecordDTOHolde
 import com.thinkbiganalytics.nifi.rest.client.LegacyNifiRestClient;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.nifi.web.api.dto.BulletinDTO;
 import org.hibernate.exception.LockAcquisitionException;
 import org.slf4j.Logger;
@@ -55,11 +57,16 @@ import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 /**
@@ -119,6 +126,8 @@ public class ProvenanceEventReceiver implements FailedStepExecutionListener, Del
     @Inject
     private BatchStepExecutionProvider batchStepExecutionProvider;
     @Inject
+    private FeedHealthStore feedHealthStore;
+    @Inject
     private LegacyNifiRestClient nifiRestClient;
     @Inject
     private MetadataAccess metadataAccess;
@@ -127,10 +136,24 @@ public class ProvenanceEventReceiver implements FailedStepExecutionListener, Del
     /**
      * The amount of retry attempts the system will do if it gets a LockAcquisitionException
      * MySQL may fail to lock the table when performing inserts into the database resulting in a deadlock exception.
-     * When processing each event the LockAcquisitionException is caught and a retry attempt is done, retrying to process the event this amount of times before giving up.
+     * When processing the events of a job the LockAcquisitionException is caught and a retry attempt is done, retrying to process the job this amount of times before failing the JMS message.
      */
     private int lockAcquisitionRetryAmount = 4;
 
+    /**
+     * The number of single threaded lanes applying events.  Events are routed to a lane by their job flow file id
+     */
+    @Value("${kylo.ops.mgr.provenance.lanes:10}")
+    private int laneCount = 10;
+
+    /**
+     * The number of jobs that may wait on each lane before the JMS listener is blocked
+     */
+    @Value("${kylo.ops.mgr.provenance.lane.queue.size:100}")
+    private int laneQueueSize = 100;
+
+    private ProvenanceEventLanes eventLanes;
+
 
     /**
      * default constructor creates the feed cache
@@ -156,10 +179,18 @@ public class ProvenanceEventReceiver implements FailedStepExecutionListener, Del
 
     @PostConstruct
     private void init() {
+        eventLanes = new ProvenanceEventLanes(laneCount, laneQueueSize);
         batchStepExecutionProvider.subscribeToFailedSteps(this);
         opsManagerFeedProvider.subscribeFeedDeletion(this);
     }
 
+    @PreDestroy
+    private void destroy() {
+        if (eventLanes != null) {
+            eventLanes.shutdown(30, TimeUnit.SECONDS);
+        }
+    }
+
 
     /**
      * Unique key for the Event in relation to the Job
@@ -180,79 +211,147 @@ public class ProvenanceEventReceiver implements FailedStepExecutionListener, Del
      *
      * @param events The events obtained from JMS
      */
-    @JmsListener(destination = Queues.FEED_MANAGER_QUEUE, containerFactory = ActiveMqConstants.JMS_CONTAINER_FACTORY, concurrency = "3-10")
+    @JmsListener(destination = Queues.FEED_MANAGER_QUEUE, containerFactory = ActiveMqConstants.TRANSACTED_JMS_CONTAINER_FACTORY, concurrency = "3-10")
     public void receiveEvents(ProvenanceEventRecordDTOHolder events) {
         log.info("About to process {} events from the {} queue ", events.getEvents().size(), Queues.FEED_MANAGER_QUEUE);
-        events.getEvents().stream()
+        List<ProvenanceEventRecordDTO> registeredEvents = events.getEvents().stream()
             .filter(this::isRegisteredWithFeedManager)
-            .filter(this::ensureNewEvent)
-            .forEach(event -> processEvent(event, 0));
+            .collect(Collectors.toList());
+        if (registeredEvents.isEmpty()) {
+            return;
+        }
+        List<ProvenanceEventRecordDTO> newEvents = findNewEvents(registeredEvents);
+
+        //group the events by job so each job is written in a single transaction, keeping the order of the events within each job
+        Map<String, List<ProvenanceEventRecordDTO>> eventsByJob = newEvents.stream()
+            .collect(Collectors.groupingBy(this::jobKey, LinkedHashMap::new, Collectors.toList()));
+        //apply each job on its lane, waiting for them to be persisted before the JMS message is acknowledged
+        Map<String, CompletableFuture<Void>> applied = new LinkedHashMap<>(eventsByJob.size());
+        eventsByJob.forEach((jobFlowFileId, jobEvents) -> applied.put(jobFlowFileId, submitJobEvents(jobFlowFileId, jobEvents, false)));
+
+        int retryAttempt = 0;
+        while (true) {
+            Map<String, Throwable> failures = waitForJobs(applied);
+            if (failures.isEmpty()) {
+                return;
+            }
+            boolean retryable = failures.values().stream().allMatch(e -> ExceptionUtils.indexOfType(e, LockAcquisitionException.class) >= 0);
+            if (!retryable || retryAttempt >= lockAcquisitionRetryAmount) {
+                //fail the message so the broker redelivers it, the events that were saved will be skipped when it is received again
+                log.error("Unable to process {} of the {} jobs received from the {} queue after {} retries. The message will be redelivered. ", failures.size(), eventsByJob.size(),
+                          Queues.FEED_MANAGER_QUEUE, retryAttempt);
+                throw new IllegalStateException("Unable to process the provenance events for jobs " + failures.keySet(), failures.values().iterator().next());
+            }
+            //safeguard against LockAcquisitionException if MySQL has a problem locking the table during its processing of the Event.
+            //wait on this listener thread rather than on the lane so the other jobs on the lane are not held up
+            retryAttempt++;
+            log.error("LockAcquisitionException found trying to process {} jobs.  Retry attempt # {} ", failures.size(), retryAttempt, failures.values().iterator().next());
+            try {
+                Thread.sleep(300L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting to retry the provenance events for jobs " + failures.keySet(), e);
+            }
+            applied.clear();
+            failures.keySet().forEach(jobFlowFileId -> applied.put(jobFlowFileId, submitJobEvents(jobFlowFileId, eventsByJob.get(jobFlowFileId), true)));
+        }
     }
 
     /**
-     * process the event and persist it along with creating the Job and Step.  If there is a lock error it will retry until it hits the {@link this#lockAcquisitionRetryAmount}
+     * Submit the events for a job to the lane owning the job
      *
-     * @param event        a provenance event
-     * @param retryAttempt the retry number.  If there is a lock error it will retry until it hits the {@link this#lockAcquisitionRetryAmount}
+     * @param jobFlowFileId the job flow file id shared by the {@code events}
+     * @param events        the provenance events for the job, in event order
+     * @param retry         true if this is a retry of a job that failed
+     * @return a future completing when the events have been persisted
      */
-    private void processEvent(ProvenanceEventRecordDTO event, int retryAttempt) {
-        try {
-            if (event.isBatchJob()) {
-                //ensure the job is there
-                BatchJobExecution jobExecution = metadataAccess.commit(() -> batchJobExecutionProvider.getOrCreateJobExecution(event),
-                                                                       MetadataAccess.SERVICE);
-                NifiEvent nifiEvent = metadataAccess.commit(() -> receiveBatchEvent(jobExecution, event),
-                                                            MetadataAccess.SERVICE);
-            } else {
-                NifiEvent nifiEvent = metadataAccess.commit(() -> nifiEventProvider.create(event),
-                                                            MetadataAccess.SERVICE);
+    private CompletableFuture<Void> submitJobEvents(String jobFlowFileId, List<ProvenanceEventRecordDTO> events, boolean retry) {
+        return eventLanes.submit(jobFlowFileId, metrics -> {
+            if (retry) {
+                metrics.retried();
             }
-            if (event.isFinalJobEvent()) {
-                notifyJobFinished(event);
+            processJobEvents(jobFlowFileId, events);
+        });
+    }
+
+    /**
+     * Wait for the jobs to be applied on their lanes
+     *
+     * @return the cause of the failure for each job that failed, keyed by the job flow file id
+     */
+    private Map<String, Throwable> waitForJobs(Map<String, CompletableFuture<Void>> applied) {
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        applied.forEach((jobFlowFileId, future) -> {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                failures.put(jobFlowFileId, e.getCause() != null ? e.getCause() : e);
             }
-        } catch (LockAcquisitionException lae) {
-            //safeguard against LockAcquisitionException if MySQL has a problem locking the table during its processing of the Event.
+        });
+        return failures;
+    }
 
-            if (retryAttempt < lockAcquisitionRetryAmount) {
-                retryAttempt++;
-                log.error("LockAcquisitionException found trying to process Event: {} .  Retry attempt # {} ", event, retryAttempt, lae);
-                //wait and re attempt
-                try {
-                    Thread.sleep(300L);
-                } catch (InterruptedException var10) {
+    /**
+     * @return a snapshot of the metrics for each of the lanes applying provenance events
+     */
+    public List<ProvenanceEventLanes.LaneStats> getLaneStats() {
+        return eventLanes.getLaneStats();
+    }
 
-                }
-                processEvent(event, retryAttempt);
-            } else {
-                log.error("LockAcquisitionException found.  Unsuccessful after retrying {} times.  This event {} will not be processed. ", retryAttempt, event, lae);
-            }
+    /**
+     * The key used to group events together.  Events without a job flow file are grouped by their own flow file
+     */
+    private String jobKey(ProvenanceEventRecordDTO event) {
+        return StringUtils.isNotBlank(event.getJobFlowFileId()) ? event.getJobFlowFileId() : StringUtils.defaultString(event.getFlowFileUuid());
+    }
+
+    /**
+     * process the events for a job and persist them along with creating the Job and Steps in a single transaction.
+     * This is called on the lane owning the job, so the events of a job are never written concurrently.
+     * A LockAcquisitionException is not retried here, the JMS listener retries the job so the lane is free to apply other jobs in the meantime.
+     *
+     * @param jobFlowFileId the job flow file id shared by the {@code events}
+     * @param events        the provenance events for the job, in event order
+     */
+    private void processJobEvents(String jobFlowFileId, List<ProvenanceEventRecordDTO> events) {
+        try {
+            metadataAccess.commit(() -> receiveJobEvents(events), MetadataAccess.SERVICE);
         } catch (Exception e) {
-            log.error("Error processing Event ", event, e);
+            log.error("Error processing {} events for job {} ", events.size(), jobFlowFileId, e);
+            throw e;
         }
-
+        events.stream().filter(ProvenanceEventRecordDTO::isFinalJobEvent).forEach(this::notifyJobFinished);
     }
 
 
     /**
-     * Process this record and record the Job and steps
+     * Persist the events for a job and record the Job and steps for the batch events
      *
-     * @param jobExecution the job execution
-     * @param event        a provenance event
-     * @return a persisted nifi event object
+     * @param events the provenance events for a single job, in event order
+     * @return the persisted nifi event objects
      */
-    private NifiEvent receiveBatchEvent(BatchJobExecution jobExecution, ProvenanceEventRecordDTO event) {
-        NifiEvent nifiEvent = null;
-        log.debug("Received ProvenanceEvent {}.  is end of Job: {}.  is ending flowfile:{}, isBatch: {}", event, event.isEndOfJob(), event.isEndingFlowFileEvent(), event.isBatchJob());
-        nifiEvent = nifiEventProvider.create(event);
-        //query it again
-        jobExecution = batchJobExecutionProvider.findByJobExecutionId(jobExecution.getJobExecutionId());
-        BatchJobExecution job = batchJobExecutionProvider.save(jobExecution, event, nifiEvent);
-        if (job == null) {
-            log.error(" Detected a Batch event, but could not find related Job record. for event: {}  is end of Job: {}.  is ending flowfile:{}, isBatch: {}", event, event.isEndOfJob(),
-                      event.isEndingFlowFileEvent(), event.isBatchJob());
+    private List<NifiEvent> receiveJobEvents(List<ProvenanceEventRecordDTO> events) {
+        List<NifiEvent> nifiEvents = nifiEventProvider.create(events);
+        List<ProvenanceEventRecordDTO> batchEvents = new ArrayList<>();
+        List<NifiEvent> batchNifiEvents = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            ProvenanceEventRecordDTO event = events.get(i);
+            log.debug("Received ProvenanceEvent {}.  is end of Job: {}.  is ending flowfile:{}, isBatch: {}", event, event.isEndOfJob(), event.isEndingFlowFileEvent(), event.isBatchJob());
+            if (event.isBatchJob()) {
+                batchEvents.add(event);
+                batchNifiEvents.add(nifiEvents.get(i));
+            }
         }
-
-        return nifiEvent;
+        if (!batchEvents.isEmpty()) {
+            BatchJobExecution job = batchJobExecutionProvider.saveJobEvents(batchEvents, batchNifiEvents);
+            if (job == null) {
+                log.error(" Detected {} Batch events, but could not find related Job record. for event: {} ", batchEvents.size(), batchEvents.get(0));
+            } else {
+                //applied to the in memory feed health once this transaction commits
+                feedHealthStore.jobChanged(job);
+            }
+        }
+        return nifiEvents;
     }
 
     /**
@@ -384,13 +483,13 @@ public class ProvenanceEventReceiver implements FailedStepExecutionListener, Del
     }
 
     /*
-     * Indicates if the specified event hasn't already been processed.
+     * Find the events that haven't already been processed using a single read.
      *
-     * @param event the event to check
-     * @return {@code true} if the event is new, or {@code false otherwise}
+     * @param events the events to check
+     * @return the new events, in the same order
      */
-    private boolean ensureNewEvent(ProvenanceEventRecordDTO event) {
-        return metadataAccess.read(() -> !nifiEventProvider.exists(event), MetadataAccess.SERVICE);
+    private List<ProvenanceEventRecordDTO> findNewEvents(List<ProvenanceEventRecordDTO> events) {
+        return metadataAccess.read(() -> nifiEventProvider.findNewEvents(events), MetadataAccess.SERVICE);
     }
 
     /**
@@ -23,9 +23,13 @@ package com.thinkbiganalytics.metadata.sla;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.sla.FeedOperationMetric;
 import com.thinkbiganalytics.metadata.modeshape.common.ModeShapeAvailability;
 import com.thinkbiganalytics.metadata.modeshape.common.ModeShapeAvailabilityListener;
 import com.thinkbiganalytics.metadata.modeshape.sla.JcrServiceLevelAgreement;
+import com.thinkbiganalytics.metadata.sla.api.Metric;
+import com.thinkbiganalytics.metadata.sla.api.Obligation;
+import com.thinkbiganalytics.metadata.sla.api.ObligationGroup;
 import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAgreement;
 import com.thinkbiganalytics.metadata.sla.spi.ServiceLevelAgreementChecker;
 import com.thinkbiganalytics.metadata.sla.spi.ServiceLevelAgreementProvider;
@@ -41,16 +45,32 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 /**
  * Provides the default implementation for service level agreement scheduling.
+ * <p>
+ * Each SLA has its own scheduled job, but rather than assessing the SLA right away the job marks it as due.  All of the SLAs that
+ * become due within the same short window are then checked together in a single evaluation tick.
+ * <p>
+ * SLAs with {@link FeedOperationMetric}s are also made due when one of their feeds fails or succeeds, so violations are reported without
+ * waiting for the next scheduled check.  The FeedFailureService requests these re-assessments once it has recorded the outcome the assessors read,
+ * rather than this scheduler listening for the same feed events on its own thread.  They are debounced per SLA and the schedule remains as the fallback.
  */
 public class DefaultServiceLevelAgreementScheduler implements ServiceLevelAgreementScheduler, ModeShapeAvailabilityListener {
 
@@ -70,14 +90,146 @@ public class DefaultServiceLevelAgreementScheduler implements ServiceLevelAgreem
     private ModeShapeAvailability modeShapeAvailability;
 
 
+    /**
+     * How long to wait after an SLA becomes due for other SLAs firing at the same time before evaluating them together
+     */
+    @Value("${sla.evaluation.batch.window.millis:2000}")
+    private long batchWindowMillis = 2000;
+
+    /**
+     * The minimum time between re-assessments of an SLA triggered by feed events
+     */
+    @Value("${sla.evaluation.event.debounce.millis:10000}")
+    private long eventDebounceMillis = 10000;
+
     private Map<ServiceLevelAgreement.ID, String> scheduledJobNames = new ConcurrentHashMap<>();
 
+    /**
+     * SLAs whose jobs have fired and that are waiting for the next evaluation tick
+     */
+    private Set<ServiceLevelAgreement.ID> dueAgreements = ConcurrentHashMap.newKeySet();
+
+    private AtomicBoolean tickScheduled = new AtomicBoolean(false);
+
+    private ScheduledExecutorService evaluationExecutor;
+
+    /**
+     * The SLAs to re-assess when the status of a feed changes, by feed name
+     */
+    private Map<String, Set<ServiceLevelAgreement.ID>> feedAgreements = new ConcurrentHashMap<>();
+
+    /**
+     * SLAs waiting out the debounce period before being made due by a feed event
+     */
+    private Set<ServiceLevelAgreement.ID> debouncingAgreements = ConcurrentHashMap.newKeySet();
+
+    /**
+     * When each SLA was last made due by a feed event
+     */
+    private Map<ServiceLevelAgreement.ID, Long> lastEventAssessments = new ConcurrentHashMap<>();
+
+    /**
+     * When the feed event that made an SLA due arrived, used to report the delay until it was assessed
+     */
+    private Map<ServiceLevelAgreement.ID, Long> feedEventTimes = new ConcurrentHashMap<>();
+
 
     @PostConstruct
     public void scheduleServiceLevelAgreements() {
+        evaluationExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sla-evaluation");
+            thread.setDaemon(true);
+            return thread;
+        });
         modeShapeAvailability.subscribe(this);
     }
 
+    @PreDestroy
+    public void shutdown() {
+        if (evaluationExecutor != null) {
+            evaluationExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Marks the SLA as due, starting a new evaluation tick if one is not already pending.
+     */
+    private void agreementDue(ServiceLevelAgreement.ID slaId) {
+        dueAgreements.add(slaId);
+        if (tickScheduled.compareAndSet(false, true)) {
+            evaluationExecutor.schedule(this::evaluateDueAgreements, batchWindowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Makes the SLA due because of a feed event.  If the SLA was already re-assessed for an event within the debounce period
+     * it is made due once that period ends, so a burst of events results in a single re-assessment.
+     */
+    private void agreementEvent(ServiceLevelAgreement.ID slaId, long eventTime) {
+        feedEventTimes.putIfAbsent(slaId, eventTime);
+        if (debouncingAgreements.add(slaId)) {
+            long delay = lastEventAssessments.getOrDefault(slaId, 0L) + eventDebounceMillis - eventTime;
+            evaluationExecutor.schedule(() -> {
+                debouncingAgreements.remove(slaId);
+                lastEventAssessments.put(slaId, System.currentTimeMillis());
+                agreementDue(slaId);
+            }, Math.max(0L, delay), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Checks all of the SLAs that became due since the last tick together, in one transaction.
+     */
+    private void evaluateDueAgreements() {
+        tickScheduled.set(false);
+        List<ServiceLevelAgreement.ID> slaIds = new ArrayList<>();
+        for (Iterator<ServiceLevelAgreement.ID> iterator = dueAgreements.iterator(); iterator.hasNext(); ) {
+            slaIds.add(iterator.next());
+            iterator.remove();
+        }
+        if (slaIds.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            int checked = metadataAccess.commit(() -> {
+                List<ServiceLevelAgreement> agreements = new ArrayList<>();
+                for (ServiceLevelAgreement.ID slaId : slaIds) {
+                    ServiceLevelAgreement sla = slaProvider.getAgreement(slaId);
+                    if (sla == null) {
+                        ///Unable to find the SLA... Remove the SLA from teh schedule
+                        unscheduleServiceLevelAgreement(slaId);
+                    } else if (sla.isEnabled()) {
+                        agreements.add(sla);
+                    } else {
+                        log.info("SLA {} will not fire since it is disabled ", sla.getName());
+                    }
+                }
+                slaChecker.checkAgreements(agreements);
+                return agreements.size();
+            }, MetadataAccess.SERVICE);
+            long end = System.currentTimeMillis();
+            long maxEventDelay = -1;
+            int eventCount = 0;
+            for (ServiceLevelAgreement.ID slaId : slaIds) {
+                Long eventTime = feedEventTimes.remove(slaId);
+                if (eventTime != null) {
+                    eventCount++;
+                    maxEventDelay = Math.max(maxEventDelay, end - eventTime);
+                }
+            }
+            if (eventCount > 0) {
+                log.info("SLA evaluation tick checked {} of {} due SLAs in {} ms. {} were due to feed events, assessed at most {} ms after the event", checked, slaIds.size(),
+                         end - start, eventCount, maxEventDelay);
+            } else {
+                log.info("SLA evaluation tick checked {} of {} due SLAs in {} ms", checked, slaIds.size(), end - start);
+            }
+        } catch (Exception e) {
+            log.error("Error checking {} due SLAs", slaIds.size(), e);
+        }
+    }
+
     @Override
     public void modeShapeAvailable() {
         metadataAccess.read(() -> {
@@ -152,6 +304,7 @@ public class DefaultServiceLevelAgreementScheduler implements ServiceLevelAgreem
                 log.debug("Unscheduling sla job " + scheduledJobId.getName());
                 jobScheduler.deleteJob(scheduledJobId);
                 scheduledJobNames.remove(slaId);
+                removeFeedAgreement(slaId);
                 unscheduled = true;
             }
         } catch (JobSchedulerException e) {
@@ -235,25 +388,14 @@ public class DefaultServiceLevelAgreementScheduler implements ServiceLevelAgreem
             jobScheduler.scheduleWithCronExpression(jobIdentifier, new Runnable() {
                 @Override
                 public void run() {
-                    //query for this SLA
-                    metadataAccess.commit(() -> {
-                        ServiceLevelAgreement sla = slaProvider.getAgreement(slaId);
-                        if (sla == null) {
-                            ///Unable to find the SLA... Remove the SLA from teh schedule
-                            unscheduleServiceLevelAgreement(slaId);
-
-                        }
-                        if (sla.isEnabled()) {
-                            slaChecker.checkAgreement(sla);
-                        } else {
-                            log.info("SLA {} will not fire since it is disabled ", sla.getName());
-                        }
-                    }, MetadataAccess.SERVICE);
+                    //queue this SLA for the next evaluation tick
+                    agreementDue(slaId);
                 }
             }, (StringUtils.isBlank(defaultCron) ? DEFAULT_CRON : defaultCron));
 
             log.debug("Schedule sla job " + jobIdentifier.getName());
             scheduledJobNames.put(sla.getId(), jobIdentifier.getName());
+            addFeedAgreement(sla);
         } catch (JobSchedulerException e) {
             throw new RuntimeException(e);
         }
@@ -263,6 +405,34 @@ public class DefaultServiceLevelAgreementScheduler implements ServiceLevelAgreem
         }
     }
 
+    /**
+     * Indexes the SLA by the feeds of its {@link FeedOperationMetric}s so that it is re-assessed when they change
+     */
+    private void addFeedAgreement(ServiceLevelAgreement sla) {
+        Set<String> feedNames = new HashSet<>();
+        try {
+            for (ObligationGroup group : sla.getObligationGroups()) {
+                for (Obligation obligation : group.getObligations()) {
+                    for (Metric metric : obligation.getMetrics()) {
+                        if (metric instanceof FeedOperationMetric && ((FeedOperationMetric) metric).getFeedName() != null) {
+                            feedNames.add(((FeedOperationMetric) metric).getFeedName());
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Unable to read the metrics of SLA {}.  It will only be checked on its schedule", sla.getName(), e);
+        }
+        for (String feedName : feedNames) {
+            feedAgreements.computeIfAbsent(feedName, name -> ConcurrentHashMap.newKeySet()).add(sla.getId());
+        }
+    }
+
+    private void removeFeedAgreement(ServiceLevelAgreement.ID slaId) {
+        feedAgreements.values().forEach(slaIds -> slaIds.remove(slaId));
+        lastEventAssessments.remove(slaId);
+    }
+
     /**
      * Called be the framework when the job is scheduled this is where we manage the life cycle of the SLAs
      *
@@ -326,6 +496,26 @@ public class DefaultServiceLevelAgreementScheduler implements ServiceLevelAgreem
         findAgreement(slaId).ifPresent(sla -> ((JcrServiceLevelAgreement) sla).setEnabled(false));
     }
 
+    /**
+     * Re-assess the SLAs of a feed when it fails or succeeds
+     */
+    @Override
+    public void reassessFeedAgreements(String feedName) {
+        Set<ServiceLevelAgreement.ID> slaIds = feedAgreements.get(feedName);
+        if (slaIds != null) {
+            long eventTime = System.currentTimeMillis();
+            slaIds.forEach(slaId -> agreementEvent(slaId, eventTime));
+        }
+    }
+
+    public void setBatchWindowMillis(long batchWindowMillis) {
+        this.batchWindowMillis = batchWindowMillis;
+    }
+
+    public void setEventDebounceMillis(long eventDebounceMillis) {
+        this.eventDebounceMillis = eventDebounceMillis;
+    }
+
     /**
      * Must be called inside a metadatAccess wrapper
      */
@@ -21,6 +21,7 @@ package com.thinkbiganalytics.metadata.sla;
  */
 
 
+import com.thinkbiganalytics.metadata.jpa.sla.ServiceLevelAssessmentFingerprintStore;
 import com.thinkbiganalytics.metadata.modeshape.JcrMetadataAccess;
 import com.thinkbiganalytics.metadata.sla.api.AssessmentResult;
 import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAgreement;
@@ -43,8 +44,13 @@ public class JpaJcrServiceLevelAgreementChecker extends DefaultServiceLevelAgree
     @Inject
     JcrMetadataAccess jcrMetadataAccess;
 
+    @Inject
+    ServiceLevelAssessmentFingerprintStore fingerprintStore;
+
     /**
      * Runs the assessment provider on the provided agreement and acts accordingly.
+     * The assessment is compared to the fingerprint of the previous assessment when it is known,
+     * otherwise the previous assessment is loaded and compared.
      *
      * @param agreement  The agreement to assess
      * @param assessment The strategy of assessment
@@ -52,6 +58,19 @@ public class JpaJcrServiceLevelAgreementChecker extends DefaultServiceLevelAgree
      */
     @Override
     protected boolean shouldAlert(ServiceLevelAgreement agreement, ServiceLevelAssessment assessment) {
+        if (assessment.getResult().equals(AssessmentResult.SUCCESS)) {
+            return false;
+        }
+        switch (fingerprintStore.compareToPrevious(assessment)) {
+            case NEW:
+            case CHANGED:
+                return true;
+            case UNCHANGED:
+                return false;
+            default:
+                break;
+        }
+
         boolean shouldAlert = false;
         try {
             shouldAlert = jcrMetadataAccess.read(() -> {
@@ -0,0 +1,109 @@
+package com.thinkbiganalytics.metadata.jobrepo.nifi.provenance;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-integration-service
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test the routing, ordering, backpressure and metrics of the {@link ProvenanceEventLanes}
+ */
+public class ProvenanceEventLanesTest {
+
+    @Test
+    public void testOrderPreservedPerKey() throws Exception {
+        ProvenanceEventLanes lanes = new ProvenanceEventLanes(4, 1000);
+        List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int value = i;
+            futures.add(lanes.submit("job-1", metrics -> applied.add(value)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < 500; i++) {
+            Assert.assertEquals(i, applied.get(i).intValue());
+        }
+        Assert.assertEquals(lanes.laneFor("job-1"), lanes.laneFor("job-1"));
+        Assert.assertEquals(500L, lanes.getLaneStats().get(lanes.laneFor("job-1")).getApplied());
+        lanes.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testBackpressureWhenLaneIsFull() throws Exception {
+        ProvenanceEventLanes lanes = new ProvenanceEventLanes(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        lanes.submit("a", metrics -> {
+            running.countDown();
+            release.await();
+        });
+        running.await(5, TimeUnit.SECONDS);
+        //fills the queue
+        lanes.submit("a", metrics -> {
+        });
+        Assert.assertEquals(1, lanes.getLaneStats().get(0).getQueueDepth());
+
+        AtomicBoolean submitted = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            lanes.submit("a", metrics -> {
+            });
+            submitted.set(true);
+        });
+        producer.start();
+        producer.join(200);
+        Assert.assertFalse("the producer should be blocked while the lane is full", submitted.get());
+
+        release.countDown();
+        producer.join(5000);
+        Assert.assertTrue(submitted.get());
+        lanes.shutdown(5, TimeUnit.SECONDS);
+        Assert.assertEquals(3L, lanes.getLaneStats().get(0).getApplied());
+    }
+
+    @Test
+    public void testFailuresAndRetriesAreRecorded() throws Exception {
+        ProvenanceEventLanes lanes = new ProvenanceEventLanes(2, 10);
+        CompletableFuture<Void> future = lanes.submit("job", metrics -> {
+            metrics.retried();
+            metrics.retried();
+            throw new IllegalStateException("failed");
+        });
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail("expected the task to fail");
+        } catch (Exception e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        ProvenanceEventLanes.LaneStats stats = lanes.getLaneStats().get(lanes.laneFor("job"));
+        Assert.assertEquals(1L, stats.getFailed());
+        Assert.assertEquals(2L, stats.getRetries());
+        Assert.assertEquals(0L, stats.getApplied());
+        lanes.shutdown(5, TimeUnit.SECONDS);
+    }
+}
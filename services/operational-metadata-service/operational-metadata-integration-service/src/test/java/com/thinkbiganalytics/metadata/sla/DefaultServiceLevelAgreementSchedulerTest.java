@@ -0,0 +1,183 @@
+package com.thinkbiganalytics.metadata.sla;
+
+/*-
+ * #%L
+ * thinkbig-operational-metadata-integration-service
+ * %%
+ * Copyright (C) 2017 ThinkBig Analytics
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.thinkbiganalytics.metadata.api.MetadataAccess;
+import com.thinkbiganalytics.metadata.api.MetadataCommand;
+import com.thinkbiganalytics.metadata.api.sla.FeedOperationMetric;
+import com.thinkbiganalytics.metadata.modeshape.common.ModeShapeAvailability;
+import com.thinkbiganalytics.metadata.sla.api.Metric;
+import com.thinkbiganalytics.metadata.sla.api.Obligation;
+import com.thinkbiganalytics.metadata.sla.api.ObligationGroup;
+import com.thinkbiganalytics.metadata.sla.api.ServiceLevelAgreement;
+import com.thinkbiganalytics.metadata.sla.spi.ServiceLevelAgreementChecker;
+import com.thinkbiganalytics.metadata.sla.spi.ServiceLevelAgreementProvider;
+import com.thinkbiganalytics.scheduler.JobIdentifier;
+import com.thinkbiganalytics.scheduler.JobScheduler;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that SLAs are re-assessed when the status of one of their feeds changes, and that the scheduled check still applies
+ */
+public class DefaultServiceLevelAgreementSchedulerTest {
+
+    private static final String FEED_NAME = "category.feed";
+
+    @Mock
+    private ServiceLevelAgreementProvider slaProvider;
+
+    @Mock
+    private JobScheduler jobScheduler;
+
+    @Mock
+    private ServiceLevelAgreementChecker slaChecker;
+
+    @Mock
+    private MetadataAccess metadataAccess;
+
+    @Mock
+    private ModeShapeAvailability modeShapeAvailability;
+
+    @InjectMocks
+    private DefaultServiceLevelAgreementScheduler scheduler = new DefaultServiceLevelAgreementScheduler();
+
+    private ServiceLevelAgreement sla;
+
+    /**
+     * the times at which the SLA was checked
+     */
+    private List<Long> checkTimes = new CopyOnWriteArrayList<>();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        scheduler.setBatchWindowMillis(50);
+        scheduler.setEventDebounceMillis(500);
+
+        when(metadataAccess.commit(any(MetadataCommand.class), Matchers.<Principal>anyVararg()))
+            .thenAnswer(invocation -> ((MetadataCommand<?>) invocation.getArguments()[0]).execute());
+        doAnswer(invocation -> checkTimes.add(System.currentTimeMillis())).when(slaChecker).checkAgreements(anyListOf(ServiceLevelAgreement.class));
+
+        FeedOperationMetric metric = mock(FeedOperationMetric.class);
+        when(metric.getFeedName()).thenReturn(FEED_NAME);
+        Obligation obligation = mock(Obligation.class);
+        when(obligation.getMetrics()).thenReturn(Collections.<Metric>singleton(metric));
+        ObligationGroup group = mock(ObligationGroup.class);
+        when(group.getObligations()).thenReturn(Collections.singletonList(obligation));
+
+        sla = mock(ServiceLevelAgreement.class);
+        ServiceLevelAgreement.ID slaId = mock(ServiceLevelAgreement.ID.class);
+        when(sla.getId()).thenReturn(slaId);
+        when(sla.getName()).thenReturn("sla");
+        when(sla.isEnabled()).thenReturn(true);
+        when(sla.getObligationGroups()).thenReturn(Collections.singletonList(group));
+        when(slaProvider.getAgreement(slaId)).thenReturn(sla);
+
+        scheduler.scheduleServiceLevelAgreements();
+
+        scheduler.scheduleServiceLevelAgreement(sla);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testFeedFailureAssessesAgreement() throws Exception {
+        long failureTime = System.currentTimeMillis();
+        scheduler.reassessFeedAgreements(FEED_NAME);
+
+        waitForChecks(1);
+        long delay = checkTimes.get(0) - failureTime;
+        Assert.assertTrue("the SLA should be checked shortly after the failure, took " + delay + " ms", delay < 2000);
+    }
+
+    @Test
+    public void testEventsDebouncedPerAgreement() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            scheduler.reassessFeedAgreements(FEED_NAME);
+        }
+        waitForChecks(1);
+        //an event within the debounce period is assessed once the period ends
+        scheduler.reassessFeedAgreements(FEED_NAME);
+        waitForChecks(2);
+        Thread.sleep(1000);
+        Assert.assertEquals(2, checkTimes.size());
+        Assert.assertTrue(checkTimes.get(1) - checkTimes.get(0) >= 400);
+    }
+
+    @Test
+    public void testUnrelatedFeedsIgnored() throws Exception {
+        scheduler.reassessFeedAgreements("category.other");
+        Thread.sleep(500);
+        Assert.assertTrue(checkTimes.isEmpty());
+    }
+
+    @Test
+    public void testScheduleStillChecksAgreement() throws Exception {
+        ArgumentCaptor<Runnable> jobCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(jobScheduler).scheduleWithCronExpression(any(JobIdentifier.class), jobCaptor.capture(), anyString());
+        jobCaptor.getValue().run();
+
+        waitForChecks(1);
+    }
+
+    @Test
+    public void testUnscheduledAgreementNotReassessed() throws Exception {
+        scheduler.unscheduleServiceLevelAgreement(sla);
+        scheduler.reassessFeedAgreements(FEED_NAME);
+        Thread.sleep(500);
+        Assert.assertTrue(checkTimes.isEmpty());
+    }
+
+    private void waitForChecks(int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (checkTimes.size() < count && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue("expected " + count + " checks but was " + checkTimes.size(), checkTimes.size() >= count);
+    }
+}